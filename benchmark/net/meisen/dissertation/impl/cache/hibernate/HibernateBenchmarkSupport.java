@@ -0,0 +1,144 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import net.meisen.dissertation.config.TidaConfig;
+import net.meisen.dissertation.config.xslt.DefaultValues;
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.dissertation.model.handler.TidaModelHandler;
+import net.meisen.general.genmisc.types.Streams;
+import net.meisen.general.sbconfigurator.ConfigurationCoreSettings;
+
+/**
+ * Helper used by the benchmarks to load the model the caches are initialized
+ * for and to set up the embedded in-memory databases, i.e. no external
+ * database-server is needed to run the benchmarks.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class HibernateBenchmarkSupport {
+
+	/**
+	 * The identifier used to select an in-memory {@code HSQLDB}.
+	 */
+	public final static String HSQLDB = "hsqldb";
+	/**
+	 * The identifier used to select an in-memory {@code H2} database.
+	 */
+	public final static String H2 = "h2";
+
+	/**
+	 * The model used by the benchmarks.
+	 */
+	public final static String MODEL = "/net/meisen/dissertation/impl/cache/hibernate/benchmarkModel.xml";
+
+	private static ConfigurationCoreSettings settings = null;
+
+	/**
+	 * Loads the model used by the benchmarks. The model must be unloaded
+	 * using {@link #unloadModels()}, prior to loading it again.
+	 * 
+	 * @return the loaded model
+	 */
+	public static synchronized TidaModel loadModel() {
+		final InputStream is = HibernateBenchmarkSupport.class
+				.getResourceAsStream(MODEL);
+		try {
+			return getHandler().loadViaXslt(is);
+		} finally {
+			Streams.closeIO(is);
+		}
+	}
+
+	/**
+	 * Unloads all the models loaded by {@link #loadModel()}.
+	 */
+	public static synchronized void unloadModels() {
+		getHandler().unloadAll();
+	}
+
+	/**
+	 * Gets the handler used to load the models.
+	 * 
+	 * @return the handler used to load the models
+	 */
+	protected static TidaModelHandler getHandler() {
+		if (settings == null) {
+			settings = ConfigurationCoreSettings.loadCoreSettings(
+					"sbconfigurator-core.xml", TidaConfig.class);
+		}
+
+		return settings.getConfiguration().getModule(
+				DefaultValues.MODELHANDLER_ID);
+	}
+
+	/**
+	 * Applies the settings of a new in-memory database of the specified type
+	 * to the {@code config}.
+	 * 
+	 * @param config
+	 *            the configuration to be set up
+	 * @param database
+	 *            the type of the database, i.e. {@link #HSQLDB} or {@link #H2}
+	 * 
+	 * @return the configuration
+	 */
+	public static <C extends HibernateConfig> C configure(final C config,
+			final String database) {
+		final String name = "bench" + UUID.randomUUID().toString()
+				.replace("-", "");
+
+		if (HSQLDB.equals(database)) {
+			config.setDriver("org.hsqldb.jdbcDriver");
+			config.setUrl("jdbc:hsqldb:mem:" + name);
+			config.setUsername("SA");
+			config.setPassword("");
+		} else if (H2.equals(database)) {
+			config.setDriver("org.h2.Driver");
+			config.setUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+			config.setUsername("sa");
+			config.setPassword("");
+		} else {
+			throw new IllegalArgumentException("Unsupported database '"
+					+ database + "'.");
+		}
+
+		return config;
+	}
+
+	/**
+	 * Shuts down the in-memory database defined by the {@code config}, i.e.
+	 * the memory used by the database is freed.
+	 * 
+	 * @param config
+	 *            the configuration of the database, can be {@code null}
+	 * 
+	 * @throws SQLException
+	 *             if the database cannot be shut down
+	 */
+	public static void shutDown(final HibernateConfig config)
+			throws SQLException {
+		if (config == null) {
+			return;
+		}
+
+		final Connection conn = DriverManager.getConnection(config.getUrl(),
+				config.getUsername(), config.getPassword());
+		try {
+			final Statement stmt = conn.createStatement();
+			try {
+				stmt.execute("SHUTDOWN");
+			} finally {
+				stmt.close();
+			}
+		} finally {
+			conn.close();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.dissertation.model.indexes.datarecord.IntervalIndex;
+import net.meisen.dissertation.model.indexes.datarecord.slices.Bitmap;
+import net.meisen.dissertation.model.indexes.datarecord.slices.BitmapId;
+import net.meisen.general.genmisc.exceptions.registry.DefaultExceptionRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the {@code HibernateBitmapCache}, measuring the caching and
+ * the retrieval of bitmaps of different densities. The retrieval is measured
+ * by a single thread and by several threads in parallel.
+ * 
+ * @author pmeisen
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HibernateBitmapCacheBenchmark {
+
+	/**
+	 * The state of a thread reading bitmaps in parallel, i.e. the random
+	 * number generator is not shared among the threads.
+	 * 
+	 * @author pmeisen
+	 * 
+	 */
+	@State(Scope.Thread)
+	public static class Reader {
+		private final Random rnd = new Random();
+	}
+
+	/**
+	 * The amount of bits a bitmap can have set.
+	 */
+	public final static int UNIVERSE = 100000;
+	/**
+	 * The amount of bitmaps stored within the cache.
+	 */
+	public final static int BITMAPS = 1000;
+
+	@Param({ HibernateBenchmarkSupport.HSQLDB, HibernateBenchmarkSupport.H2 })
+	private String database;
+
+	@Param({ "0.001", "0.01", "0.1", "0.5" })
+	private double density;
+
+	private HibernateBitmapCacheConfig config;
+	private HibernateBitmapCache cache;
+	private Bitmap[] bitmaps;
+	private Random rnd;
+	private int counter;
+
+	/**
+	 * Creates the cache and fills it with {@link #BITMAPS} bitmaps of the
+	 * specified {@code density}.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		final TidaModel model = HibernateBenchmarkSupport.loadModel();
+
+		config = HibernateBenchmarkSupport.configure(
+				new HibernateBitmapCacheConfig(), database);
+		cache = new HibernateBitmapCache();
+		cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		cache.setConfig(config);
+		cache.initialize(model);
+
+		// create some bitmaps of the specified density
+		rnd = new Random(1000);
+		bitmaps = new Bitmap[16];
+		for (int i = 0; i < bitmaps.length; i++) {
+			bitmaps[i] = createBitmap(model, rnd, density);
+		}
+
+		cache.setPersistency(false);
+		for (int i = 0; i < BITMAPS; i++) {
+			cache.cache(createId(i), bitmaps[i % bitmaps.length]);
+		}
+		cache.setPersistency(true);
+		counter = 0;
+	}
+
+	/**
+	 * Creates a bitmap having approximately the specified {@code density}.
+	 * 
+	 * @param model
+	 *            the model used to create the bitmap
+	 * @param rnd
+	 *            the random number generator used
+	 * @param density
+	 *            the ratio of bits to be set
+	 * 
+	 * @return the created bitmap
+	 */
+	protected Bitmap createBitmap(final TidaModel model, final Random rnd,
+			final double density) {
+		final int amount = (int) Math.max(1, UNIVERSE * density);
+		final int step = UNIVERSE / amount;
+
+		final int[] ids = new int[amount];
+		for (int i = 0; i < amount; i++) {
+			ids[i] = i * step + (step > 1 ? rnd.nextInt(step) : 0);
+		}
+
+		return Bitmap.createBitmap(model.getIndexFactory(), ids);
+	}
+
+	/**
+	 * Creates the identifier of the bitmap at the specified position.
+	 * 
+	 * @param pos
+	 *            the position of the bitmap
+	 * 
+	 * @return the identifier
+	 */
+	protected BitmapId<Integer> createId(final int pos) {
+		return new BitmapId<Integer>(pos, IntervalIndex.class);
+	}
+
+	/**
+	 * Removes the cache and the database.
+	 * 
+	 * @throws SQLException
+	 *             if the database cannot be shut down
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		cache.remove();
+		HibernateBenchmarkSupport.shutDown(config);
+		HibernateBenchmarkSupport.unloadModels();
+	}
+
+	/**
+	 * Measures the update of a cached bitmap.
+	 */
+	@Benchmark
+	public void cache() {
+		final int pos = counter++ % BITMAPS;
+		cache.cache(createId(pos), bitmaps[counter % bitmaps.length]);
+	}
+
+	/**
+	 * Measures the retrieval of a cached bitmap.
+	 * 
+	 * @param bh
+	 *            the {@code Blackhole} consuming the bitmap
+	 */
+	@Benchmark
+	public void get(final Blackhole bh) {
+		bh.consume(cache.get(createId(rnd.nextInt(BITMAPS))));
+	}
+
+	/**
+	 * Measures the retrieval of cached bitmaps by several threads in
+	 * parallel.
+	 * 
+	 * @param reader
+	 *            the state of the reading thread
+	 * @param bh
+	 *            the {@code Blackhole} consuming the bitmap
+	 */
+	@Benchmark
+	@Threads(4)
+	public void concurrentGet(final Reader reader, final Blackhole bh) {
+		bh.consume(cache.get(createId(reader.rnd.nextInt(BITMAPS))));
+	}
+}
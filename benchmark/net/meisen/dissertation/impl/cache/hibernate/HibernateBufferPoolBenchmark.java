@@ -0,0 +1,94 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the {@code HibernateBufferPool}, comparing serializations
+ * using new streams with the ones using the pool. The allocation rates are
+ * reported using the {@code gc} profiler, e.g.
+ * {@code -Djmh.args="-prof gc HibernateBufferPoolBenchmark"}.
+ * 
+ * @author pmeisen
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HibernateBufferPoolBenchmark {
+
+	@Param({ "1024", "16384" })
+	private int size;
+
+	private byte[] data;
+	private int counter;
+
+	/**
+	 * Creates the data to be serialized.
+	 */
+	@Setup
+	public void setUp() {
+		data = new byte[size];
+		counter = 0;
+	}
+
+	/**
+	 * Measures the serialization using new streams.
+	 * 
+	 * @return the size of the serialized data
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be written
+	 */
+	@Benchmark
+	public int fresh() throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(baos);
+		out.writeInt(counter++);
+		out.write(data);
+		out.close();
+
+		return baos.size();
+	}
+
+	/**
+	 * Measures the serialization using the pool, the serialized data is
+	 * bound as stream, i.e. no copy is created.
+	 * 
+	 * @return the size of the serialized data
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be written
+	 */
+	@Benchmark
+	public int pooled() throws IOException {
+		final HibernateLobBuffer buffer = HibernateBufferPool.acquire();
+		try {
+			final DataOutputStream out = new DataOutputStream(buffer);
+			out.writeInt(counter++);
+			out.write(data);
+			out.close();
+
+			return buffer.size();
+		} finally {
+			HibernateBufferPool.release(buffer, true);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.meisen.dissertation.model.data.FieldNameGenerator;
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.dissertation.model.util.IIntIterator;
+import net.meisen.general.genmisc.exceptions.registry.DefaultExceptionRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the {@code HibernateDataRecordCache}, measuring the insertion,
+ * the retrieval and the iteration of records. The retrieval of several
+ * records is measured one by one, by identifiers and by range, the scan of
+ * all records by streaming those sequentially and in parallel.
+ * 
+ * @author pmeisen
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HibernateDataRecordCacheBenchmark {
+
+	/**
+	 * The amount of records retrieved by the batch benchmarks.
+	 */
+	public final static int BATCH = 1000;
+
+	@Param({ HibernateBenchmarkSupport.HSQLDB, HibernateBenchmarkSupport.H2 })
+	private String database;
+
+	@Param({ "ROW", "COLUMNAR" })
+	private HibernateRecordStorage storage;
+
+	@Param({ "10000" })
+	private int records;
+
+	private HibernateDataRecordCacheConfig config;
+	private HibernateDataRecordCache cache;
+	private Random rnd;
+	private int nextId;
+
+	private int[] batchIds;
+	private Object[][] reuse;
+
+	/**
+	 * Creates the cache and fills it with the specified amount of
+	 * {@code records}.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		final TidaModel model = HibernateBenchmarkSupport.loadModel();
+
+		config = HibernateBenchmarkSupport.configure(
+				new HibernateDataRecordCacheConfig(), database);
+		config.setStorage(storage);
+		cache = new HibernateDataRecordCache();
+		cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		cache.setConfig(config);
+		cache.initialize(model);
+
+		cache.setPersistency(false);
+		for (nextId = 0; nextId < records; nextId++) {
+			cache.cache(createRecord(nextId));
+		}
+		cache.setPersistency(true);
+
+		rnd = new Random(1000);
+
+		// the identifiers retrieved by the batch benchmarks
+		batchIds = new int[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			batchIds[i] = rnd.nextInt(records);
+		}
+		reuse = new Object[BATCH][];
+		for (int i = 0; i < BATCH; i++) {
+			reuse[i] = new Object[cache.getDataTypes().length];
+		}
+	}
+
+	/**
+	 * Creates a record with the specified identifier.
+	 * 
+	 * @param id
+	 *            the identifier of the record
+	 * 
+	 * @return the created record
+	 */
+	protected Map<String, Object> createRecord(final int id) {
+		final FieldNameGenerator fg = FieldNameGenerator.get();
+		final long start = 1420070400000l + id * 60000l;
+
+		final Map<String, Object> map = new HashMap<String, Object>();
+		map.put(fg.getIdFieldName(), id);
+		map.put(fg.getIntervalStartFieldName(), new Date(start));
+		map.put(fg.getIntervalEndFieldName(), new Date(start + 3000000l));
+		map.put("STRING", "Value" + (id % 100));
+		map.put("INT", id);
+		map.put("LONG", (long) id);
+
+		return map;
+	}
+
+	/**
+	 * Removes the cache and the database.
+	 * 
+	 * @throws SQLException
+	 *             if the database cannot be shut down
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		cache.remove();
+		HibernateBenchmarkSupport.shutDown(config);
+		HibernateBenchmarkSupport.unloadModels();
+	}
+
+	/**
+	 * Measures the insertion of a new record.
+	 */
+	@Benchmark
+	public void insert() {
+		cache.cache(createRecord(nextId++));
+	}
+
+	/**
+	 * Measures the retrieval of a record.
+	 * 
+	 * @param bh
+	 *            the {@code Blackhole} consuming the record
+	 */
+	@Benchmark
+	public void get(final Blackhole bh) {
+		bh.consume(cache.get(rnd.nextInt(records)));
+	}
+
+	/**
+	 * Measures the retrieval of {@link #BATCH} records one by one.
+	 * 
+	 * @param bh
+	 *            the {@code Blackhole} consuming the records
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@BenchmarkMode(Mode.AverageTime)
+	public void getEach(final Blackhole bh) {
+		for (final int id : batchIds) {
+			bh.consume(cache.get(id));
+		}
+	}
+
+	/**
+	 * Measures the retrieval of {@link #BATCH} records by their identifiers.
+	 * 
+	 * @return the retrieved records
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@BenchmarkMode(Mode.AverageTime)
+	public Object[][] getAll() {
+		return cache.getAll(batchIds, reuse);
+	}
+
+	/**
+	 * Measures the retrieval of {@link #BATCH} records with consecutive
+	 * identifiers.
+	 * 
+	 * @return the retrieved records
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@BenchmarkMode(Mode.AverageTime)
+	public List<Object[]> getRange() {
+		final int from = rnd.nextInt(records - BATCH);
+		return cache.getRange(from, from + BATCH - 1, reuse);
+	}
+
+	/**
+	 * Measures the iteration over the identifiers of all the records.
+	 * 
+	 * @return the sum of the identifiers
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@BenchmarkMode(Mode.AverageTime)
+	public long iterate() {
+		final IIntIterator it = cache.intIterator();
+
+		long sum = 0;
+		while (it.hasNext()) {
+			sum += it.next();
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Measures the streaming of all the records using a flyweight.
+	 * 
+	 * @return the sum of the identifiers
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@BenchmarkMode(Mode.AverageTime)
+	public long scan() {
+		final HibernateDataRecordCache.RecordIterator it = cache
+				.recordIterator(true);
+
+		long sum = 0;
+		while (it.hasNext()) {
+			sum += ((Number) it.next()[0]).longValue();
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Measures the streaming of all the records in parallel, using one thread
+	 * per processor.
+	 * 
+	 * @return the sum of the identifiers
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@BenchmarkMode(Mode.AverageTime)
+	public long scanParallel() {
+		final AtomicLong sum = new AtomicLong(0);
+		cache.scan(new HibernateRecordHandler() {
+
+			@Override
+			public void handle(final Object[] record) {
+				sum.addAndGet(((Number) record[0]).longValue());
+			}
+		}, null, 0);
+
+		return sum.get();
+	}
+}
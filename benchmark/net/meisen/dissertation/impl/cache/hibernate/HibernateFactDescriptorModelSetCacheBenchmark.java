@@ -0,0 +1,134 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.dissertation.model.indexes.datarecord.IntervalIndex;
+import net.meisen.dissertation.model.indexes.datarecord.slices.BitmapId;
+import net.meisen.dissertation.model.indexes.datarecord.slices.FactDescriptorModelSet;
+import net.meisen.general.genmisc.exceptions.registry.DefaultExceptionRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the {@code HibernateFactDescriptorModelSetCache}, measuring
+ * the caching and the retrieval of fact-sets.
+ * 
+ * @author pmeisen
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HibernateFactDescriptorModelSetCacheBenchmark {
+
+	/**
+	 * The amount of fact-sets stored within the cache.
+	 */
+	public final static int SETS = 1000;
+
+	@Param({ HibernateBenchmarkSupport.HSQLDB, HibernateBenchmarkSupport.H2 })
+	private String database;
+
+	@Param({ "10", "1000" })
+	private int descriptors;
+
+	private HibernateFactDescriptorModelSetCacheConfig config;
+	private HibernateFactDescriptorModelSetCache cache;
+	private FactDescriptorModelSet set;
+	private Random rnd;
+	private int counter;
+
+	/**
+	 * Creates the cache and fills it with {@link #SETS} fact-sets, each
+	 * containing the specified amount of {@code descriptors}.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		final TidaModel model = HibernateBenchmarkSupport.loadModel();
+		for (int i = 0; i < descriptors; i++) {
+			model.getMetaDataModel().createDescriptor("INT", i);
+		}
+
+		config = HibernateBenchmarkSupport.configure(
+				new HibernateFactDescriptorModelSetCacheConfig(), database);
+		cache = new HibernateFactDescriptorModelSetCache();
+		cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		cache.setConfig(config);
+		cache.initialize(model);
+
+		set = new FactDescriptorModelSet();
+		set.setDescriptors(model.getMetaDataModel().getDescriptors());
+
+		cache.setPersistency(false);
+		for (int i = 0; i < SETS; i++) {
+			cache.cache(createId(i), set);
+		}
+		cache.setPersistency(true);
+
+		rnd = new Random(1000);
+		counter = 0;
+	}
+
+	/**
+	 * Creates the identifier of the fact-set at the specified position.
+	 * 
+	 * @param pos
+	 *            the position of the fact-set
+	 * 
+	 * @return the identifier
+	 */
+	protected BitmapId<Integer> createId(final int pos) {
+		return new BitmapId<Integer>(pos, IntervalIndex.class);
+	}
+
+	/**
+	 * Removes the cache and the database.
+	 * 
+	 * @throws SQLException
+	 *             if the database cannot be shut down
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		cache.remove();
+		HibernateBenchmarkSupport.shutDown(config);
+		HibernateBenchmarkSupport.unloadModels();
+	}
+
+	/**
+	 * Measures the update of a cached fact-set.
+	 */
+	@Benchmark
+	public void cache() {
+		cache.cache(createId(counter++ % SETS), set);
+	}
+
+	/**
+	 * Measures the retrieval of a cached fact-set.
+	 * 
+	 * @param bh
+	 *            the {@code Blackhole} consuming the fact-set
+	 */
+	@Benchmark
+	public void get(final Blackhole bh) {
+		bh.consume(cache.get(createId(rnd.nextInt(SETS))));
+	}
+}
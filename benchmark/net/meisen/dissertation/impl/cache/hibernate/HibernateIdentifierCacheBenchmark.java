@@ -0,0 +1,89 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.general.genmisc.exceptions.registry.DefaultExceptionRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the {@code HibernateIdentifierCache}, measuring the allocation
+ * of new identifiers, i.e. marking an identifier as used and as valid.
+ * 
+ * @author pmeisen
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HibernateIdentifierCacheBenchmark {
+
+	@Param({ HibernateBenchmarkSupport.HSQLDB, HibernateBenchmarkSupport.H2 })
+	private String database;
+
+	private HibernateIdentifierCacheConfig config;
+	private HibernateIdentifierCache cache;
+	private int lastId;
+
+	/**
+	 * Creates the cache.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		final TidaModel model = HibernateBenchmarkSupport.loadModel();
+
+		config = HibernateBenchmarkSupport.configure(
+				new HibernateIdentifierCacheConfig(), database);
+		cache = new HibernateIdentifierCache();
+		cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		cache.setIndexFactory(model.getIndexFactory());
+		cache.setConfig(config);
+		cache.initialize(model);
+
+		lastId = cache.getLastUsedIdentifier();
+	}
+
+	/**
+	 * Removes the cache and the database.
+	 * 
+	 * @throws SQLException
+	 *             if the database cannot be shut down
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		cache.remove();
+		HibernateBenchmarkSupport.shutDown(config);
+		HibernateBenchmarkSupport.unloadModels();
+	}
+
+	/**
+	 * Measures the allocation of a new identifier.
+	 * 
+	 * @return the allocated identifier
+	 */
+	@Benchmark
+	public int allocate() {
+		final int id = ++lastId;
+		cache.markIdentifierAsUsed(id);
+		cache.markIdentifierAsValid(id);
+
+		return id;
+	}
+}
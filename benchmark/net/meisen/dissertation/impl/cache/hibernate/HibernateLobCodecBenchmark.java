@@ -0,0 +1,146 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.dissertation.model.indexes.datarecord.slices.Bitmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the {@code HibernateLobCodec}, measuring the encoding and the
+ * decoding of serialized bitmaps of different kinds, i.e. sparse bitmaps,
+ * bitmaps with long runs and random bitmaps.
+ * 
+ * @author pmeisen
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HibernateLobCodecBenchmark {
+
+	@Param({ "sparse", "runs", "random" })
+	private String kind;
+
+	@Param
+	private HibernateLobCodec codec;
+
+	private byte[] data;
+	private byte[] encoded;
+
+	/**
+	 * Creates the serialized bitmap of the specified {@code kind} and encodes
+	 * it once, so that the decoding can be measured.
+	 * 
+	 * @throws IOException
+	 *             if the bitmap cannot be serialized
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		final TidaModel model = HibernateBenchmarkSupport.loadModel();
+
+		final List<Integer> ids = new ArrayList<Integer>();
+		if ("sparse".equals(kind)) {
+			for (int i = 0; i < 1000000; i += 1000) {
+				ids.add(i);
+			}
+		} else if ("runs".equals(kind)) {
+			for (int i = 0; i < 1000000; i += 5000) {
+				for (int k = i; k < i + 500; k++) {
+					ids.add(k);
+				}
+			}
+		} else {
+			final Random rnd = new Random(4711);
+			for (int i = 0; i < 100000; i++) {
+				if (rnd.nextInt(10) == 0) {
+					ids.add(i);
+				}
+			}
+		}
+
+		data = serialize(model, ids);
+		encoded = codec.encode(data);
+	}
+
+	/**
+	 * Creates the serialized bitmap of the specified {@code ids}.
+	 * 
+	 * @param model
+	 *            the model to get the index-factory from
+	 * @param ids
+	 *            the identifiers set within the bitmap
+	 * 
+	 * @return the serialized bitmap
+	 * 
+	 * @throws IOException
+	 *             if the bitmap cannot be serialized
+	 */
+	protected byte[] serialize(final TidaModel model, final List<Integer> ids)
+			throws IOException {
+		final int[] array = new int[ids.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = ids.get(i);
+		}
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(baos);
+		Bitmap.createBitmap(model.getIndexFactory(), array).serialize(out);
+		out.flush();
+
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Unloads the model.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		HibernateBenchmarkSupport.unloadModels();
+	}
+
+	/**
+	 * Measures the encoding of the serialized bitmap.
+	 * 
+	 * @return the encoded bitmap
+	 */
+	@Benchmark
+	public byte[] encode() {
+		return codec.encode(data);
+	}
+
+	/**
+	 * Measures the decoding of the encoded bitmap.
+	 * 
+	 * @return the decoded bitmap
+	 * 
+	 * @throws IOException
+	 *             if the bitmap cannot be decoded
+	 */
+	@Benchmark
+	public byte[] decode() throws IOException {
+		return codec.decode(encoded);
+	}
+}
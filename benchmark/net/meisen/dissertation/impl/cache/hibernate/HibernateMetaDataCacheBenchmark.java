@@ -0,0 +1,102 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.dissertation.model.descriptors.Descriptor;
+import net.meisen.general.genmisc.exceptions.registry.DefaultExceptionRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the {@code HibernateMetaDataCache}, measuring the loading of
+ * the cached meta-data, i.e. the creation of the
+ * {@code IMetaDataCollection} done whenever a model is loaded.
+ * 
+ * @author pmeisen
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HibernateMetaDataCacheBenchmark {
+
+	@Param({ HibernateBenchmarkSupport.HSQLDB, HibernateBenchmarkSupport.H2 })
+	private String database;
+
+	@Param({ "1000", "100000" })
+	private int descriptors;
+
+	private HibernateMetaDataCacheConfig config;
+	private HibernateMetaDataCache cache;
+
+	/**
+	 * Creates the cache and fills it with the specified amount of
+	 * {@code descriptors}.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		final TidaModel model = HibernateBenchmarkSupport.loadModel();
+
+		config = HibernateBenchmarkSupport.configure(
+				new HibernateMetaDataCacheConfig(), database);
+		cache = new HibernateMetaDataCache();
+		cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		cache.setConfig(config);
+		cache.initialize(model);
+
+		cache.setPersistency(false);
+		for (int i = 0; i < descriptors; i++) {
+			final Descriptor<?, ?, ?> desc;
+			if (i % 2 == 0) {
+				desc = model.getMetaDataModel().createDescriptor("INT", i);
+			} else {
+				desc = model.getMetaDataModel().createDescriptor("STRING",
+						"Value" + i);
+			}
+			cache.cacheDescriptor(desc);
+		}
+		cache.setPersistency(true);
+	}
+
+	/**
+	 * Removes the cache and the database.
+	 * 
+	 * @throws SQLException
+	 *             if the database cannot be shut down
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		cache.remove();
+		HibernateBenchmarkSupport.shutDown(config);
+		HibernateBenchmarkSupport.unloadModels();
+	}
+
+	/**
+	 * Measures the loading of all the cached descriptors.
+	 * 
+	 * @param bh
+	 *            the {@code Blackhole} consuming the loaded meta-data
+	 */
+	@Benchmark
+	public void load(final Blackhole bh) {
+		bh.consume(cache.createMetaDataCollection());
+	}
+}
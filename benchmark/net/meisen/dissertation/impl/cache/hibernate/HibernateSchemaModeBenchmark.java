@@ -0,0 +1,182 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.dissertation.model.indexes.datarecord.IntervalIndex;
+import net.meisen.dissertation.model.indexes.datarecord.slices.Bitmap;
+import net.meisen.dissertation.model.indexes.datarecord.slices.BitmapId;
+import net.meisen.general.genmisc.exceptions.registry.DefaultExceptionRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the {@code HibernateSchemaMode}, measuring the time needed to
+ * load a model, i.e. to initialize and release the caches, depending on the
+ * amount of tables, the size of the tables and the mode used to handle the
+ * schema.
+ * 
+ * @author pmeisen
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HibernateSchemaModeBenchmark {
+
+	@Param({ HibernateBenchmarkSupport.HSQLDB, HibernateBenchmarkSupport.H2 })
+	private String database;
+
+	@Param
+	private HibernateSchemaMode mode;
+
+	@Param({ "1", "2", "3" })
+	private int tables;
+
+	@Param({ "0", "5000" })
+	private int rows;
+
+	private TidaModel model;
+	private HibernateConfig dbConfig;
+
+	/**
+	 * Creates the database, fills the table of the bitmap-cache with the
+	 * specified amount of {@code rows} and loads the model once, so that the
+	 * tables are created and marked as trusted.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		model = HibernateBenchmarkSupport.loadModel();
+		dbConfig = HibernateBenchmarkSupport.configure(
+				new HibernateBitmapCacheConfig(), database);
+
+		// fill the table of the bitmap-cache
+		final HibernateBitmapCache cache = (HibernateBitmapCache) createCaches(
+				1, HibernateSchemaMode.UPDATE).get(0);
+		cache.initialize(model);
+		cache.setPersistency(false);
+		for (int i = 0; i < rows; i++) {
+			cache.cache(new BitmapId<Integer>(i, IntervalIndex.class),
+					Bitmap.createBitmap(model.getIndexFactory(), i));
+		}
+		cache.setPersistency(true);
+		cache.release();
+
+		load(createCaches(tables, HibernateSchemaMode.TRUSTED));
+	}
+
+	/**
+	 * Removes the database, i.e. the tables.
+	 * 
+	 * @throws SQLException
+	 *             if the database cannot be shut down
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		HibernateBenchmarkSupport.shutDown(dbConfig);
+		HibernateBenchmarkSupport.unloadModels();
+	}
+
+	/**
+	 * Applies the settings of the benchmark's database to the {@code config}.
+	 * 
+	 * @param config
+	 *            the configuration to be set up
+	 * @param mode
+	 *            the mode used to handle the schema
+	 * 
+	 * @return the configuration
+	 */
+	protected <C extends HibernateConfig> C configure(final C config,
+			final HibernateSchemaMode mode) {
+		config.setDriver(dbConfig.getDriver());
+		config.setUrl(dbConfig.getUrl());
+		config.setUsername(dbConfig.getUsername());
+		config.setPassword(dbConfig.getPassword());
+		config.setSchemaMode(mode);
+
+		return config;
+	}
+
+	/**
+	 * Creates the specified amount of caches, each one using a table of its
+	 * own.
+	 * 
+	 * @param amount
+	 *            the amount of caches to be created, at most {@code 3}
+	 * @param mode
+	 *            the mode used to handle the schema
+	 * 
+	 * @return the created caches
+	 */
+	protected List<HibernateSessionManager<?>> createCaches(final int amount,
+			final HibernateSchemaMode mode) {
+		final List<HibernateSessionManager<?>> res = new ArrayList<HibernateSessionManager<?>>();
+
+		final HibernateBitmapCache bitmapCache = new HibernateBitmapCache();
+		bitmapCache.setConfig(configure(new HibernateBitmapCacheConfig(),
+				mode));
+		res.add(bitmapCache);
+
+		if (amount > 1) {
+			final HibernateFactDescriptorModelSetCache factCache = new HibernateFactDescriptorModelSetCache();
+			factCache.setConfig(configure(
+					new HibernateFactDescriptorModelSetCacheConfig(), mode));
+			res.add(factCache);
+		}
+
+		if (amount > 2) {
+			final HibernateDataRecordCache recordCache = new HibernateDataRecordCache();
+			recordCache.setConfig(configure(
+					new HibernateDataRecordCacheConfig(), mode));
+			res.add(recordCache);
+		}
+
+		for (final HibernateSessionManager<?> cache : res) {
+			cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		}
+
+		return res;
+	}
+
+	/**
+	 * Initializes and releases the specified {@code caches}.
+	 * 
+	 * @param caches
+	 *            the caches to be loaded
+	 */
+	protected void load(final List<HibernateSessionManager<?>> caches) {
+		for (final HibernateSessionManager<?> cache : caches) {
+			cache.initialize(model);
+		}
+		for (final HibernateSessionManager<?> cache : caches) {
+			cache.release();
+		}
+	}
+
+	/**
+	 * Measures the loading of the model using the specified {@code mode}.
+	 */
+	@Benchmark
+	public void load() {
+		load(createCaches(tables, mode));
+	}
+}
@@ -1,12 +1,18 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import net.meisen.dissertation.model.cache.IBitmapIdCacheConfig;
@@ -33,8 +39,65 @@ import org.hibernate.mapping.Table;
  */
 public class HibernateBitmapCache extends HibernateBitmapIdBasedCache<Bitmap> {
 
+	/**
+	 * A stream counting the bytes read, used to determine the serialized size
+	 * of a bitmap read from a stream.
+	 * 
+	 * @author pmeisen
+	 * 
+	 */
+	protected static class CountingInputStream extends FilterInputStream {
+		private long count = 0;
+
+		/**
+		 * Constructor specifying the stream to count the bytes of.
+		 * 
+		 * @param in
+		 *            the stream to count the bytes of
+		 */
+		public CountingInputStream(final InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			final int read = super.read(b, off, len);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			final long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		/**
+		 * Gets the amount of bytes read so far.
+		 * 
+		 * @return the amount of bytes read
+		 */
+		public long getCount() {
+			return count;
+		}
+	}
+
 	private HibernateBitmapCacheConfig config;
 	private BaseIndexFactory idxFactory;
+	private HibernateLruCache<BitmapId<?>, Bitmap> memoryCache;
 
 	/**
 	 * Default constructor.
@@ -42,6 +105,7 @@ public class HibernateBitmapCache extends HibernateBitmapIdBasedCache<Bitmap> {
 	public HibernateBitmapCache() {
 		this.config = null;
 		this.idxFactory = null;
+		this.memoryCache = null;
 	}
 
 	@Override
@@ -50,30 +114,124 @@ public class HibernateBitmapCache extends HibernateBitmapIdBasedCache<Bitmap> {
 		// get the needed values
 		this.idxFactory = model.getIndexFactory();
 
+		// create the in-memory tier if one is configured
+		if (config != null && config.getMemoryCacheSize() > 0) {
+			this.memoryCache = new HibernateLruCache<BitmapId<?>, Bitmap>(
+					config.getMemoryCacheSize());
+		} else {
+			this.memoryCache = null;
+		}
+
 		// now initialize
 		super.initialize(model);
 	}
 
 	@Override
 	public Bitmap get(final BitmapId<?> id) {
-		final String encBitmap = encodeBitmap(id);
-		final Map<String, Object> map = getMap(encBitmap);
-		if (map == null) {
-			return idxFactory.createBitmap();
-		} else {
 
-			final byte[] byteBitmap = (byte[]) map.get("bitmap");
-			final DataInputStream in = new DataInputStream(
-					new ByteArrayInputStream(byteBitmap));
+		// check the in-memory tier first
+		final HibernateLruCache<BitmapId<?>, Bitmap> memoryCache = this.memoryCache;
+		if (memoryCache != null) {
+			final Bitmap bitmap = memoryCache.get(id);
+			if (bitmap != null) {
+				return bitmap;
+			}
+		}
+
+		return super.get(id);
+	}
 
-			try {
-				return Bitmap.createFromInput(idxFactory, in);
-			} catch (final IOException e) {
-				exceptionRegistry.throwException(
-						HibernateBitmapCacheException.class, 1000, id);
-				return null;
+	@Override
+	public Map<BitmapId<?>, Bitmap> getAll(final Collection<BitmapId<?>> ids) {
+		final HibernateLruCache<BitmapId<?>, Bitmap> memoryCache = this.memoryCache;
+		if (memoryCache == null || ids == null) {
+			return super.getAll(ids);
+		}
+
+		// check the in-memory tier first
+		final Map<BitmapId<?>, Bitmap> res = new LinkedHashMap<BitmapId<?>, Bitmap>();
+		final List<BitmapId<?>> missing = new ArrayList<BitmapId<?>>();
+		for (final BitmapId<?> id : ids) {
+			final Bitmap bitmap = memoryCache.get(id);
+			res.put(id, bitmap);
+			if (bitmap == null) {
+				missing.add(id);
 			}
 		}
+
+		// retrieve the missing once
+		if (!missing.isEmpty()) {
+			res.putAll(super.getAll(missing));
+		}
+
+		return res;
+	}
+
+	@Override
+	protected Bitmap createFromStream(final BitmapId<?> id,
+			final Number encoding, final InputStream in) {
+		final CountingInputStream counter;
+		final Bitmap bitmap;
+		try {
+			counter = new CountingInputStream(new BufferedInputStream(
+					decodeLob(encoding, in)));
+			bitmap = Bitmap.createFromInput(idxFactory, new DataInputStream(
+					counter));
+		} catch (final IOException e) {
+			exceptionRegistry.throwException(
+					HibernateBitmapCacheException.class, 1000, id);
+			return null;
+		}
+
+		/*
+		 * Add the bitmap to the in-memory tier, if no other bitmap was added
+		 * meanwhile. The bitmap might have been read before a newer one was
+		 * written through by cache(), which must not be overwritten.
+		 */
+		final HibernateLruCache<BitmapId<?>, Bitmap> memoryCache = this.memoryCache;
+		if (memoryCache != null) {
+			memoryCache.putIfAbsent(id, bitmap, counter.getCount());
+		}
+
+		return bitmap;
+	}
+
+	@Override
+	protected String getLobPropertyName() {
+		return "bitmap";
+	}
+
+	@Override
+	protected Bitmap createEmpty() {
+		return idxFactory.createBitmap();
+	}
+
+	/**
+	 * Gets the in-memory tier used in front of the database, e.g. to retrieve
+	 * the statistics of the tier.
+	 * 
+	 * @return the in-memory tier, or {@code null} if no tier is used
+	 */
+	public HibernateLruCache<BitmapId<?>, Bitmap> getMemoryCache() {
+		return memoryCache;
+	}
+
+	@Override
+	public void release() {
+		if (memoryCache != null) {
+			memoryCache.clear();
+		}
+
+		super.release();
+	}
+
+	@Override
+	public void remove() {
+		if (memoryCache != null) {
+			memoryCache.clear();
+		}
+
+		super.remove();
 	}
 
 	@Override
@@ -92,24 +250,32 @@ public class HibernateBitmapCache extends HibernateBitmapIdBasedCache<Bitmap> {
 		final Map<String, Object> map = new HashMap<String, Object>();
 
 		// get the encoded id
-		final String id = encodeBitmap(bitmapId);
+		final Serializable id = encodeBitmap(bitmapId);
 		map.put("bitmapId", id);
 
-		// get the bitmap
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		final DataOutputStream w = new DataOutputStream(baos);
+		// serialize the bitmap directly into the buffer bound to the statement
+		final HibernateLobBuffer buffer = createLobBuffer();
+		final DataOutputStream w = new DataOutputStream(encodeLob(buffer));
 		try {
 			bitmap.serialize(w);
+			w.close();
 		} catch (final IOException e) {
+			HibernateBufferPool.release(buffer, false);
 			exceptionRegistry.throwException(
-					HibernateBitmapCacheException.class, 1001, id);
+					HibernateBitmapCacheException.class, 1001, bitmapId);
+		} finally {
+			Streams.closeIO(w);
 		}
-		map.put("bitmap", baos.toByteArray());
-		Streams.closeIO(baos);
-		Streams.closeIO(w);
+		putLob(map, buffer);
+		final int size = w.size();
 
 		// save the map
-		saveMap(map, id);
+		saveLob(map, id, buffer);
+
+		// write-through to the in-memory tier, always replacing the entry
+		if (memoryCache != null) {
+			memoryCache.put(bitmapId, bitmap, size);
+		}
 	}
 
 	@Override
@@ -1,15 +1,37 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
-import net.meisen.dissertation.model.cache.IBitmapIdCacheConfig;
-
 /**
  * A {@code HibernateConfig} for {@code BitmapCaches}.
  * 
  * @author pmeisen
  * 
  */
-public class HibernateBitmapCacheConfig extends HibernateConfig implements
-		IBitmapIdCacheConfig {
+public class HibernateBitmapCacheConfig extends
+		HibernateBitmapIdBasedCacheConfig {
+
+	private long memoryCacheSize = 0;
+
+	/**
+	 * Gets the size (in bytes) of the in-memory tier used in front of the
+	 * database. The size is determined by the serialized size of the cached
+	 * bitmaps.
+	 * 
+	 * @return the size (in bytes) of the in-memory tier, a value smaller than
+	 *         {@code 1} if no in-memory tier is used
+	 */
+	public long getMemoryCacheSize() {
+		return memoryCacheSize;
+	}
 
-	// nothing more
+	/**
+	 * Sets the size (in bytes) of the in-memory tier used in front of the
+	 * database.
+	 * 
+	 * @param memoryCacheSize
+	 *            the size (in bytes) of the in-memory tier, a value smaller
+	 *            than {@code 1} disables the tier
+	 */
+	public void setMemoryCacheSize(final long memoryCacheSize) {
+		this.memoryCacheSize = memoryCacheSize;
+	}
 }
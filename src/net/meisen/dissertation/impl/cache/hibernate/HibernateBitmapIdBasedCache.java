@@ -1,6 +1,33 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -8,21 +35,29 @@ import net.meisen.dissertation.jdbc.protocol.DataType;
 import net.meisen.dissertation.model.cache.IBitmapIdCache;
 import net.meisen.dissertation.model.cache.IBitmapIdCacheable;
 import net.meisen.dissertation.model.cache.IReferenceMechanismCache;
+import net.meisen.dissertation.model.data.TidaModel;
 import net.meisen.dissertation.model.indexes.datarecord.slices.BitmapId;
+import net.meisen.general.genmisc.types.Streams;
 
+import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Mappings;
 import org.hibernate.dialect.Dialect;
+import org.hibernate.jdbc.Work;
 import org.hibernate.mapping.Column;
 import org.hibernate.mapping.PrimaryKey;
 import org.hibernate.mapping.Property;
 import org.hibernate.mapping.RootClass;
 import org.hibernate.mapping.SimpleValue;
 import org.hibernate.mapping.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A base implementation of an {@code Hibernate} based bitmap using a
- * bitmap-identifier (see {@link BitmapId}) as identifier.
+ * bitmap-identifier (see {@link BitmapId}) as identifier. The identifier is
+ * stored as {@code Base64} encoded string or, if configured (see
+ * {@link HibernateBitmapIdBasedCacheConfig#isBinaryKey()}), as binary value.
  * 
  * @author pmeisen
  * 
@@ -30,12 +65,178 @@ import org.hibernate.mapping.Table;
  *            the entity to be associated to the identifier
  */
 public abstract class HibernateBitmapIdBasedCache<T extends IBitmapIdCacheable>
-		extends HibernateSessionManager<String> implements IBitmapIdCache<T>,
-		IReferenceMechanismCache<BitmapId<?>, T> {
+		extends HibernateSessionManager<Serializable> implements
+		IBitmapIdCache<T>, IReferenceMechanismCache<BitmapId<?>, T> {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(HibernateBitmapIdBasedCache.class);
 
 	/**
-	 * Encode the identifier of the bitmap to be used as string, without losing
-	 * information.
+	 * The minimal amount of entities retrieved by {@link #getAll(Collection)}
+	 * to deserialize the entities in parallel.
+	 */
+	public final static int PARALLEL_THRESHOLD = 64;
+
+	private final static int PROCESSORS = Runtime.getRuntime()
+			.availableProcessors();
+	private static ThreadPoolExecutor deserializer = null;
+
+	/**
+	 * Gets the executor shared by all instances to deserialize the retrieved
+	 * entities in parallel. The threads of the executor are daemons and
+	 * terminate if idle.
+	 * 
+	 * @return the shared executor
+	 */
+	protected synchronized static ThreadPoolExecutor getDeserializer() {
+		if (deserializer == null) {
+			final AtomicInteger counter = new AtomicInteger(0);
+
+			deserializer = new ThreadPoolExecutor(PROCESSORS, PROCESSORS, 30,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+
+						@Override
+						public Thread newThread(final Runnable r) {
+							final Thread t = new Thread(r,
+									"HibernateDeserializer-"
+											+ counter.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+			deserializer.allowCoreThreadTimeOut(true);
+		}
+
+		return deserializer;
+	}
+
+	private boolean binaryKey = false;
+	private HibernateLobCodec codec = HibernateLobCodec.NONE;
+
+	@Override
+	public void initialize(final TidaModel model) {
+		final HibernateConfig config = getConfig();
+		if (config instanceof HibernateBitmapIdBasedCacheConfig) {
+			final HibernateBitmapIdBasedCacheConfig c = (HibernateBitmapIdBasedCacheConfig) config;
+			this.binaryKey = c.isBinaryKey();
+			this.codec = c.getCodec();
+		} else {
+			this.binaryKey = false;
+			this.codec = HibernateLobCodec.NONE;
+		}
+
+		super.initialize(model);
+	}
+
+	/**
+	 * Checks if the bitmap-identifiers are stored as binary values.
+	 * 
+	 * @return {@code true} if the identifiers are stored as binary values,
+	 *         {@code false} if those are stored as {@code Base64} encoded
+	 *         strings
+	 */
+	public boolean isBinaryKey() {
+		return binaryKey;
+	}
+
+	/**
+	 * Gets the codec used to encode the serialized entities.
+	 * 
+	 * @return the codec used to encode the serialized entities
+	 */
+	public HibernateLobCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Gets a buffer to serialize an entity into. The buffer is retrieved from
+	 * the {@code HibernateBufferPool} and handed back when the entity is saved
+	 * (see {@link #saveLob(Map, Serializable, HibernateLobBuffer)}).
+	 * 
+	 * @return the buffer to be used
+	 * 
+	 * @see #encodeLob(HibernateLobBuffer)
+	 */
+	protected HibernateLobBuffer createLobBuffer() {
+		return HibernateBufferPool.acquire();
+	}
+
+	/**
+	 * Wraps the specified {@code buffer}, so that the entity serialized into
+	 * the returned stream is encoded using the configured codec. The returned
+	 * stream must be closed prior to using the buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer to write the encoded entity to
+	 * 
+	 * @return the stream to serialize the entity to
+	 */
+	protected OutputStream encodeLob(final HibernateLobBuffer buffer) {
+		return codec.encode(buffer);
+	}
+
+	/**
+	 * Puts the serialized entity of the {@code buffer} together with the
+	 * identifier of the codec into the {@code map}. The buffer is bound
+	 * directly to the native statement writing the entity, if possible.
+	 * Otherwise the content of the buffer is copied.
+	 * 
+	 * @param map
+	 *            the map to put the serialized entity into
+	 * @param buffer
+	 *            the buffer containing the serialized entity
+	 */
+	protected void putLob(final Map<String, Object> map,
+			final HibernateLobBuffer buffer) {
+		map.put(getLobPropertyName(), isNativeUpsert() ? buffer : buffer
+				.toByteArray());
+		map.put("encoding", codec.getId());
+	}
+
+	/**
+	 * Saves the {@code map} containing the serialized entity of the
+	 * {@code buffer} (see {@link #putLob(Map, HibernateLobBuffer)}). The
+	 * buffer is handed back to the pool afterwards, whereby it is only reused
+	 * if it isn't referenced by the write-behind queue.
+	 * 
+	 * @param map
+	 *            the map to be saved
+	 * @param id
+	 *            the encoded identifier of the entity
+	 * @param buffer
+	 *            the buffer containing the serialized entity
+	 */
+	protected void saveLob(final Map<String, Object> map,
+			final Serializable id, final HibernateLobBuffer buffer) {
+		final boolean written = saveMap(map, id);
+		HibernateBufferPool.release(buffer,
+				written || map.get(getLobPropertyName()) != buffer);
+	}
+
+	/**
+	 * Wraps the specified stream of a serialized entity, so that the entity
+	 * is decoded using the codec it was stored with, which might differ from
+	 * the one configured.
+	 * 
+	 * @param encoding
+	 *            the identifier of the codec the entity was stored with
+	 * @param in
+	 *            the stream of the stored entity
+	 * 
+	 * @return the stream to deserialize the entity from
+	 * 
+	 * @throws IOException
+	 *             if the codec is unknown
+	 */
+	protected InputStream decodeLob(final Number encoding,
+			final InputStream in) throws IOException {
+		return HibernateLobCodec.byId(encoding).decode(in);
+	}
+
+	/**
+	 * Encode the identifier of the bitmap to be used as key, without losing
+	 * information. The key is a byte-array if a binary key is used, otherwise
+	 * a string.
 	 * 
 	 * @param bitmapId
 	 *            the bitmap to be encoded
@@ -44,8 +245,12 @@ public abstract class HibernateBitmapIdBasedCache<T extends IBitmapIdCacheable>
 	 * 
 	 * @see DatatypeConverter#printBase64Binary(byte[])
 	 */
-	protected String encodeBitmap(final BitmapId<?> bitmapId) {
-		return DatatypeConverter.printBase64Binary(bitmapId.bytes());
+	protected Serializable encodeBitmap(final BitmapId<?> bitmapId) {
+		if (binaryKey) {
+			return bitmapId.bytes();
+		} else {
+			return DatatypeConverter.printBase64Binary(bitmapId.bytes());
+		}
 	}
 
 	/**
@@ -57,31 +262,275 @@ public abstract class HibernateBitmapIdBasedCache<T extends IBitmapIdCacheable>
 	 * @return the original bitmap-identifier
 	 */
 	@SuppressWarnings("rawtypes")
-	protected BitmapId<?> decodeBitmap(final String bitmapId) {
-		return new BitmapId(DatatypeConverter.parseBase64Binary(bitmapId));
+	protected BitmapId<?> decodeBitmap(final Serializable bitmapId) {
+		if (bitmapId instanceof byte[]) {
+			return new BitmapId((byte[]) bitmapId);
+		} else {
+			return new BitmapId(
+					DatatypeConverter.parseBase64Binary((String) bitmapId));
+		}
 	}
 
+	/**
+	 * Gets the entity associated to the specified {@code id}. The entity is
+	 * deserialized directly from the binary stream of the {@code LOB}, i.e.
+	 * the {@code LOB} is not read into the entity's map.
+	 * 
+	 * @param id
+	 *            the identifier of the entity to be retrieved
+	 * 
+	 * @return the entity associated to the identifier, or an empty entity if
+	 *         no entity is associated
+	 */
 	@Override
-	public Iterator<BitmapId<?>> iterator() {
-		final Iterator<String> it = createIterator();
+	public T get(final BitmapId<?> id) {
+		final Serializable key = encodeBitmap(id);
 
-		return new Iterator<BitmapId<?>>() {
+		// check the not yet written entities first
+		final Map<String, Object> pending = getPendingMap(key);
+		if (pending != null) {
+			return createFromMap(id, pending);
+		}
+
+		final String sql = "SELECT " + quote("encoding") + ", "
+				+ quote(getLobPropertyName()) + " FROM "
+				+ quote(getEntityName()) + " WHERE " + quote("bitmapId")
+				+ " = ?";
+		final List<T> res = new ArrayList<T>(1);
+		doReadWork(new Work() {
 
 			@Override
-			public boolean hasNext() {
-				return it.hasNext();
+			public void execute(final Connection connection)
+					throws SQLException {
+				final PreparedStatement stmt = connection.prepareStatement(sql);
+				try {
+					if (key instanceof byte[]) {
+						stmt.setBytes(1, (byte[]) key);
+					} else {
+						stmt.setString(1, (String) key);
+					}
+
+					final ResultSet rs = stmt.executeQuery();
+					try {
+						if (rs.next()) {
+							final Number encoding = (Number) rs.getObject(1);
+							final InputStream in = rs.getBinaryStream(2);
+							try {
+								res.add(createFromStream(id, encoding, in));
+							} finally {
+								Streams.closeIO(in);
+							}
+						}
+					} finally {
+						rs.close();
+					}
+				} finally {
+					stmt.close();
+				}
 			}
+		});
 
-			@Override
-			public BitmapId<?> next() {
-				return decodeBitmap(it.next());
+		return res.isEmpty() ? createEmpty() : res.get(0);
+	}
+
+	/**
+	 * Gets the entities associated to the specified {@code ids}. The entities
+	 * are retrieved using chunked {@code IN}-list queries and deserialized in
+	 * parallel. An identifier without any entity is associated to an empty
+	 * entity, i.e. the semantic is equal to the one of {@link #get(BitmapId)}.
+	 * 
+	 * @param ids
+	 *            the identifiers of the entities to be retrieved
+	 * 
+	 * @return the entities associated to the identifiers, the order of the
+	 *         identifiers is kept
+	 */
+	public Map<BitmapId<?>, T> getAll(final Collection<BitmapId<?>> ids) {
+		final Map<BitmapId<?>, T> res = new LinkedHashMap<BitmapId<?>, T>();
+		if (ids == null || ids.isEmpty()) {
+			return res;
+		}
+
+		// encode the identifiers
+		final List<Serializable> keys = new ArrayList<Serializable>(ids.size());
+		final Map<Object, BitmapId<?>> encIds = new LinkedHashMap<Object, BitmapId<?>>();
+		for (final BitmapId<?> id : ids) {
+			final Serializable key = encodeBitmap(id);
+			keys.add(key);
+			encIds.put(createLookupKey(key), id);
+		}
+		final Map<Object, Map<String, Object>> maps = getMaps(keys);
+
+		// deserialize the retrieved entities
+		if (maps.size() < PARALLEL_THRESHOLD || PROCESSORS < 2) {
+			for (final Map.Entry<Object, BitmapId<?>> e : encIds.entrySet()) {
+				final Map<String, Object> map = maps.get(e.getKey());
+				res.put(e.getValue(), map == null ? createEmpty()
+						: createFromMap(e.getValue(), map));
 			}
+		} else {
+			final ThreadPoolExecutor executor = getDeserializer();
 
-			@Override
-			public void remove() {
-				throw new IllegalStateException("Remove is not supported.");
+			final List<Future<T>> futures = new ArrayList<Future<T>>(
+					encIds.size());
+			for (final Map.Entry<Object, BitmapId<?>> e : encIds.entrySet()) {
+				final BitmapId<?> id = e.getValue();
+				final Map<String, Object> map = maps.get(e.getKey());
+
+				if (map == null) {
+					futures.add(null);
+				} else {
+					futures.add(executor.submit(new Callable<T>() {
+
+						@Override
+						public T call() throws Exception {
+							return createFromMap(id, map);
+						}
+					}));
+				}
+			}
+
+			// collect the results in the order of the identifiers
+			int i = 0;
+			for (final BitmapId<?> id : encIds.values()) {
+				final Future<T> future = futures.get(i++);
+				res.put(id, future == null ? createEmpty() : waitFor(future));
 			}
-		};
+		}
+
+		return res;
+	}
+
+	/**
+	 * Waits for the result of the specified {@code future}. Any
+	 * {@code RuntimeException} thrown while deserializing is re-thrown.
+	 * 
+	 * @param future
+	 *            the future to wait for
+	 * 
+	 * @return the result of the future
+	 */
+	protected T waitFor(final Future<T> future) {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while deserializing.",
+					e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Creates the entity from the retrieved {@code map}. The method might be
+	 * called concurrently by several threads.
+	 * 
+	 * @param id
+	 *            the identifier of the entity
+	 * @param map
+	 *            the retrieved map
+	 * 
+	 * @return the created entity
+	 */
+	protected T createFromMap(final BitmapId<?> id,
+			final Map<String, Object> map) {
+		final Object lob = map.get(getLobPropertyName());
+
+		final InputStream in;
+		if (lob instanceof HibernateLobBuffer) {
+			in = ((HibernateLobBuffer) lob).toInputStream();
+		} else {
+			in = new ByteArrayInputStream((byte[]) lob);
+		}
+
+		return createFromStream(id, (Number) map.get("encoding"), in);
+	}
+
+	/**
+	 * Creates the entity from the stream of the stored {@code LOB}. The
+	 * method might be called concurrently by several threads.
+	 * 
+	 * @param id
+	 *            the identifier of the entity
+	 * @param encoding
+	 *            the identifier of the codec the entity was stored with (see
+	 *            {@link #decodeLob(Number, InputStream)})
+	 * @param in
+	 *            the stream of the stored {@code LOB}
+	 * 
+	 * @return the created entity
+	 */
+	protected abstract T createFromStream(final BitmapId<?> id,
+			final Number encoding, final InputStream in);
+
+	/**
+	 * Gets the name of the property of the {@code LOB} the serialized entity
+	 * is stored in.
+	 * 
+	 * @return the name of the property of the {@code LOB}
+	 */
+	protected abstract String getLobPropertyName();
+
+	/**
+	 * Creates the entity returned if no entity is cached for an identifier.
+	 * 
+	 * @return the empty entity
+	 */
+	protected abstract T createEmpty();
+
+	/**
+	 * An iterator decoding the streamed keys of the entities. The iterator
+	 * should be closed if it is not exhausted.
+	 * 
+	 * @author pmeisen
+	 * 
+	 */
+	protected class BitmapIdIterator implements Iterator<BitmapId<?>>,
+			Closeable {
+		private final HibernateScrollIterator<Serializable> it;
+
+		/**
+		 * Constructor specifying the iterator of the keys.
+		 * 
+		 * @param it
+		 *            the iterator of the keys
+		 */
+		public BitmapIdIterator(final HibernateScrollIterator<Serializable> it) {
+			this.it = it;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+
+		@Override
+		public BitmapId<?> next() {
+			return decodeBitmap(it.next());
+		}
+
+		@Override
+		public void remove() {
+			throw new IllegalStateException("Remove is not supported.");
+		}
+
+		@Override
+		public void close() {
+			it.close();
+		}
+	}
+
+	@Override
+	public Iterator<BitmapId<?>> iterator() {
+		return new BitmapIdIterator(createIterator());
 	}
 
 	@Override
@@ -89,6 +538,154 @@ public abstract class HibernateBitmapIdBasedCache<T extends IBitmapIdCacheable>
 		return get(bitmapId) != null;
 	}
 
+	@Override
+	protected void beforeCreateFactory() {
+		if (!binaryKey) {
+			return;
+		}
+
+		// move an existing table using a string key out of the way
+		final String entityName = getEntityName();
+		final String legacyName = getLegacyEntityName();
+		try {
+			doUnmappedWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					final DatabaseMetaData meta = connection.getMetaData();
+					if (existsTable(meta, legacyName)
+							|| !isCharacterColumn(meta, entityName,
+									"bitmapId")) {
+						return;
+					}
+					renameTable(connection, entityName, legacyName);
+
+					if (LOG.isInfoEnabled()) {
+						LOG.info("Migrating table '" + entityName
+								+ "' to a binary key, the data is kept in '"
+								+ legacyName + "' until migrated.");
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			exceptionRegistry.throwException(
+					HibernateSessionManagerException.class, 1005, e,
+					entityName, e.getMessage());
+		}
+	}
+
+	@Override
+	protected void afterCreateFactory(final SessionFactory factory) {
+		if (!binaryKey) {
+			return;
+		}
+
+		// copy the data of a legacy table into the new one
+		final String entityName = getEntityName();
+		final String legacyName = getLegacyEntityName();
+		try {
+			doWork(factory, new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					if (!existsTable(connection.getMetaData(), legacyName)) {
+						return;
+					}
+
+					final int count = copyLegacyData(connection, legacyName,
+							entityName);
+					connection.commit();
+
+					// the data is copied, remove the legacy table
+					dropTable(connection, legacyName);
+
+					if (LOG.isInfoEnabled()) {
+						LOG.info("Migrated " + count + " entities of table '"
+								+ entityName + "' to a binary key.");
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			exceptionRegistry.throwException(
+					HibernateSessionManagerException.class, 1005, e,
+					entityName, e.getMessage());
+		}
+	}
+
+	/**
+	 * Copies all the data of the {@code legacyName} table, using a
+	 * {@code Base64} encoded key, into the {@code entityName} table, using a
+	 * binary key. Any data of the latter is deleted prior to the copying, i.e.
+	 * a previously interrupted migration is repeated.
+	 * 
+	 * @param connection
+	 *            the connection to be used
+	 * @param legacyName
+	 *            the name of the table to read the data from
+	 * @param entityName
+	 *            the name of the table to write the data to
+	 * 
+	 * @return the amount of copied entities
+	 * 
+	 * @throws SQLException
+	 *             if the data cannot be copied
+	 */
+	protected int copyLegacyData(final Connection connection,
+			final String legacyName, final String entityName)
+			throws SQLException {
+		final Statement select = connection.createStatement();
+		PreparedStatement insert = null;
+		try {
+			select.executeUpdate("DELETE FROM " + quote(entityName));
+
+			final ResultSet rs = select.executeQuery("SELECT * FROM "
+					+ quote(legacyName));
+			final ResultSetMetaData meta = rs.getMetaData();
+			final int columns = meta.getColumnCount();
+
+			// create the insert statement
+			final List<String> names = new ArrayList<String>(columns);
+			for (int i = 1; i <= columns; i++) {
+				names.add(quote(meta.getColumnName(i)));
+			}
+			insert = connection.prepareStatement("INSERT INTO "
+					+ quote(entityName) + " ("
+					+ HibernateMapStatement.join(names, "", "") + ") VALUES ("
+					+ HibernateMapStatement.parameters(columns) + ")");
+
+			// copy the rows, the key is decoded
+			int count = 0;
+			while (rs.next()) {
+				for (int i = 1; i <= columns; i++) {
+					if ("bitmapId".equals(meta.getColumnName(i))) {
+						insert.setBytes(i, DatatypeConverter
+								.parseBase64Binary(rs.getString(i)));
+					} else if (isBinary(meta.getColumnType(i))) {
+						insert.setBytes(i, rs.getBytes(i));
+					} else {
+						insert.setObject(i, rs.getObject(i));
+					}
+				}
+				insert.addBatch();
+
+				if (++count % 1000 == 0) {
+					insert.executeBatch();
+				}
+			}
+			insert.executeBatch();
+			rs.close();
+
+			return count;
+		} finally {
+			select.close();
+			if (insert != null) {
+				insert.close();
+			}
+		}
+	}
+
 	@Override
 	protected void defineMappings(final Configuration config,
 			final Dialect dialect) {
@@ -106,6 +703,7 @@ public abstract class HibernateBitmapIdBasedCache<T extends IBitmapIdCacheable>
 
 		// create the key
 		createKeyMapping(mappings, table, clazz, dialect);
+		createEncodingMapping(mappings, table, clazz);
 		createAdditionalMappings(mappings, table, clazz, dialect);
 
 		// add the class to the mapping
@@ -127,6 +725,40 @@ public abstract class HibernateBitmapIdBasedCache<T extends IBitmapIdCacheable>
 	protected abstract void createAdditionalMappings(final Mappings mappings,
 			final Table table, final RootClass clazz, final Dialect dialect);
 
+	/**
+	 * Method to create the mapping of the codec used to encode the serialized
+	 * entity. The column is nullable, so that entities stored prior to the
+	 * usage of codecs can be read.
+	 * 
+	 * @param mappings
+	 *            the {@code Mappings}
+	 * @param table
+	 *            the table defined
+	 * @param clazz
+	 *            the defined class
+	 * 
+	 * @see HibernateLobCodec
+	 */
+	protected void createEncodingMapping(final Mappings mappings,
+			final Table table, final RootClass clazz) {
+		final Column column = new Column();
+		column.setName(quote("encoding"));
+		column.setNullable(true);
+		column.setSqlTypeCode(Types.TINYINT);
+
+		final SimpleValue v = new SimpleValue(mappings);
+		v.setTable(table);
+		v.setTypeName(Byte.class.getName());
+		v.addColumn(column);
+
+		final Property p = new Property();
+		p.setName("encoding");
+		clazz.addProperty(p);
+		p.setValue(v);
+
+		table.addColumn(column);
+	}
+
 	/**
 	 * Method to create the mappings needed for an bitmap-identifier.
 	 * 
@@ -144,12 +776,14 @@ public abstract class HibernateBitmapIdBasedCache<T extends IBitmapIdCacheable>
 		final Column column = new Column();
 		column.setName(quote("bitmapId"));
 		column.setNullable(false);
-		column.setSqlTypeCode(DataType.STRING.getSqlType());
+		column.setSqlTypeCode(binaryKey ? Types.VARBINARY : DataType.STRING
+				.getSqlType());
 		column.setLength(BitmapId.getMaxBytesLength());
 
 		final SimpleValue v = new SimpleValue(mappings);
 		v.setTable(table);
-		v.setTypeName(String.class.getName());
+		v.setTypeName(binaryKey ? byte[].class.getName() : String.class
+				.getName());
 		v.addColumn(column);
 		v.setIdentifierGeneratorStrategy(SimpleValue.DEFAULT_ID_GEN_STRATEGY);
 
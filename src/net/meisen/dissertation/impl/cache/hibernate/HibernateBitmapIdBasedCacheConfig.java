@@ -0,0 +1,60 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import net.meisen.dissertation.model.cache.IBitmapIdCacheConfig;
+
+/**
+ * A {@code HibernateConfig} for caches based on a bitmap-identifier, i.e.
+ * {@code HibernateBitmapIdBasedCache} instances.
+ * 
+ * @author pmeisen
+ * 
+ * @see HibernateBitmapIdBasedCache
+ */
+public class HibernateBitmapIdBasedCacheConfig extends HibernateConfig
+		implements IBitmapIdCacheConfig {
+
+	private boolean binaryKey = false;
+	private HibernateLobCodec codec = HibernateLobCodec.NONE;
+
+	/**
+	 * Checks if the bitmap-identifiers are stored using a binary column
+	 * instead of a {@code Base64} encoded string.
+	 * 
+	 * @return {@code true} if a binary key is used, otherwise {@code false}
+	 */
+	public boolean isBinaryKey() {
+		return binaryKey;
+	}
+
+	/**
+	 * Enables or disables the usage of a binary key. An existing table using a
+	 * string key is migrated, whenever the binary key is enabled.
+	 * 
+	 * @param binaryKey
+	 *            {@code true} to use a binary key, otherwise {@code false}
+	 */
+	public void setBinaryKey(final boolean binaryKey) {
+		this.binaryKey = binaryKey;
+	}
+
+	/**
+	 * Gets the codec used to encode the serialized entities.
+	 * 
+	 * @return the codec used to encode the serialized entities
+	 */
+	public HibernateLobCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Sets the codec used to encode the serialized entities. Entities already
+	 * stored using another codec remain readable.
+	 * 
+	 * @param codec
+	 *            the codec to be used, {@code null} to store the serialized
+	 *            entities as is
+	 */
+	public void setCodec(final HibernateLobCodec codec) {
+		this.codec = codec == null ? HibernateLobCodec.NONE : codec;
+	}
+}
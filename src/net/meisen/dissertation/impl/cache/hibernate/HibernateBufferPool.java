@@ -0,0 +1,133 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of {@code HibernateLobBuffer} instances used to serialize entities.
+ * Each thread keeps one buffer, which is reused by subsequent serializations
+ * of the thread. The size of a newly created buffer adapts to the average
+ * size of the serializations of the thread, and a buffer being much larger
+ * than needed is not kept.
+ * 
+ * @author pmeisen
+ * 
+ * @see HibernateLobBuffer
+ */
+public class HibernateBufferPool {
+
+	/**
+	 * The minimal size of a created buffer.
+	 */
+	public final static int MIN_SIZE = 1024;
+	/**
+	 * The maximal size of a buffer kept for reuse.
+	 */
+	public final static int MAX_RETAINED_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * The buffer kept for a thread.
+	 * 
+	 * @author pmeisen
+	 * 
+	 */
+	protected final static class Slot {
+		private HibernateLobBuffer buffer = null;
+		private boolean inUse = false;
+		private long average = 0;
+	}
+
+	private final static ThreadLocal<Slot> SLOTS = new ThreadLocal<Slot>() {
+
+		@Override
+		protected Slot initialValue() {
+			return new Slot();
+		}
+	};
+
+	private final static AtomicLong allocations = new AtomicLong(0);
+	private final static AtomicLong reuses = new AtomicLong(0);
+
+	/**
+	 * Gets an empty buffer. The buffer of the current thread is returned, if
+	 * it is not in use, otherwise a new buffer is created. The buffer should
+	 * be handed back using {@link #release(HibernateLobBuffer, boolean)}.
+	 * 
+	 * @return an empty buffer
+	 */
+	public static HibernateLobBuffer acquire() {
+		final Slot slot = SLOTS.get();
+
+		if (slot.inUse || slot.buffer == null) {
+			allocations.incrementAndGet();
+
+			final long size = Math.max(MIN_SIZE, slot.average
+					+ (slot.average >> 3));
+			final HibernateLobBuffer buffer = new HibernateLobBuffer(
+					(int) Math.min(MAX_RETAINED_SIZE, size));
+			if (!slot.inUse) {
+				slot.buffer = buffer;
+				slot.inUse = true;
+			}
+
+			return buffer;
+		} else {
+			reuses.incrementAndGet();
+
+			slot.buffer.reset();
+			slot.inUse = true;
+
+			return slot.buffer;
+		}
+	}
+
+	/**
+	 * Hands back a buffer retrieved by {@link #acquire()}. The method must be
+	 * called by the thread which acquired the buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer to be handed back
+	 * @param reuse
+	 *            {@code true} if the buffer can be reused, {@code false} if
+	 *            the buffer's content is still referenced, e.g. because it is
+	 *            pending to be written
+	 */
+	public static void release(final HibernateLobBuffer buffer,
+			final boolean reuse) {
+		final Slot slot = SLOTS.get();
+
+		// adapt the average size of the serializations
+		final int size = buffer.size();
+		slot.average = slot.average == 0 ? size
+				: (7 * slot.average + size) >> 3;
+
+		if (buffer != slot.buffer) {
+			return;
+		}
+		slot.inUse = false;
+
+		// forget buffers which cannot be reused or are much too large
+		final int capacity = buffer.capacity();
+		if (!reuse || capacity > MAX_RETAINED_SIZE
+				|| capacity > 4 * Math.max(MIN_SIZE, slot.average)) {
+			slot.buffer = null;
+		}
+	}
+
+	/**
+	 * Gets the amount of buffers created by the pool.
+	 * 
+	 * @return the amount of buffers created
+	 */
+	public static long getAllocations() {
+		return allocations.get();
+	}
+
+	/**
+	 * Gets the amount of requests answered by reusing a buffer.
+	 * 
+	 * @return the amount of reused buffers
+	 */
+	public static long getReuses() {
+		return reuses.get();
+	}
+}
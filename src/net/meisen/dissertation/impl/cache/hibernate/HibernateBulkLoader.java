@@ -0,0 +1,171 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionImplementor;
+
+/**
+ * A loader used to insert huge amounts of map-based entities. The loader is
+ * based on a {@code StatelessSession}, i.e. no entity is kept in memory, and
+ * inserts the entities using {@code JDBC} batches. The inserted entities are
+ * committed whenever the specified commit-size is reached and when the loader
+ * is flushed or closed.
+ * 
+ * @author pmeisen
+ * 
+ * @see StatelessSession
+ */
+public class HibernateBulkLoader {
+	private final StatelessSession session;
+	private final SessionImplementor si;
+	private final HibernateMapStatement statement;
+	private final Connection connection;
+	private final boolean autoCommit;
+	private final PreparedStatement stmt;
+
+	private final int batchSize;
+	private final int commitSize;
+
+	private int batched;
+	private int uncommitted;
+
+	/**
+	 * Constructor specifying the factory to open the {@code StatelessSession}
+	 * from, the insert-statement, and the sizes of the batches and commits.
+	 * 
+	 * @param factory
+	 *            the factory to open the session from
+	 * @param statement
+	 *            the statement used to insert an entity
+	 * @param batchSize
+	 *            the amount of entities send within one {@code JDBC} batch
+	 * @param commitSize
+	 *            the amount of entities inserted before a commit is sent, a
+	 *            value smaller than {@code 1} means that a commit is only sent
+	 *            when the loader is flushed or closed
+	 * 
+	 * @throws SQLException
+	 *             if the statement cannot be prepared
+	 */
+	public HibernateBulkLoader(final SessionFactory factory,
+			final HibernateMapStatement statement, final int batchSize,
+			final int commitSize) throws SQLException {
+		this.session = factory.openStatelessSession();
+		this.si = (SessionImplementor) session;
+		this.statement = statement;
+
+		this.batchSize = batchSize < 1 ? 1 : batchSize;
+		this.commitSize = commitSize;
+		this.batched = 0;
+		this.uncommitted = 0;
+
+		// get the connection, the commits are handled by the loader
+		this.connection = si.connection();
+		this.autoCommit = connection.getAutoCommit();
+		if (this.autoCommit) {
+			this.connection.setAutoCommit(false);
+		}
+
+		this.stmt = connection.prepareStatement(statement.getSql());
+	}
+
+	/**
+	 * Adds the specified entity to the current batch. The batch is send if the
+	 * batch-size is reached.
+	 * 
+	 * @param map
+	 *            the entity to be inserted
+	 * 
+	 * @throws SQLException
+	 *             if the entity cannot be inserted
+	 */
+	public void add(final Map<String, Object> map) throws SQLException {
+		statement.bind(stmt, map, si);
+		stmt.addBatch();
+
+		batched++;
+		uncommitted++;
+
+		if (batched >= batchSize) {
+			executeBatch();
+		}
+		if (commitSize > 0 && uncommitted >= commitSize) {
+			commit();
+		}
+	}
+
+	/**
+	 * Sends the current batch and commits all the inserted entities.
+	 * 
+	 * @throws SQLException
+	 *             if the entities cannot be inserted
+	 */
+	public void flush() throws SQLException {
+		executeBatch();
+		commit();
+	}
+
+	/**
+	 * Flushes the loader and releases all the resources.
+	 * 
+	 * @throws SQLException
+	 *             if the entities cannot be inserted
+	 */
+	public void close() throws SQLException {
+		try {
+			flush();
+		} finally {
+			try {
+				stmt.close();
+				if (autoCommit) {
+					connection.setAutoCommit(true);
+				}
+			} finally {
+				session.close();
+			}
+		}
+	}
+
+	/**
+	 * Checks if entities are inserted but not committed yet.
+	 * 
+	 * @return {@code true} if entities are not committed, otherwise
+	 *         {@code false}
+	 */
+	public boolean isDirty() {
+		return uncommitted > 0;
+	}
+
+	/**
+	 * Sends the current batch.
+	 * 
+	 * @throws SQLException
+	 *             if the batch cannot be executed
+	 */
+	protected void executeBatch() throws SQLException {
+		if (batched > 0) {
+			stmt.executeBatch();
+			stmt.clearBatch();
+			batched = 0;
+		}
+	}
+
+	/**
+	 * Commits all the inserted entities.
+	 * 
+	 * @throws SQLException
+	 *             if the commit fails
+	 */
+	protected void commit() throws SQLException {
+		if (uncommitted > 0) {
+			executeBatch();
+			connection.commit();
+			uncommitted = 0;
+		}
+	}
+}
@@ -0,0 +1,488 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.meisen.general.genmisc.types.Streams;
+
+/**
+ * A codec for the values of one column of a block of records (see
+ * {@link HibernateRecordStorage#COLUMNAR}). The encoding of a chunk is
+ * selected by the type and the distribution of its values:
+ * <ul>
+ * <li>integral values and dates without any {@code null} are run-length
+ * encoded, if the values contain long runs, otherwise the differences
+ * between subsequent values are written as variable-length integers,</li>
+ * <li>any other values are written using a dictionary, if the amount of
+ * distinct values is small, otherwise the values are written as is using the
+ * {@code HibernateDescriptorCodec}.</li>
+ * </ul>
+ * The encoding is written as first byte of the chunk, so that chunks are
+ * decoded without knowing the type of the column.
+ * 
+ * @author pmeisen
+ * 
+ * @see HibernateDescriptorCodec
+ */
+public class HibernateColumnCodec {
+	private final static byte ENC_PLAIN = 0;
+	private final static byte ENC_DICTIONARY = 1;
+	private final static byte ENC_DELTA = 2;
+	private final static byte ENC_RUNLENGTH = 3;
+
+	private final static byte TYPE_BYTE = 1;
+	private final static byte TYPE_SHORT = 2;
+	private final static byte TYPE_INTEGER = 3;
+	private final static byte TYPE_LONG = 4;
+	private final static byte TYPE_DATE = 5;
+
+	/**
+	 * Encodes the first {@code size} {@code values} of a column.
+	 * 
+	 * @param type
+	 *            the type of the values of the column, used to select the
+	 *            candidate encodings
+	 * @param values
+	 *            the values to be encoded
+	 * @param size
+	 *            the amount of values to be encoded
+	 * 
+	 * @return the encoded chunk
+	 */
+	public static byte[] encode(final Class<?> type, final Object[] values,
+			final int size) {
+		final HibernateLobBuffer buffer = HibernateBufferPool.acquire();
+		final DataOutputStream out = new DataOutputStream(buffer);
+		try {
+			final byte numberType = getNumberType(type, values, size);
+			if (numberType > 0) {
+				if (countRuns(values, size) * 2 <= size) {
+					writeRunLength(out, numberType, values, size);
+				} else {
+					writeDelta(out, numberType, values, size);
+				}
+			} else if (!writeDictionary(out, values, size)) {
+				out.writeByte(ENC_PLAIN);
+				for (int i = 0; i < size; i++) {
+					HibernateDescriptorCodec.write(out, normalize(values[i]));
+				}
+			}
+			out.flush();
+
+			return buffer.toByteArray();
+		} catch (final IOException e) {
+			// cannot happen writing to memory
+			throw new IllegalStateException(e);
+		} finally {
+			Streams.closeIO(out);
+			HibernateBufferPool.release(buffer, true);
+		}
+	}
+
+	/**
+	 * Decodes the {@code size} values of the specified chunk.
+	 * 
+	 * @param bytes
+	 *            the chunk to be decoded
+	 * @param size
+	 *            the amount of values encoded by the chunk
+	 * 
+	 * @return the decoded values
+	 * 
+	 * @throws IOException
+	 *             if the chunk cannot be decoded
+	 */
+	public static Object[] decode(final byte[] bytes, final int size)
+			throws IOException {
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(bytes));
+		final Object[] values = new Object[size];
+
+		final byte encoding = in.readByte();
+		switch (encoding) {
+		case ENC_PLAIN:
+			for (int i = 0; i < size; i++) {
+				values[i] = HibernateDescriptorCodec.read(in);
+			}
+			break;
+		case ENC_DICTIONARY:
+			final Object[] dictionary = new Object[readVarInt(in)];
+			for (int i = 0; i < dictionary.length; i++) {
+				dictionary[i] = HibernateDescriptorCodec.read(in);
+			}
+			for (int i = 0; i < size; i++) {
+				values[i] = dictionary[readVarInt(in)];
+			}
+			break;
+		case ENC_DELTA:
+			final byte deltaType = in.readByte();
+			long value = 0;
+			for (int i = 0; i < size; i++) {
+				value += readVarLong(in);
+				values[i] = toObject(deltaType, value);
+			}
+			break;
+		case ENC_RUNLENGTH:
+			final byte runType = in.readByte();
+			int pos = 0;
+			while (pos < size) {
+				final long runValue = readVarLong(in);
+				final int length = readVarInt(in);
+				for (int i = 0; i < length; i++) {
+					values[pos++] = toObject(runType, runValue);
+				}
+			}
+			break;
+		default:
+			throw new IOException("Invalid encoding '" + encoding
+					+ "' found.");
+		}
+
+		return values;
+	}
+
+	/**
+	 * Determines the type used to encode the values as numbers. The values
+	 * can only be encoded as numbers, if all of them are integral values (or
+	 * dates) of the same type, i.e. no value is {@code null}.
+	 * 
+	 * @param type
+	 *            the type of the column
+	 * @param values
+	 *            the values of the column
+	 * @param size
+	 *            the amount of values
+	 * 
+	 * @return the type used to encode the values, or {@code 0} if the values
+	 *         cannot be encoded as numbers
+	 */
+	protected static byte getNumberType(final Class<?> type,
+			final Object[] values, final int size) {
+		final byte numberType;
+		final Class<?> valueClass;
+		if (Integer.class.equals(type)) {
+			numberType = TYPE_INTEGER;
+			valueClass = Integer.class;
+		} else if (Long.class.equals(type)) {
+			numberType = TYPE_LONG;
+			valueClass = Long.class;
+		} else if (Short.class.equals(type)) {
+			numberType = TYPE_SHORT;
+			valueClass = Short.class;
+		} else if (Byte.class.equals(type)) {
+			numberType = TYPE_BYTE;
+			valueClass = Byte.class;
+		} else if (type != null && Date.class.isAssignableFrom(type)) {
+			numberType = TYPE_DATE;
+			valueClass = Date.class;
+		} else {
+			return 0;
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (!valueClass.isInstance(values[i])) {
+				return 0;
+			}
+		}
+
+		return numberType;
+	}
+
+	/**
+	 * Counts the runs of equal values.
+	 * 
+	 * @param values
+	 *            the values to count the runs of
+	 * @param size
+	 *            the amount of values
+	 * 
+	 * @return the amount of runs
+	 */
+	protected static int countRuns(final Object[] values, final int size) {
+		int runs = 0;
+		for (int i = 0; i < size; i++) {
+			if (i == 0 || !values[i].equals(values[i - 1])) {
+				runs++;
+			}
+		}
+
+		return runs;
+	}
+
+	/**
+	 * Writes the values as differences between subsequent values.
+	 * 
+	 * @param out
+	 *            the output to write to
+	 * @param numberType
+	 *            the type of the values
+	 * @param values
+	 *            the values to be written
+	 * @param size
+	 *            the amount of values
+	 * 
+	 * @throws IOException
+	 *             if the values cannot be written
+	 */
+	protected static void writeDelta(final DataOutput out,
+			final byte numberType, final Object[] values, final int size)
+			throws IOException {
+		out.writeByte(ENC_DELTA);
+		out.writeByte(numberType);
+
+		long last = 0;
+		for (int i = 0; i < size; i++) {
+			final long value = toLong(values[i]);
+			writeVarLong(out, value - last);
+			last = value;
+		}
+	}
+
+	/**
+	 * Writes the values as runs of equal values.
+	 * 
+	 * @param out
+	 *            the output to write to
+	 * @param numberType
+	 *            the type of the values
+	 * @param values
+	 *            the values to be written
+	 * @param size
+	 *            the amount of values
+	 * 
+	 * @throws IOException
+	 *             if the values cannot be written
+	 */
+	protected static void writeRunLength(final DataOutput out,
+			final byte numberType, final Object[] values, final int size)
+			throws IOException {
+		out.writeByte(ENC_RUNLENGTH);
+		out.writeByte(numberType);
+
+		int start = 0;
+		for (int i = 1; i <= size; i++) {
+			if (i == size || !values[i].equals(values[start])) {
+				writeVarLong(out, toLong(values[start]));
+				writeVarInt(out, i - start);
+				start = i;
+			}
+		}
+	}
+
+	/**
+	 * Writes the values using a dictionary, if the amount of distinct values
+	 * is at most half of the amount of values.
+	 * 
+	 * @param out
+	 *            the output to write to
+	 * @param values
+	 *            the values to be written
+	 * @param size
+	 *            the amount of values
+	 * 
+	 * @return {@code true} if the values were written, otherwise
+	 *         {@code false}, i.e. nothing was written
+	 * 
+	 * @throws IOException
+	 *             if the values cannot be written
+	 */
+	protected static boolean writeDictionary(final DataOutput out,
+			final Object[] values, final int size) throws IOException {
+		final int maxEntries = size / 2;
+		if (maxEntries < 1) {
+			return false;
+		}
+
+		final Map<Object, Integer> dictionary = new HashMap<Object, Integer>();
+		final Object[] entries = new Object[maxEntries];
+		final int[] indexes = new int[size];
+		for (int i = 0; i < size; i++) {
+			final Object value = normalize(values[i]);
+
+			Integer index = dictionary.get(value);
+			if (index == null) {
+				if (dictionary.size() == maxEntries) {
+					return false;
+				}
+				index = dictionary.size();
+				dictionary.put(value, index);
+				entries[index] = value;
+			}
+			indexes[i] = index;
+		}
+
+		out.writeByte(ENC_DICTIONARY);
+		writeVarInt(out, dictionary.size());
+		for (int i = 0; i < dictionary.size(); i++) {
+			HibernateDescriptorCodec.write(out, entries[i]);
+		}
+		for (int i = 0; i < size; i++) {
+			writeVarInt(out, indexes[i]);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Normalizes the value to be written, i.e. any kind of date (e.g. a
+	 * {@code Timestamp}) is written as plain {@code Date}.
+	 * 
+	 * @param value
+	 *            the value to be normalized
+	 * 
+	 * @return the normalized value
+	 */
+	protected static Object normalize(final Object value) {
+		if (value instanceof Date && !Date.class.equals(value.getClass())) {
+			return new Date(((Date) value).getTime());
+		} else {
+			return value;
+		}
+	}
+
+	/**
+	 * Gets the {@code long} representation of an integral value or date.
+	 * 
+	 * @param value
+	 *            the value
+	 * 
+	 * @return the {@code long} representation
+	 */
+	protected static long toLong(final Object value) {
+		if (value instanceof Date) {
+			return ((Date) value).getTime();
+		} else {
+			return ((Number) value).longValue();
+		}
+	}
+
+	/**
+	 * Creates the value of the specified type from its {@code long}
+	 * representation.
+	 * 
+	 * @param numberType
+	 *            the type of the value
+	 * @param value
+	 *            the {@code long} representation
+	 * 
+	 * @return the value
+	 * 
+	 * @throws IOException
+	 *             if the type is unknown
+	 */
+	protected static Object toObject(final byte numberType, final long value)
+			throws IOException {
+		switch (numberType) {
+		case TYPE_BYTE:
+			return (byte) value;
+		case TYPE_SHORT:
+			return (short) value;
+		case TYPE_INTEGER:
+			return (int) value;
+		case TYPE_LONG:
+			return value;
+		case TYPE_DATE:
+			return new Date(value);
+		default:
+			throw new IOException("Invalid type '" + numberType + "' found.");
+		}
+	}
+
+	/**
+	 * Writes the non-negative {@code value} using one to five bytes.
+	 * 
+	 * @param out
+	 *            the output to write to
+	 * @param value
+	 *            the value to be written
+	 * 
+	 * @throws IOException
+	 *             if the value cannot be written
+	 */
+	protected static void writeVarInt(final DataOutput out, final int value)
+			throws IOException {
+		int v = value;
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	/**
+	 * Reads a value written by {@link #writeVarInt(DataOutput, int)}.
+	 * 
+	 * @param in
+	 *            the input to read from
+	 * 
+	 * @return the read value
+	 * 
+	 * @throws IOException
+	 *             if the value cannot be read
+	 */
+	protected static int readVarInt(final DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Invalid variable-length integer found.");
+	}
+
+	/**
+	 * Writes the {@code value} zig-zag encoded, i.e. values close to
+	 * {@code 0} (positive or negative) are written using few bytes.
+	 * 
+	 * @param out
+	 *            the output to write to
+	 * @param value
+	 *            the value to be written
+	 * 
+	 * @throws IOException
+	 *             if the value cannot be written
+	 */
+	protected static void writeVarLong(final DataOutput out, final long value)
+			throws IOException {
+		long v = (value << 1) ^ (value >> 63);
+		while ((v & ~0x7FL) != 0) {
+			out.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+
+	/**
+	 * Reads a value written by {@link #writeVarLong(DataOutput, long)}.
+	 * 
+	 * @param in
+	 *            the input to read from
+	 * 
+	 * @return the read value
+	 * 
+	 * @throws IOException
+	 *             if the value cannot be read
+	 */
+	protected static long readVarLong(final DataInput in) throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final byte b = in.readByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return (v >>> 1) ^ -(v & 1);
+			}
+		}
+
+		throw new IOException("Invalid variable-length long found.");
+	}
+}
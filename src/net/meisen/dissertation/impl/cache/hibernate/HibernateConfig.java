@@ -24,12 +24,35 @@ public class HibernateConfig {
 	 * Property used to define the maximal pool-size.
 	 */
 	public final static String PROP_MAXPOOLSIZE = "hibernate.hikari.maximumPoolSize";
+	/**
+	 * Property used to define the minimal amount of idle connections.
+	 */
+	public final static String PROP_MINIDLE = "hibernate.hikari.minimumIdle";
+	/**
+	 * Prefix of the properties passed to the {@code JDBC} driver.
+	 */
+	public final static String PREFIX_DRIVERPROPERTY = "hibernate.hikari.dataSource.";
+	/**
+	 * Property used to define the handling of the schema.
+	 */
+	public final static String PROP_HBM2DDL = "hibernate.hbm2ddl.auto";
 
 	private String driver = null;
 	private String url = null;
 	private String username = null;
 	private String password = null;
 	private int commitSize = 100000;
+	private boolean writeBehind = false;
+	private int writeBehindBatchSize = 1000;
+	private long writeBehindLatency = 500;
+	private int fetchSize = 1000;
+	private int maxPoolSize = 10;
+	private int minIdle = -1;
+	private int statementCacheSize = 0;
+	private int batchSize = 0;
+	private boolean orderStatements = false;
+	private boolean sharedPool = false;
+	private HibernateSchemaMode schemaMode = HibernateSchemaMode.UPDATE;
 
 	/**
 	 * Helper method to create a map with the specified settings.
@@ -46,22 +69,77 @@ public class HibernateConfig {
 		// settings.put(AvailableSettings.PASS, getPassword());
 		settings.put(AvailableSettings.AUTOCOMMIT, "false");
 		settings.put("hibernate.globally_quoted_identifiers", "true");
-		settings.put("hibernate.hbm2ddl.auto", "update");
+		settings.put(PROP_HBM2DDL, "update");
 
 		// set default values
 		settings.put(AvailableSettings.CONNECTION_PROVIDER,
-				HikariConnectionProvider.class.getName());
+				isSharedPool() ? HibernateSharedConnectionProvider.class
+						.getName() : HikariConnectionProvider.class.getName());
 
 		// set the connectionProvider settings
-		settings.put(PROP_MAXPOOLSIZE, "10");
+		settings.put(PROP_MAXPOOLSIZE, String.valueOf(getMaxPoolSize()));
+		if (getMinIdle() > -1) {
+			settings.put(PROP_MINIDLE, String.valueOf(getMinIdle()));
+		}
 		settings.put("hibernate.hikari.driverClassName", getDriver());
 		settings.put("hibernate.hikari.jdbcUrl", getUrl());
 		settings.put("hibernate.hikari.username", getUsername());
 		settings.put("hibernate.hikari.password", getPassword());
 
+		// cache the prepared statements within the driver
+		if (getStatementCacheSize() > 0) {
+			putStatementCacheSettings(settings);
+		}
+
+		// fetch several rows at once when iterating
+		if (getFetchSize() > 0) {
+			settings.put(AvailableSettings.STATEMENT_FETCH_SIZE,
+					String.valueOf(getFetchSize()));
+		}
+
+		// batch the statements, e.g. the ones written by the write-behind queue
+		if (getBatchSize() > 0) {
+			settings.put(AvailableSettings.STATEMENT_BATCH_SIZE,
+					String.valueOf(getBatchSize()));
+		} else if (isWriteBehind()) {
+			settings.put(AvailableSettings.STATEMENT_BATCH_SIZE,
+					String.valueOf(getWriteBehindBatchSize()));
+		}
+		if (isOrderStatements()) {
+			settings.put(AvailableSettings.ORDER_INSERTS, "true");
+			settings.put(AvailableSettings.ORDER_UPDATES, "true");
+		}
+
 		return settings;
 	}
 
+	/**
+	 * Puts the driver-properties needed to cache the prepared statements into
+	 * the {@code settings}. The statement-cache is a feature of the driver,
+	 * i.e. the properties depend on the database used. Nothing is added for
+	 * databases caching statements on their own (e.g. {@code HSQLDB} or
+	 * {@code H2}).
+	 * 
+	 * @param settings
+	 *            the settings to add the properties to
+	 */
+	protected void putStatementCacheSettings(
+			final Map<String, String> settings) {
+		final String url = getUrl() == null ? "" : getUrl();
+		final String size = String.valueOf(getStatementCacheSize());
+
+		if (url.startsWith("jdbc:mysql:")) {
+			settings.put(PREFIX_DRIVERPROPERTY + "cachePrepStmts", "true");
+			settings.put(PREFIX_DRIVERPROPERTY + "useServerPrepStmts", "true");
+			settings.put(PREFIX_DRIVERPROPERTY + "prepStmtCacheSize", size);
+			settings.put(PREFIX_DRIVERPROPERTY + "prepStmtCacheSqlLimit",
+					"2048");
+		} else if (url.startsWith("jdbc:postgresql:")) {
+			settings.put(PREFIX_DRIVERPROPERTY
+					+ "preparedStatementCacheQueries", size);
+		}
+	}
+
 	/**
 	 * Creates a {@code Hibernate} valid configuration.
 	 * 
@@ -221,6 +299,242 @@ public class HibernateConfig {
 		this.commitSize = commitSize;
 	}
 
+	/**
+	 * Checks if the entities should be written asynchronously using a
+	 * write-behind queue, whenever persistency is enabled.
+	 * 
+	 * @return {@code true} if a write-behind queue is used, otherwise
+	 *         {@code false}
+	 */
+	public boolean isWriteBehind() {
+		return writeBehind;
+	}
+
+	/**
+	 * Enables or disables the write-behind queue.
+	 * 
+	 * @param writeBehind
+	 *            {@code true} to enable the write-behind queue, otherwise
+	 *            {@code false}
+	 */
+	public void setWriteBehind(final boolean writeBehind) {
+		this.writeBehind = writeBehind;
+	}
+
+	/**
+	 * Gets the maximal amount of entities written within one batch of the
+	 * write-behind queue.
+	 * 
+	 * @return the maximal amount of entities written within one batch
+	 */
+	public int getWriteBehindBatchSize() {
+		return writeBehindBatchSize;
+	}
+
+	/**
+	 * Sets the maximal amount of entities written within one batch of the
+	 * write-behind queue.
+	 * 
+	 * @param writeBehindBatchSize
+	 *            the maximal amount of entities written within one batch
+	 */
+	public void setWriteBehindBatchSize(final int writeBehindBatchSize) {
+		this.writeBehindBatchSize = writeBehindBatchSize;
+	}
+
+	/**
+	 * Gets the maximal time (in milliseconds) an entity stays within the
+	 * write-behind queue before it is written.
+	 * 
+	 * @return the maximal time (in milliseconds) an entity is pending
+	 */
+	public long getWriteBehindLatency() {
+		return writeBehindLatency;
+	}
+
+	/**
+	 * Sets the maximal time (in milliseconds) an entity stays within the
+	 * write-behind queue before it is written.
+	 * 
+	 * @param writeBehindLatency
+	 *            the maximal time (in milliseconds) an entity is pending
+	 */
+	public void setWriteBehindLatency(final long writeBehindLatency) {
+		this.writeBehindLatency = writeBehindLatency;
+	}
+
+	/**
+	 * Gets the amount of rows fetched from the database at once, whenever the
+	 * entities are iterated.
+	 * 
+	 * @return the amount of rows fetched at once, a value smaller than
+	 *         {@code 1} means that the default of the driver is used
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Sets the amount of rows fetched from the database at once, whenever the
+	 * entities are iterated.
+	 * 
+	 * @param fetchSize
+	 *            the amount of rows fetched at once, a value smaller than
+	 *            {@code 1} uses the default of the driver
+	 */
+	public void setFetchSize(final int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Gets the maximal amount of connections of the pool.
+	 * 
+	 * @return the maximal amount of connections of the pool
+	 */
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	/**
+	 * Sets the maximal amount of connections of the pool.
+	 * 
+	 * @param maxPoolSize
+	 *            the maximal amount of connections of the pool
+	 */
+	public void setMaxPoolSize(final int maxPoolSize) {
+		this.maxPoolSize = maxPoolSize;
+	}
+
+	/**
+	 * Gets the minimal amount of idle connections kept by the pool.
+	 * 
+	 * @return the minimal amount of idle connections, a negative value means
+	 *         that the default of the pool is used
+	 */
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	/**
+	 * Sets the minimal amount of idle connections kept by the pool.
+	 * 
+	 * @param minIdle
+	 *            the minimal amount of idle connections, a negative value uses
+	 *            the default of the pool
+	 */
+	public void setMinIdle(final int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	/**
+	 * Gets the amount of prepared statements cached per connection.
+	 * 
+	 * @return the amount of prepared statements cached per connection,
+	 *         {@code 0} if no statements are cached
+	 * 
+	 * @see #putStatementCacheSettings(Map)
+	 */
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	/**
+	 * Sets the amount of prepared statements cached per connection.
+	 * 
+	 * @param statementCacheSize
+	 *            the amount of prepared statements cached per connection,
+	 *            {@code 0} to disable the cache
+	 */
+	public void setStatementCacheSize(final int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	/**
+	 * Gets the amount of statements sent within one {@code JDBC} batch.
+	 * 
+	 * @return the amount of statements sent within one batch, a value smaller
+	 *         than {@code 1} means that only the write-behind queue batches
+	 *         its statements (see {@link #getWriteBehindBatchSize()})
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the amount of statements sent within one {@code JDBC} batch.
+	 * 
+	 * @param batchSize
+	 *            the amount of statements sent within one batch
+	 */
+	public void setBatchSize(final int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Checks if the inserts and updates are ordered by entity, so that those
+	 * can be batched.
+	 * 
+	 * @return {@code true} if the statements are ordered, otherwise
+	 *         {@code false}
+	 */
+	public boolean isOrderStatements() {
+		return orderStatements;
+	}
+
+	/**
+	 * Enables or disables the ordering of the inserts and updates.
+	 * 
+	 * @param orderStatements
+	 *            {@code true} to order the statements, otherwise
+	 *            {@code false}
+	 */
+	public void setOrderStatements(final boolean orderStatements) {
+		this.orderStatements = orderStatements;
+	}
+
+	/**
+	 * Checks if the pool of connections is shared with all the other caches
+	 * using the same database and pool-settings.
+	 * 
+	 * @return {@code true} if the pool is shared, otherwise {@code false}
+	 * 
+	 * @see HibernateSharedConnectionProvider
+	 */
+	public boolean isSharedPool() {
+		return sharedPool;
+	}
+
+	/**
+	 * Enables or disables the sharing of the pool of connections.
+	 * 
+	 * @param sharedPool
+	 *            {@code true} to share the pool, otherwise {@code false}
+	 */
+	public void setSharedPool(final boolean sharedPool) {
+		this.sharedPool = sharedPool;
+	}
+
+	/**
+	 * Gets the mode used to handle the schema of the tables.
+	 * 
+	 * @return the mode used to handle the schema
+	 */
+	public HibernateSchemaMode getSchemaMode() {
+		return schemaMode;
+	}
+
+	/**
+	 * Sets the mode used to handle the schema of the tables.
+	 * 
+	 * @param schemaMode
+	 *            the mode used to handle the schema, {@code null} uses
+	 *            {@link HibernateSchemaMode#UPDATE}
+	 */
+	public void setSchemaMode(final HibernateSchemaMode schemaMode) {
+		this.schemaMode = schemaMode == null ? HibernateSchemaMode.UPDATE
+				: schemaMode;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.generateHashCode(7, 43, getUrl(), getUsername());
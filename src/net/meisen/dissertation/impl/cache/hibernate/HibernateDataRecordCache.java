@@ -1,9 +1,27 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.meisen.dissertation.impl.cache.BaseIdentifierCacheException;
 import net.meisen.dissertation.jdbc.protocol.DataType;
@@ -15,9 +33,18 @@ import net.meisen.dissertation.model.indexes.datarecord.ProcessedDataRecord;
 import net.meisen.dissertation.model.time.mapper.BaseMapper;
 import net.meisen.dissertation.model.util.IIntIterator;
 
+import org.hibernate.Criteria;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Mappings;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
 import org.hibernate.dialect.Dialect;
+import org.hibernate.jdbc.Work;
 import org.hibernate.mapping.Column;
 import org.hibernate.mapping.PrimaryKey;
 import org.hibernate.mapping.Property;
@@ -26,7 +53,18 @@ import org.hibernate.mapping.SimpleValue;
 import org.hibernate.mapping.Table;
 
 /**
- * A concrete implementation of a {@code DataRecordCache} using hibernate.
+ * A concrete implementation of a {@code DataRecordCache} using hibernate. The
+ * records are either stored as a row per record or column-wise within
+ * blocks of consecutive identifiers (see {@link HibernateRecordStorage}).
+ * Using the latter, the block currently written is kept in memory and
+ * written whenever another block is written, the records are read,
+ * persistency is enabled or the cache is released, i.e. a block is encoded
+ * once per batch of added records instead of once per record. If persistency
+ * is enabled, each added record is written through as a row of a delta
+ * table, which is folded into the block whenever the block is written. The
+ * deltas left by a cache, which was not released, are folded when the cache
+ * is initialized. Decoded blocks are kept within an in-memory cache (see
+ * {@link HibernateDataRecordCacheConfig#getBlockCacheSize()}).
  * 
  * @author pmeisen
  * 
@@ -36,16 +74,42 @@ import org.hibernate.mapping.Table;
 public class HibernateDataRecordCache extends HibernateSessionManager<Integer>
 		implements IDataRecordCache {
 
+	/**
+	 * The amount of key ranges created per thread by
+	 * {@link #scan(HibernateRecordHandler, String[], int)}, so that threads
+	 * finishing early can take over ranges.
+	 */
+	public final static int SPLITS_PER_THREAD = 4;
+
 	private BaseMapper<?> mapper;
 	private IDataRecordMeta meta;
 
 	private HibernateDataRecordCacheConfig config;
+	private HibernateBulkLoader bulkLoader;
+
+	private boolean columnar;
+	private int blockSize;
+	private HibernateLruCache<Integer, HibernateRecordBlock> blockCache;
+	private HibernateRecordBlock openBlock;
+	private boolean openBlockDirty;
+	private boolean openBlockDeltas;
+	private int blockVersion;
+	private HibernateSessionManager<Integer> deltaManager;
 
 	/**
 	 * Default constructor.
 	 */
 	public HibernateDataRecordCache() {
 		this.config = null;
+		this.bulkLoader = null;
+
+		this.columnar = false;
+		this.blockCache = null;
+		this.openBlock = null;
+		this.openBlockDirty = false;
+		this.openBlockDeltas = false;
+		this.blockVersion = 0;
+		this.deltaManager = null;
 	}
 
 	@Override
@@ -55,12 +119,75 @@ public class HibernateDataRecordCache extends HibernateSessionManager<Integer>
 		this.mapper = model.getIntervalModel().getTimelineMapper();
 		this.meta = model.getDataRecordFactory().getMeta();
 
+		// determine the layout, it cannot be changed afterwards
+		this.columnar = config != null
+				&& HibernateRecordStorage.COLUMNAR.equals(config.getStorage());
+		if (this.columnar) {
+			this.blockSize = config.getBlockSize() > 0 ? config.getBlockSize()
+					: 4096;
+			if (config.getBlockCacheSize() > 0) {
+				this.blockCache = new HibernateLruCache<Integer, HibernateRecordBlock>(
+						config.getBlockCacheSize());
+			} else {
+				this.blockCache = null;
+			}
+		}
+		this.openBlock = null;
+		this.openBlockDirty = false;
+		this.openBlockDeltas = false;
+
 		// now initialize
 		super.initialize(model);
+
+		// fold the deltas left by a cache, which was not released
+		if (this.columnar) {
+			this.deltaManager = createDeltaManager();
+			this.deltaManager.setExceptionRegistry(exceptionRegistry);
+			this.deltaManager.initialize(model);
+
+			foldDeltas();
+		}
+	}
+
+	/**
+	 * Creates the manager of the delta table, i.e. the table keeping the
+	 * records written through to a block, which is not written yet. The table
+	 * stores a row per record (see {@link HibernateRecordStorage#ROW}).
+	 * 
+	 * @return the created manager
+	 */
+	protected HibernateSessionManager<Integer> createDeltaManager() {
+		return new HibernateSessionManager<Integer>() {
+
+			@Override
+			protected String createEntityName(final TidaModel model) {
+				return "recorddeltas_" + model.getId();
+			}
+
+			@Override
+			protected Class<? extends RuntimeException>[] getExceptions() {
+				return HibernateDataRecordCache.this.getExceptions();
+			}
+
+			@Override
+			protected HibernateDataRecordCacheConfig getConfig() {
+				return HibernateDataRecordCache.this.config;
+			}
+
+			@Override
+			protected void defineMappings(final Configuration config,
+					final Dialect dialect) {
+				defineRowMappings(config, this.getEntityName());
+			}
+		};
 	}
 
 	protected String createEntityName(final TidaModel model) {
-		return "records_" + model.getId();
+		if (columnar) {
+			return "recordblocks_" + model.getId();
+		} else {
+			return "records_" + model.getId();
+		}
 	}
 
 	@Override
@@ -74,8 +201,24 @@ public class HibernateDataRecordCache extends HibernateSessionManager<Integer>
 	@Override
 	protected void defineMappings(final Configuration config,
 			final Dialect dialect) {
-		final String entityName = getEntityName();
+		if (columnar) {
+			defineBlockMappings(config, dialect);
+		} else {
+			defineRowMappings(config, getEntityName());
+		}
+	}
 
+	/**
+	 * Defines the mappings used to store a row per record, i.e. each value of
+	 * the record is stored within a column using the name of the value.
+	 * 
+	 * @param config
+	 *            the {@code Configuration} to define the mappings for
+	 * @param entityName
+	 *            the name of the entity to be mapped
+	 */
+	protected void defineRowMappings(final Configuration config,
+			final String entityName) {
 		final Mappings mappings = config.createMappings();
 		final Table table = mappings.addTable(null, null, entityName, null,
 				false);
@@ -141,6 +284,116 @@ public class HibernateDataRecordCache extends HibernateSessionManager<Integer>
 		mappings.addClass(clazz);
 	}
 
+	/**
+	 * Defines the mappings used to store the records column-wise, i.e. a
+	 * block is identified by the {@code blockId}, the {@code blockSize}
+	 * defines the amount of records of the block and each value of the
+	 * records is stored as binary chunk using the name of the value.
+	 * 
+	 * @param config
+	 *            the {@code Configuration} of {@code this}
+	 * @param dialect
+	 *            the dialect
+	 * 
+	 * @see HibernateColumnCodec
+	 */
+	protected void defineBlockMappings(final Configuration config,
+			final Dialect dialect) {
+		final String entityName = getEntityName();
+
+		final Mappings mappings = config.createMappings();
+		final Table table = mappings.addTable(null, null, entityName, null,
+				false);
+
+		final RootClass clazz = new RootClass();
+		clazz.setEntityName(entityName);
+		clazz.setJpaEntityName(entityName);
+		clazz.setLazy(true);
+		clazz.setTable(table);
+
+		// create the key
+		final Column keyColumn = new Column();
+		keyColumn.setName(quote("blockId"));
+		keyColumn.setNullable(false);
+		keyColumn.setSqlTypeCode(Types.INTEGER);
+		table.addColumn(keyColumn);
+
+		final SimpleValue keyValue = new SimpleValue(mappings);
+		keyValue.setTable(table);
+		keyValue.setTypeName(Integer.class.getName());
+		keyValue.addColumn(keyColumn);
+		keyValue.setIdentifierGeneratorStrategy(SimpleValue.DEFAULT_ID_GEN_STRATEGY);
+
+		final Property keyProperty = new Property();
+		keyProperty.setName("blockId");
+		keyProperty.setValue(keyValue);
+		keyProperty.setInsertable(false);
+		keyProperty.setUpdateable(false);
+
+		final PrimaryKey primaryKey = new PrimaryKey();
+		primaryKey.setName("PK_" + entityName);
+		primaryKey.setTable(table);
+		primaryKey.addColumn(keyColumn);
+
+		table.setPrimaryKey(primaryKey);
+		table.setIdentifierValue(keyValue);
+		clazz.setIdentifier(keyValue);
+		clazz.setIdentifierProperty(keyProperty);
+
+		// create the size of the block
+		final Column sizeColumn = new Column();
+		sizeColumn.setName(quote("blockSize"));
+		sizeColumn.setNullable(false);
+		sizeColumn.setSqlTypeCode(Types.INTEGER);
+		table.addColumn(sizeColumn);
+
+		final SimpleValue sizeValue = new SimpleValue(mappings);
+		sizeValue.setTable(table);
+		sizeValue.setTypeName(Integer.class.getName());
+		sizeValue.addColumn(sizeColumn);
+
+		final Property sizeProperty = new Property();
+		sizeProperty.setName("blockSize");
+		sizeProperty.setValue(sizeValue);
+		clazz.addProperty(sizeProperty);
+
+		// create a chunk for each value
+		final String[] names = this.meta.getNames();
+		for (int i = 0; i < names.length; i++) {
+			final Column column = new Column();
+			column.setName(quote(names[i]));
+			column.setNullable(false);
+			column.setLength(Integer.MAX_VALUE);
+			column.setSqlTypeCode(Types.VARBINARY);
+			table.addColumn(column);
+
+			final SimpleValue v = new SimpleValue(mappings);
+			v.setTable(table);
+			v.setTypeName(byte[].class.getName());
+			v.addColumn(column);
+
+			final Property p = new Property();
+			p.setName(names[i]);
+			p.setLob(true);
+			p.setValue(v);
+			clazz.addProperty(p);
+		}
+
+		mappings.addClass(clazz);
+	}
+
+	/**
+	 * Checks if the records are stored column-wise, i.e. within blocks.
+	 * 
+	 * @return {@code true} if the records are stored column-wise, otherwise
+	 *         {@code false}
+	 * 
+	 * @see HibernateRecordStorage#COLUMNAR
+	 */
+	public boolean isColumnar() {
+		return columnar;
+	}
+
 	/**
 	 * Gets the used {@code DataTypes} of the different values of the record.
 	 * 
@@ -158,8 +411,24 @@ public class HibernateDataRecordCache extends HibernateSessionManager<Integer>
 
 	@Override
 	public void cache(final int id, final Object[] record) {
+		if (columnar) {
+			cacheInBlock(id, record);
+			return;
+		}
 
-		// create the map
+		cache(createMap(record));
+	}
+
+	/**
+	 * Creates the map of the specified {@code record}, i.e. the entity of a
+	 * row.
+	 * 
+	 * @param record
+	 *            the record to create the map for
+	 * 
+	 * @return the created map
+	 */
+	protected Map<String, Object> createMap(final Object[] record) {
 		final Map<String, Object> map = new HashMap<String, Object>(
 				record.length);
 		final String[] names = this.meta.getNames();
@@ -167,7 +436,7 @@ public class HibernateDataRecordCache extends HibernateSessionManager<Integer>
 			map.put(names[i], record[i]);
 		}
 
-		cache(map);
+		return map;
 	}
 
 	/**
@@ -177,69 +446,1920 @@ public class HibernateDataRecordCache extends HibernateSessionManager<Integer>
 	 *            the map to be cached/persisted
 	 */
 	public void cache(final Map<String, Object> map) {
-		// it's always an insert
-		saveMap(map, null);
+		lock();
+		try {
+			if (columnar) {
+				final String[] names = this.meta.getNames();
+				final Object[] record = new Object[names.length];
+				for (int i = 0; i < names.length; i++) {
+					record[i] = map.get(names[i]);
+				}
+
+				final Number id = (Number) record[meta.getPosRecordId() - 1];
+				cacheInBlock(id.intValue(), record);
+				return;
+			}
+
+			// use the bulk-loader if available
+			final HibernateBulkLoader loader = getBulkLoader();
+			if (loader != null) {
+				try {
+					loader.add(map);
+				} catch (final SQLException e) {
+					exceptionRegistry.throwException(
+							HibernateDataRecordCacheException.class, 1000, e,
+							getEntityName());
+				}
+			} else {
+				// it's always an insert
+				saveMap(map, null);
+			}
+		} finally {
+			unlock();
+		}
 	}
 
-	@Override
-	public void release() {
-		super.release();
+	/**
+	 * Gets the {@code HibernateBulkLoader} to be used to insert records. A
+	 * loader is only used if bulk-loading is enabled and persistency is
+	 * disabled.
+	 * 
+	 * @return the loader to be used, or {@code null} if the records should not
+	 *         be bulk-loaded
+	 */
+	protected HibernateBulkLoader getBulkLoader() {
+		if (bulkLoader == null && !isPersistency() && !columnar
+				&& config != null && config.isBulkLoad()) {
+			try {
+				bulkLoader = createBulkLoader(config.getBulkBatchSize());
+			} catch (final SQLException e) {
+				exceptionRegistry.throwException(
+						HibernateDataRecordCacheException.class, 1000, e,
+						getEntityName());
+			}
+		}
+
+		return bulkLoader;
 	}
 
-	@Override
-	public Object[] get(final int recordId) {
-		final Map<String, Object> map = getMap(recordId);
+	/**
+	 * Makes sure that all the bulk-loaded records are inserted and committed,
+	 * so that the records can be read.
+	 */
+	protected void flushBulkLoader() {
+		lock();
+		try {
+			if (bulkLoader != null && bulkLoader.isDirty()) {
+				try {
+					bulkLoader.flush();
+				} catch (final SQLException e) {
+					exceptionRegistry.throwException(
+							HibernateDataRecordCacheException.class, 1000, e,
+							getEntityName());
+				}
+			}
+		} finally {
+			unlock();
+		}
+	}
 
-		if (map == null) {
-			return null;
+	/**
+	 * Closes the current bulk-loader, if one is used.
+	 */
+	protected void closeBulkLoader() {
+		lock();
+		try {
+			if (bulkLoader != null) {
+				try {
+					bulkLoader.close();
+				} catch (final SQLException e) {
+					exceptionRegistry.throwException(
+							HibernateDataRecordCacheException.class, 1000, e,
+							getEntityName());
+				} finally {
+					bulkLoader = null;
+				}
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Gets the identifier of the block the record with the specified
+	 * {@code recordId} belongs to.
+	 * 
+	 * @param recordId
+	 *            the identifier of the record
+	 * 
+	 * @return the identifier of the block
+	 */
+	protected int getBlockId(final int recordId) {
+		if (recordId >= 0) {
+			return recordId / blockSize;
 		} else {
-			final String[] names = this.meta.getNames();
+			return (recordId + 1) / blockSize - 1;
+		}
+	}
 
-			// recreate the record
-			final Object[] record = new Object[names.length];
-			final DataType[] types = this.meta.getDataTypes();
-			for (int i = 0; i < names.length; i++) {
+	/**
+	 * Adds the record to its block. The block is not written immediately,
+	 * independent of the persistency. It is written when a record of another
+	 * block is added, the records are read, persistency is changed or the
+	 * cache is released. If persistency is enabled, the record is written
+	 * through to the delta table, i.e. it is not lost if the cache is not
+	 * released.
+	 * 
+	 * @param id
+	 *            the identifier of the record
+	 * @param record
+	 *            the record to be added
+	 */
+	protected void cacheInBlock(final int id, final Object[] record) {
+		lock();
+		try {
+			setInBlock(id, record);
+
+			if (isPersistency()) {
+				deltaManager.saveMap(createMap(record), id);
+				openBlockDeltas = true;
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Sets the record within its block, i.e. the block of the record is
+	 * opened if needed.
+	 * 
+	 * @param id
+	 *            the identifier of the record
+	 * @param record
+	 *            the record to be set
+	 */
+	protected void setInBlock(final int id, final Object[] record) {
+		lock();
+		try {
+			final int blockId = getBlockId(id);
+
+			// write the current block if another one is needed
+			if (openBlock != null && openBlock.getBlockId() != blockId) {
+				closeOpenBlock();
+			}
 
-				// date is probably a timestamp, which we don't want
-				if (DataType.DATE.equals(types[i])) {
-					final Date date = (Date) map.get(names[i]);
-					record[i] = new Date(date.getTime());
+			// open the block, the cached one must not be modified
+			if (openBlock == null) {
+				final HibernateRecordBlock block = loadBlock(blockId);
+				if (block == null) {
+					openBlock = new HibernateRecordBlock(blockId,
+							meta.getNames().length,
+							meta.getPosRecordId() - 1, 64);
 				} else {
+					openBlock = block.copy();
+				}
+
+				if (blockCache != null) {
+					blockCache.remove(blockId);
+				}
+				blockVersion++;
+			}
+
+			openBlock.set(id, record);
+			openBlockDirty = true;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Writes the block currently written, if it contains changes which are
+	 * not written yet. The block is kept open.
+	 */
+	protected void flushOpenBlock() {
+		lock();
+		try {
+			if (openBlock == null || !openBlockDirty) {
+				return;
+			}
+
+			final String[] names = meta.getNames();
+			final DataType[] types = meta.getDataTypes();
+
+			final Map<String, Object> map = new HashMap<String, Object>(
+					names.length + 2);
+			map.put("blockId", openBlock.getBlockId());
+			map.put("blockSize", openBlock.size());
+			for (int i = 0; i < names.length; i++) {
+				map.put(names[i],
+						openBlock.encode(i, types[i].getRepresentorClass()));
+			}
+
+			saveMap(map, openBlock.getBlockId());
+			openBlockDirty = false;
+
+			// the deltas are folded into the written block
+			if (openBlockDeltas) {
+				flushWriteBehind();
+				removeDeltas(openBlock.getBlockId());
+				openBlockDeltas = false;
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Removes the rows of the records of the specified block from the delta
+	 * table, i.e. the rows written through (see
+	 * {@link #cacheInBlock(int, Object[])}).
+	 * 
+	 * @param blockId
+	 *            the identifier of the block
+	 */
+	protected void removeDeltas(final int blockId) {
+		final long first = (long) blockId * blockSize;
+		final int from = (int) Math.max(Integer.MIN_VALUE, first);
+		final int to = (int) Math.min(Integer.MAX_VALUE, first + blockSize
+				- 1);
+
+		final String[] names = meta.getNames();
+		final String idColumn = quote(names[meta.getPosRecordId() - 1]);
+		final String sql = "DELETE FROM "
+				+ quote(deltaManager.getEntityName()) + " WHERE " + idColumn
+				+ " BETWEEN ? AND ?";
+
+		try {
+			deltaManager.doWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					final PreparedStatement stmt = connection
+							.prepareStatement(sql);
+					try {
+						stmt.setInt(1, from);
+						stmt.setInt(2, to);
+						stmt.executeUpdate();
+					} finally {
+						stmt.close();
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			exceptionRegistry.throwException(
+					HibernateDataRecordCacheException.class, 1005, e, blockId,
+					getEntityName());
+		}
+	}
+
+	/**
+	 * Folds the rows of the delta table into the blocks, i.e. the records
+	 * written through by a cache, which was not released. The deltas are
+	 * selected into memory first, because those are removed while the blocks
+	 * are written.
+	 */
+	protected void foldDeltas() {
+		final String[] names = meta.getNames();
+		final List<Object[]> records = new ArrayList<Object[]>();
+
+		final HibernateScrollIterator<Map<String, Object>> it = deltaManager
+				.createScrollIterator("FROM " + deltaManager.getEntityName()
+						+ " ORDER BY id");
+		try {
+			while (it.hasNext()) {
+				final Map<String, Object> map = it.next();
+				final Object[] record = new Object[names.length];
+				for (int i = 0; i < names.length; i++) {
 					record[i] = map.get(names[i]);
 				}
+				records.add(record);
+			}
+		} finally {
+			it.close();
+		}
+
+		lock();
+		try {
+			for (final Object[] record : records) {
+				final Number id = (Number) record[meta.getPosRecordId() - 1];
+				setInBlock(id.intValue(), record);
+				openBlockDeltas = true;
+			}
+			closeOpenBlock();
+		} finally {
+			unlock();
+		}
+	}
 
+	/**
+	 * Writes and closes the block currently written. The closed block is
+	 * added to the cache of decoded blocks.
+	 */
+	protected void closeOpenBlock() {
+		lock();
+		try {
+			if (openBlock == null) {
+				return;
 			}
 
-			return record;
+			flushOpenBlock();
+			if (blockCache != null) {
+				blockCache.put(openBlock.getBlockId(), openBlock, 1);
+			}
+			openBlock = null;
+			blockVersion++;
+		} finally {
+			unlock();
 		}
 	}
 
-	@Override
-	public IIntIterator intIterator() {
-		final Iterator<Integer> it = this.iterator();
+	/**
+	 * Loads the decoded block with the specified identifier. The block is
+	 * retrieved from the cache of decoded blocks, if available. The block
+	 * currently written is not considered, i.e. the written state of the
+	 * block is loaded.
+	 * 
+	 * @param blockId
+	 *            the identifier of the block
+	 * 
+	 * @return the decoded block or {@code null} if no such block exists
+	 */
+	protected HibernateRecordBlock loadBlock(final int blockId) {
+		final HibernateLruCache<Integer, HibernateRecordBlock> blockCache = this.blockCache;
+		if (blockCache != null) {
+			final HibernateRecordBlock block = blockCache.get(blockId);
+			if (block != null) {
+				return block;
+			}
+		}
 
-		return new IIntIterator() {
+		// remember the version, to not cache a modified block
+		final int version;
+		lock();
+		try {
+			version = blockVersion;
+		} finally {
+			unlock();
+		}
 
-			@Override
-			public int next() {
-				return it.next();
+		final Map<String, Object> map = getMap(blockId);
+		if (map == null) {
+			return null;
+		}
+
+		final HibernateRecordBlock block = decodeBlock(blockId, map);
+		if (blockCache != null) {
+			lock();
+			try {
+				final boolean open = openBlock != null
+						&& openBlock.getBlockId() == blockId;
+				if (version == blockVersion && !open) {
+					blockCache.put(blockId, block, 1);
+				}
+			} finally {
+				unlock();
 			}
+		}
 
-			@Override
-			public boolean hasNext() {
-				return it.hasNext();
+		return block;
+	}
+
+	/**
+	 * Decodes the block from the specified {@code map}, i.e. the persisted
+	 * entity of the block.
+	 * 
+	 * @param blockId
+	 *            the identifier of the block
+	 * @param map
+	 *            the persisted entity of the block
+	 * 
+	 * @return the decoded block
+	 * 
+	 * @throws HibernateDataRecordCacheException
+	 *             if the block cannot be decoded
+	 */
+	protected HibernateRecordBlock decodeBlock(final int blockId,
+			final Map<String, Object> map)
+			throws HibernateDataRecordCacheException {
+		final String[] names = meta.getNames();
+		final byte[][] chunks = new byte[names.length][];
+		for (int i = 0; i < names.length; i++) {
+			chunks[i] = (byte[]) map.get(names[i]);
+		}
+
+		try {
+			return HibernateRecordBlock.decode(blockId,
+					((Number) map.get("blockSize")).intValue(),
+					meta.getPosRecordId() - 1, chunks);
+		} catch (final IOException e) {
+			exceptionRegistry.throwException(
+					HibernateDataRecordCacheException.class, 1002, e, blockId,
+					getEntityName());
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the record with the specified identifier from its block.
+	 * 
+	 * @param recordId
+	 *            the identifier of the record
+	 * @param projection
+	 *            the positions of the values to be retrieved, {@code null} to
+	 *            retrieve all values
+	 * 
+	 * @return the record or {@code null} if no such record exists
+	 */
+	protected Object[] getFromBlock(final int recordId,
+			final int[] projection) {
+		final int blockId = getBlockId(recordId);
+
+		// check the block currently written first
+		lock();
+		try {
+			if (openBlock != null && openBlock.getBlockId() == blockId) {
+				return openBlock.get(recordId, projection);
 			}
-		};
+		} finally {
+			unlock();
+		}
+
+		final HibernateRecordBlock block = loadBlock(blockId);
+		return block == null ? null : block.get(recordId, projection);
 	}
 
-	@Override
-	public Iterator<Integer> iterator() {
-		return createIterator();
+	/**
+	 * Determines the identifier of the first stored block, which has an
+	 * identifier larger or equal to {@code minBlockId}.
+	 * 
+	 * @param minBlockId
+	 *            the minimal identifier, {@code null} to retrieve the first
+	 *            block
+	 * 
+	 * @return the identifier of the block or {@code null} if no such block
+	 *         exists
+	 */
+	protected Integer findBlockId(final Integer minBlockId) {
+		final String idColumn = quote("blockId");
+		final String sql = "SELECT MIN(" + idColumn + ") FROM "
+				+ quote(getEntityName())
+				+ (minBlockId == null ? "" : " WHERE " + idColumn + " >= ?");
+
+		final Integer[] res = new Integer[1];
+		try {
+			doReadWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					final PreparedStatement stmt = connection
+							.prepareStatement(sql);
+					try {
+						if (minBlockId != null) {
+							stmt.setInt(1, minBlockId);
+						}
+
+						final ResultSet rs = stmt.executeQuery();
+						if (rs.next()) {
+							final int blockId = rs.getInt(1);
+							res[0] = rs.wasNull() ? null : blockId;
+						}
+						rs.close();
+					} finally {
+						stmt.close();
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			exceptionRegistry.throwException(
+					HibernateDataRecordCacheException.class, 1003, e,
+					getEntityName());
+		}
+
+		return res[0];
 	}
 
-	@Override
-	public int size() {
-		return super.size();
+	/**
+	 * Loads the identifiers of the records stored within blocks in ascending
+	 * order into the specified {@code block}, i.e. whole blocks are decoded
+	 * (and cached) at a time.
+	 * 
+	 * @param block
+	 *            the array to load the identifiers into
+	 * @param first
+	 *            {@code true} if the first block is loaded, otherwise
+	 *            {@code false}
+	 * @param last
+	 *            the identifier loaded last, i.e. only larger identifiers are
+	 *            loaded; ignored if {@code first} is {@code true}
+	 * 
+	 * @return the amount of loaded identifiers
+	 * 
+	 * @see #loadIdentifiers(int[], boolean, int)
+	 */
+	protected int loadBlockIdentifiers(final int[] block, final boolean first,
+			final int last) {
+		flushOpenBlock();
+
+		int size = 0;
+		boolean all = first;
+		int lastId = last;
+		Integer blockId = first ? null : getBlockId(last);
+		while (size < block.length) {
+			blockId = findBlockId(blockId);
+			if (blockId == null) {
+				break;
+			}
+
+			final HibernateRecordBlock recordBlock = loadBlock(blockId);
+			if (recordBlock != null) {
+				int pos = all ? 0 : recordBlock.indexOf(lastId);
+				pos = pos < 0 ? -pos - 1 : (all ? pos : pos + 1);
+
+				while (size < block.length && pos < recordBlock.size()) {
+					block[size++] = recordBlock.getId(pos++);
+				}
+
+				// stay within the block, if it isn't read completely
+				if (pos < recordBlock.size()) {
+					break;
+				} else if (size > 0) {
+					lastId = block[size - 1];
+					all = false;
+				}
+			}
+
+			// get the next block
+			if (blockId == Integer.MAX_VALUE) {
+				break;
+			}
+			blockId++;
+		}
+
+		return size;
+	}
+
+	@Override
+	public boolean setPersistency(final boolean enable) {
+		lock();
+		try {
+			if (enable) {
+				closeBulkLoader();
+				flushOpenBlock();
+			} else if (isPersistency()) {
+
+				// fold the deltas, prior to starting the unit of work
+				flushOpenBlock();
+			}
+
+			return super.setPersistency(enable);
+		} finally {
+			unlock();
+		}
+	}
+
+	@Override
+	public void release() {
+		closeOpenBlock();
+		if (blockCache != null) {
+			blockCache.clear();
+		}
+
+		super.release();
+		if (deltaManager != null) {
+			deltaManager.release();
+		}
+	}
+
+	@Override
+	public void remove() {
+		lock();
+		try {
+			openBlock = null;
+			openBlockDirty = false;
+			openBlockDeltas = false;
+		} finally {
+			unlock();
+		}
+		if (blockCache != null) {
+			blockCache.clear();
+		}
+
+		super.remove();
+		if (deltaManager != null) {
+			deltaManager.remove();
+		}
+	}
+
+	@Override
+	public Object[] get(final int recordId) {
+		if (columnar) {
+			return getFromBlock(recordId, null);
+		}
+
+		flushBulkLoader();
+		final Map<String, Object> map = getMap(recordId);
+
+		if (map == null) {
+			return null;
+		} else {
+			return createRecord(map, null, null);
+		}
+	}
+
+	/**
+	 * Gets the specified values of the record with the specified identifier,
+	 * i.e. only the columns of the requested {@code fields} are selected.
+	 * 
+	 * @param recordId
+	 *            the identifier of the record
+	 * @param fields
+	 *            the names of the values to be retrieved (see
+	 *            {@link IDataRecordMeta#getNames()}), all values are retrieved
+	 *            if none is specified
+	 * 
+	 * @return the values in the order of the {@code fields} or {@code null}
+	 *         if no such record exists
+	 * 
+	 * @see #get(int)
+	 */
+	public Object[] get(final int recordId, final String... fields) {
+		final int[] projection = resolveFields(fields);
+		if (projection == null) {
+			return get(recordId);
+		} else if (columnar) {
+			return getFromBlock(recordId, projection);
+		}
+
+		flushBulkLoader();
+
+		// check the not yet written records first
+		final Map<String, Object> pending = getPendingMap(recordId);
+		if (pending != null) {
+			return createRecord(pending, projection, null);
+		}
+
+		final SessionTransactionWrapper wrapper = r();
+		try {
+			final Object row = wrapper.getSession()
+					.createCriteria(getEntityName())
+					.add(Restrictions.idEq(recordId))
+					.setProjection(createProjection(projection))
+					.uniqueResult();
+
+			return row == null ? null : createRecord((Object[]) row,
+					projection, null);
+		} finally {
+			releaseReader(wrapper);
+		}
+	}
+
+	/**
+	 * Determines the positions of the specified {@code fields} within a
+	 * record.
+	 * 
+	 * @param fields
+	 *            the names of the values, see
+	 *            {@link IDataRecordMeta#getNames()}
+	 * 
+	 * @return the positions of the fields or {@code null} if no field is
+	 *         specified, i.e. all values should be retrieved
+	 * 
+	 * @throws HibernateDataRecordCacheException
+	 *             if a field is unknown
+	 */
+	protected int[] resolveFields(final String[] fields)
+			throws HibernateDataRecordCacheException {
+		if (fields == null || fields.length == 0) {
+			return null;
+		}
+
+		final String[] names = meta.getNames();
+		final int[] projection = new int[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			int pos = -1;
+			for (int k = 0; k < names.length; k++) {
+				if (names[k].equals(fields[i])) {
+					pos = k;
+					break;
+				}
+			}
+
+			if (pos < 0) {
+				exceptionRegistry.throwException(
+						HibernateDataRecordCacheException.class, 1004,
+						fields[i], getEntityName());
+			}
+			projection[i] = pos;
+		}
+
+		return projection;
+	}
+
+	/**
+	 * Creates the {@code Projection} selecting the identifier of the record
+	 * followed by the values at the specified positions.
+	 * 
+	 * @param projection
+	 *            the positions of the values to be selected
+	 * 
+	 * @return the created {@code Projection}
+	 */
+	protected Projection createProjection(final int[] projection) {
+		final String[] names = meta.getNames();
+
+		final ProjectionList list = Projections.projectionList();
+		list.add(Projections.id());
+		for (final int pos : projection) {
+			list.add(Projections.property(names[pos]));
+		}
+
+		return list;
+	}
+
+	/**
+	 * Recreates the record from the specified {@code map}.
+	 * 
+	 * @param map
+	 *            the map to recreate the record from
+	 * @param projection
+	 *            the positions of the values to be recreated, {@code null} to
+	 *            recreate all values
+	 * @param reuse
+	 *            an array to be filled with the values of the record, if it
+	 *            has the length of the projection; can be {@code null}
+	 * 
+	 * @return the record, i.e. {@code reuse} if it is used
+	 */
+	protected Object[] createRecord(final Map<String, Object> map,
+			final int[] projection, final Object[] reuse) {
+		final String[] names = this.meta.getNames();
+		final DataType[] types = this.meta.getDataTypes();
+
+		// recreate the record
+		final Object[] record = createArray(projection, reuse);
+		for (int i = 0; i < record.length; i++) {
+			final int pos = projection == null ? i : projection[i];
+			record[i] = copyValue(types[pos], map.get(names[pos]));
+		}
+
+		return record;
+	}
+
+	/**
+	 * Recreates the record from the specified {@code row} selected using the
+	 * {@code Projection} created by {@link #createProjection(int[])}.
+	 * 
+	 * @param row
+	 *            the selected row, i.e. the identifier followed by the values
+	 * @param projection
+	 *            the positions of the selected values
+	 * @param reuse
+	 *            an array to be filled with the values of the record, if it
+	 *            has the length of the projection; can be {@code null}
+	 * 
+	 * @return the record, i.e. {@code reuse} if it is used
+	 */
+	protected Object[] createRecord(final Object[] row,
+			final int[] projection, final Object[] reuse) {
+		final DataType[] types = this.meta.getDataTypes();
+
+		final Object[] record = createArray(projection, reuse);
+		for (int i = 0; i < record.length; i++) {
+			record[i] = copyValue(types[projection[i]], row[i + 1]);
+		}
+
+		return record;
+	}
+
+	/**
+	 * Creates the array to keep the values of a record, if the {@code reuse}
+	 * array cannot be used.
+	 * 
+	 * @param projection
+	 *            the positions of the values, {@code null} for all values
+	 * @param reuse
+	 *            the array to be used if it has the needed length, can be
+	 *            {@code null}
+	 * 
+	 * @return the array to keep the values
+	 */
+	protected Object[] createArray(final int[] projection,
+			final Object[] reuse) {
+		final int length = projection == null ? meta.getNames().length
+				: projection.length;
+
+		if (reuse != null && reuse.length == length) {
+			return reuse;
+		} else {
+			return new Object[length];
+		}
+	}
+
+	/**
+	 * Copies the specified value read from the database, i.e. a date is
+	 * probably a timestamp, which we don't want.
+	 * 
+	 * @param type
+	 *            the type of the value
+	 * @param value
+	 *            the value read
+	 * 
+	 * @return the value to be used within a record
+	 */
+	protected Object copyValue(final DataType type, final Object value) {
+		if (value != null && DataType.DATE.equals(type)) {
+			return new Date(((Date) value).getTime());
+		} else {
+			return value;
+		}
+	}
+
+	/**
+	 * Gets the records with the specified identifiers. The records are
+	 * retrieved using chunked {@code IN}-list queries (or by decoding the
+	 * affected blocks once), instead of one query per record.
+	 * 
+	 * @param ids
+	 *            the identifiers of the records to be retrieved
+	 * 
+	 * @return the records in the order of the {@code ids}, a record which
+	 *         does not exist is {@code null}
+	 * 
+	 * @see #get(int)
+	 */
+	public Object[][] getAll(final int[] ids) {
+		return getAll(ids, null, null);
+	}
+
+	/**
+	 * Gets the records with the specified identifiers. The records are
+	 * retrieved using chunked {@code IN}-list queries (or by decoding the
+	 * affected blocks once), instead of one query per record. The
+	 * {@code reuse} array is returned if it can keep all the records, its
+	 * arrays having the length of a record are filled instead of creating
+	 * new ones.
+	 * 
+	 * @param ids
+	 *            the identifiers of the records to be retrieved
+	 * @param reuse
+	 *            the records to be reused, can be {@code null}
+	 * 
+	 * @return the records in the order of the {@code ids}, a record which
+	 *         does not exist is {@code null}
+	 * 
+	 * @see #get(int)
+	 */
+	public Object[][] getAll(final int[] ids, final Object[][] reuse) {
+		return getAll(ids, null, reuse);
+	}
+
+	/**
+	 * Gets the specified values of the records with the specified
+	 * identifiers, i.e. only the columns of the requested {@code fields} are
+	 * selected. The records are retrieved using chunked {@code IN}-list
+	 * queries (or by decoding the affected blocks once), instead of one query
+	 * per record. The {@code reuse} array is returned if it can keep all the
+	 * records, its arrays having the length of the projection are filled
+	 * instead of creating new ones.
+	 * 
+	 * @param ids
+	 *            the identifiers of the records to be retrieved
+	 * @param fields
+	 *            the names of the values to be retrieved (see
+	 *            {@link IDataRecordMeta#getNames()}), all values are retrieved
+	 *            if {@code null} or empty
+	 * @param reuse
+	 *            the records to be reused, can be {@code null}
+	 * 
+	 * @return the records in the order of the {@code ids}, a record which
+	 *         does not exist is {@code null}
+	 * 
+	 * @see #get(int, String...)
+	 */
+	public Object[][] getAll(final int[] ids, final String[] fields,
+			final Object[][] reuse) {
+		final int[] projection = resolveFields(fields);
+
+		final Object[][] res;
+		if (reuse != null && reuse.length >= ids.length) {
+			res = reuse;
+		} else {
+			res = new Object[ids.length][];
+		}
+		if (ids.length == 0) {
+			return res;
+		}
+
+		if (columnar) {
+			flushOpenBlock();
+
+			// decode each affected block once
+			final Map<Integer, HibernateRecordBlock> blocks = new HashMap<Integer, HibernateRecordBlock>();
+			for (int i = 0; i < ids.length; i++) {
+				final Integer blockId = getBlockId(ids[i]);
+
+				HibernateRecordBlock block = blocks.get(blockId);
+				if (block == null && !blocks.containsKey(blockId)) {
+					block = loadBlock(blockId);
+					blocks.put(blockId, block);
+				}
+
+				final int pos = block == null ? -1 : block.indexOf(ids[i]);
+				res[i] = pos < 0 ? null : block.getRecord(pos, projection,
+						reuse(reuse, i));
+			}
+		} else if (projection == null) {
+			flushBulkLoader();
+
+			final List<Integer> keys = new ArrayList<Integer>(ids.length);
+			for (final int id : ids) {
+				keys.add(id);
+			}
+			final Map<Object, Map<String, Object>> maps = getMaps(keys);
+
+			for (int i = 0; i < ids.length; i++) {
+				final Map<String, Object> map = maps.get(ids[i]);
+				res[i] = map == null ? null : createRecord(map, null,
+						reuse(reuse, i));
+			}
+		} else {
+			final Map<Integer, Object[]> rows = loadProjection(ids,
+					projection);
+
+			for (int i = 0; i < ids.length; i++) {
+				final Object[] row = rows.get(ids[i]);
+				res[i] = row == null ? null : createRecord(row, projection,
+						reuse(reuse, i));
+			}
+		}
+
+		return res;
+	}
+
+	/**
+	 * Selects the values at the specified positions of the records with the
+	 * specified identifiers using chunked {@code IN}-list queries.
+	 * 
+	 * @param ids
+	 *            the identifiers of the records to be retrieved
+	 * @param projection
+	 *            the positions of the values to be selected
+	 * 
+	 * @return the selected rows (see {@link #createProjection(int[])})
+	 *         associated to the identifier of the record
+	 */
+	@SuppressWarnings("unchecked")
+	protected Map<Integer, Object[]> loadProjection(final int[] ids,
+			final int[] projection) {
+		flushBulkLoader();
+		flushWriteBehind();
+
+		final String entityName = getEntityName();
+		final String idProperty = getIdentifierPropertyName();
+		final int chunkSize = getInListSize();
+
+		final Map<Integer, Object[]> rows = new HashMap<Integer, Object[]>();
+		final SessionTransactionWrapper wrapper = r();
+		try {
+			final List<Integer> chunk = new ArrayList<Integer>(Math.min(
+					chunkSize, ids.length));
+			for (int i = 0; i < ids.length; i++) {
+				chunk.add(ids[i]);
+
+				if (chunk.size() == chunkSize || i == ids.length - 1) {
+					final List<Object[]> values = wrapper.getSession()
+							.createCriteria(entityName)
+							.add(Restrictions.in(idProperty, chunk))
+							.setProjection(createProjection(projection))
+							.list();
+					for (final Object[] row : values) {
+						rows.put(((Number) row[0]).intValue(), row);
+					}
+					chunk.clear();
+				}
+			}
+		} finally {
+			releaseReader(wrapper);
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Gets the records with an identifier within the specified range (both
+	 * inclusive). The records are retrieved in chunks of
+	 * {@link HibernateDataRecordCacheConfig#getFetchSize()} records using a
+	 * {@code BETWEEN} query (or by decoding the affected blocks), instead of
+	 * one query per record.
+	 * 
+	 * @param fromId
+	 *            the smallest identifier of the range
+	 * @param toId
+	 *            the largest identifier of the range
+	 * 
+	 * @return the existing records of the range ordered by their identifiers
+	 */
+	public List<Object[]> getRange(final int fromId, final int toId) {
+		return getRange(fromId, toId, null, null);
+	}
+
+	/**
+	 * Gets the records with an identifier within the specified range (both
+	 * inclusive). The records are retrieved in chunks of
+	 * {@link HibernateDataRecordCacheConfig#getFetchSize()} records using a
+	 * {@code BETWEEN} query (or by decoding the affected blocks), instead of
+	 * one query per record. The arrays of {@code reuse} having the length of
+	 * a record are filled instead of creating new ones, i.e. the n-th
+	 * retrieved record is written into the n-th array.
+	 * 
+	 * @param fromId
+	 *            the smallest identifier of the range
+	 * @param toId
+	 *            the largest identifier of the range
+	 * @param reuse
+	 *            the records to be reused, can be {@code null}
+	 * 
+	 * @return the existing records of the range ordered by their identifiers
+	 */
+	public List<Object[]> getRange(final int fromId, final int toId,
+			final Object[][] reuse) {
+		return getRange(fromId, toId, null, reuse);
+	}
+
+	/**
+	 * Gets the specified values of the records with an identifier within the
+	 * specified range (both inclusive), i.e. only the columns of the
+	 * requested {@code fields} are selected. The records are retrieved in
+	 * chunks of {@link HibernateDataRecordCacheConfig#getFetchSize()} records
+	 * using a {@code BETWEEN} query (or by decoding the affected blocks),
+	 * instead of one query per record. The arrays of {@code reuse} having the
+	 * length of the projection are filled instead of creating new ones, i.e.
+	 * the n-th retrieved record is written into the n-th array.
+	 * 
+	 * @param fromId
+	 *            the smallest identifier of the range
+	 * @param toId
+	 *            the largest identifier of the range
+	 * @param fields
+	 *            the names of the values to be retrieved (see
+	 *            {@link IDataRecordMeta#getNames()}), all values are retrieved
+	 *            if {@code null} or empty
+	 * @param reuse
+	 *            the records to be reused, can be {@code null}
+	 * 
+	 * @return the existing records of the range ordered by their identifiers
+	 */
+	public List<Object[]> getRange(final int fromId, final int toId,
+			final String[] fields, final Object[][] reuse) {
+		final int[] projection = resolveFields(fields);
+
+		final List<Object[]> res = new ArrayList<Object[]>();
+		if (fromId > toId) {
+			return res;
+		}
+
+		if (columnar) {
+			loadBlockRange(fromId, toId, projection, reuse, res);
+		} else {
+			loadRange(fromId, toId, projection, reuse, res);
+		}
+
+		return res;
+	}
+
+	/**
+	 * Gets the array to be reused for the record at the specified position.
+	 * 
+	 * @param reuse
+	 *            the records to be reused, can be {@code null}
+	 * @param pos
+	 *            the position of the record
+	 * 
+	 * @return the array to be reused, or {@code null} if none is available
+	 */
+	protected Object[] reuse(final Object[][] reuse, final int pos) {
+		return reuse != null && pos < reuse.length ? reuse[pos] : null;
+	}
+
+	/**
+	 * Loads the records with an identifier within the specified range (both
+	 * inclusive) using chunked {@code BETWEEN} queries. Each chunk continues
+	 * after the identifier retrieved last, i.e. no offset is used.
+	 * 
+	 * @param fromId
+	 *            the smallest identifier of the range
+	 * @param toId
+	 *            the largest identifier of the range
+	 * @param projection
+	 *            the positions of the values to be selected, {@code null} to
+	 *            select all values
+	 * @param reuse
+	 *            the records to be reused, can be {@code null}
+	 * @param res
+	 *            the list to add the records to
+	 */
+	@SuppressWarnings("unchecked")
+	protected void loadRange(final int fromId, final int toId,
+			final int[] projection, final Object[][] reuse,
+			final List<Object[]> res) {
+		flushBulkLoader();
+		flushWriteBehind();
+
+		final String entityName = getEntityName();
+		final String idProperty = getIdentifierPropertyName();
+		final int fetchSize = config == null ? 0 : config.getFetchSize();
+		final int chunkSize = fetchSize > 0 ? fetchSize : 1000;
+
+		final SessionTransactionWrapper wrapper = r();
+		try {
+			int from = fromId;
+			while (true) {
+				final Criteria criteria = wrapper.getSession()
+						.createCriteria(entityName)
+						.add(Restrictions.between(idProperty, from, toId))
+						.addOrder(Order.asc(idProperty))
+						.setMaxResults(chunkSize);
+				if (projection != null) {
+					criteria.setProjection(createProjection(projection));
+				}
+				final List<Object> values = criteria.list();
+
+				int last = from;
+				for (final Object value : values) {
+					final Object[] reused = reuse(reuse, res.size());
+
+					if (projection == null) {
+						final Map<String, Object> map = (Map<String, Object>) value;
+						res.add(createRecord(map, null, reused));
+						last = ((Number) map.get(idProperty)).intValue();
+					} else {
+						final Object[] row = (Object[]) value;
+						res.add(createRecord(row, projection, reused));
+						last = ((Number) row[0]).intValue();
+					}
+				}
+
+				// check if there might be more
+				if (values.size() < chunkSize || last >= toId) {
+					break;
+				}
+				from = last + 1;
+			}
+		} finally {
+			releaseReader(wrapper);
+		}
+	}
+
+	/**
+	 * Loads the records with an identifier within the specified range (both
+	 * inclusive) from the blocks, i.e. each affected block is decoded once.
+	 * 
+	 * @param fromId
+	 *            the smallest identifier of the range
+	 * @param toId
+	 *            the largest identifier of the range
+	 * @param projection
+	 *            the positions of the values to be retrieved, {@code null} to
+	 *            retrieve all values
+	 * @param reuse
+	 *            the records to be reused, can be {@code null}
+	 * @param res
+	 *            the list to add the records to
+	 */
+	protected void loadBlockRange(final int fromId, final int toId,
+			final int[] projection, final Object[][] reuse,
+			final List<Object[]> res) {
+		flushOpenBlock();
+
+		final int lastBlockId = getBlockId(toId);
+		Integer blockId = getBlockId(fromId);
+		while (true) {
+			blockId = findBlockId(blockId);
+			if (blockId == null || blockId > lastBlockId) {
+				break;
+			}
+
+			final HibernateRecordBlock block = loadBlock(blockId);
+			if (block != null) {
+				int pos = block.indexOf(fromId);
+				pos = pos < 0 ? -pos - 1 : pos;
+
+				while (pos < block.size() && block.getId(pos) <= toId) {
+					res.add(block.getRecord(pos++, projection,
+							reuse(reuse, res.size())));
+				}
+			}
+
+			// get the next block
+			if (blockId == lastBlockId) {
+				break;
+			}
+			blockId++;
+		}
+	}
+
+	@Override
+	public IIntIterator intIterator() {
+		final int fetchSize = config == null ? 0 : config.getFetchSize();
+
+		return new HibernateIntBlockIterator(fetchSize > 0 ? fetchSize : 1000) {
+
+			@Override
+			protected int loadBlock(final int[] block, final boolean first,
+					final int last) {
+				if (columnar) {
+					return loadBlockIdentifiers(block, first, last);
+				} else {
+					return loadIdentifiers(block, first, last);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Loads the identifiers of the records in ascending order into the
+	 * specified {@code block}. The identifiers are read directly from the
+	 * {@code ResultSet}, i.e. no identifier is boxed. If persistency is
+	 * disabled, the identifiers are read within the pending unit of work.
+	 * 
+	 * @param block
+	 *            the array to load the identifiers into
+	 * @param first
+	 *            {@code true} if the first block is loaded, otherwise
+	 *            {@code false}
+	 * @param last
+	 *            the identifier loaded last, i.e. only larger identifiers are
+	 *            loaded; ignored if {@code first} is {@code true}
+	 * 
+	 * @return the amount of loaded identifiers
+	 */
+	protected int loadIdentifiers(final int[] block, final boolean first,
+			final int last) {
+		flushBulkLoader();
+
+		final String[] names = meta.getNames();
+		final String idColumn = quote(names[meta.getPosRecordId() - 1]);
+		final String sql = "SELECT " + idColumn + " FROM "
+				+ quote(getEntityName())
+				+ (first ? "" : " WHERE " + idColumn + " > ?") + " ORDER BY "
+				+ idColumn;
+
+		// make sure the write-behind queue is written
+		flushWriteBehind();
+
+		final int[] size = new int[] { 0 };
+		try {
+			doReadWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					final PreparedStatement stmt = connection
+							.prepareStatement(sql);
+					try {
+						if (!first) {
+							stmt.setInt(1, last);
+						}
+						stmt.setMaxRows(block.length);
+						stmt.setFetchSize(block.length);
+
+						final ResultSet rs = stmt.executeQuery();
+						while (size[0] < block.length && rs.next()) {
+							block[size[0]++] = rs.getInt(1);
+						}
+						rs.close();
+					} finally {
+						stmt.close();
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			exceptionRegistry.throwException(
+					HibernateDataRecordCacheException.class, 1001, e,
+					getEntityName());
+		}
+
+		return size[0];
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		if (columnar) {
+			final IIntIterator it = intIterator();
+
+			return new Iterator<Integer>() {
+
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				public Integer next() {
+					if (!it.hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return it.next();
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException(
+							"Remove is not supported.");
+				}
+			};
+		}
+
+		flushBulkLoader();
+		return createIterator();
+	}
+
+	/**
+	 * An iterator streaming the records in the order of their identifiers
+	 * using a single forward-only cursor. The records are either created for
+	 * each row or a single array (a flyweight) is filled for each row, which
+	 * is only valid until the next call of {@link #next()}. The cursor is
+	 * opened, using a connection of its own, when the first record is
+	 * requested. The iterator should be closed if it is not exhausted.
+	 * 
+	 * @author pmeisen
+	 * 
+	 */
+	public class RecordIterator implements Iterator<Object[]>, Closeable {
+		private final int[] projection;
+		private final Object[] flyweight;
+		private final int fetchSize;
+		private final Integer fromKey;
+		private final Integer toKey;
+
+		private HibernateScrollIterator<Object> it;
+		private HibernateRecordBlock block;
+		private int pos;
+		private boolean closed;
+
+		/**
+		 * Constructor specifying the values to be streamed and the range of
+		 * keys to be read, i.e. the identifiers of the records or the
+		 * identifiers of the blocks (see {@link HibernateRecordStorage}).
+		 * 
+		 * @param projection
+		 *            the positions of the values of a record
+		 * @param reuse
+		 *            {@code true} if a single array should be filled for each
+		 *            row, otherwise {@code false}
+		 * @param fetchSize
+		 *            the amount of rows fetched from the database at once
+		 * @param fromKey
+		 *            the smallest key to be read, {@code null} to start with
+		 *            the first one
+		 * @param toKey
+		 *            the largest key to be read, {@code null} to end with the
+		 *            last one
+		 */
+		public RecordIterator(final int[] projection, final boolean reuse,
+				final int fetchSize, final Integer fromKey,
+				final Integer toKey) {
+			this.projection = projection;
+			this.flyweight = reuse ? new Object[projection.length] : null;
+			this.fetchSize = fetchSize;
+			this.fromKey = fromKey;
+			this.toKey = toKey;
+
+			this.it = null;
+			this.block = null;
+			this.pos = 0;
+			this.closed = false;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean hasNext() {
+			if (closed) {
+				return false;
+			} else if (it == null) {
+				it = createRecordScroll(projection, fetchSize, fromKey, toKey);
+			}
+
+			if (!columnar) {
+				return it.hasNext();
+			}
+
+			// decode the next block, if the current one is read
+			while (block == null || pos >= block.size()) {
+				if (!it.hasNext()) {
+					block = null;
+					return false;
+				}
+
+				final Map<String, Object> map = (Map<String, Object>) it
+						.next();
+				block = decodeBlock(((Number) map.get("blockId")).intValue(),
+						map);
+				pos = 0;
+			}
+
+			return true;
+		}
+
+		@Override
+		public Object[] next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			} else if (columnar) {
+				return block.getRecord(pos++, projection, flyweight);
+			} else {
+				return createRecord((Object[]) it.next(), projection,
+						flyweight);
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new IllegalStateException("Remove is not supported.");
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+			block = null;
+
+			if (it != null) {
+				it.close();
+			}
+		}
+	}
+
+	/**
+	 * Creates an iterator streaming all the records in the order of their
+	 * identifiers.
+	 * 
+	 * @return the created iterator, which should be closed if it is not
+	 *         exhausted
+	 * 
+	 * @see #recordIterator(String[], boolean)
+	 */
+	public RecordIterator recordIterator() {
+		return recordIterator(null, false);
+	}
+
+	/**
+	 * Creates an iterator streaming all the records in the order of their
+	 * identifiers.
+	 * 
+	 * @param reuse
+	 *            {@code true} if a single array should be filled for each
+	 *            record, i.e. a record is only valid until the next one is
+	 *            retrieved; otherwise {@code false}
+	 * 
+	 * @return the created iterator, which should be closed if it is not
+	 *         exhausted
+	 * 
+	 * @see #recordIterator(String[], boolean)
+	 */
+	public RecordIterator recordIterator(final boolean reuse) {
+		return recordIterator(null, reuse);
+	}
+
+	/**
+	 * Creates an iterator streaming the specified values of all the records
+	 * in the order of their identifiers. The records are read using a single
+	 * forward-only cursor, fetching
+	 * {@link HibernateDataRecordCacheConfig#getFetchSize()} records at once,
+	 * i.e. the records are not kept in memory.
+	 * 
+	 * @param fields
+	 *            the names of the values to be retrieved (see
+	 *            {@link IDataRecordMeta#getNames()}), all values are retrieved
+	 *            if {@code null} or empty
+	 * @param reuse
+	 *            {@code true} if a single array should be filled for each
+	 *            record, i.e. a record is only valid until the next one is
+	 *            retrieved; otherwise {@code false}
+	 * 
+	 * @return the created iterator, which should be closed if it is not
+	 *         exhausted
+	 */
+	public RecordIterator recordIterator(final String[] fields,
+			final boolean reuse) {
+		final int[] projection = resolveScanFields(fields);
+		final int fetchSize = prepareScan();
+
+		return new RecordIterator(projection, reuse, fetchSize, null, null);
+	}
+
+	/**
+	 * Creates several iterators streaming the specified values of the records
+	 * within disjoint ranges of keys, i.e. of identifiers of records or of
+	 * blocks (see {@link HibernateRecordStorage}). The ranges are determined
+	 * by splitting the range between the smallest and the largest key
+	 * currently stored into {@code splits} ranges of equal size. Each
+	 * iterator streams its records in the order of their identifiers using a
+	 * cursor and a connection of its own, i.e. the iterators can be consumed
+	 * concurrently. The iterators are ordered by their ranges, so that
+	 * consuming them one after another streams all the records in order.
+	 * 
+	 * @param splits
+	 *            the amount of ranges to be created, less ranges are created
+	 *            if there aren't as many keys
+	 * @param fields
+	 *            the names of the values to be retrieved (see
+	 *            {@link IDataRecordMeta#getNames()}), all values are retrieved
+	 *            if {@code null} or empty
+	 * @param reuse
+	 *            {@code true} if each iterator should fill a single array for
+	 *            each record, i.e. a record is only valid until the next one
+	 *            is retrieved from the same iterator; otherwise {@code false}
+	 * 
+	 * @return the created iterators, which should be closed if those are not
+	 *         exhausted; an empty list if no record is stored
+	 * 
+	 * @see #recordIterator(String[], boolean)
+	 */
+	public List<RecordIterator> recordIterators(final int splits,
+			final String[] fields, final boolean reuse) {
+		final int[] projection = resolveScanFields(fields);
+		final int fetchSize = prepareScan();
+
+		final List<RecordIterator> iterators = new ArrayList<RecordIterator>();
+		final int[] range = determineKeyRange();
+		if (range == null) {
+			return iterators;
+		}
+
+		// split the range into ranges of equal size
+		final long span = (long) range[1] - range[0] + 1;
+		final int amount = (int) Math.max(1, Math.min(splits, span));
+		for (int i = 0; i < amount; i++) {
+			final int from = (int) (range[0] + span * i / amount);
+			final int to = (int) (range[0] + span * (i + 1) / amount - 1);
+			iterators.add(new RecordIterator(projection, reuse, fetchSize,
+					from, to));
+		}
+
+		return iterators;
+	}
+
+	/**
+	 * Scans all the records in parallel. The records are split into key
+	 * ranges (see {@link #recordIterators(int, String[], boolean)}), which
+	 * are streamed concurrently by {@code parallelism} threads, each using a
+	 * cursor and a connection of its own. The method blocks until all the
+	 * records are handled. If the {@code handler} fails, the scan is stopped
+	 * and the failure is re-thrown.
+	 * 
+	 * @param handler
+	 *            the handler called for each record, concurrently for
+	 *            different key ranges
+	 * @param fields
+	 *            the names of the values to be retrieved (see
+	 *            {@link IDataRecordMeta#getNames()}), all values are retrieved
+	 *            if {@code null} or empty
+	 * @param parallelism
+	 *            the amount of threads to be used, a value smaller than
+	 *            {@code 1} uses one thread per processor, limited by the size
+	 *            of the connection pool
+	 * 
+	 * @see HibernateRecordHandler
+	 */
+	public void scan(final HibernateRecordHandler handler,
+			final String[] fields, final int parallelism) {
+		final int threads;
+		if (parallelism > 0) {
+			threads = parallelism;
+		} else {
+			final int processors = Runtime.getRuntime().availableProcessors();
+			final int pool = config == null ? processors : config
+					.getMaxPoolSize() - 1;
+			threads = Math.max(1, Math.min(processors, pool));
+		}
+
+		// use more ranges than threads, to balance skewed ranges
+		final List<RecordIterator> iterators = recordIterators(threads
+				* SPLITS_PER_THREAD, fields, true);
+		if (iterators.isEmpty()) {
+			return;
+		} else if (threads == 1) {
+			for (final RecordIterator it : iterators) {
+				scanRange(it, handler);
+			}
+			return;
+		}
+
+		final AtomicInteger counter = new AtomicInteger(0);
+		final ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(threads, iterators.size()), new ThreadFactory() {
+
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread t = new Thread(r, "HibernateScanner-"
+								+ counter.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		try {
+			final List<Future<?>> futures = new ArrayList<Future<?>>(
+					iterators.size());
+			for (final RecordIterator it : iterators) {
+				futures.add(executor.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						scanRange(it, handler);
+					}
+				}));
+			}
+
+			// wait for all the ranges
+			for (final Future<?> future : futures) {
+				waitFor(future);
+			}
+		} finally {
+
+			// stop the running ranges and wait for those
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			// close the iterators of the not handled ranges
+			for (final RecordIterator it : iterators) {
+				it.close();
+			}
+		}
+	}
+
+	/**
+	 * Passes all the records of the iterator to the {@code handler}. The
+	 * iterator is closed afterwards.
+	 * 
+	 * @param it
+	 *            the iterator of the records
+	 * @param handler
+	 *            the handler to pass the records to
+	 */
+	protected void scanRange(final RecordIterator it,
+			final HibernateRecordHandler handler) {
+		try {
+			while (it.hasNext() && !Thread.currentThread().isInterrupted()) {
+				handler.handle(it.next());
+			}
+		} finally {
+			it.close();
+		}
+	}
+
+	/**
+	 * Waits for the specified {@code future} of a scanned range. Any
+	 * {@code RuntimeException} thrown while scanning is re-thrown.
+	 * 
+	 * @param future
+	 *            the future to wait for
+	 */
+	protected void waitFor(final Future<?> future) {
+		try {
+			future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while scanning.", e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Determines the positions of the specified {@code fields} to be scanned.
+	 * 
+	 * @param fields
+	 *            the names of the values, all values are scanned if
+	 *            {@code null} or empty
+	 * 
+	 * @return the positions of the values to be scanned
+	 * 
+	 * @see #resolveFields(String[])
+	 */
+	protected int[] resolveScanFields(final String[] fields) {
+		int[] projection = resolveFields(fields);
+		if (projection == null) {
+			projection = new int[meta.getNames().length];
+			for (int i = 0; i < projection.length; i++) {
+				projection[i] = i;
+			}
+		}
+
+		return projection;
+	}
+
+	/**
+	 * Makes sure that all the records are written prior to scanning those
+	 * and determines the fetch size of the cursors.
+	 * 
+	 * @return the fetch size of the cursors
+	 */
+	protected int prepareScan() {
+		if (columnar) {
+			flushOpenBlock();
+			return Math.max(1, config.getFetchSize() / blockSize);
+		} else {
+			flushBulkLoader();
+			return config == null ? 0 : config.getFetchSize();
+		}
+	}
+
+	/**
+	 * Opens a cursor streaming the selected rows of the records (or the
+	 * persisted blocks) within the specified range of keys.
+	 * 
+	 * @param projection
+	 *            the positions of the values to be selected
+	 * @param fetchSize
+	 *            the amount of rows fetched from the database at once
+	 * @param fromKey
+	 *            the smallest key to be read, {@code null} to start with the
+	 *            first one
+	 * @param toKey
+	 *            the largest key to be read, {@code null} to end with the
+	 *            last one
+	 * 
+	 * @return the opened cursor
+	 * 
+	 * @see #createScrollIterator(String)
+	 */
+	protected HibernateScrollIterator<Object> createRecordScroll(
+			final int[] projection, final int fetchSize,
+			final Integer fromKey, final Integer toKey) {
+		flushWriteBehind();
+
+		// read the pending unit of work within its session
+		final SessionTransactionWrapper wrapper = unitOfWork();
+		if (wrapper != null) {
+			try {
+				return new HibernateScrollIterator<Object>(
+						createRecordCriteria(wrapper.getSession(),
+								projection, fromKey, toKey).setReadOnly(true)
+								.list());
+			} finally {
+				releaseReader(wrapper);
+			}
+		}
+
+		final StatelessSession session = openStatelessSession();
+		final Criteria criteria;
+		try {
+			criteria = createRecordCriteria(session, projection, fromKey,
+					toKey);
+		} catch (final RuntimeException e) {
+			session.close();
+			throw e;
+		}
+
+		return new HibernateScrollIterator<Object>(session, criteria,
+				fetchSize);
+	}
+
+	/**
+	 * Creates the {@code Criteria} selecting the rows of the records (or the
+	 * persisted blocks) within the specified range of keys, ordered by the
+	 * keys.
+	 * 
+	 * @param session
+	 *            the session to create the criteria for
+	 * @param projection
+	 *            the positions of the values to be selected
+	 * @param fromKey
+	 *            the smallest key to be read, {@code null} to start with the
+	 *            first one
+	 * @param toKey
+	 *            the largest key to be read, {@code null} to end with the
+	 *            last one
+	 * 
+	 * @return the created criteria
+	 */
+	protected Criteria createRecordCriteria(
+			final SharedSessionContract session, final int[] projection,
+			final Integer fromKey, final Integer toKey) {
+		final String idProperty = getIdentifierPropertyName();
+
+		final Criteria criteria = session.createCriteria(getEntityName())
+				.addOrder(Order.asc(idProperty));
+		if (fromKey != null) {
+			criteria.add(Restrictions.ge(idProperty, fromKey));
+		}
+		if (toKey != null) {
+			criteria.add(Restrictions.le(idProperty, toKey));
+		}
+		if (!columnar) {
+			criteria.setProjection(createProjection(projection));
+		}
+
+		return criteria;
+	}
+
+	/**
+	 * Determines the smallest and the largest key currently stored, i.e. the
+	 * identifiers of the records or of the blocks.
+	 * 
+	 * @return an array containing the smallest and the largest key, or
+	 *         {@code null} if no key is stored
+	 */
+	protected int[] determineKeyRange() {
+		final String keyColumn;
+		if (columnar) {
+			keyColumn = quote("blockId");
+		} else {
+			keyColumn = quote(meta.getNames()[meta.getPosRecordId() - 1]);
+		}
+		final String sql = "SELECT MIN(" + keyColumn + "), MAX(" + keyColumn
+				+ ") FROM " + quote(getEntityName());
+
+		final int[][] res = new int[1][];
+		try {
+			doReadWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					final Statement stmt = connection.createStatement();
+					try {
+						final ResultSet rs = stmt.executeQuery(sql);
+						if (rs.next()) {
+							final int min = rs.getInt(1);
+							if (!rs.wasNull()) {
+								res[0] = new int[] { min, rs.getInt(2) };
+							}
+						}
+						rs.close();
+					} finally {
+						stmt.close();
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			exceptionRegistry.throwException(
+					HibernateDataRecordCacheException.class, 1001, e,
+					getEntityName());
+		}
+
+		return res[0];
+	}
+
+	@Override
+	public int size() {
+		if (columnar) {
+			return sizeOfBlocks();
+		}
+
+		flushBulkLoader();
+		return super.size();
+	}
+
+	/**
+	 * Gets the amount of records stored within blocks.
+	 * 
+	 * @return the amount of records stored within blocks
+	 */
+	protected int sizeOfBlocks() {
+		flushOpenBlock();
+
+		final String sql = "SELECT SUM(" + quote("blockSize") + ") FROM "
+				+ quote(getEntityName());
+		final int[] res = new int[1];
+		try {
+			doReadWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					final Statement stmt = connection.createStatement();
+					try {
+						final ResultSet rs = stmt.executeQuery(sql);
+						if (rs.next()) {
+							res[0] = rs.getInt(1);
+						}
+						rs.close();
+					} finally {
+						stmt.close();
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			exceptionRegistry.throwException(
+					HibernateDataRecordCacheException.class, 1003, e,
+					getEntityName());
+		}
+
+		return res[0];
 	}
 
 	@Override
@@ -11,5 +11,117 @@ import net.meisen.dissertation.model.cache.IDataRecordCacheConfig;
 public class HibernateDataRecordCacheConfig extends HibernateConfig implements
 		IDataRecordCacheConfig {
 
-	// nothing more
-}
+	private boolean bulkLoad = false;
+	private int bulkBatchSize = 1000;
+	private HibernateRecordStorage storage = HibernateRecordStorage.ROW;
+	private int blockSize = 4096;
+	private int blockCacheSize = 16;
+
+	/**
+	 * Checks if records should be bulk-loaded whenever persistency is
+	 * disabled, i.e. if records are inserted using a stateless session and
+	 * {@code JDBC} batches.
+	 * 
+	 * @return {@code true} if bulk-loading is enabled, otherwise {@code false}
+	 */
+	public boolean isBulkLoad() {
+		return bulkLoad;
+	}
+
+	/**
+	 * Enables or disables the bulk-loading of records.
+	 * 
+	 * @param bulkLoad
+	 *            {@code true} to enable bulk-loading, otherwise {@code false}
+	 */
+	public void setBulkLoad(final boolean bulkLoad) {
+		this.bulkLoad = bulkLoad;
+	}
+
+	/**
+	 * Gets the amount of records send within one {@code JDBC} batch when
+	 * bulk-loading.
+	 * 
+	 * @return the amount of records send within one batch
+	 */
+	public int getBulkBatchSize() {
+		return bulkBatchSize;
+	}
+
+	/**
+	 * Sets the amount of records send within one {@code JDBC} batch when
+	 * bulk-loading.
+	 * 
+	 * @param bulkBatchSize
+	 *            the amount of records send within one batch
+	 */
+	public void setBulkBatchSize(final int bulkBatchSize) {
+		this.bulkBatchSize = bulkBatchSize;
+	}
+
+	/**
+	 * Gets the layout used to store the records.
+	 * 
+	 * @return the layout used to store the records
+	 */
+	public HibernateRecordStorage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Sets the layout used to store the records. The layouts use different
+	 * tables, i.e. records stored using one layout are not available using
+	 * the other one.
+	 * 
+	 * @param storage
+	 *            the layout used to store the records, {@code null} to use
+	 *            the default layout (i.e. {@link HibernateRecordStorage#ROW})
+	 */
+	public void setStorage(final HibernateRecordStorage storage) {
+		this.storage = storage == null ? HibernateRecordStorage.ROW : storage;
+	}
+
+	/**
+	 * Gets the amount of consecutive identifiers grouped into one block, if
+	 * the records are stored column-wise (see
+	 * {@link HibernateRecordStorage#COLUMNAR}).
+	 * 
+	 * @return the amount of consecutive identifiers grouped into one block
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Sets the amount of consecutive identifiers grouped into one block. The
+	 * value must not be modified for existing records.
+	 * 
+	 * @param blockSize
+	 *            the amount of consecutive identifiers grouped into one
+	 *            block
+	 */
+	public void setBlockSize(final int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Gets the amount of decoded blocks kept in memory, if the records are
+	 * stored column-wise.
+	 * 
+	 * @return the amount of decoded blocks kept in memory
+	 */
+	public int getBlockCacheSize() {
+		return blockCacheSize;
+	}
+
+	/**
+	 * Sets the amount of decoded blocks kept in memory.
+	 * 
+	 * @param blockCacheSize
+	 *            the amount of decoded blocks kept in memory, a value smaller
+	 *            than {@code 1} disables the caching of blocks
+	 */
+	public void setBlockCacheSize(final int blockCacheSize) {
+		this.blockCacheSize = blockCacheSize;
+	}
+}
\ No newline at end of file
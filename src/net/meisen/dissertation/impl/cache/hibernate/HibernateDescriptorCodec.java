@@ -0,0 +1,235 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+import net.meisen.general.genmisc.types.Streams;
+
+/**
+ * A compact, type-tagged binary codec for the identifiers and values of
+ * descriptors. Each value is written as a one byte tag followed by the binary
+ * representation of the value. Values of unknown types are written using the
+ * Java serialization.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class HibernateDescriptorCodec {
+	private final static byte TAG_NULL = 0;
+	private final static byte TAG_STRING = 1;
+	private final static byte TAG_INTEGER = 2;
+	private final static byte TAG_LONG = 3;
+	private final static byte TAG_DOUBLE = 4;
+	private final static byte TAG_FLOAT = 5;
+	private final static byte TAG_SHORT = 6;
+	private final static byte TAG_BYTE = 7;
+	private final static byte TAG_BOOLEAN = 8;
+	private final static byte TAG_DATE = 9;
+	private final static byte TAG_BIGINTEGER = 10;
+	private final static byte TAG_BIGDECIMAL = 11;
+	private final static byte TAG_SERIALIZED = 127;
+
+	/**
+	 * Encodes the specified {@code values} into one byte-array.
+	 * 
+	 * @param values
+	 *            the values to be encoded
+	 * 
+	 * @return the encoded values
+	 */
+	public static byte[] encode(final Object... values) {
+		final HibernateLobBuffer buffer = HibernateBufferPool.acquire();
+		final DataOutputStream out = new DataOutputStream(buffer);
+		try {
+			for (final Object value : values) {
+				write(out, value);
+			}
+			out.flush();
+
+			return buffer.toByteArray();
+		} catch (final IOException e) {
+			// cannot happen writing to memory
+			throw new IllegalStateException(e);
+		} finally {
+			Streams.closeIO(out);
+			HibernateBufferPool.release(buffer, true);
+		}
+	}
+
+	/**
+	 * Decodes the specified amount of values from the {@code bytes}.
+	 * 
+	 * @param bytes
+	 *            the bytes to decode the values from
+	 * @param amount
+	 *            the amount of values to be decoded
+	 * 
+	 * @return the decoded values
+	 * 
+	 * @throws IOException
+	 *             if the bytes cannot be decoded
+	 */
+	public static Object[] decode(final byte[] bytes, final int amount)
+			throws IOException {
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(bytes));
+
+		final Object[] values = new Object[amount];
+		for (int i = 0; i < amount; i++) {
+			values[i] = read(in);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Decodes the single value encoded by the {@code bytes}.
+	 * 
+	 * @param bytes
+	 *            the bytes to decode the value from
+	 * 
+	 * @return the decoded value
+	 * 
+	 * @throws IOException
+	 *             if the bytes cannot be decoded
+	 */
+	public static Object decode(final byte[] bytes) throws IOException {
+		return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 * Writes the tagged {@code value} to the specified {@code out}.
+	 * 
+	 * @param out
+	 *            the output to write to
+	 * @param value
+	 *            the value to be written
+	 * 
+	 * @throws IOException
+	 *             if the value cannot be written
+	 */
+	public static void write(final DataOutput out, final Object value)
+			throws IOException {
+		if (value == null) {
+			out.writeByte(TAG_NULL);
+		} else if (value instanceof String) {
+			final byte[] bytes = ((String) value).getBytes("UTF-8");
+			out.writeByte(TAG_STRING);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else if (value instanceof Integer) {
+			out.writeByte(TAG_INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(TAG_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(TAG_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(TAG_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Short) {
+			out.writeByte(TAG_SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(TAG_BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(TAG_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value.getClass().equals(Date.class)) {
+			out.writeByte(TAG_DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (value instanceof BigInteger) {
+			final byte[] bytes = ((BigInteger) value).toByteArray();
+			out.writeByte(TAG_BIGINTEGER);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else if (value instanceof BigDecimal) {
+			final BigDecimal dec = (BigDecimal) value;
+			final byte[] bytes = dec.unscaledValue().toByteArray();
+			out.writeByte(TAG_BIGDECIMAL);
+			out.writeInt(dec.scale());
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else {
+			final byte[] bytes = Streams.objectToByte(value);
+			out.writeByte(TAG_SERIALIZED);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads a tagged value from the specified {@code in}.
+	 * 
+	 * @param in
+	 *            the input to read from
+	 * 
+	 * @return the read value
+	 * 
+	 * @throws IOException
+	 *             if the value cannot be read
+	 */
+	public static Object read(final DataInput in) throws IOException {
+		final byte tag = in.readByte();
+
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_STRING:
+			return new String(readBytes(in), "UTF-8");
+		case TAG_INTEGER:
+			return in.readInt();
+		case TAG_LONG:
+			return in.readLong();
+		case TAG_DOUBLE:
+			return in.readDouble();
+		case TAG_FLOAT:
+			return in.readFloat();
+		case TAG_SHORT:
+			return in.readShort();
+		case TAG_BYTE:
+			return in.readByte();
+		case TAG_BOOLEAN:
+			return in.readBoolean();
+		case TAG_DATE:
+			return new Date(in.readLong());
+		case TAG_BIGINTEGER:
+			return new BigInteger(readBytes(in));
+		case TAG_BIGDECIMAL:
+			final int scale = in.readInt();
+			return new BigDecimal(new BigInteger(readBytes(in)), scale);
+		case TAG_SERIALIZED:
+			return Streams.byteToObject(readBytes(in)).object;
+		default:
+			throw new IOException("Invalid tag '" + tag + "' found.");
+		}
+	}
+
+	/**
+	 * Reads a length-prefixed byte-array from the specified {@code in}.
+	 * 
+	 * @param in
+	 *            the input to read from
+	 * 
+	 * @return the read bytes
+	 * 
+	 * @throws IOException
+	 *             if the bytes cannot be read
+	 */
+	protected static byte[] readBytes(final DataInput in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+
+		return bytes;
+	}
+}
@@ -1,10 +1,11 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
 import java.sql.Types;
 import java.util.HashMap;
 import java.util.Map;
@@ -43,28 +44,30 @@ public class HibernateFactDescriptorModelSetCache extends
 	}
 
 	@Override
-	public FactDescriptorModelSet get(final BitmapId<?> id) {
-		final String encBitmap = encodeBitmap(id);
-		final Map<String, Object> map = getMap(encBitmap);
-		if (map == null) {
-			return new FactDescriptorModelSet();
-		} else {
-			final byte[] byteSet = (byte[]) map.get("factset");
-			final DataInputStream in = new DataInputStream(
-					new ByteArrayInputStream(byteSet));
-
-			final FactDescriptorModelSet set = new FactDescriptorModelSet();
-			try {
-				set.deserialize(in);
-			} catch (final IOException e) {
-				exceptionRegistry.throwException(
-						HibernateFactDescriptorModelSetCacheException.class,
-						1000, id);
-				return null;
-			}
-
-			return set;
+	protected FactDescriptorModelSet createFromStream(final BitmapId<?> id,
+			final Number encoding, final InputStream in) {
+		final FactDescriptorModelSet set = new FactDescriptorModelSet();
+		try {
+			set.deserialize(new DataInputStream(new BufferedInputStream(
+					decodeLob(encoding, in))));
+		} catch (final IOException e) {
+			exceptionRegistry.throwException(
+					HibernateFactDescriptorModelSetCacheException.class, 1000,
+					id);
+			return null;
 		}
+
+		return set;
+	}
+
+	@Override
+	protected String getLobPropertyName() {
+		return "factset";
+	}
+
+	@Override
+	protected FactDescriptorModelSet createEmpty() {
+		return new FactDescriptorModelSet();
 	}
 
 	@Override
@@ -84,25 +87,27 @@ public class HibernateFactDescriptorModelSetCache extends
 		final Map<String, Object> map = new HashMap<String, Object>();
 
 		// get the encoded id
-		final String id = encodeBitmap(bitmapId);
+		final Serializable id = encodeBitmap(bitmapId);
 		map.put("bitmapId", id);
 
-		// get the bitmap
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		final DataOutputStream w = new DataOutputStream(baos);
+		// serialize the set directly into the buffer bound to the statement
+		final HibernateLobBuffer buffer = createLobBuffer();
+		final DataOutputStream w = new DataOutputStream(encodeLob(buffer));
 		try {
 			set.serialize(w);
+			w.close();
 		} catch (final IOException e) {
+			HibernateBufferPool.release(buffer, false);
 			exceptionRegistry.throwException(
 					HibernateFactDescriptorModelSetCacheException.class, 1001,
-					id);
+					bitmapId);
+		} finally {
+			Streams.closeIO(w);
 		}
-		map.put("factset", baos.toByteArray());
-		Streams.closeIO(baos);
-		Streams.closeIO(w);
+		putLob(map, buffer);
 
 		// save the map
-		saveMap(map, id);
+		saveLob(map, id, buffer);
 	}
 
 	@Override
@@ -1,15 +1,13 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
-import net.meisen.dissertation.model.cache.IBitmapIdCacheConfig;
-
 /**
  * A {@code HibernateConfig} for {@code FactDescriptorModelSetCaches}.
  * 
  * @author pmeisen
  * 
  */
-public class HibernateFactDescriptorModelSetCacheConfig extends HibernateConfig
-		implements IBitmapIdCacheConfig {
+public class HibernateFactDescriptorModelSetCacheConfig extends
+		HibernateBitmapIdBasedCacheConfig {
 
 	// nothing more
 }
@@ -0,0 +1,277 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.meisen.general.genmisc.types.Objects;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.Dialect;
+
+/**
+ * A process-wide registry keeping the information, which can be shared by
+ * all the {@code HibernateSessionManager} instances using the same database,
+ * i.e. the detected {@code Dialect} and an unmapped {@code SessionFactory}
+ * (see {@link HibernateSessionManager#createUnmappedFactory()}). The entries
+ * are identified by the connection-settings of a {@code HibernateConfig} (see
+ * {@link Key}). An entry is kept as long as a manager using the database is
+ * registered, i.e. the unmapped factory is closed and the entry is removed
+ * when the last manager is unregistered.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class HibernateFactoryRegistry {
+
+	/**
+	 * The key identifying a database, i.e. a copy of the connection-settings
+	 * of a {@code HibernateConfig}.
+	 * 
+	 * @author pmeisen
+	 * 
+	 */
+	public final static class Key {
+		private final String driver;
+		private final String url;
+		private final String username;
+		private final String password;
+
+		/**
+		 * Constructor creating the key of the database defined by the
+		 * {@code config}.
+		 * 
+		 * @param config
+		 *            the configuration defining the database
+		 */
+		public Key(final HibernateConfig config) {
+			this.driver = config.getDriver();
+			this.url = config.getUrl();
+			this.username = config.getUsername();
+			this.password = config.getPassword();
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.generateHashCode(7, 43, url, username);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj == this) {
+				return true;
+			} else if (obj instanceof Key) {
+				final Key k = (Key) obj;
+				return Objects.equals(url, k.url)
+						&& Objects.equals(driver, k.driver)
+						&& Objects.equals(username, k.username)
+						&& Objects.equals(password, k.password);
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return url + " [" + username + ";" + driver + "]";
+		}
+	}
+
+	/**
+	 * The information kept for a database.
+	 * 
+	 * @author pmeisen
+	 * 
+	 */
+	protected final static class Entry {
+		private Dialect dialect = null;
+		private SessionFactory unmappedFactory = null;
+		private int users = 0;
+	}
+
+	private final static Map<Key, Entry> entries = new HashMap<Key, Entry>();
+
+	/**
+	 * Registers a user of the database defined by the {@code config}.
+	 * 
+	 * @param config
+	 *            the configuration defining the database
+	 * 
+	 * @return the key to be used to access the registry, i.e. a copy of the
+	 *         connection-settings of the {@code config}
+	 */
+	public static synchronized Key register(final HibernateConfig config) {
+		final Key key = createKey(config);
+		get(key, true).users++;
+
+		return key;
+	}
+
+	/**
+	 * Unregisters a user of the database, previously registered by
+	 * {@link #register(HibernateConfig)}. The unmapped factory of the
+	 * database is closed and the entry is removed, if no other user is
+	 * registered.
+	 * 
+	 * @param key
+	 *            the key returned by {@link #register(HibernateConfig)}
+	 */
+	public static synchronized void unregister(final Key key) {
+		final Entry entry = get(key, false);
+		if (entry == null) {
+			return;
+		} else if (--entry.users < 1) {
+			if (entry.unmappedFactory != null) {
+				entry.unmappedFactory.close();
+				entry.unmappedFactory = null;
+			}
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 * Gets the amount of databases currently kept by the registry.
+	 * 
+	 * @return the amount of databases kept
+	 */
+	public static synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the amount of users registered for the database.
+	 * 
+	 * @param key
+	 *            the configuration defining the database
+	 * 
+	 * @return the amount of registered users
+	 */
+	public static synchronized int getUsers(final Key key) {
+		final Entry entry = get(key, false);
+		return entry == null ? 0 : entry.users;
+	}
+
+	/**
+	 * Gets the {@code Dialect} detected for the database.
+	 * 
+	 * @param key
+	 *            the configuration defining the database
+	 * 
+	 * @return the detected {@code Dialect} or {@code null} if none was
+	 *         detected so far
+	 */
+	public static synchronized Dialect getDialect(final Key key) {
+		final Entry entry = get(key, false);
+		return entry == null ? null : entry.dialect;
+	}
+
+	/**
+	 * Keeps the {@code Dialect} detected for the database.
+	 * 
+	 * @param key
+	 *            the configuration defining the database
+	 * @param dialect
+	 *            the detected {@code Dialect}
+	 */
+	public static synchronized void setDialect(final Key key,
+			final Dialect dialect) {
+		final Entry entry = get(key, false);
+		if (entry != null && dialect != null) {
+			entry.dialect = dialect;
+		}
+	}
+
+	/**
+	 * Gets the shared unmapped factory of the database.
+	 * 
+	 * @param key
+	 *            the configuration defining the database
+	 * 
+	 * @return the shared unmapped factory or {@code null} if none is shared
+	 */
+	public static synchronized SessionFactory getUnmappedFactory(
+			final Key key) {
+		final Entry entry = get(key, false);
+		return entry == null ? null : entry.unmappedFactory;
+	}
+
+	/**
+	 * Offers the {@code factory} to be shared as unmapped factory of the
+	 * database. The factory is only shared, if a user is registered and no
+	 * other factory is shared already.
+	 * 
+	 * @param key
+	 *            the configuration defining the database
+	 * @param factory
+	 *            the factory to be shared
+	 * 
+	 * @return {@code true} if the factory is shared, i.e. it is closed by the
+	 *         registry, otherwise {@code false}
+	 */
+	public static synchronized boolean offerUnmappedFactory(
+			final Key key, final SessionFactory factory) {
+		final Entry entry = get(key, false);
+		if (entry == null || entry.users < 1
+				|| entry.unmappedFactory != null) {
+			return false;
+		} else {
+			entry.unmappedFactory = factory;
+			return true;
+		}
+	}
+
+	/**
+	 * Checks if the {@code factory} is the shared unmapped factory of the
+	 * database.
+	 * 
+	 * @param key
+	 *            the configuration defining the database
+	 * @param factory
+	 *            the factory to be checked
+	 * 
+	 * @return {@code true} if the factory is shared, otherwise {@code false}
+	 */
+	public static synchronized boolean isUnmappedFactory(
+			final Key key, final SessionFactory factory) {
+		final Entry entry = get(key, false);
+		return entry != null && entry.unmappedFactory == factory;
+	}
+
+	/**
+	 * Gets the entry of the specified {@code key}.
+	 * 
+	 * @param key
+	 *            the configuration defining the database
+	 * @param create
+	 *            {@code true} if the entry should be created if not available
+	 * 
+	 * @return the entry or {@code null} if none exists and none should be
+	 *         created
+	 */
+	protected static Entry get(final Key key,
+			final boolean create) {
+		if (key == null) {
+			return null;
+		}
+
+		Entry entry = entries.get(key);
+		if (entry == null && create) {
+			entry = new Entry();
+			entries.put(key, entry);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Creates a copy of the connection-settings of the {@code config}, so
+	 * that later modifications of the {@code config} do not modify the key.
+	 * 
+	 * @param config
+	 *            the configuration to create the key for
+	 * 
+	 * @return the created key
+	 */
+	public static Key createKey(final HibernateConfig config) {
+		return new Key(config);
+	}
+}
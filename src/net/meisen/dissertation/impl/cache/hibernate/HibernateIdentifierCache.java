@@ -1,10 +1,16 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,26 +28,58 @@ import net.meisen.general.genmisc.types.Streams;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Mappings;
 import org.hibernate.dialect.Dialect;
+import org.hibernate.jdbc.Work;
 import org.hibernate.mapping.Column;
 import org.hibernate.mapping.PrimaryKey;
 import org.hibernate.mapping.Property;
 import org.hibernate.mapping.RootClass;
 import org.hibernate.mapping.SimpleValue;
 import org.hibernate.mapping.Table;
-import java.sql.Types;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Cache based on {@code Hibernate} used for {@code Identifiers} instances.
+ * Cache based on {@code Hibernate} used for {@code Identifiers} instances. The
+ * entity with the key {@code 0} keeps a snapshot of the valid identifiers and
+ * the last used identifier. Changes of the valid identifiers are appended as
+ * deltas (i.e. ranges of set and cleared identifiers) using increasing keys,
+ * which are replayed when the cache is initialized and compacted into the
+ * snapshot whenever the configured threshold is reached.
+ * 
+ * If a reservation-size is configured, identifiers are reserved in blocks,
+ * i.e. only the highest reserved identifier is persisted whenever a block is
+ * exhausted. The exact last used identifier is written when the cache is
+ * released. If the cache was not released, the usage of the identifiers of
+ * the reservation is unknown, i.e. the identifiers are resumed after the
+ * reservation (hi/lo), when the cache is initialized. The skipped identifiers
+ * are never reissued, i.e. each crash leaks the unused identifiers of the
+ * reservation, at most {@code reservation-size - 1} identifiers.
  * 
  * @author pmeisen
  * 
  */
 public class HibernateIdentifierCache extends BaseIdentifierCache {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(HibernateIdentifierCache.class);
 
 	private HibernateSessionManager<Integer> sessionManager;
 	private HibernateIdentifierCacheConfig config;
 
+	/**
+	 * The operation of a delta setting a range of identifiers.
+	 */
+	protected final static byte OP_SET = 1;
+	/**
+	 * The operation of a delta clearing a range of identifiers.
+	 */
+	protected final static byte OP_CLEAR = 2;
+
 	private Map<String, Object> currentData;
+	private byte changeOp;
+	private int[] changedIds;
+	private int deltaKey;
+	private int deltas;
+	private int reserved;
 
 	/**
 	 * Default constructor.
@@ -103,20 +141,55 @@ public class HibernateIdentifierCache extends BaseIdentifierCache {
 		sessionManager.setExceptionRegistry(exceptionRegistry);
 		sessionManager.initialize(model);
 
-		// get the currentData
-		currentData = sessionManager.getMap(0);
-		if (currentData == null) {
+		// get a copy of the currentData, the managed entity is never modified
+		final Map<String, Object> snapshot = sessionManager.getMap(0);
+		if (snapshot != null) {
+			currentData = new HashMap<String, Object>(snapshot);
+		} else {
 			currentData = new HashMap<String, Object>();
 			currentData.put("key", 0);
 			currentData.put("lastused", -1);
 			currentData.put("bitmap",
 					getByteBitmap(indexFactory.createBitmap()));
+
+			// the snapshot must exist to update the last used identifier
+			sessionManager.saveMap(new HashMap<String, Object>(currentData),
+					0);
+		}
+
+		// replay the deltas on the snapshot
+		final BitSet ids = new BitSet();
+		for (final int id : getBitmap((byte[]) currentData.get("bitmap"))
+				.getIds()) {
+			ids.set(id);
+		}
+		replayDeltas(ids);
+
+		/*
+		 * Resume after the reservation if it is not released, any identifier
+		 * of the reservation might have been used, even if it is not valid.
+		 */
+		int lastUsedIdentifier = (Integer) currentData.get("lastused");
+		if (currentData.get("reserved") != null) {
+			final int lastReserved = (Integer) currentData.get("reserved");
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("The identifiers of '" + model.getId()
+						+ "' were not released, the identifiers are resumed "
+						+ "after the reservation up to '" + lastReserved
+						+ "'.");
+			}
+			lastUsedIdentifier = Math.max(lastUsedIdentifier, lastReserved);
+
+			// keep the reservation, so that it is released by release()
+			reserved = lastUsedIdentifier;
+		} else {
+			reserved = -1;
 		}
 
 		// initialize with the currentData
-		final int lastUsedIdentifier = (Integer) currentData.get("lastused");
-		final byte[] bitmap = (byte[]) currentData.get("bitmap");
-		initialize(lastUsedIdentifier, getBitmap(bitmap));
+		final Bitmap bitmap = Bitmap.createBitmap(indexFactory, toArray(ids));
+		changedIds = null;
+		initialize(lastUsedIdentifier, bitmap);
 
 		markAsInitialized();
 	}
@@ -153,20 +226,21 @@ public class HibernateIdentifierCache extends BaseIdentifierCache {
 	protected byte[] getByteBitmap(final Bitmap bitmap) {
 
 		// get the bitmap
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		final DataOutputStream w = new DataOutputStream(baos);
+		final HibernateLobBuffer buffer = HibernateBufferPool.acquire();
+		final DataOutputStream w = new DataOutputStream(buffer);
 		try {
 			bitmap.serialize(w);
+			w.flush();
+
+			return buffer.toByteArray();
 		} catch (final IOException e) {
 			exceptionRegistry.throwException(
 					HibernateIdentifierCacheException.class, 1001, e);
 			return null;
 		} finally {
-			Streams.closeIO(baos);
 			Streams.closeIO(w);
+			HibernateBufferPool.release(buffer, true);
 		}
-
-		return baos.toByteArray();
 	}
 
 	/**
@@ -209,24 +283,325 @@ public class HibernateIdentifierCache extends BaseIdentifierCache {
 
 	@Override
 	public void release() {
+
+		// persist the exact last used identifier and release the reservation
+		if (reserved > -1) {
+			final int lastUsedIdentifier = getLastUsedIdentifier();
+			currentData.put("lastused", lastUsedIdentifier);
+			currentData.put("reserved", null);
+			updateSnapshot(new String[] { "lastused", "reserved" },
+					new Integer[] { lastUsedIdentifier, null });
+			reserved = -1;
+		}
+
 		super.release();
 		sessionManager.release();
 	}
 
+	/**
+	 * Reads the persisted deltas in the order of their creation and applies
+	 * those to the specified {@code ids}.
+	 * 
+	 * @param ids
+	 *            the identifiers of the snapshot, modified by the deltas
+	 */
+	protected void replayDeltas(final BitSet ids) {
+		final String key = sessionManager.quote("key");
+		final String sql = "SELECT " + key + ", "
+				+ sessionManager.quote("bitmap") + " FROM "
+				+ sessionManager.quote(sessionManager.getEntityName())
+				+ " WHERE " + key + " > 0 ORDER BY " + key;
+
+		deltaKey = 0;
+		deltas = 0;
+		sessionManager.doWork(new Work() {
+
+			@Override
+			public void execute(final Connection connection)
+					throws SQLException {
+				final PreparedStatement stmt = connection.prepareStatement(sql);
+				try {
+					final ResultSet rs = stmt.executeQuery();
+					while (rs.next()) {
+						deltaKey = rs.getInt(1);
+						deltas++;
+						applyDelta(ids, rs.getBytes(2));
+					}
+					rs.close();
+				} finally {
+					stmt.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Applies the specified {@code delta} to the {@code ids}.
+	 * 
+	 * @param ids
+	 *            the identifiers to apply the delta to
+	 * @param delta
+	 *            the delta as created by {@link #createDelta(byte, int[])}
+	 */
+	protected void applyDelta(final BitSet ids, final byte[] delta) {
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(delta));
+
+		try {
+			while (in.available() > 0) {
+				final byte op = in.readByte();
+				final int start = in.readInt();
+				final int end = in.readInt();
+
+				if (op == OP_SET) {
+					ids.set(start, end + 1);
+				} else if (op == OP_CLEAR) {
+					ids.clear(start, end + 1);
+				} else {
+					throw new IOException("Invalid operation '" + op + "'.");
+				}
+			}
+		} catch (final IOException e) {
+			exceptionRegistry.throwException(
+					HibernateIdentifierCacheException.class, 1000, e);
+		}
+	}
+
+	/**
+	 * Creates the delta applying the specified operation (i.e. set or clear)
+	 * to the {@code ids}. The delta is a sequence of ranges, each defined by
+	 * the operation and the first and last identifier of the range.
+	 * 
+	 * @param op
+	 *            the operation applied to the identifiers
+	 * @param ids
+	 *            the changed identifiers, in any order
+	 * 
+	 * @return the byte-array representation of the delta, an empty array if
+	 *         nothing changed
+	 */
+	protected byte[] createDelta(final byte op, final int[] ids) {
+		final int[] sorted = ids.clone();
+		Arrays.sort(sorted);
+
+		final HibernateLobBuffer buffer = HibernateBufferPool.acquire();
+		final DataOutputStream w = new DataOutputStream(buffer);
+
+		try {
+			int i = 0;
+			while (i < sorted.length) {
+				final int rangeStart = sorted[i];
+				int rangeEnd = rangeStart;
+
+				// extend the range by any following or duplicated identifier
+				while (++i < sorted.length && sorted[i] - rangeEnd <= 1) {
+					rangeEnd = sorted[i];
+				}
+
+				w.writeByte(op);
+				w.writeInt(rangeStart);
+				w.writeInt(rangeEnd);
+			}
+			w.flush();
+
+			return buffer.toByteArray();
+		} catch (final IOException e) {
+			exceptionRegistry.throwException(
+					HibernateIdentifierCacheException.class, 1001, e);
+			return null;
+		} finally {
+			Streams.closeIO(w);
+			HibernateBufferPool.release(buffer, true);
+		}
+	}
+
+	/**
+	 * Gets the identifiers set within the {@code BitSet} as sorted array.
+	 * 
+	 * @param ids
+	 *            the {@code BitSet} to get the identifiers from
+	 * 
+	 * @return the sorted identifiers
+	 */
+	protected int[] toArray(final BitSet ids) {
+		final int[] res = new int[ids.cardinality()];
+
+		int pos = 0;
+		for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1)) {
+			res[pos++] = i;
+		}
+
+		return res;
+	}
+
+	@Override
+	public synchronized void markIdentifierAsValid(
+			final int... validIdentifier) {
+		changeOp = OP_SET;
+		changedIds = validIdentifier;
+		try {
+			super.markIdentifierAsValid(validIdentifier);
+		} finally {
+			changedIds = null;
+		}
+	}
+
+	@Override
+	public synchronized void markIdentifierAsInvalid(
+			final int... invalidIdentifier) {
+		changeOp = OP_CLEAR;
+		changedIds = invalidIdentifier;
+		try {
+			super.markIdentifierAsInvalid(invalidIdentifier);
+		} finally {
+			changedIds = null;
+		}
+	}
+
+	/**
+	 * Persists the change of the valid identifiers as delta, which is
+	 * created from the identifiers marked as valid or invalid, i.e. the
+	 * {@code newBitmap} is only written if the deltas are compacted. A change
+	 * not caused by marking identifiers is always compacted.
+	 */
 	@Override
 	protected void cacheBitmap(final Bitmap newBitmap) {
-		currentData.put("bitmap", getByteBitmap(newBitmap));
-		sessionManager.saveMap(currentData, 0);
+		if (changedIds == null) {
+			compact(newBitmap);
+			return;
+		} else if (changedIds.length == 0) {
+			return;
+		}
+
+		final int threshold = config == null ? 1000 : config
+				.getCompactThreshold();
+		if (deltas + 1 >= threshold) {
+			compact(newBitmap);
+		} else {
+			final Map<String, Object> data = new HashMap<String, Object>();
+			data.put("key", ++deltaKey);
+			data.put("lastused", getLastUsedIdentifier());
+			data.put("bitmap", createDelta(changeOp, changedIds));
+			sessionManager.saveMap(data, deltaKey);
+
+			deltas++;
+		}
+	}
+
+	/**
+	 * Writes the specified {@code bitmap} as new snapshot and removes all the
+	 * deltas. A failure between the two steps is not critical, because
+	 * replaying the deltas on the new snapshot leads to the same identifiers.
+	 * The deltas pending within the write-behind queue are written prior to
+	 * the removal, otherwise those would be written after the removal and
+	 * replayed on the new snapshot.
+	 * 
+	 * @param bitmap
+	 *            the bitmap of the new snapshot
+	 */
+	protected void compact(final Bitmap bitmap) {
+		currentData.put("lastused", getLastUsedIdentifier());
+		currentData.put("bitmap", getByteBitmap(bitmap));
+		sessionManager
+				.saveMap(new HashMap<String, Object>(currentData), 0);
+
+		final String sql = "DELETE FROM "
+				+ sessionManager.quote(sessionManager.getEntityName())
+				+ " WHERE " + sessionManager.quote("key") + " > 0";
+		sessionManager.doWork(new Work() {
+
+			@Override
+			public void execute(final Connection connection)
+					throws SQLException {
+				final PreparedStatement stmt = connection.prepareStatement(sql);
+				try {
+					stmt.executeUpdate();
+				} finally {
+					stmt.close();
+				}
+			}
+		});
+
+		deltaKey = 0;
+		deltas = 0;
 	}
 
 	@Override
 	protected void cacheIdentifier(final int lastUsedIdentifier) {
-		currentData.put("lastused", lastUsedIdentifier);
-		sessionManager.saveMap(currentData, 0);
+		final int reservationSize = config == null ? 0 : config
+				.getReservationSize();
+
+		if (reservationSize < 1) {
+			currentData.put("lastused", lastUsedIdentifier);
+			updateSnapshot(new String[] { "lastused" },
+					new Integer[] { lastUsedIdentifier });
+		} else if (lastUsedIdentifier > reserved) {
+
+			// reserve the next block
+			reserved = lastUsedIdentifier + reservationSize - 1;
+			currentData.put("reserved", reserved);
+			updateSnapshot(new String[] { "reserved" },
+					new Integer[] { reserved });
+		}
 	}
 
 	/**
-	 * Method called to add mappings to the {@code Hibernate} definition.
+	 * Updates the specified {@code columns} of the snapshot using a single
+	 * native statement, i.e. without re-writing the bitmap of the snapshot.
+	 * 
+	 * @param columns
+	 *            the names of the columns to be updated
+	 * @param values
+	 *            the values of the columns, {@code null} values are allowed
+	 */
+	protected void updateSnapshot(final String[] columns,
+			final Integer[] values) {
+		final StringBuilder sql = new StringBuilder();
+		sql.append("UPDATE ").append(
+				sessionManager.quote(sessionManager.getEntityName()));
+		for (int i = 0; i < columns.length; i++) {
+			sql.append(i == 0 ? " SET " : ", ")
+					.append(sessionManager.quote(columns[i])).append(" = ?");
+		}
+		sql.append(" WHERE ").append(sessionManager.quote("key"))
+				.append(" = 0");
+
+		/*
+		 * The write-behind queue is only written, if the snapshot is pending,
+		 * otherwise the pending snapshot would overwrite the updated columns.
+		 */
+		final boolean pending = sessionManager.getPendingMap(0) != null;
+		sessionManager.doWork(new Work() {
+
+			@Override
+			public void execute(final Connection connection)
+					throws SQLException {
+				final PreparedStatement stmt = connection.prepareStatement(sql
+						.toString());
+				try {
+					for (int i = 0; i < values.length; i++) {
+						if (values[i] == null) {
+							stmt.setNull(i + 1, Types.INTEGER);
+						} else {
+							stmt.setInt(i + 1, values[i]);
+						}
+					}
+					stmt.executeUpdate();
+				} finally {
+					stmt.close();
+				}
+			}
+		}, pending);
+	}
+
+	/**
+	 * Method called to add mappings to the {@code Hibernate} definition. The
+	 * column {@code reserved} keeps the highest identifier of the current
+	 * reservation and is {@code null} if the reservation was released. A
+	 * non-{@code null} value found on initialization indicates that the cache
+	 * was not released; the identifiers are resumed after the value, i.e. the
+	 * unused identifiers of the reservation are leaked (see class
+	 * documentation).
 	 * 
 	 * @param mappings
 	 *            the {@code Mappings}
@@ -277,6 +652,24 @@ public class HibernateIdentifierCache extends BaseIdentifierCache {
 		pLastUsed.setValue(vLastUsed);
 
 		table.addColumn(cLastUsed);
+
+		// create the column for the reserved identifiers, null if released
+		final Column cReserved = new Column();
+		cReserved.setName(sessionManager.quote("reserved"));
+		cReserved.setNullable(true);
+		cReserved.setSqlTypeCode(DataType.INT.getSqlType());
+
+		final SimpleValue vReserved = new SimpleValue(mappings);
+		vReserved.setTable(table);
+		vReserved.setTypeName(Integer.class.getName());
+		vReserved.addColumn(cReserved);
+
+		final Property pReserved = new Property();
+		pReserved.setName("reserved");
+		clazz.addProperty(pReserved);
+		pReserved.setValue(vReserved);
+
+		table.addColumn(cReserved);
 	}
 
 	/**
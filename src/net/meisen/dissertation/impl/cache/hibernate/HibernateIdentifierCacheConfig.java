@@ -11,5 +11,52 @@ import net.meisen.dissertation.model.cache.IIdentifierCacheConfig;
 public class HibernateIdentifierCacheConfig extends HibernateConfig implements
 		IIdentifierCacheConfig {
 
-	// nothing more
+	private int compactThreshold = 1000;
+	private int reservationSize = 0;
+
+	/**
+	 * Gets the amount of persisted changes of the valid identifiers after
+	 * which the changes are compacted into a single snapshot.
+	 * 
+	 * @return the amount of changes triggering a compaction
+	 */
+	public int getCompactThreshold() {
+		return compactThreshold;
+	}
+
+	/**
+	 * Sets the amount of persisted changes of the valid identifiers after
+	 * which the changes are compacted into a single snapshot. A value smaller
+	 * than {@code 1} compacts the changes whenever those are persisted.
+	 * 
+	 * @param compactThreshold
+	 *            the amount of changes triggering a compaction
+	 */
+	public void setCompactThreshold(final int compactThreshold) {
+		this.compactThreshold = compactThreshold;
+	}
+
+	/**
+	 * Gets the amount of identifiers reserved at once, i.e. the last used
+	 * identifier is only persisted whenever the reserved identifiers are
+	 * exhausted.
+	 * 
+	 * @return the amount of identifiers reserved at once, {@code 0} if no
+	 *         identifiers are reserved
+	 */
+	public int getReservationSize() {
+		return reservationSize;
+	}
+
+	/**
+	 * Sets the amount of identifiers reserved at once. A value smaller than
+	 * {@code 1} disables the reservation, i.e. each used identifier is
+	 * persisted.
+	 * 
+	 * @param reservationSize
+	 *            the amount of identifiers reserved at once
+	 */
+	public void setReservationSize(final int reservationSize) {
+		this.reservationSize = reservationSize;
+	}
 }
@@ -0,0 +1,85 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.util.NoSuchElementException;
+
+import net.meisen.dissertation.model.util.IIntIterator;
+
+/**
+ * An {@code IIntIterator} reading primitive integers block-wise. Each block is
+ * loaded into a reused array, i.e. iterating all the values allocates memory
+ * for one block only. The blocks are paged by range, i.e. each block contains
+ * the values larger than the last value of the previous block.
+ * 
+ * @author pmeisen
+ * 
+ */
+public abstract class HibernateIntBlockIterator implements IIntIterator {
+	private final int[] block;
+
+	private int size;
+	private int pos;
+	private boolean first;
+	private boolean exhausted;
+
+	/**
+	 * Constructor specifying the size of a block.
+	 * 
+	 * @param blockSize
+	 *            the maximal amount of values loaded at once
+	 */
+	public HibernateIntBlockIterator(final int blockSize) {
+		this.block = new int[blockSize < 1 ? 1 : blockSize];
+
+		this.size = 0;
+		this.pos = 0;
+		this.first = true;
+		this.exhausted = false;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (pos < size) {
+			return true;
+		} else if (exhausted) {
+			return false;
+		}
+
+		// load the next block
+		final int last = first ? 0 : block[size - 1];
+		size = loadBlock(block, first, last);
+		pos = 0;
+		first = false;
+		exhausted = size < block.length;
+
+		return pos < size;
+	}
+
+	@Override
+	public int next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		return block[pos++];
+	}
+
+	/**
+	 * Loads the next block of values in ascending order.
+	 * 
+	 * @param block
+	 *            the array to load the values into, the length of the array
+	 *            defines the maximal amount of values to be loaded
+	 * @param first
+	 *            {@code true} if the first block is loaded, otherwise
+	 *            {@code false}
+	 * @param last
+	 *            the last value of the previous block, i.e. only values larger
+	 *            than {@code last} are loaded; the value must be ignored if
+	 *            {@code first} is {@code true}
+	 * 
+	 * @return the amount of loaded values, a value smaller than the length of
+	 *         the {@code block} marks the last block
+	 */
+	protected abstract int loadBlock(final int[] block, final boolean first,
+			final int last);
+}
@@ -0,0 +1,68 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A buffer used to serialize an entity stored within a {@code LOB}. The
+ * buffer is bound to a {@code PreparedStatement} as binary stream, i.e. the
+ * serialized entity is not copied into a new byte-array. The buffer must not
+ * be modified after it was handed to a statement.
+ * 
+ * @author pmeisen
+ * 
+ * @see HibernateMapStatement
+ */
+public class HibernateLobBuffer extends ByteArrayOutputStream {
+
+	/**
+	 * Constructor specifying the initial size of the buffer, which should be
+	 * the expected size of the serialized entity.
+	 * 
+	 * @param size
+	 *            the initial size of the buffer
+	 */
+	public HibernateLobBuffer(final int size) {
+		super(size < 32 ? 32 : size);
+	}
+
+	/**
+	 * Gets an {@code InputStream} reading the content of the buffer without
+	 * copying it.
+	 * 
+	 * @return an {@code InputStream} reading the content of the buffer
+	 */
+	public synchronized InputStream toInputStream() {
+		return new ByteArrayInputStream(buf, 0, count);
+	}
+
+	/**
+	 * Gets the current capacity of the buffer, i.e. the size of the buffer's
+	 * array.
+	 * 
+	 * @return the current capacity of the buffer
+	 */
+	public synchronized int capacity() {
+		return buf.length;
+	}
+
+	/**
+	 * Binds the content of the buffer as binary stream to the specified
+	 * parameter of the {@code stmt}.
+	 * 
+	 * @param stmt
+	 *            the statement to bind the content to
+	 * @param pos
+	 *            the position of the parameter
+	 * 
+	 * @throws SQLException
+	 *             if the content cannot be bound
+	 */
+	public synchronized void bind(final PreparedStatement stmt, final int pos)
+			throws SQLException {
+		stmt.setBinaryStream(pos, toInputStream(), count);
+	}
+}
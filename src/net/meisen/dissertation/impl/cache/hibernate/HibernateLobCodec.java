@@ -0,0 +1,211 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The codecs available to compress the serialized entities stored within a
+ * {@code LOB}. The identifier of the codec used is stored together with the
+ * entity, so that entities stored with another (or without any) codec remain
+ * readable.
+ * 
+ * @author pmeisen
+ * 
+ */
+public enum HibernateLobCodec {
+	/**
+	 * The serialized entity is stored as is.
+	 */
+	NONE((byte) 0, Deflater.NO_COMPRESSION),
+	/**
+	 * The serialized entity is compressed favoring the speed over the ratio.
+	 */
+	FAST((byte) 1, Deflater.BEST_SPEED),
+	/**
+	 * The serialized entity is compressed using the default compression of
+	 * the {@code Deflate} algorithm.
+	 */
+	DEFLATE((byte) 2, Deflater.DEFAULT_COMPRESSION);
+
+	private final byte id;
+	private final int level;
+
+	private HibernateLobCodec(final byte id, final int level) {
+		this.id = id;
+		this.level = level;
+	}
+
+	/**
+	 * Gets the identifier of the codec, which is persisted with the encoded
+	 * data.
+	 * 
+	 * @return the identifier of the codec
+	 */
+	public byte getId() {
+		return id;
+	}
+
+	/**
+	 * Encodes the specified {@code data}.
+	 * 
+	 * @param data
+	 *            the data to be encoded
+	 * 
+	 * @return the encoded data
+	 */
+	public byte[] encode(final byte[] data) {
+		if (this == NONE) {
+			return data;
+		}
+
+		final Deflater deflater = new Deflater(level);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream(
+					Math.max(64, data.length / 2));
+			final byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				final int len = deflater.deflate(buffer);
+				baos.write(buffer, 0, len);
+			}
+
+			return baos.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Decodes the specified {@code data}, previously encoded by
+	 * {@link #encode(byte[])}.
+	 * 
+	 * @param data
+	 *            the data to be decoded
+	 * 
+	 * @return the decoded data
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be decoded
+	 */
+	public byte[] decode(final byte[] data) throws IOException {
+		if (this == NONE) {
+			return data;
+		}
+
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream(
+					Math.max(64, data.length * 2));
+			final byte[] buffer = new byte[4096];
+			while (!inflater.finished()) {
+				final int len = inflater.inflate(buffer);
+				if (len == 0 && (inflater.needsInput() || inflater
+						.needsDictionary())) {
+					throw new IOException("The data is truncated.");
+				}
+				baos.write(buffer, 0, len);
+			}
+
+			return baos.toByteArray();
+		} catch (final DataFormatException e) {
+			throw new IOException("The data is not encoded by '" + this
+					+ "'.", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Wraps the specified {@code out}, so that the data written to the
+	 * returned stream is encoded into {@code out}. The returned stream must be
+	 * closed to write all the encoded data, which also closes {@code out}.
+	 * 
+	 * @param out
+	 *            the stream to write the encoded data to
+	 * 
+	 * @return the stream to write the data to be encoded to
+	 */
+	public OutputStream encode(final OutputStream out) {
+		if (this == NONE) {
+			return out;
+		}
+
+		final Deflater deflater = new Deflater(level);
+		return new DeflaterOutputStream(out, deflater, 4096) {
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					deflater.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Wraps the specified {@code in}, so that the encoded data of {@code in}
+	 * is decoded while reading from the returned stream.
+	 * 
+	 * @param in
+	 *            the stream to read the encoded data from
+	 * 
+	 * @return the stream to read the decoded data from
+	 */
+	public InputStream decode(final InputStream in) {
+		if (this == NONE) {
+			return in;
+		}
+
+		return new InflaterInputStream(in, new Inflater(), 4096) {
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					inf.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Gets the codec of the specified identifier.
+	 * 
+	 * @param id
+	 *            the identifier of the codec, {@code null} is interpreted as
+	 *            {@link #NONE}, i.e. data stored prior to the usage of any
+	 *            codec
+	 * 
+	 * @return the codec
+	 * 
+	 * @throws IOException
+	 *             if the identifier is unknown
+	 */
+	public static HibernateLobCodec byId(final Number id) throws IOException {
+		if (id == null) {
+			return NONE;
+		}
+
+		for (final HibernateLobCodec codec : values()) {
+			if (codec.id == id.byteValue()) {
+				return codec;
+			}
+		}
+
+		throw new IOException("The codec '" + id + "' is unknown.");
+	}
+}
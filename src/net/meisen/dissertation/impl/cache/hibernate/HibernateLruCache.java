@@ -0,0 +1,231 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory cache bounded by the weight (e.g. the size in bytes) of the
+ * cached values. Whenever the maximal weight is exceeded, the least recently
+ * used values are evicted. The cache is used as read-through tier in front of
+ * the {@code Hibernate} based caches.
+ * 
+ * @author pmeisen
+ * 
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values
+ */
+public class HibernateLruCache<K, V> {
+
+	/**
+	 * A cached value together with it's weight.
+	 * 
+	 * @author pmeisen
+	 * 
+	 * @param <V>
+	 *            the type of the value
+	 */
+	protected final static class Node<V> {
+		private final V value;
+		private final long weight;
+
+		/**
+		 * Constructor specifying the value and it's weight.
+		 * 
+		 * @param value
+		 *            the cached value
+		 * @param weight
+		 *            the weight of the value
+		 */
+		public Node(final V value, final long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	private final long maxWeight;
+	private final LinkedHashMap<K, Node<V>> values;
+
+	private long weight;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Constructor specifying the maximal weight of all the cached values.
+	 * 
+	 * @param maxWeight
+	 *            the maximal weight of all the cached values
+	 */
+	public HibernateLruCache(final long maxWeight) {
+		this.maxWeight = maxWeight;
+		this.values = new LinkedHashMap<K, Node<V>>(16, 0.75f, true);
+
+		this.weight = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	/**
+	 * Gets the value cached for the specified {@code key}.
+	 * 
+	 * @param key
+	 *            the key to get the value for
+	 * 
+	 * @return the cached value or {@code null} if no value is cached
+	 */
+	public synchronized V get(final K key) {
+		final Node<V> node = values.get(key);
+		if (node == null) {
+			misses++;
+			return null;
+		} else {
+			hits++;
+			return node.value;
+		}
+	}
+
+	/**
+	 * Caches the {@code value} for the specified {@code key}. A value heavier
+	 * than the maximal weight is not cached, but removes a previously cached
+	 * value of the {@code key}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param value
+	 *            the value to be cached
+	 * @param weight
+	 *            the weight of the value, e.g. the size in bytes
+	 */
+	public synchronized void put(final K key, final V value, final long weight) {
+		remove(key);
+
+		if (value == null || weight > maxWeight) {
+			return;
+		}
+
+		values.put(key, new Node<V>(value, weight));
+		this.weight += weight;
+
+		// evict the least recently used values
+		final Iterator<Map.Entry<K, Node<V>>> it = values.entrySet()
+				.iterator();
+		while (this.weight > maxWeight && it.hasNext()) {
+			final Node<V> evicted = it.next().getValue();
+			it.remove();
+
+			this.weight -= evicted.weight;
+			this.evictions++;
+		}
+	}
+
+	/**
+	 * Caches the {@code value} for the specified {@code key}, if no value is
+	 * cached for the {@code key} so far. A cached value is never replaced,
+	 * i.e. a value read from the database cannot overwrite a newer value
+	 * cached by {@link #put(Object, Object, long)}.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param value
+	 *            the value to be cached
+	 * @param weight
+	 *            the weight of the value, e.g. the size in bytes
+	 * 
+	 * @return {@code true} if the value was cached, otherwise {@code false}
+	 */
+	public synchronized boolean putIfAbsent(final K key, final V value,
+			final long weight) {
+		if (values.containsKey(key) || value == null || weight > maxWeight) {
+			return false;
+		}
+
+		put(key, value, weight);
+		return true;
+	}
+
+	/**
+	 * Removes the value cached for the specified {@code key}.
+	 * 
+	 * @param key
+	 *            the key of the value to be removed
+	 */
+	public synchronized void remove(final K key) {
+		final Node<V> node = values.remove(key);
+		if (node != null) {
+			this.weight -= node.weight;
+		}
+	}
+
+	/**
+	 * Removes all the cached values. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		values.clear();
+		this.weight = 0;
+	}
+
+	/**
+	 * Gets the amount of cached values.
+	 * 
+	 * @return the amount of cached values
+	 */
+	public synchronized int size() {
+		return values.size();
+	}
+
+	/**
+	 * Gets the weight of all the cached values.
+	 * 
+	 * @return the weight of all the cached values
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Gets the maximal weight of all the cached values.
+	 * 
+	 * @return the maximal weight of all the cached values
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Gets the amount of requests answered by the cache.
+	 * 
+	 * @return the amount of requests answered by the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the amount of requests which could not be answered by the cache.
+	 * 
+	 * @return the amount of requests which could not be answered by the cache
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the amount of values evicted to keep the maximal weight.
+	 * 
+	 * @return the amount of evicted values
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return values.size() + " values (weight: " + weight + "/" + maxWeight
+				+ ", hits: " + hits + ", misses: " + misses + ", evictions: "
+				+ evictions + ")";
+	}
+}
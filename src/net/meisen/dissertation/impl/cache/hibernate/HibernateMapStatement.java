@@ -0,0 +1,428 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL9Dialect;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jdbc.Work;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Property;
+import org.hibernate.type.Type;
+
+/**
+ * A native statement used to write the map-based entities of a
+ * {@code HibernateSessionManager} directly via {@code JDBC}, e.g. to upsert an
+ * entity within a single statement instead of checking it's existence first.
+ * 
+ * @author pmeisen
+ * 
+ * @see HibernateSessionManager
+ */
+public class HibernateMapStatement {
+	private final String sql;
+	private final String[] properties;
+	private final Type[] types;
+
+	/**
+	 * Constructor specifying the {@code sql} and the properties bound to the
+	 * parameters of the statement.
+	 * 
+	 * @param sql
+	 *            the native SQL of the statement
+	 * @param properties
+	 *            the names of the properties bound to the parameters (in the
+	 *            order of the parameters)
+	 * @param types
+	 *            the types of the properties
+	 */
+	protected HibernateMapStatement(final String sql,
+			final String[] properties, final Type[] types) {
+		this.sql = sql;
+		this.properties = properties;
+		this.types = types;
+	}
+
+	/**
+	 * Creates an upsert-statement, i.e. a statement inserting or updating an
+	 * entity within one statement, for the specified mapping. Such statements
+	 * are supported for {@code HSQLDB}, {@code H2}, {@code MySQL} and
+	 * {@code PostgreSQL} (9.5 or later). The dialect does not tell the
+	 * version of a {@code PostgreSQL} server (every 9.x server is mapped to
+	 * the same dialect), therefore the version is read from the
+	 * {@code metaData}.
+	 * 
+	 * @param clazz
+	 *            the mapping of the entity
+	 * @param dialect
+	 *            the dialect of the database
+	 * @param mapping
+	 *            the {@code Mapping} used to resolve the types of the columns
+	 * @param metaData
+	 *            the meta-data of the database, used to check the version of
+	 *            the database; can be {@code null} if unknown
+	 * 
+	 * @return the created statement or {@code null} if the database does not
+	 *         support upserts
+	 * 
+	 * @throws SQLException
+	 *             if the version of the database cannot be read
+	 */
+	public static HibernateMapStatement createUpsert(
+			final PersistentClass clazz, final Dialect dialect,
+			final Mapping mapping, final DatabaseMetaData metaData)
+			throws SQLException {
+		if (clazz == null || dialect == null) {
+			return null;
+		}
+
+		final List<Property> props = getProperties(clazz);
+		final String table = clazz.getTable().getQualifiedName(dialect, null,
+				null);
+		final String key = getColumn(clazz.getIdentifierProperty())
+				.getQuotedName(dialect);
+
+		// collect the columns
+		final List<String> columns = new ArrayList<String>();
+		final List<String> nonKeyColumns = new ArrayList<String>();
+		for (final Property p : props) {
+			final String column = getColumn(p).getQuotedName(dialect);
+			columns.add(column);
+			if (!key.equals(column)) {
+				nonKeyColumns.add(column);
+			}
+		}
+
+		final StringBuilder sql = new StringBuilder();
+		if (dialect instanceof HSQLDialect) {
+			sql.append("MERGE INTO ").append(table).append(" USING (VALUES (");
+			for (int i = 0; i < props.size(); i++) {
+				final Column column = getColumn(props.get(i));
+				sql.append(i == 0 ? "" : ", ").append("CAST(? AS ")
+						.append(column.getSqlType(dialect, mapping))
+						.append(")");
+			}
+			sql.append(")) AS src (").append(join(columns, "", "")).append(")");
+			sql.append(" ON ").append(table).append(".").append(key)
+					.append(" = src.").append(key);
+			if (nonKeyColumns.size() > 0) {
+				sql.append(" WHEN MATCHED THEN UPDATE SET ");
+				for (int i = 0; i < nonKeyColumns.size(); i++) {
+					final String column = nonKeyColumns.get(i);
+					sql.append(i == 0 ? "" : ", ").append(table).append(".")
+							.append(column).append(" = src.").append(column);
+				}
+			}
+			sql.append(" WHEN NOT MATCHED THEN INSERT (")
+					.append(join(columns, "", "")).append(") VALUES (")
+					.append(join(columns, "src.", "")).append(")");
+		} else if (dialect instanceof H2Dialect) {
+			sql.append("MERGE INTO ").append(table).append(" (")
+					.append(join(columns, "", "")).append(") KEY (")
+					.append(key).append(") VALUES (")
+					.append(parameters(columns.size())).append(")");
+		} else if (dialect instanceof MySQLDialect) {
+			sql.append("INSERT INTO ").append(table).append(" (")
+					.append(join(columns, "", "")).append(") VALUES (")
+					.append(parameters(columns.size()))
+					.append(") ON DUPLICATE KEY UPDATE ");
+			if (nonKeyColumns.size() > 0) {
+				for (int i = 0; i < nonKeyColumns.size(); i++) {
+					final String column = nonKeyColumns.get(i);
+					sql.append(i == 0 ? "" : ", ").append(column)
+							.append(" = VALUES(").append(column).append(")");
+				}
+			} else {
+				sql.append(key).append(" = ").append(key);
+			}
+		} else if (dialect instanceof PostgreSQL9Dialect) {
+
+			// ON CONFLICT is supported since 9.5
+			if (!isVersion(metaData, 9, 5)) {
+				return null;
+			}
+
+			sql.append("INSERT INTO ").append(table).append(" (")
+					.append(join(columns, "", "")).append(") VALUES (")
+					.append(parameters(columns.size()))
+					.append(") ON CONFLICT (").append(key).append(")");
+			if (nonKeyColumns.size() > 0) {
+				sql.append(" DO UPDATE SET ");
+				for (int i = 0; i < nonKeyColumns.size(); i++) {
+					final String column = nonKeyColumns.get(i);
+					sql.append(i == 0 ? "" : ", ").append(column)
+							.append(" = EXCLUDED.").append(column);
+				}
+			} else {
+				sql.append(" DO NOTHING");
+			}
+		} else {
+			return null;
+		}
+
+		return create(sql.toString(), props);
+	}
+
+	/**
+	 * Checks if the version of the database is the specified one or a later
+	 * one.
+	 * 
+	 * @param metaData
+	 *            the meta-data of the database, can be {@code null}
+	 * @param major
+	 *            the major version needed
+	 * @param minor
+	 *            the minor version needed
+	 * 
+	 * @return {@code true} if the version of the database is known and equal
+	 *         to or later than the specified one, otherwise {@code false}
+	 * 
+	 * @throws SQLException
+	 *             if the version cannot be read
+	 */
+	protected static boolean isVersion(final DatabaseMetaData metaData,
+			final int major, final int minor) throws SQLException {
+		if (metaData == null) {
+			return false;
+		}
+
+		final int dbMajor = metaData.getDatabaseMajorVersion();
+		if (dbMajor != major) {
+			return dbMajor > major;
+		} else {
+			return metaData.getDatabaseMinorVersion() >= minor;
+		}
+	}
+
+	/**
+	 * Creates an insert-statement for the specified mapping.
+	 * 
+	 * @param clazz
+	 *            the mapping of the entity
+	 * @param dialect
+	 *            the dialect of the database
+	 * 
+	 * @return the created statement or {@code null} if no statement can be
+	 *         created
+	 */
+	public static HibernateMapStatement createInsert(
+			final PersistentClass clazz, final Dialect dialect) {
+		if (clazz == null || dialect == null) {
+			return null;
+		}
+
+		final List<Property> props = getProperties(clazz);
+		final List<String> columns = new ArrayList<String>();
+		for (final Property p : props) {
+			columns.add(getColumn(p).getQuotedName(dialect));
+		}
+
+		final String sql = "INSERT INTO "
+				+ clazz.getTable().getQualifiedName(dialect, null, null)
+				+ " (" + join(columns, "", "") + ") VALUES ("
+				+ parameters(columns.size()) + ")";
+		return create(sql, props);
+	}
+
+	/**
+	 * Creates the statement for the specified {@code sql}, whereby the
+	 * parameters are bound to the specified properties.
+	 * 
+	 * @param sql
+	 *            the native SQL
+	 * @param props
+	 *            the properties bound to the parameters
+	 * 
+	 * @return the created statement
+	 */
+	protected static HibernateMapStatement create(final String sql,
+			final List<Property> props) {
+		final String[] properties = new String[props.size()];
+		final Type[] types = new Type[props.size()];
+		for (int i = 0; i < props.size(); i++) {
+			final Property p = props.get(i);
+			properties[i] = p.getName();
+			types[i] = p.getType();
+		}
+
+		return new HibernateMapStatement(sql, properties, types);
+	}
+
+	/**
+	 * Gets the properties of the mapping, each property is only contained once
+	 * and the identifier is always the first one.
+	 * 
+	 * @param clazz
+	 *            the mapping
+	 * 
+	 * @return the properties of the mapping
+	 */
+	protected static List<Property> getProperties(final PersistentClass clazz) {
+		final List<Property> props = new ArrayList<Property>();
+		final Set<String> columns = new HashSet<String>();
+
+		final Property id = clazz.getIdentifierProperty();
+		props.add(id);
+		columns.add(getColumn(id).getName());
+
+		final Iterator<?> it = clazz.getPropertyIterator();
+		while (it.hasNext()) {
+			final Property p = (Property) it.next();
+			if (columns.add(getColumn(p).getName())) {
+				props.add(p);
+			}
+		}
+
+		return props;
+	}
+
+	/**
+	 * Gets the column of the specified single-column property.
+	 * 
+	 * @param property
+	 *            the property to get the column for
+	 * 
+	 * @return the column of the property
+	 */
+	protected static Column getColumn(final Property property) {
+		return (Column) property.getColumnIterator().next();
+	}
+
+	/**
+	 * Joins the specified columns using a comma.
+	 * 
+	 * @param columns
+	 *            the columns to be joined
+	 * @param prefix
+	 *            a prefix added to each column
+	 * @param suffix
+	 *            a suffix added to each column
+	 * 
+	 * @return the joined columns
+	 */
+	protected static String join(final List<String> columns,
+			final String prefix, final String suffix) {
+		final StringBuilder sb = new StringBuilder();
+		for (final String column : columns) {
+			sb.append(sb.length() == 0 ? "" : ", ").append(prefix)
+					.append(column).append(suffix);
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Creates a list of {@code amount} parameters, i.e. {@code ?, ?, ...}.
+	 * 
+	 * @param amount
+	 *            the amount of parameters
+	 * 
+	 * @return the list of parameters
+	 */
+	protected static String parameters(final int amount) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < amount; i++) {
+			sb.append(i == 0 ? "?" : ", ?");
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Binds the values of the {@code map} to the parameters of the
+	 * {@code stmt}. A {@code HibernateLobBuffer} is bound as binary stream.
+	 * 
+	 * @param stmt
+	 *            the statement to bind the values to
+	 * @param map
+	 *            the entity to get the values from
+	 * @param session
+	 *            the session the statement is executed in
+	 * 
+	 * @throws SQLException
+	 *             if a value cannot be bound
+	 */
+	public void bind(final PreparedStatement stmt,
+			final Map<String, Object> map, final SessionImplementor session)
+			throws SQLException {
+		for (int i = 0; i < properties.length; i++) {
+			final Object value = map.get(properties[i]);
+			if (value instanceof HibernateLobBuffer) {
+				((HibernateLobBuffer) value).bind(stmt, i + 1);
+			} else {
+				types[i].nullSafeSet(stmt, value, i + 1, session);
+			}
+		}
+	}
+
+	/**
+	 * Executes the statement for each of the specified {@code maps} within the
+	 * specified {@code session}. Several maps are executed as a {@code JDBC}
+	 * batch.
+	 * 
+	 * @param session
+	 *            the session to execute the statement in
+	 * @param maps
+	 *            the entities to execute the statement for
+	 */
+	public void execute(final Session session,
+			final Collection<Map<String, Object>> maps) {
+		if (maps.isEmpty()) {
+			return;
+		}
+
+		final SessionImplementor si = (SessionImplementor) session;
+		session.doWork(new Work() {
+
+			@Override
+			public void execute(final Connection connection)
+					throws SQLException {
+				final PreparedStatement stmt = connection.prepareStatement(sql);
+				try {
+					if (maps.size() == 1) {
+						bind(stmt, maps.iterator().next(), si);
+						stmt.executeUpdate();
+					} else {
+						for (final Map<String, Object> map : maps) {
+							bind(stmt, map, si);
+							stmt.addBatch();
+						}
+						stmt.executeBatch();
+					}
+				} finally {
+					stmt.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gets the native SQL of the statement.
+	 * 
+	 * @return the native SQL of the statement
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	@Override
+	public String toString() {
+		return sql;
+	}
+}
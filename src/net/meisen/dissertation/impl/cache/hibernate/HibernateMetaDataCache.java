@@ -1,15 +1,22 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
+import java.io.IOException;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.xml.bind.DatatypeConverter;
 
 import net.meisen.dissertation.impl.data.metadata.DescriptorMetaDataCollection;
 import net.meisen.dissertation.impl.data.metadata.LoadedMetaData;
-import net.meisen.dissertation.jdbc.protocol.DataType;
 import net.meisen.dissertation.model.cache.IMetaDataCache;
 import net.meisen.dissertation.model.cache.IMetaDataCacheConfig;
 import net.meisen.dissertation.model.data.TidaModel;
@@ -17,10 +24,11 @@ import net.meisen.dissertation.model.data.metadata.IMetaDataCollection;
 import net.meisen.dissertation.model.descriptors.Descriptor;
 import net.meisen.general.genmisc.types.Streams;
 
-import org.hibernate.Query;
+import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Mappings;
 import org.hibernate.dialect.Dialect;
+import org.hibernate.jdbc.Work;
 import org.hibernate.mapping.Column;
 import org.hibernate.mapping.PrimaryKey;
 import org.hibernate.mapping.Property;
@@ -31,13 +39,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A {@code Hibernate} cache used for meta-data.
+ * A {@code Hibernate} cache used for meta-data. The identifiers and values of
+ * the descriptors are stored using the {@code HibernateDescriptorCodec}, the
+ * key of a descriptor is a binary value containing the identifier of the
+ * descriptor-model and the identifier of the descriptor.
  * 
  * @author pmeisen
  * 
+ * @see HibernateDescriptorCodec
  */
-public class HibernateMetaDataCache extends HibernateSessionManager<String>
-		implements IMetaDataCache {
+public class HibernateMetaDataCache extends
+		HibernateSessionManager<Serializable> implements IMetaDataCache {
 	private final static Logger LOG = LoggerFactory
 			.getLogger(HibernateMetaDataCache.class);
 
@@ -56,13 +68,10 @@ public class HibernateMetaDataCache extends HibernateSessionManager<String>
 		// persist the descriptor
 		final Map<String, Object> record = new HashMap<String, Object>();
 
-		final String modelId = desc.getModelId();
-		final String descId = DatatypeConverter.printBase64Binary(Streams
-				.objectToByte(desc.getId()));
-		final byte[] value = Streams.objectToByte(desc.getValue());
+		final byte[] key = HibernateDescriptorCodec.encode(desc.getModelId(),
+				desc.getId());
+		final byte[] value = HibernateDescriptorCodec.encode(desc.getValue());
 
-		final String key = modelId + " " + descId;
-		
 		record.put("key", key);
 		record.put("value", value);
 
@@ -72,44 +81,54 @@ public class HibernateMetaDataCache extends HibernateSessionManager<String>
 	@Override
 	public IMetaDataCollection createMetaDataCollection() {
 		final DescriptorMetaDataCollection collection = new DescriptorMetaDataCollection();
-
-		if (size() > 0) {
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("Using database meta-data.");
-			}
-
-			final Query query = w().getSession().createQuery(
-					"from " + getEntityName() + " order by key");
-			final Iterator<?> it = query.iterate();
-
-			LoadedMetaData curMetaData = null;
+		final long start = System.currentTimeMillis();
+
+		/*
+		 * Stream all the records within a single query, the records are
+		 * grouped by the model in memory, so that no sorting is needed.
+		 */
+		final Map<String, LoadedMetaData> metaData = new LinkedHashMap<String, LoadedMetaData>();
+		final HibernateScrollIterator<Map<String, Object>> it = createScrollIterator("FROM "
+				+ getEntityName());
+		int counter = 0;
+		try {
 			while (it.hasNext()) {
-
-				@SuppressWarnings("unchecked")
-				final Map<String, Object> record = (Map<String, Object>) it
-						.next();
-
-				final String compId = (String) record.get("key");
-				final byte[] byteValue = (byte[]) record.get("value");
-
-				// split the key and get the values
-				final String[] sepKeys = compId.split(" ");
-				final String modelId = sepKeys[0];
-				final byte[] byteDescId = DatatypeConverter
-						.parseBase64Binary(sepKeys[1]);
-				final Object descId = Streams.byteToObject(byteDescId).object;
-
-				// get the final result
-				final Object value = Streams.byteToObject(byteValue).object;
-
-				// create the metadata instance
-				if (curMetaData == null
-						|| !curMetaData.getDescriptorModelId().equals(modelId)) {
+				final Map<String, Object> record = it.next();
+
+				// decode the key and the value
+				final Object[] key = HibernateDescriptorCodec.decode(
+						(byte[]) record.get("key"), 2);
+				final String modelId = (String) key[0];
+				final Object descId = key[1];
+				final Object value = HibernateDescriptorCodec
+						.decode((byte[]) record.get("value"));
+
+				// get the metadata instance
+				LoadedMetaData curMetaData = metaData.get(modelId);
+				if (curMetaData == null) {
 					curMetaData = new LoadedMetaData(modelId);
-					collection.addMetaData(curMetaData);
+					metaData.put(modelId, curMetaData);
 				}
 				curMetaData.addValue(descId, value);
+				counter++;
 			}
+		} catch (final IOException e) {
+			exceptionRegistry.throwException(
+					HibernateMetaDataCacheException.class, 1000, e,
+					getEntityName());
+		} finally {
+			it.close();
+		}
+
+		// add the loaded meta-data
+		for (final LoadedMetaData curMetaData : metaData.values()) {
+			collection.addMetaData(curMetaData);
+		}
+
+		if (counter > 0 && LOG.isDebugEnabled()) {
+			LOG.debug("Using database meta-data, loaded " + counter
+					+ " descriptors of " + metaData.size() + " models in "
+					+ (System.currentTimeMillis() - start) + "ms.");
 		}
 
 		return collection;
@@ -134,7 +153,9 @@ public class HibernateMetaDataCache extends HibernateSessionManager<String>
 	@Override
 	protected Class<? extends RuntimeException>[] getExceptions() {
 		@SuppressWarnings("unchecked")
-		final Class<? extends RuntimeException>[] exp = new Class[] { HibernateDataRecordCacheException.class };
+		final Class<? extends RuntimeException>[] exp = new Class[] {
+				HibernateMetaDataCacheException.class,
+				HibernateDataRecordCacheException.class };
 
 		return exp;
 	}
@@ -144,6 +165,138 @@ public class HibernateMetaDataCache extends HibernateSessionManager<String>
 		return config;
 	}
 
+	@Override
+	protected void beforeCreateFactory() {
+
+		// move an existing table using a string key out of the way
+		final String entityName = getEntityName();
+		final String legacyName = getLegacyEntityName();
+		try {
+			doUnmappedWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					final DatabaseMetaData meta = connection.getMetaData();
+					if (existsTable(meta, legacyName)
+							|| !isCharacterColumn(meta, entityName, "key")) {
+						return;
+					}
+					renameTable(connection, entityName, legacyName);
+
+					if (LOG.isInfoEnabled()) {
+						LOG.info("Migrating table '" + entityName
+								+ "' to a binary key, the data is kept in '"
+								+ legacyName + "' until migrated.");
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			exceptionRegistry.throwException(
+					HibernateSessionManagerException.class, 1005, e,
+					entityName, e.getMessage());
+		}
+	}
+
+	@Override
+	protected void afterCreateFactory(final SessionFactory factory) {
+
+		// re-encode the data of a legacy table into the new one
+		final String entityName = getEntityName();
+		final String legacyName = getLegacyEntityName();
+		try {
+			doWork(factory, new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					if (!existsTable(connection.getMetaData(), legacyName)) {
+						return;
+					}
+
+					final int count = copyLegacyData(connection, legacyName,
+							entityName);
+					connection.commit();
+					dropTable(connection, legacyName);
+
+					if (LOG.isInfoEnabled()) {
+						LOG.info("Migrated " + count + " descriptors of table '"
+								+ entityName + "' to a binary key.");
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			exceptionRegistry.throwException(
+					HibernateSessionManagerException.class, 1005, e,
+					entityName, e.getMessage());
+		}
+	}
+
+	/**
+	 * Copies all the data of the {@code legacyName} table, using a string key
+	 * and values serialized by Java, into the {@code entityName} table. Any
+	 * data of the latter is deleted prior to the copying, i.e. a previously
+	 * interrupted migration is repeated.
+	 * 
+	 * @param connection
+	 *            the connection to be used
+	 * @param legacyName
+	 *            the name of the table to read the data from
+	 * @param entityName
+	 *            the name of the table to write the data to
+	 * 
+	 * @return the amount of copied descriptors
+	 * 
+	 * @throws SQLException
+	 *             if the data cannot be copied
+	 */
+	protected int copyLegacyData(final Connection connection,
+			final String legacyName, final String entityName)
+			throws SQLException {
+		final String key = quote("key");
+		final String value = quote("value");
+
+		final Statement select = connection.createStatement();
+		final PreparedStatement insert = connection
+				.prepareStatement("INSERT INTO " + quote(entityName) + " ("
+						+ key + ", " + value + ") VALUES (?, ?)");
+		try {
+			select.executeUpdate("DELETE FROM " + quote(entityName));
+
+			final ResultSet rs = select.executeQuery("SELECT " + key + ", "
+					+ value + " FROM " + quote(legacyName));
+			int count = 0;
+			while (rs.next()) {
+
+				// split the key and get the values
+				final String compId = rs.getString(1);
+				final int sepPos = compId.indexOf(' ');
+				final String modelId = compId.substring(0, sepPos);
+				final byte[] byteDescId = DatatypeConverter
+						.parseBase64Binary(compId.substring(sepPos + 1));
+				final Object descId = Streams.byteToObject(byteDescId).object;
+				final byte[] byteValue = rs.getBytes(2);
+				final Object descValue = Streams.byteToObject(byteValue).object;
+
+				insert.setBytes(1,
+						HibernateDescriptorCodec.encode(modelId, descId));
+				insert.setBytes(2, HibernateDescriptorCodec.encode(descValue));
+				insert.addBatch();
+
+				if (++count % 1000 == 0) {
+					insert.executeBatch();
+				}
+			}
+			insert.executeBatch();
+			rs.close();
+
+			return count;
+		} finally {
+			select.close();
+			insert.close();
+		}
+	}
+
 	@Override
 	protected void defineMappings(final Configuration config,
 			final Dialect dialect) {
@@ -169,7 +322,8 @@ public class HibernateMetaDataCache extends HibernateSessionManager<String>
 	}
 
 	/**
-	 * Method to create the mappings needed for an bitmap-identifier.
+	 * Method to create the mappings needed for the binary key of a
+	 * descriptor.
 	 * 
 	 * @param mappings
 	 *            the {@code Mappings}
@@ -186,12 +340,12 @@ public class HibernateMetaDataCache extends HibernateSessionManager<String>
 		final Column column = new Column();
 		column.setName(quote("key"));
 		column.setNullable(false);
-		column.setSqlTypeCode(DataType.STRING.getSqlType());
+		column.setSqlTypeCode(Types.VARBINARY);
 		column.setLength(1000);
 
 		final SimpleValue v = new SimpleValue(mappings);
 		v.setTable(table);
-		v.setTypeName(String.class.getName());
+		v.setTypeName(byte[].class.getName());
 		v.addColumn(column);
 		v.setIdentifierGeneratorStrategy(SimpleValue.DEFAULT_ID_GEN_STRATEGY);
 
@@ -0,0 +1,37 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+/**
+ * Exception thrown when a problem with the {@code HibernateMetaDataCache}
+ * occurs.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class HibernateMetaDataCacheException extends RuntimeException {
+	private static final long serialVersionUID = 3817152098452166734L;
+
+	/**
+	 * Creates an exception which should been thrown whenever there is no other
+	 * reason for the exception, i.e. the exception is the root.
+	 * 
+	 * @param message
+	 *            the message of the exception
+	 */
+	public HibernateMetaDataCacheException(final String message) {
+		super(message);
+	}
+
+	/**
+	 * Creates an exception which should been thrown whenever another
+	 * <code>Throwable</code> is the reason for this.
+	 * 
+	 * @param message
+	 *            the message of the exception
+	 * @param t
+	 *            the reason for the exception
+	 */
+	public HibernateMetaDataCacheException(final String message,
+			final Throwable t) {
+		super(message, t);
+	}
+}
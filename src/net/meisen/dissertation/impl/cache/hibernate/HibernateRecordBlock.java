@@ -0,0 +1,323 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A decoded block of records, i.e. the records of a range of consecutive
+ * identifiers stored column-wise (see {@link HibernateRecordStorage#COLUMNAR}
+ * ). The records of the block are sorted by their identifiers.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class HibernateRecordBlock {
+	private final int blockId;
+	private final int posRecordId;
+	private final Object[][] columns;
+
+	private int[] ids;
+	private int size;
+
+	/**
+	 * Constructor to create an empty block.
+	 * 
+	 * @param blockId
+	 *            the identifier of the block
+	 * @param columns
+	 *            the amount of values of a record
+	 * @param posRecordId
+	 *            the position of the identifier within a record (0-based)
+	 * @param capacity
+	 *            the initial capacity of the block
+	 */
+	public HibernateRecordBlock(final int blockId, final int columns,
+			final int posRecordId, final int capacity) {
+		this.blockId = blockId;
+		this.posRecordId = posRecordId;
+		this.columns = new Object[columns][];
+		for (int i = 0; i < columns; i++) {
+			this.columns[i] = new Object[capacity];
+		}
+
+		this.ids = new int[capacity];
+		this.size = 0;
+	}
+
+	/**
+	 * Gets the identifier of the block.
+	 * 
+	 * @return the identifier of the block
+	 */
+	public int getBlockId() {
+		return blockId;
+	}
+
+	/**
+	 * Gets the amount of records of the block.
+	 * 
+	 * @return the amount of records of the block
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the identifier of the record at the specified position.
+	 * 
+	 * @param pos
+	 *            the position of the record
+	 * 
+	 * @return the identifier of the record
+	 */
+	public int getId(final int pos) {
+		return ids[pos];
+	}
+
+	/**
+	 * Gets the position of the record with the specified identifier.
+	 * 
+	 * @param id
+	 *            the identifier of the record
+	 * 
+	 * @return the position of the record, if the record is part of the block;
+	 *         otherwise {@code (-(insertion point) - 1)}
+	 * 
+	 * @see Arrays#binarySearch(int[], int, int, int)
+	 */
+	public int indexOf(final int id) {
+
+		// records are mostly appended, so check the last one first
+		if (size > 0 && ids[size - 1] < id) {
+			return -size - 1;
+		}
+
+		return Arrays.binarySearch(ids, 0, size, id);
+	}
+
+	/**
+	 * Gets a copy of the record with the specified identifier.
+	 * 
+	 * @param id
+	 *            the identifier of the record
+	 * 
+	 * @return the record or {@code null} if the block does not contain the
+	 *         record
+	 */
+	public Object[] get(final int id) {
+		return get(id, null);
+	}
+
+	/**
+	 * Gets a copy of the specified values of the record with the specified
+	 * identifier.
+	 * 
+	 * @param id
+	 *            the identifier of the record
+	 * @param projection
+	 *            the positions of the values to be retrieved, {@code null}
+	 *            to retrieve all values
+	 * 
+	 * @return the values or {@code null} if the block does not contain the
+	 *         record
+	 */
+	public Object[] get(final int id, final int[] projection) {
+		final int pos = indexOf(id);
+		return pos < 0 ? null : getRecord(pos, projection, null);
+	}
+
+	/**
+	 * Gets a copy of the record at the specified position. Dates are copied
+	 * as well, so that a modification of the record does not modify the
+	 * block.
+	 * 
+	 * @param pos
+	 *            the position of the record
+	 * 
+	 * @return the record
+	 */
+	public Object[] getRecord(final int pos) {
+		return getRecord(pos, null);
+	}
+
+	/**
+	 * Gets a copy of the record at the specified position. The values are
+	 * copied into the {@code reuse} array, if it has the length of a record.
+	 * 
+	 * @param pos
+	 *            the position of the record
+	 * @param reuse
+	 *            the array to copy the values into, can be {@code null}
+	 * 
+	 * @return the record, i.e. {@code reuse} if it is used
+	 * 
+	 * @see #getRecord(int)
+	 */
+	public Object[] getRecord(final int pos, final Object[] reuse) {
+		return getRecord(pos, null, reuse);
+	}
+
+	/**
+	 * Gets a copy of the specified values of the record at the specified
+	 * position. The values are copied into the {@code reuse} array, if it has
+	 * the length of the projection.
+	 * 
+	 * @param pos
+	 *            the position of the record
+	 * @param projection
+	 *            the positions of the values to be retrieved, {@code null}
+	 *            to retrieve all values
+	 * @param reuse
+	 *            the array to copy the values into, can be {@code null}
+	 * 
+	 * @return the values in the order of the {@code projection}, i.e.
+	 *         {@code reuse} if it is used
+	 */
+	public Object[] getRecord(final int pos, final int[] projection,
+			final Object[] reuse) {
+		final int length = projection == null ? columns.length
+				: projection.length;
+		final Object[] record = reuse != null && reuse.length == length ? reuse
+				: new Object[length];
+		for (int i = 0; i < length; i++) {
+			final int column = projection == null ? i : projection[i];
+			final Object value = columns[column][pos];
+			if (value instanceof Date) {
+				record[i] = new Date(((Date) value).getTime());
+			} else {
+				record[i] = value;
+			}
+		}
+
+		return record;
+	}
+
+	/**
+	 * Adds the {@code record} to the block, an existing record with the same
+	 * identifier is replaced.
+	 * 
+	 * @param id
+	 *            the identifier of the record
+	 * @param record
+	 *            the record to be added
+	 */
+	public void set(final int id, final Object[] record) {
+		int pos = indexOf(id);
+
+		if (pos < 0) {
+			pos = -pos - 1;
+
+			// make sure there is enough space
+			if (size == ids.length) {
+				final int capacity = Math.max(16, ids.length * 2);
+				ids = Arrays.copyOf(ids, capacity);
+				for (int i = 0; i < columns.length; i++) {
+					columns[i] = Arrays.copyOf(columns[i], capacity);
+				}
+			}
+
+			// move the following records
+			if (pos < size) {
+				System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+				for (int i = 0; i < columns.length; i++) {
+					System.arraycopy(columns[i], pos, columns[i], pos + 1,
+							size - pos);
+				}
+			}
+			size++;
+		}
+
+		ids[pos] = id;
+		for (int i = 0; i < columns.length; i++) {
+			columns[i][pos] = record[i];
+		}
+	}
+
+	/**
+	 * Creates a copy of {@code this}.
+	 * 
+	 * @return the created copy
+	 */
+	public HibernateRecordBlock copy() {
+		final HibernateRecordBlock copy = new HibernateRecordBlock(blockId,
+				columns.length, posRecordId, size);
+		for (int i = 0; i < columns.length; i++) {
+			System.arraycopy(columns[i], 0, copy.columns[i], 0, size);
+		}
+		System.arraycopy(ids, 0, copy.ids, 0, size);
+		copy.size = size;
+
+		return copy;
+	}
+
+	/**
+	 * Encodes the values of the specified column.
+	 * 
+	 * @param column
+	 *            the column to be encoded
+	 * @param type
+	 *            the type of the values of the column
+	 * 
+	 * @return the encoded chunk
+	 * 
+	 * @see HibernateColumnCodec#encode(Class, Object[], int)
+	 */
+	public byte[] encode(final int column, final Class<?> type) {
+		return HibernateColumnCodec.encode(type, columns[column], size);
+	}
+
+	/**
+	 * Creates a block from the encoded chunks of its columns.
+	 * 
+	 * @param blockId
+	 *            the identifier of the block
+	 * @param size
+	 *            the amount of records of the block
+	 * @param posRecordId
+	 *            the position of the identifier within a record (0-based)
+	 * @param chunks
+	 *            the encoded chunks, one for each column
+	 * 
+	 * @return the decoded block
+	 * 
+	 * @throws IOException
+	 *             if a chunk cannot be decoded
+	 */
+	public static HibernateRecordBlock decode(final int blockId,
+			final int size, final int posRecordId, final byte[][] chunks)
+			throws IOException {
+		final Object[][] columns = new Object[chunks.length][];
+		for (int i = 0; i < chunks.length; i++) {
+			columns[i] = HibernateColumnCodec.decode(chunks[i], size);
+		}
+
+		final int[] ids = new int[size];
+		for (int i = 0; i < size; i++) {
+			ids[i] = ((Number) columns[posRecordId][i]).intValue();
+		}
+
+		return new HibernateRecordBlock(blockId, posRecordId, columns, ids);
+	}
+
+	/**
+	 * Constructor used to create a decoded block.
+	 * 
+	 * @param blockId
+	 *            the identifier of the block
+	 * @param posRecordId
+	 *            the position of the identifier within a record (0-based)
+	 * @param columns
+	 *            the values of the records, column-wise
+	 * @param ids
+	 *            the identifiers of the records
+	 */
+	protected HibernateRecordBlock(final int blockId, final int posRecordId,
+			final Object[][] columns, final int[] ids) {
+		this.blockId = blockId;
+		this.posRecordId = posRecordId;
+		this.columns = columns;
+		this.ids = ids;
+		this.size = ids.length;
+	}
+}
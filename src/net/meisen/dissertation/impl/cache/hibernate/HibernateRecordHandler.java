@@ -0,0 +1,25 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+/**
+ * A handler of the records scanned by
+ * {@link HibernateDataRecordCache#scan(HibernateRecordHandler, String[], int)}
+ * . The records of the different key ranges are handled by different threads
+ * concurrently, i.e. the implementation must be thread-safe. The records of
+ * one key range are handled by a single thread in the order of their
+ * identifiers.
+ * 
+ * @author pmeisen
+ * 
+ */
+public abstract class HibernateRecordHandler {
+
+	/**
+	 * Handles the specified {@code record}. The array of the record might be
+	 * reused for the next record of the same key range, i.e. it must be
+	 * copied if it is kept.
+	 * 
+	 * @param record
+	 *            the record to be handled
+	 */
+	public abstract void handle(final Object[] record);
+}
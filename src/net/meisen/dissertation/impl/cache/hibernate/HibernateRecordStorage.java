@@ -0,0 +1,24 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+/**
+ * The layouts available to store the records of a
+ * {@code HibernateDataRecordCache}.
+ * 
+ * @author pmeisen
+ * 
+ */
+public enum HibernateRecordStorage {
+	/**
+	 * Each record is stored as a row of its own, using one column per value
+	 * of the record.
+	 */
+	ROW,
+	/**
+	 * The records are grouped into blocks of consecutive identifiers (see
+	 * {@link HibernateDataRecordCacheConfig#getBlockSize()}). Each block is
+	 * stored as a row of its own, using one binary chunk per value of the
+	 * records, i.e. the values are stored column-wise (see
+	 * {@link HibernateColumnCodec}).
+	 */
+	COLUMNAR;
+}
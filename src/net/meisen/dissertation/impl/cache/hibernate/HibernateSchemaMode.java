@@ -0,0 +1,23 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+/**
+ * The modes available to handle the schema of the tables used by the
+ * caches, whenever a cache is initialized.
+ * 
+ * @author pmeisen
+ * 
+ */
+public enum HibernateSchemaMode {
+	/**
+	 * The schema is validated and updated by {@code Hibernate} (i.e.
+	 * {@code hbm2ddl.auto=update}) whenever a cache is initialized.
+	 */
+	UPDATE,
+	/**
+	 * The schema is only validated and updated, if the schema-marker table
+	 * (see {@link HibernateSessionManager#SCHEMA_MARKER_TABLE}) does not
+	 * state that the table of the cache is current. The marker is written
+	 * after each update.
+	 */
+	TRUSTED;
+}
@@ -0,0 +1,225 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.hibernate.Criteria;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+/**
+ * An iterator streaming the results of a query using a forward-only cursor,
+ * i.e. the results are not materialized in memory. The iterator is based on a
+ * {@code StatelessSession}, which is closed whenever the iterator is
+ * exhausted or closed. Alternatively, the iterator iterates over rows
+ * already selected, e.g. within the session of a pending unit of work.
+ * 
+ * @author pmeisen
+ * 
+ * @param <T>
+ *            the type of the iterated values
+ * 
+ * @see ScrollableResults
+ */
+public class HibernateScrollIterator<T> implements Iterator<T>, Closeable {
+	private final StatelessSession session;
+	private final Transaction transaction;
+	private final ScrollableResults results;
+	private final Iterator<?> rows;
+
+	private boolean fetched;
+	private boolean hasNext;
+	private boolean closed;
+
+	/**
+	 * Constructor specifying the {@code session} to work with, the
+	 * {@code hql} query to be executed and the {@code fetchSize} of the
+	 * cursor.
+	 * 
+	 * @param session
+	 *            the session to work with, the session is closed by the
+	 *            iterator
+	 * @param hql
+	 *            the query selecting the values to iterate over
+	 * @param fetchSize
+	 *            the amount of rows fetched from the database at once, a value
+	 *            smaller than {@code 1} uses the default of the driver
+	 */
+	public HibernateScrollIterator(final StatelessSession session,
+			final String hql, final int fetchSize) {
+		this.session = session;
+		this.fetched = false;
+		this.hasNext = false;
+		this.closed = false;
+
+		Transaction transaction = null;
+		ScrollableResults results = null;
+		try {
+			transaction = session.beginTransaction();
+
+			final Query query = session.createQuery(hql)
+					.setReadOnly(true);
+			if (fetchSize > 0) {
+				query.setFetchSize(fetchSize);
+			}
+			results = query.scroll(ScrollMode.FORWARD_ONLY);
+		} catch (final RuntimeException e) {
+			session.close();
+			throw e;
+		}
+
+		this.transaction = transaction;
+		this.results = results;
+		this.rows = null;
+	}
+
+	/**
+	 * Constructor specifying the {@code session} to work with, the
+	 * {@code criteria} to be executed and the {@code fetchSize} of the
+	 * cursor.
+	 * 
+	 * @param session
+	 *            the session to work with, the session is closed by the
+	 *            iterator
+	 * @param criteria
+	 *            the criteria selecting the values to iterate over, created
+	 *            by the {@code session}
+	 * @param fetchSize
+	 *            the amount of rows fetched from the database at once, a value
+	 *            smaller than {@code 1} uses the default of the driver
+	 */
+	public HibernateScrollIterator(final StatelessSession session,
+			final Criteria criteria, final int fetchSize) {
+		this.session = session;
+		this.fetched = false;
+		this.hasNext = false;
+		this.closed = false;
+
+		Transaction transaction = null;
+		ScrollableResults results = null;
+		try {
+			transaction = session.beginTransaction();
+
+			criteria.setReadOnly(true);
+			if (fetchSize > 0) {
+				criteria.setFetchSize(fetchSize);
+			}
+			results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+		} catch (final RuntimeException e) {
+			session.close();
+			throw e;
+		}
+
+		this.transaction = transaction;
+		this.results = results;
+		this.rows = null;
+	}
+
+	/**
+	 * Constructor specifying the already selected {@code rows} to iterate
+	 * over. A row is either an array of values or a single value.
+	 * 
+	 * @param rows
+	 *            the selected rows
+	 */
+	public HibernateScrollIterator(final List<?> rows) {
+		this.session = null;
+		this.transaction = null;
+		this.results = null;
+		this.rows = rows.iterator();
+		this.fetched = false;
+		this.hasNext = false;
+		this.closed = false;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			return false;
+		} else if (!fetched) {
+			hasNext = rows == null ? results.next() : rows.hasNext();
+			fetched = true;
+
+			// release the resources as soon as possible
+			if (!hasNext) {
+				close();
+			}
+		}
+
+		return hasNext;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		fetched = false;
+		if (rows == null) {
+			return convert(results.get());
+		}
+
+		final Object row = rows.next();
+		return convert(row instanceof Object[] ? (Object[]) row
+				: new Object[] { row });
+	}
+
+	/**
+	 * Converts the selected row to the value returned by the iterator. By
+	 * default a row with a single value is converted to the value, whereby
+	 * any other row is returned as array.
+	 * 
+	 * @param row
+	 *            the selected row
+	 * 
+	 * @return the value returned by the iterator
+	 */
+	@SuppressWarnings("unchecked")
+	protected T convert(final Object[] row) {
+		return (T) (row.length == 1 ? row[0] : row);
+	}
+
+	@Override
+	public void remove() {
+		throw new IllegalStateException("Remove is not supported.");
+	}
+
+	/**
+	 * Closes the cursor and the session, if any. The method can be called
+	 * several times.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		hasNext = false;
+
+		if (rows != null) {
+			return;
+		}
+
+		try {
+			results.close();
+			transaction.commit();
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Checks if the iterator is closed.
+	 * 
+	 * @return {@code true} if the iterator is closed, otherwise {@code false}
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+}
@@ -1,10 +1,24 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 
 import net.meisen.dissertation.config.xslt.DefaultValues;
 import net.meisen.dissertation.exceptions.GeneralException;
@@ -26,15 +40,30 @@ import org.hibernate.Transaction;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
 import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.EntityKey;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jdbc.Work;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.Index;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
 /**
- * A base implementation for caches using {@code Hibernate}.
+ * A base implementation for caches using {@code Hibernate}. Changes are
+ * written by one thread at a time, in the order those were requested (see
+ * {@link #saveMap(Map, Serializable)}), whereas reads are performed in
+ * parallel using a session of their own, i.e. a connection of the pool.
+ * Only if persistency is disabled, reads have to use the session keeping
+ * the not yet committed changes and are therefore serialized with the
+ * writes.
  * 
  * @author pmeisen
  * 
@@ -46,6 +75,18 @@ public abstract class HibernateSessionManager<T extends Serializable>
 	private final static Logger LOG = LoggerFactory
 			.getLogger(HibernateSessionManager.class);
 
+	/**
+	 * The maximal amount of identifiers used within one {@code IN}-list, if
+	 * the dialect does not define a smaller limit.
+	 */
+	public final static int MAX_IN_LIST_SIZE = 500;
+
+	/**
+	 * The name of the table keeping the fingerprints of the schemas of the
+	 * tables known to be current (see {@link HibernateSchemaMode#TRUSTED}).
+	 */
+	public final static String SCHEMA_MARKER_TABLE = "tida_schema";
+
 	/**
 	 * A wrapper for a session and transaction. The wrapper is used to bundle
 	 * the commits and closes for the {@code Session} and the
@@ -59,9 +100,10 @@ public abstract class HibernateSessionManager<T extends Serializable>
 	 */
 	protected final static class SessionTransactionWrapper {
 		private final Session session;
-		private final Transaction transaction;
 		private final int commitSize;
 
+		private Transaction transaction;
+
 		private int statements;
 
 		/**
@@ -96,10 +138,21 @@ public abstract class HibernateSessionManager<T extends Serializable>
 			if (commitSize < 1) {
 				close();
 			} else if (statements % commitSize == 0) {
-				this.transaction.commit();
+				commit();
 			}
 		}
 
+		/**
+		 * Commits the current transaction and starts a new one. The
+		 * first-level cache of the session is cleared, so that the committed
+		 * entities are not kept in memory.
+		 */
+		public void commit() {
+			this.transaction.commit();
+			this.session.clear();
+			this.transaction = session.beginTransaction();
+		}
+
 		/**
 		 * Gets the transaction of {@code this}.
 		 * 
@@ -140,16 +193,22 @@ public abstract class HibernateSessionManager<T extends Serializable>
 	@Qualifier(DefaultValues.EXCEPTIONREGISTRY_ID)
 	protected IExceptionRegistry exceptionRegistry;
 
-	private boolean initialized;
+	private volatile boolean initialized;
 	private String entityName;
 	private int commitSize;
 
-	private boolean persistency;
+	private volatile boolean persistency;
+	private final ReentrantLock writeLock;
 
+	private HibernateFactoryRegistry.Key registryKey;
 	private SessionFactory factory;
 	private Dialect dialect;
+	private String identifierPropertyName;
+	private HibernateMapStatement upsertStatement;
+	private HibernateMapStatement insertStatement;
 
 	private SessionTransactionWrapper currentWrapper;
+	private HibernateWriteBehindQueue<T> writeBehindQueue;
 
 	/**
 	 * Default constructor.
@@ -160,8 +219,10 @@ public abstract class HibernateSessionManager<T extends Serializable>
 
 		this.persistency = true;
 		this.commitSize = -1;
+		this.writeLock = new ReentrantLock(true);
 
 		this.currentWrapper = null;
+		this.writeBehindQueue = null;
 	}
 
 	@Override
@@ -199,10 +260,29 @@ public abstract class HibernateSessionManager<T extends Serializable>
 
 		// get the name of the entity
 		this.entityName = createEntityName(model);
-		this.dialect = determineDialect();
+		this.registryKey = HibernateFactoryRegistry.register(getConfig());
+		try {
+			this.dialect = determineDialect();
+
+			// create the factory
+			beforeCreateFactory();
+			this.factory = createFactory();
+			afterCreateFactory(this.factory);
+			this.identifierPropertyName = factory.getClassMetadata(entityName)
+					.getIdentifierPropertyName();
+		} catch (final RuntimeException e) {
+			HibernateFactoryRegistry.unregister(this.registryKey);
+			this.registryKey = null;
+			throw e;
+		}
 
-		// create the factory
-		this.factory = createFactory();
+		// create the write-behind queue if needed
+		if (getConfig().isWriteBehind()) {
+			this.writeBehindQueue = new HibernateWriteBehindQueue<T>(this,
+					getConfig().getWriteBehindBatchSize(), getConfig()
+							.getWriteBehindLatency());
+			this.writeBehindQueue.start();
+		}
 
 		// log the init
 		if (LOG.isTraceEnabled()) {
@@ -227,15 +307,22 @@ public abstract class HibernateSessionManager<T extends Serializable>
 	}
 
 	/**
-	 * Determines the dialect of the underlying database used.
+	 * Determines the dialect of the underlying database used. The dialect is
+	 * only detected once for a database, i.e. it is kept by the
+	 * {@code HibernateFactoryRegistry}.
 	 * 
 	 * @return the used {@code Dialect} or {@code null} if no dialect can be
 	 *         determined
 	 */
 	protected Dialect determineDialect() {
+		final Dialect cached = HibernateFactoryRegistry
+				.getDialect(registryKey);
+		if (cached != null) {
+			return cached;
+		}
 
-		// define the mappings using the dialect and create a new factory
-		final SessionFactory fac = createUnmappedFactory();
+		// detect the dialect using an unmapped factory
+		final SessionFactory fac = acquireUnmappedFactory();
 
 		final Dialect dialect;
 		if (fac instanceof SessionFactoryImplementor) {
@@ -243,11 +330,67 @@ public abstract class HibernateSessionManager<T extends Serializable>
 		} else {
 			dialect = null;
 		}
-		fac.close();
+		releaseUnmappedFactory(fac);
 
+		HibernateFactoryRegistry.setDialect(registryKey, dialect);
 		return dialect;
 	}
 
+	/**
+	 * Gets an unmapped factory (see {@link #createUnmappedFactory()}). The
+	 * factory is shared with all the other managers using the same database,
+	 * as long as one of those is initialized (see
+	 * {@link HibernateFactoryRegistry}). The factory has to be handed back
+	 * using {@link #releaseUnmappedFactory(SessionFactory)}.
+	 * 
+	 * @return an unmapped factory
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the factory cannot be created
+	 */
+	protected SessionFactory acquireUnmappedFactory()
+			throws HibernateSessionManagerException {
+		final SessionFactory shared = HibernateFactoryRegistry
+				.getUnmappedFactory(getRegistryKey());
+		if (shared != null) {
+			return shared;
+		}
+
+		final SessionFactory fac = createUnmappedFactory();
+		HibernateFactoryRegistry.offerUnmappedFactory(getRegistryKey(), fac);
+		return fac;
+	}
+
+	/**
+	 * Hands back a factory retrieved by {@link #acquireUnmappedFactory()}.
+	 * The factory is closed, if it is not shared.
+	 * 
+	 * @param fac
+	 *            the factory to be handed back
+	 */
+	protected void releaseUnmappedFactory(final SessionFactory fac) {
+		if (!HibernateFactoryRegistry.isUnmappedFactory(getRegistryKey(),
+				fac)) {
+			fac.close();
+		}
+	}
+
+	/**
+	 * Gets the key used to access the {@code HibernateFactoryRegistry}, i.e.
+	 * the connection-settings of the configuration.
+	 * 
+	 * @return the key used to access the registry
+	 */
+	protected HibernateFactoryRegistry.Key getRegistryKey() {
+		if (registryKey != null) {
+			return registryKey;
+		} else if (getConfig() != null) {
+			return HibernateFactoryRegistry.createKey(getConfig());
+		} else {
+			return null;
+		}
+	}
+
 	/**
 	 * Creates an unmapped factory. The factory is mainly used to fire a single
 	 * statement or to determine settings. It can not be used to manipulate or
@@ -262,6 +405,10 @@ public abstract class HibernateSessionManager<T extends Serializable>
 			throws HibernateSessionManagerException {
 		final Map<String, String> override = new HashMap<String, String>();
 		override.put(HibernateConfig.PROP_MAXPOOLSIZE, "1");
+		override.put(HibernateConfig.PROP_MINIDLE, "0");
+
+		// there is nothing mapped, i.e. nothing to be updated
+		override.put(HibernateConfig.PROP_HBM2DDL, "none");
 
 		final HibernateConfig config = getConfig();
 
@@ -312,9 +459,42 @@ public abstract class HibernateSessionManager<T extends Serializable>
 			final Configuration hibernateConfig = config
 					.createHibernateConfig();
 
-			// define the mappings using the dialect and create a new factory
+			// define the mappings using the dialect
 			defineMappings(hibernateConfig, dialect);
-			return hibernateConfig.buildSessionFactory(builder.build());
+
+			// skip the update of the schema, if the tables are current
+			final String fingerprint;
+			if (HibernateSchemaMode.TRUSTED.equals(config.getSchemaMode())) {
+				fingerprint = createSchemaFingerprint(hibernateConfig);
+			} else {
+				fingerprint = null;
+			}
+			final boolean current = fingerprint != null
+					&& isSchemaCurrent(fingerprint);
+			if (current) {
+				hibernateConfig.setProperty(HibernateConfig.PROP_HBM2DDL,
+						"none");
+				builder.applySetting(HibernateConfig.PROP_HBM2DDL, "none");
+			}
+
+			// create a new factory
+			final SessionFactory factory = hibernateConfig
+					.buildSessionFactory(builder.build());
+			if (fingerprint != null && !current) {
+				markSchema(fingerprint);
+			}
+
+			// create the native statements for the mapped entity
+			this.upsertStatement = createUpsertStatement(factory,
+					hibernateConfig);
+			this.insertStatement = HibernateMapStatement.createInsert(
+					hibernateConfig.getClassMapping(getEntityName()), dialect);
+			if (LOG.isTraceEnabled()) {
+				LOG.trace("Using upsert-statement '" + upsertStatement
+						+ "' for entity '" + getEntityName() + "'.");
+			}
+
+			return factory;
 		} catch (final Throwable t) {
 
 			// catch any exception
@@ -325,6 +505,480 @@ public abstract class HibernateSessionManager<T extends Serializable>
 		}
 	}
 
+	/**
+	 * Creates the statement used to upsert the entity (see
+	 * {@link HibernateMapStatement#createUpsert(PersistentClass, Dialect, Mapping, DatabaseMetaData)}
+	 * ). The meta-data of the database is read using a connection of the
+	 * specified {@code factory}.
+	 * 
+	 * @param factory
+	 *            the factory of the entity
+	 * @param hibernateConfig
+	 *            the configuration defining the mapping of the entity
+	 * 
+	 * @return the created statement or {@code null} if the database does not
+	 *         support upserts
+	 */
+	protected HibernateMapStatement createUpsertStatement(
+			final SessionFactory factory, final Configuration hibernateConfig) {
+		final PersistentClass clazz = hibernateConfig
+				.getClassMapping(getEntityName());
+		final Mapping mapping = hibernateConfig.buildMapping();
+
+		final HibernateMapStatement[] res = new HibernateMapStatement[1];
+		final Session session = factory.openSession();
+		try {
+			session.doWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					res[0] = HibernateMapStatement.createUpsert(clazz,
+							dialect, mapping, connection.getMetaData());
+				}
+			});
+		} finally {
+			session.close();
+		}
+
+		return res[0];
+	}
+
+	/**
+	 * Creates a fingerprint of the schema of the table mapped for the entity,
+	 * i.e. the fingerprint changes whenever the mapping defines other columns,
+	 * types or indexes.
+	 * 
+	 * @param hibernateConfig
+	 *            the configuration defining the mapping of the entity
+	 * 
+	 * @return the fingerprint or {@code null} if none can be created
+	 */
+	protected String createSchemaFingerprint(
+			final Configuration hibernateConfig) {
+		if (dialect == null) {
+			return null;
+		}
+
+		final Mapping mapping = hibernateConfig.buildMapping();
+		final Table table = hibernateConfig.getClassMapping(getEntityName())
+				.getTable();
+
+		final StringBuilder sb = new StringBuilder(table.getName());
+		final Iterator<?> columns = table.getColumnIterator();
+		while (columns.hasNext()) {
+			final Column column = (Column) columns.next();
+			sb.append(';').append(column.getName()).append(':')
+					.append(column.getSqlType(dialect, mapping))
+					.append(column.isNullable() ? "" : "!");
+		}
+		final Iterator<?> indexes = table.getIndexIterator();
+		while (indexes.hasNext()) {
+			sb.append(";#").append(((Index) indexes.next()).getName());
+		}
+
+		return UUID.nameUUIDFromBytes(sb.toString().getBytes()).toString();
+	}
+
+	/**
+	 * Checks if the table of the entity exists and if the schema-marker table
+	 * states that the table is current, i.e. that the {@code fingerprint} of
+	 * the table is the marked one.
+	 * 
+	 * @param fingerprint
+	 *            the fingerprint of the mapped schema
+	 * 
+	 * @return {@code true} if the table is current, otherwise {@code false}
+	 */
+	protected boolean isSchemaCurrent(final String fingerprint) {
+		final String entityName = getEntityName();
+		final boolean[] current = new boolean[] { false };
+
+		try {
+			doUnmappedWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					final DatabaseMetaData meta = connection.getMetaData();
+					if (!existsTable(meta, SCHEMA_MARKER_TABLE)
+							|| !existsTable(meta, entityName)) {
+						return;
+					}
+
+					final PreparedStatement stmt = connection
+							.prepareStatement("SELECT "
+									+ quote("fingerprint") + " FROM "
+									+ quote(SCHEMA_MARKER_TABLE) + " WHERE "
+									+ quote("entity") + " = ?");
+					try {
+						stmt.setString(1, entityName);
+						final ResultSet rs = stmt.executeQuery();
+						try {
+							current[0] = rs.next()
+									&& fingerprint.equals(rs.getString(1));
+						} finally {
+							rs.close();
+						}
+					} finally {
+						stmt.close();
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Unable to read the schema-marker of '" + entityName
+						+ "', the schema is updated.", e);
+			}
+			return false;
+		}
+
+		if (current[0] && LOG.isTraceEnabled()) {
+			LOG.trace("Schema of '" + entityName
+					+ "' is current, skipping the update.");
+		}
+
+		return current[0];
+	}
+
+	/**
+	 * Marks the table of the entity to be current, i.e. the
+	 * {@code fingerprint} is written into the schema-marker table. The table
+	 * is created if needed.
+	 * 
+	 * @param fingerprint
+	 *            the fingerprint of the mapped schema
+	 */
+	protected void markSchema(final String fingerprint) {
+		final String entityName = getEntityName();
+
+		try {
+			doUnmappedWork(new Work() {
+
+				@Override
+				public void execute(final Connection connection)
+						throws SQLException {
+					if (!existsTable(connection.getMetaData(),
+							SCHEMA_MARKER_TABLE)) {
+						final Statement stmt = connection.createStatement();
+						try {
+							stmt.executeUpdate("CREATE TABLE "
+									+ quote(SCHEMA_MARKER_TABLE) + " ("
+									+ quote("entity")
+									+ " VARCHAR(255) NOT NULL PRIMARY KEY, "
+									+ quote("fingerprint")
+									+ " VARCHAR(64) NOT NULL)");
+						} finally {
+							stmt.close();
+						}
+					}
+
+					PreparedStatement stmt = connection
+							.prepareStatement("DELETE FROM "
+									+ quote(SCHEMA_MARKER_TABLE) + " WHERE "
+									+ quote("entity") + " = ?");
+					try {
+						stmt.setString(1, entityName);
+						stmt.executeUpdate();
+					} finally {
+						stmt.close();
+					}
+
+					stmt = connection.prepareStatement("INSERT INTO "
+							+ quote(SCHEMA_MARKER_TABLE) + " ("
+							+ quote("entity") + ", " + quote("fingerprint")
+							+ ") VALUES (?, ?)");
+					try {
+						stmt.setString(1, entityName);
+						stmt.setString(2, fingerprint);
+						stmt.executeUpdate();
+					} finally {
+						stmt.close();
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Unable to write the schema-marker of '"
+						+ entityName + "'.", e);
+			}
+		}
+	}
+
+	/**
+	 * Method called prior to the creation of the factory, e.g. to prepare the
+	 * database for the mapping. By default nothing is done.
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the preparation fails
+	 */
+	protected void beforeCreateFactory()
+			throws HibernateSessionManagerException {
+		// nothing to do by default
+	}
+
+	/**
+	 * Method called after the factory was created, e.g. to migrate data of
+	 * the database. By default nothing is done.
+	 * 
+	 * @param factory
+	 *            the created factory
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the post-processing fails
+	 */
+	protected void afterCreateFactory(final SessionFactory factory)
+			throws HibernateSessionManagerException {
+		// nothing to do by default
+	}
+
+	/**
+	 * Executes the specified {@code work} within a transaction of a
+	 * {@code Session} opened from an unmapped factory (see
+	 * {@link #acquireUnmappedFactory()}).
+	 * 
+	 * @param work
+	 *            the work to be executed
+	 */
+	protected void doUnmappedWork(final Work work) {
+		final SessionFactory fac = acquireUnmappedFactory();
+		try {
+			doWork(fac, work);
+		} finally {
+			releaseUnmappedFactory(fac);
+		}
+	}
+
+	/**
+	 * Executes the specified {@code work} within a transaction of a
+	 * {@code Session} opened from the specified {@code factory}.
+	 * 
+	 * @param factory
+	 *            the factory to open the session from
+	 * @param work
+	 *            the work to be executed
+	 */
+	protected void doWork(final SessionFactory factory, final Work work) {
+		final Session session = factory.openSession();
+		final Transaction transaction = session.beginTransaction();
+		try {
+			session.doWork(work);
+			transaction.commit();
+		} catch (final RuntimeException e) {
+			transaction.rollback();
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Executes the specified {@code work} within the current
+	 * {@code SessionTransactionWrapper}, e.g. to modify single columns using a
+	 * native statement. All the pending changes of the write-behind queue are
+	 * written prior to the execution.
+	 * 
+	 * @param work
+	 *            the work to be executed
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the manager isn't initialized
+	 */
+	protected void doWork(final Work work)
+			throws HibernateSessionManagerException {
+		doWork(work, true);
+	}
+
+	/**
+	 * Executes the specified {@code work} within the current
+	 * {@code SessionTransactionWrapper}. The changes of the session are
+	 * flushed prior to the execution, so that those are visible to the
+	 * {@code work}.
+	 * 
+	 * @param work
+	 *            the work to be executed
+	 * @param flushWriteBehind
+	 *            {@code true} if the pending changes of the write-behind queue
+	 *            have to be written prior to the execution, {@code false} if
+	 *            the caller checked the pending changes already (see
+	 *            {@link #getPendingMap(Serializable)})
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the manager isn't initialized
+	 */
+	protected void doWork(final Work work, final boolean flushWriteBehind)
+			throws HibernateSessionManagerException {
+		writeLock.lock();
+		try {
+			if (flushWriteBehind) {
+				flushWriteBehind();
+			}
+
+			final SessionTransactionWrapper wrapper = w();
+			wrapper.getSession().flush();
+			wrapper.getSession().doWork(work);
+			wrapper.statementHandled();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Executes the specified read-only {@code work} using a session retrieved
+	 * by {@link #r()}, i.e. in parallel to other reads. The pending changes of
+	 * the write-behind queue are not written, i.e. the caller has to check
+	 * those (see {@link #getPendingMap(Serializable)}).
+	 * 
+	 * @param work
+	 *            the work to be executed
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the manager isn't initialized
+	 */
+	protected void doReadWork(final Work work)
+			throws HibernateSessionManagerException {
+		final SessionTransactionWrapper wrapper = r();
+		try {
+			wrapper.getSession().flush();
+			wrapper.getSession().doWork(work);
+		} finally {
+			releaseReader(wrapper);
+		}
+	}
+
+	/**
+	 * Gets the name of the table used to keep the data of a table, while it
+	 * is migrated to a new layout.
+	 * 
+	 * @return the name of the legacy table
+	 */
+	protected String getLegacyEntityName() {
+		return getEntityName() + "_legacy";
+	}
+
+	/**
+	 * Checks if the specified table exists.
+	 * 
+	 * @param meta
+	 *            the meta-data of the database
+	 * @param table
+	 *            the name of the table
+	 * 
+	 * @return {@code true} if the table exists, otherwise {@code false}
+	 * 
+	 * @throws SQLException
+	 *             if the meta-data cannot be read
+	 */
+	protected boolean existsTable(final DatabaseMetaData meta,
+			final String table) throws SQLException {
+		final ResultSet rs = meta.getTables(null, null, table, null);
+		try {
+			return rs.next();
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Checks if the specified column of the table is character based.
+	 * 
+	 * @param meta
+	 *            the meta-data of the database
+	 * @param table
+	 *            the name of the table
+	 * @param column
+	 *            the name of the column
+	 * 
+	 * @return {@code true} if the column exists and is character based,
+	 *         otherwise {@code false}
+	 * 
+	 * @throws SQLException
+	 *             if the meta-data cannot be read
+	 */
+	protected boolean isCharacterColumn(final DatabaseMetaData meta,
+			final String table, final String column) throws SQLException {
+		final ResultSet rs = meta.getColumns(null, null, table, column);
+		try {
+			if (!rs.next()) {
+				return false;
+			}
+
+			switch (rs.getInt("DATA_TYPE")) {
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+				return true;
+			default:
+				return false;
+			}
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Checks if the specified {@code sqlType} is a binary type.
+	 * 
+	 * @param sqlType
+	 *            the type to be checked
+	 * 
+	 * @return {@code true} if the type is binary, otherwise {@code false}
+	 * 
+	 * @see Types
+	 */
+	protected boolean isBinary(final int sqlType) {
+		return sqlType == Types.BINARY || sqlType == Types.VARBINARY
+				|| sqlType == Types.LONGVARBINARY || sqlType == Types.BLOB;
+	}
+
+	/**
+	 * Renames the specified table.
+	 * 
+	 * @param connection
+	 *            the connection to be used
+	 * @param table
+	 *            the name of the table to be renamed
+	 * @param newName
+	 *            the new name of the table
+	 * 
+	 * @throws SQLException
+	 *             if the table cannot be renamed
+	 */
+	protected void renameTable(final Connection connection,
+			final String table, final String newName) throws SQLException {
+		final Statement stmt = connection.createStatement();
+		try {
+			stmt.executeUpdate("ALTER TABLE " + quote(table) + " RENAME TO "
+					+ quote(newName));
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Drops the specified table.
+	 * 
+	 * @param connection
+	 *            the connection to be used
+	 * @param table
+	 *            the name of the table to be dropped
+	 * 
+	 * @throws SQLException
+	 *             if the table cannot be dropped
+	 */
+	protected void dropTable(final Connection connection, final String table)
+			throws SQLException {
+		final Statement stmt = connection.createStatement();
+		try {
+			stmt.executeUpdate("DROP TABLE " + quote(table));
+		} finally {
+			stmt.close();
+		}
+	}
+
 	/**
 	 * Quotes the {@code name} using the {@code Dialect} of {@code this}.
 	 * 
@@ -373,63 +1027,97 @@ public abstract class HibernateSessionManager<T extends Serializable>
 	}
 
 	@Override
-	public synchronized boolean setPersistency(final boolean enable) {
+	public boolean setPersistency(final boolean enable) {
 
 		/*
 		 * Make sure that there is no other thread working with the cache
 		 * currently.
 		 */
-		final boolean oldPersistency = this.persistency;
-		this.persistency = enable;
-
-		// if not initialized we are done here
-		if (!initialized) {
+		writeLock.lock();
+		try {
+			final boolean oldPersistency = this.persistency;
 			this.persistency = enable;
-			return oldPersistency;
-		}
 
-		// nothing to do, nothing was changed
-		if (oldPersistency == this.persistency) {
-			// nothing
-		}
-		/*
-		 * Persistency was enabled and is disabled now.
-		 */
-		else if (oldPersistency) {
-			// nothing to do
-		}
-		/*
-		 * Persistency was disabled and is enabled now, write the not persisted
-		 * once.
-		 */
-		else {
-			if (this.currentWrapper != null) {
+			// if not initialized we are done here
+			if (!initialized) {
+				this.persistency = enable;
+				return oldPersistency;
+			}
+
+			// write everything pending, to keep the order of the writes
+			flushWriteBehind();
 
-				// reset the wrapper
-				this.currentWrapper.close();
-				this.currentWrapper = null;
+			// nothing to do, nothing was changed
+			if (oldPersistency == this.persistency) {
+				// nothing
+			}
+			/*
+			 * Persistency was enabled and is disabled now.
+			 */
+			else if (oldPersistency) {
+				// nothing to do
+			}
+			/*
+			 * Persistency was disabled and is enabled now, write the not
+			 * persisted once.
+			 */
+			else {
+				if (this.currentWrapper != null) {
+
+					// reset the wrapper
+					this.currentWrapper.close();
+					this.currentWrapper = null;
+				}
 			}
-		}
 
-		return oldPersistency;
+			return oldPersistency;
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
 	@Override
-	public synchronized void release() {
-		if (!this.initialized) {
-			return;
-		}
+	public void release() {
+		writeLock.lock();
+		try {
+			if (!this.initialized) {
+				return;
+			}
 
-		// make sure everything is persisted and closed
-		setPersistency(true);
-		if (this.currentWrapper != null) {
-			throw new IllegalStateException(
-					"The currentWrapper should never be not null here.");
-		}
+			try {
 
-		// close the factory
-		this.factory.close();
-		this.initialized = false;
+				// make sure everything is persisted and closed
+				setPersistency(true);
+				if (this.currentWrapper != null) {
+					throw new IllegalStateException("The currentWrapper "
+							+ "should never be not null here.");
+				}
+
+				// stop the write-behind queue and report a failure
+				if (this.writeBehindQueue != null) {
+					try {
+						this.writeBehindQueue.shutdown();
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						exceptionRegistry.throwException(
+								HibernateSessionManagerException.class, 1006,
+								e, getEntityName());
+					}
+					checkWriteBehind();
+				}
+			} finally {
+
+				// close the factory, even if something could not be written
+				this.writeBehindQueue = null;
+				this.factory.close();
+				this.initialized = false;
+
+				HibernateFactoryRegistry.unregister(this.registryKey);
+				this.registryKey = null;
+			}
+		} finally {
+			writeLock.unlock();
+		}
 
 		// log the closing
 		if (LOG.isTraceEnabled()) {
@@ -453,8 +1141,8 @@ public abstract class HibernateSessionManager<T extends Serializable>
 			return;
 		}
 
-		// create a new factory, because the one used might be closed
-		final SessionFactory fac = createUnmappedFactory();
+		// use an unmapped factory, because the one used might be closed
+		final SessionFactory fac = acquireUnmappedFactory();
 
 		// open the session and drop the table
 		try {
@@ -476,7 +1164,7 @@ public abstract class HibernateSessionManager<T extends Serializable>
 		}
 
 		// close the factory again
-		fac.close();
+		releaseUnmappedFactory(fac);
 	}
 
 	/**
@@ -485,13 +1173,16 @@ public abstract class HibernateSessionManager<T extends Serializable>
 	 * @return the amount of the cached entities
 	 */
 	public int size() {
-		final SessionTransactionWrapper wrapper = w();
-		final int res = Numbers.castToInt((Long) wrapper.session
-				.createCriteria(entityName)
-				.setProjection(Projections.rowCount()).uniqueResult());
-		wrapper.statementHandled();
+		flushWriteBehind();
 
-		return res;
+		final SessionTransactionWrapper wrapper = r();
+		try {
+			return Numbers.castToInt((Long) wrapper.session
+					.createCriteria(entityName)
+					.setProjection(Projections.rowCount()).uniqueResult());
+		} finally {
+			releaseReader(wrapper);
+		}
 	}
 
 	/**
@@ -505,8 +1196,188 @@ public abstract class HibernateSessionManager<T extends Serializable>
 		return dialect;
 	}
 
+	/**
+	 * Checks if persistency is enabled, i.e. if every change is persisted
+	 * immediately.
+	 * 
+	 * @return {@code true} if persistency is enabled, otherwise {@code false}
+	 */
+	protected boolean isPersistency() {
+		return persistency;
+	}
+
+	/**
+	 * Creates a {@code HibernateBulkLoader} used to insert huge amounts of
+	 * entities of {@code this}, bypassing the first-level cache of a session.
+	 * 
+	 * @param batchSize
+	 *            the amount of entities send within one {@code JDBC} batch
+	 * 
+	 * @return the created loader or {@code null} if no loader can be created
+	 *         for the used database
+	 * 
+	 * @throws SQLException
+	 *             if the loader cannot be created
+	 */
+	protected HibernateBulkLoader createBulkLoader(final int batchSize)
+			throws SQLException {
+		if (!initialized) {
+			exceptionRegistry.throwException(
+					HibernateSessionManagerException.class, 1002);
+			return null;
+		} else if (insertStatement == null) {
+			return null;
+		}
+
+		// make sure that nothing is pending
+		flushWriteBehind();
+		return new HibernateBulkLoader(factory, insertStatement, batchSize,
+				commitSize);
+	}
+
+	/**
+	 * Checks if the entities are written using a single native statement,
+	 * i.e. values of the entities (e.g. a {@code HibernateLobBuffer}) are
+	 * bound directly to the statement (see {@link HibernateMapStatement}).
+	 * 
+	 * @return {@code true} if a native statement is used, otherwise
+	 *         {@code false}
+	 */
+	protected boolean isNativeUpsert() {
+		return upsertStatement != null;
+	}
+
+	/**
+	 * Gets the name of the property used as identifier of the entity.
+	 * 
+	 * @return the name of the identifier property
+	 */
+	protected String getIdentifierPropertyName() {
+		return identifierPropertyName;
+	}
+
+	/**
+	 * Writes all the entities pending within the write-behind queue. The method
+	 * blocks until everything is written.
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the pending entities cannot be written, those are kept
+	 *             pending, or if the thread is interrupted
+	 */
+	protected void flushWriteBehind() throws HibernateSessionManagerException {
+		final HibernateWriteBehindQueue<T> queue = this.writeBehindQueue;
+		if (queue != null) {
+			try {
+				queue.flush();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				exceptionRegistry.throwException(
+						HibernateSessionManagerException.class, 1006, e,
+						getEntityName());
+			}
+			checkWriteBehind();
+		}
+	}
+
+	/**
+	 * Checks if the write-behind queue failed to write a batch and throws an
+	 * exception if so.
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if a batch could not be written
+	 */
+	protected void checkWriteBehind() throws HibernateSessionManagerException {
+		final HibernateWriteBehindQueue<T> queue = this.writeBehindQueue;
+		final Throwable t = queue == null ? null : queue.pollFailure();
+		if (t != null) {
+			exceptionRegistry.throwException(
+					HibernateSessionManagerException.class, 1004, t,
+					getEntityName(), t.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the specified {@code batch} of entities within a single
+	 * transaction. The method is called by the write-behind queue.
+	 * 
+	 * @param batch
+	 *            the entities to be written
+	 */
+	protected void writeBatch(
+			final List<HibernateWriteBehindQueue.Entry<T>> batch) {
+		final String entityName = getEntityName();
+
+		final Session session = factory.openSession();
+		final Transaction transaction = session.beginTransaction();
+		try {
+			final List<Map<String, Object>> upserts = new ArrayList<Map<String, Object>>();
+			for (final HibernateWriteBehindQueue.Entry<T> entry : batch) {
+				if (entry.getId() != null && upsertStatement != null) {
+					upserts.add(entry.getMap());
+				} else {
+					persistMap(session, entityName, entry.getMap(),
+							entry.getId());
+				}
+			}
+
+			// write all the upserts within one JDBC batch
+			if (!upserts.isEmpty()) {
+				session.flush();
+				upsertStatement.execute(session, upserts);
+			}
+
+			transaction.commit();
+		} catch (final RuntimeException e) {
+			transaction.rollback();
+			throw e;
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Creates the key used to identify an entity within the write-behind
+	 * queue.
+	 * 
+	 * @param map
+	 *            the entity
+	 * @param id
+	 *            the identifier of the entity, might be {@code null}
+	 * 
+	 * @return the key to be used
+	 */
+	@SuppressWarnings("unchecked")
+	protected Object createPendingKey(final Map<String, Object> map,
+			final T id) {
+		final Object key = id == null ? map.get(getIdentifierPropertyName())
+				: id;
+		return key == null ? new Object() : createLookupKey((T) key);
+	}
+
+	/**
+	 * Creates the key used to identify the entity of the specified {@code id}
+	 * within in-memory structures, i.e. the returned key must implement
+	 * {@code equals} and {@code hashCode} based on the value of the
+	 * identifier. By default the identifier itself is returned, a byte-array
+	 * is wrapped by a {@code ByteBuffer}.
+	 * 
+	 * @param id
+	 *            the identifier to create the key for
+	 * 
+	 * @return the key to be used
+	 */
+	protected Object createLookupKey(final T id) {
+		if (id instanceof byte[]) {
+			return ByteBuffer.wrap((byte[]) id);
+		} else {
+			return id;
+		}
+	}
+
 	/**
 	 * Gets the current {@code SessionTransactionWrapper} or creates a new one.
+	 * The method is used to write changes and must only be called by the
+	 * thread holding the write-lock of {@code this}.
 	 * 
 	 * @return the current {@code SessionTransactionWrapper} or creates a new
 	 *         one
@@ -537,6 +1408,103 @@ public abstract class HibernateSessionManager<T extends Serializable>
 		}
 	}
 
+	/**
+	 * Acquires the write-lock of {@code this}. The lock is held by any thread
+	 * writing entities, i.e. a concrete implementation must use it (instead
+	 * of a monitor of its own) to guard state, which is modified while
+	 * entities are written. Otherwise the locks might be acquired in
+	 * different orders by different threads. The lock is reentrant and must
+	 * be released using {@link #unlock()}.
+	 */
+	protected void lock() {
+		writeLock.lock();
+	}
+
+	/**
+	 * Releases the write-lock acquired by {@link #lock()}.
+	 */
+	protected void unlock() {
+		writeLock.unlock();
+	}
+
+	/**
+	 * Gets a {@code SessionTransactionWrapper} used to read entities. If
+	 * persistency is enabled, a new wrapper is created, i.e. the read uses a
+	 * connection of its own and can be performed in parallel to other reads
+	 * and writes. Otherwise the wrapper keeping the not yet committed changes
+	 * is returned and the write-lock is acquired, until the wrapper is handed
+	 * back using {@link #releaseReader(SessionTransactionWrapper)}.
+	 * 
+	 * @return the {@code SessionTransactionWrapper} to read from
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the manager isn't initialized
+	 */
+	protected SessionTransactionWrapper r()
+			throws HibernateSessionManagerException {
+		final SessionTransactionWrapper wrapper = unitOfWork();
+		if (wrapper == null) {
+			return new SessionTransactionWrapper(factory, -1);
+		} else {
+			return wrapper;
+		}
+	}
+
+	/**
+	 * Gets the {@code SessionTransactionWrapper} keeping the not yet
+	 * committed changes, if persistency is disabled. The write-lock is
+	 * acquired if a wrapper is returned, i.e. the wrapper must be handed back
+	 * using {@link #releaseReader(SessionTransactionWrapper)}.
+	 * 
+	 * @return the wrapper of the pending unit of work, or {@code null} if
+	 *         persistency is enabled
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the manager isn't initialized
+	 */
+	protected SessionTransactionWrapper unitOfWork()
+			throws HibernateSessionManagerException {
+		if (!initialized) {
+			exceptionRegistry.throwException(
+					HibernateSessionManagerException.class, 1002);
+			return null;
+		} else if (!this.persistency) {
+			writeLock.lock();
+
+			// the persistency might have been changed while waiting
+			if (!this.persistency) {
+				try {
+					return w();
+				} catch (final RuntimeException e) {
+					writeLock.unlock();
+					throw e;
+				}
+			}
+			writeLock.unlock();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Hands back a {@code SessionTransactionWrapper} retrieved by
+	 * {@link #r()}. The wrapper must be handed back by the thread, which
+	 * retrieved it.
+	 * 
+	 * @param wrapper
+	 *            the wrapper to be handed back
+	 */
+	protected void releaseReader(final SessionTransactionWrapper wrapper) {
+		final boolean shared = wrapper == this.currentWrapper;
+		try {
+			wrapper.statementHandled();
+		} finally {
+			if (shared) {
+				writeLock.unlock();
+			}
+		}
+	}
+
 	/**
 	 * Creates the name of the entity for the concrete implementation and the
 	 * model the specified model. The value should be retrieved using
@@ -579,34 +1547,110 @@ public abstract class HibernateSessionManager<T extends Serializable>
 	/**
 	 * Saves the specified map using the specified {@code id}. If the identifier
 	 * is {@code null} the map will be inserted for sure, otherwise it will be
-	 * checked and updated.
+	 * checked and updated. Concurrent calls are handled one after another, in
+	 * the order of the calls.
 	 * 
 	 * @param map
 	 *            the record to be saved
 	 * @param id
 	 *            the id of the record
+	 * 
+	 * @return {@code true} if the map was written, {@code false} if it was
+	 *         enqueued to the write-behind queue, i.e. the values of the map
+	 *         are still referenced
 	 */
-	protected synchronized void saveMap(final Map<String, Object> map,
-			final T id) {
-		final String entityName = getEntityName();
-		final SessionTransactionWrapper wrapper = w();
+	protected boolean saveMap(final Map<String, Object> map, final T id) {
+		writeLock.lock();
+		try {
+
+			// enqueue the map if a write-behind queue is used
+			if (this.persistency && this.writeBehindQueue != null) {
+				checkWriteBehind();
+				try {
+					writeBehindQueue.enqueue(createPendingKey(map, id),
+							new HashMap<String, Object>(map), id);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					exceptionRegistry.throwException(
+							HibernateSessionManagerException.class, 1006, e,
+							getEntityName());
+				}
+				return false;
+			}
+
+			final SessionTransactionWrapper wrapper = w();
+			persistMap(wrapper.getSession(), getEntityName(), map, id);
+			wrapper.statementHandled();
+
+			return true;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Persists the specified map within the specified {@code session}. If the
+	 * identifier is {@code null} the map will be inserted for sure, otherwise
+	 * it will be checked and updated.
+	 * 
+	 * @param session
+	 *            the session to persist the map in
+	 * @param entityName
+	 *            the name of the entity
+	 * @param map
+	 *            the record to be saved
+	 * @param id
+	 *            the id of the record
+	 */
+	protected void persistMap(final Session session, final String entityName,
+			final Map<String, Object> map, final T id) {
+
+		// use a single native statement if possible
+		if (id != null && upsertStatement != null) {
+			upsertStatement.execute(session,
+					Collections.singletonList(map));
+			evict(session, entityName, id);
+			return;
+		}
 
 		// get the value
 		final boolean update;
 		if (id == null) {
 			update = false;
 		} else {
-			update = wrapper.getSession().get(entityName, id) != null;
+			update = session.get(entityName, id) != null;
 		}
 
 		// check if update has to be performed
 		if (update) {
-			wrapper.getSession().merge(entityName, map);
+			session.merge(entityName, map);
 		} else {
-			wrapper.getSession().save(entityName, map);
+			session.save(entityName, map);
 		}
+	}
 
-		wrapper.statementHandled();
+	/**
+	 * Removes the entity with the specified {@code id} from the persistence
+	 * context of the {@code session}, so that it is reloaded when accessed the
+	 * next time. Needed whenever the entity is modified bypassing the
+	 * {@code session}.
+	 * 
+	 * @param session
+	 *            the session to remove the entity from
+	 * @param entityName
+	 *            the name of the entity
+	 * @param id
+	 *            the identifier of the entity
+	 */
+	protected void evict(final Session session, final String entityName,
+			final T id) {
+		final SessionImplementor si = (SessionImplementor) session;
+		final EntityKey key = si.generateEntityKey(id, si.getFactory()
+				.getEntityPersister(entityName));
+		final Object entity = si.getPersistenceContext().getEntity(key);
+		if (entity != null) {
+			session.evict(entity);
+		}
 	}
 
 	/**
@@ -620,10 +1664,20 @@ public abstract class HibernateSessionManager<T extends Serializable>
 	@SuppressWarnings("unchecked")
 	protected final Map<String, Object> getMap(final T id) {
 		final String entityName = getEntityName();
-		final SessionTransactionWrapper wrapper = w();
 
-		final Object value = wrapper.getSession().get(entityName, id);
-		wrapper.statementHandled();
+		// check the not yet written entities first
+		final Map<String, Object> pending = getPendingMap(id);
+		if (pending != null) {
+			return pending;
+		}
+
+		final SessionTransactionWrapper wrapper = r();
+		final Object value;
+		try {
+			value = wrapper.getSession().get(entityName, id);
+		} finally {
+			releaseReader(wrapper);
+		}
 
 		if (value instanceof Map) {
 			return (Map<String, Object>) value;
@@ -633,18 +1687,185 @@ public abstract class HibernateSessionManager<T extends Serializable>
 	}
 
 	/**
-	 * Creates an iterator for the identifiers of the entities.
+	 * Gets the map for the specified {@code id}, which is pending within the
+	 * write-behind queue, i.e. not written yet.
+	 * 
+	 * @param id
+	 *            the identifier to be retrieved
+	 * 
+	 * @return a copy of the pending record or {@code null} if none is pending
+	 */
+	protected Map<String, Object> getPendingMap(final T id) {
+		final HibernateWriteBehindQueue<T> queue = this.writeBehindQueue;
+		if (queue != null) {
+			final Map<String, Object> pending = queue
+					.lookup(createLookupKey(id));
+			if (pending != null) {
+				return new HashMap<String, Object>(pending);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gets the maps for the specified {@code ids}. The maps are retrieved using
+	 * chunked {@code IN}-list queries, i.e. several entities are retrieved
+	 * using a single statement.
+	 * 
+	 * @param ids
+	 *            the identifiers to be retrieved
+	 * 
+	 * @return the records as maps associated to the lookup-key of the
+	 *         identifier (see {@link #createLookupKey(Serializable)}),
+	 *         identifiers without any record are not contained
+	 */
+	@SuppressWarnings("unchecked")
+	protected final Map<Object, Map<String, Object>> getMaps(
+			final Collection<T> ids) {
+		final String entityName = getEntityName();
+		final Map<Object, Map<String, Object>> res = new HashMap<Object, Map<String, Object>>();
+
+		// check the not yet written entities first
+		final HibernateWriteBehindQueue<T> queue = this.writeBehindQueue;
+		final Map<Object, T> missing = new LinkedHashMap<Object, T>();
+		for (final T id : ids) {
+			if (id == null) {
+				continue;
+			}
+
+			final Object key = createLookupKey(id);
+			final Map<String, Object> pending = queue == null ? null : queue
+					.lookup(key);
+			if (pending != null) {
+				res.put(key, new HashMap<String, Object>(pending));
+			} else {
+				missing.put(key, id);
+			}
+		}
+		if (missing.isEmpty()) {
+			return res;
+		}
+
+		final int chunkSize = getInListSize();
+		final String idProperty = getIdentifierPropertyName();
+
+		final SessionTransactionWrapper wrapper = r();
+		try {
+			final List<T> chunk = new ArrayList<T>(Math.min(chunkSize,
+					missing.size()));
+			final Iterator<T> it = missing.values().iterator();
+			while (it.hasNext()) {
+				chunk.add(it.next());
+
+				if (chunk.size() == chunkSize || !it.hasNext()) {
+					final List<Object> values = wrapper.getSession()
+							.createCriteria(entityName)
+							.add(Restrictions.in(idProperty, chunk)).list();
+					for (final Object value : values) {
+						if (value instanceof Map) {
+							final Map<String, Object> map = (Map<String, Object>) value;
+							res.put(createLookupKey((T) map.get(idProperty)),
+									map);
+						}
+					}
+					chunk.clear();
+				}
+			}
+		} finally {
+			releaseReader(wrapper);
+		}
+
+		return res;
+	}
+
+	/**
+	 * Gets the maximal amount of identifiers to be used within one
+	 * {@code IN}-list, i.e. the limit of the dialect or
+	 * {@link #MAX_IN_LIST_SIZE}, whichever is smaller.
+	 * 
+	 * @return the maximal amount of identifiers of an {@code IN}-list
+	 */
+	protected int getInListSize() {
+		final int limit = dialect == null ? 0 : dialect
+				.getInExpressionCountLimit();
+		return limit > 0 && limit < MAX_IN_LIST_SIZE ? limit
+				: MAX_IN_LIST_SIZE;
+	}
+
+	/**
+	 * Creates an iterator for the identifiers of the entities. The identifiers
+	 * are streamed using a forward-only cursor, i.e. those are not kept in
+	 * memory. The iterator should be closed if it is not exhausted.
 	 * 
 	 * @return an iterator for the identifiers of the entities
+	 * 
+	 * @see HibernateScrollIterator#close()
 	 */
-	protected Iterator<T> createIterator() {
-		final SessionTransactionWrapper wrapper = w();
+	protected HibernateScrollIterator<T> createIterator() {
+		return createScrollIterator("SELECT id FROM " + getEntityName());
+	}
+
+	/**
+	 * Creates a {@code HibernateScrollIterator} for the specified {@code hql}.
+	 * If persistency is disabled, the values are selected within the session
+	 * of the pending unit of work, i.e. the not yet committed changes are
+	 * visible but the values are kept in memory. Otherwise the values are
+	 * streamed using a session of its own (see
+	 * {@link #openStatelessSession()}).
+	 * 
+	 * @param hql
+	 *            the query selecting the values to iterate over
+	 * @param <I>
+	 *            the type of the iterated values
+	 * 
+	 * @return the created iterator
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the manager isn't initialized
+	 */
+	protected <I> HibernateScrollIterator<I> createScrollIterator(
+			final String hql) throws HibernateSessionManagerException {
+		flushWriteBehind();
+
+		final SessionTransactionWrapper wrapper = unitOfWork();
+		if (wrapper != null) {
+			try {
+				return new HibernateScrollIterator<I>(wrapper.getSession()
+						.createQuery(hql).setReadOnly(true).list());
+			} finally {
+				releaseReader(wrapper);
+			}
+		}
+
+		return new HibernateScrollIterator<I>(openStatelessSession(), hql,
+				getConfig().getFetchSize());
+	}
+
+	/**
+	 * Opens a {@code StatelessSession}, e.g. to read huge amounts of data. The
+	 * pending changes of the write-behind queue are written prior to opening
+	 * the session, so that those are visible within the session. The not yet
+	 * committed changes of a unit of work (i.e. if persistency is disabled)
+	 * are not committed and thereby not visible, those have to be read using
+	 * {@link #unitOfWork()}. The session has to be closed by the caller.
+	 * 
+	 * @return the opened session
+	 * 
+	 * @throws HibernateSessionManagerException
+	 *             if the manager isn't initialized
+	 */
+	protected StatelessSession openStatelessSession()
+			throws HibernateSessionManagerException {
+		if (!initialized) {
+			exceptionRegistry.throwException(
+					HibernateSessionManagerException.class, 1002);
+			return null;
+		}
 
-		@SuppressWarnings("unchecked")
-		final List<T> list = wrapper.getSession()
-				.createQuery("SELECT id FROM " + getEntityName()).list();
-		wrapper.statementHandled();
+		// make sure the write-behind queue is written
+		flushWriteBehind();
 
-		return list.iterator();
+		return factory.openStatelessSession();
 	}
 }
@@ -0,0 +1,186 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.hibernate.HikariConfigurationUtil;
+
+/**
+ * A {@code ConnectionProvider} sharing one pool between all the factories
+ * configured with the same pool-settings, i.e. the same database, user and
+ * sizes. The caches of a model (or of several models using the same
+ * database) do not open a pool each, if this provider is used (see
+ * {@link HibernateConfig#isSharedPool()}). The pool is closed, when the last
+ * factory using it is closed.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class HibernateSharedConnectionProvider implements
+		ConnectionProvider, Configurable, Stoppable {
+	private static final long serialVersionUID = 1L;
+
+	private final static Logger LOG = LoggerFactory
+			.getLogger(HibernateSharedConnectionProvider.class);
+
+	/**
+	 * The prefix of the properties used to configure the pool.
+	 */
+	public final static String PREFIX = "hibernate.hikari.";
+
+	/**
+	 * A pool together with the amount of providers using it.
+	 * 
+	 * @author pmeisen
+	 * 
+	 */
+	protected final static class SharedPool {
+		private final HikariDataSource dataSource;
+		private int references;
+
+		/**
+		 * Constructor specifying the pool to be shared.
+		 * 
+		 * @param dataSource
+		 *            the pool to be shared
+		 */
+		public SharedPool(final HikariDataSource dataSource) {
+			this.dataSource = dataSource;
+			this.references = 0;
+		}
+	}
+
+	private final static Map<String, SharedPool> pools = new HashMap<String, SharedPool>();
+
+	private String key;
+	private HikariDataSource dataSource;
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void configure(final Map configurationValues) {
+		final Map<String, String> settings = new TreeMap<String, String>();
+		for (final Object o : configurationValues.entrySet()) {
+			final Entry e = (Entry) o;
+			final String name = String.valueOf(e.getKey());
+			if (name.startsWith(PREFIX)) {
+				settings.put(name, String.valueOf(e.getValue()));
+			}
+		}
+
+		this.key = settings.toString();
+		this.dataSource = acquire(key, configurationValues);
+	}
+
+	@Override
+	public void stop() {
+		if (key != null) {
+			release(key);
+			this.key = null;
+			this.dataSource = null;
+		}
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return dataSource.getConnection();
+	}
+
+	@Override
+	public void closeConnection(final Connection conn) throws SQLException {
+		conn.close();
+	}
+
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public boolean isUnwrappableAs(final Class unwrapType) {
+		return ConnectionProvider.class.equals(unwrapType)
+				|| HibernateSharedConnectionProvider.class.equals(unwrapType)
+				|| HikariDataSource.class.isAssignableFrom(unwrapType);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(final Class<T> unwrapType) {
+		if (ConnectionProvider.class.equals(unwrapType)
+				|| HibernateSharedConnectionProvider.class.equals(unwrapType)) {
+			return (T) this;
+		} else if (HikariDataSource.class.isAssignableFrom(unwrapType)) {
+			return (T) dataSource;
+		} else {
+			throw new UnknownUnwrapTypeException(unwrapType);
+		}
+	}
+
+	/**
+	 * Gets the pool for the specified {@code key}, the pool is created if
+	 * none exists.
+	 * 
+	 * @param key
+	 *            the key identifying the pool
+	 * @param configurationValues
+	 *            the configuration used to create the pool
+	 * 
+	 * @return the pool
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected static synchronized HikariDataSource acquire(final String key,
+			final Map configurationValues) {
+		SharedPool pool = pools.get(key);
+		if (pool == null) {
+			final HikariConfig config = HikariConfigurationUtil
+					.loadConfiguration(configurationValues);
+			pool = new SharedPool(new HikariDataSource(config));
+			pools.put(key, pool);
+
+			if (LOG.isTraceEnabled()) {
+				LOG.trace("Created shared pool for '"
+						+ configurationValues.get(PREFIX + "jdbcUrl") + "'.");
+			}
+		}
+		pool.references++;
+
+		return pool.dataSource;
+	}
+
+	/**
+	 * Releases the pool of the specified {@code key}, i.e. the pool is closed
+	 * if it is not used anymore.
+	 * 
+	 * @param key
+	 *            the key identifying the pool
+	 */
+	protected static synchronized void release(final String key) {
+		final SharedPool pool = pools.get(key);
+		if (pool != null && --pool.references < 1) {
+			pools.remove(key);
+			pool.dataSource.shutdown();
+		}
+	}
+
+	/**
+	 * Gets the amount of shared pools currently open.
+	 * 
+	 * @return the amount of shared pools currently open
+	 */
+	public static synchronized int getPoolCount() {
+		return pools.size();
+	}
+}
@@ -0,0 +1,412 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A write-behind queue used by a {@code HibernateSessionManager}. Callers
+ * enqueue the entities to be persisted, whereby a background thread drains
+ * the queue in batches. A batch is written whenever the amount of pending
+ * entities reaches the batch-size, the oldest pending entity waited longer
+ * than the specified latency, or a flush is requested. The entities of a
+ * batch, which cannot be written, are kept pending and are written again,
+ * after the failure was retrieved (see {@link #pollFailure()}).
+ * 
+ * @author pmeisen
+ * 
+ * @param <T>
+ *            the type of the identifier used to manage the entities
+ * 
+ * @see HibernateSessionManager
+ */
+public class HibernateWriteBehindQueue<T extends Serializable> {
+	private final static Logger LOG = LoggerFactory
+			.getLogger(HibernateWriteBehindQueue.class);
+
+	/**
+	 * An entity waiting to be written.
+	 * 
+	 * @author pmeisen
+	 * 
+	 * @param <T>
+	 *            the type of the identifier
+	 */
+	public final static class Entry<T extends Serializable> {
+		private final Map<String, Object> map;
+		private final T id;
+
+		/**
+		 * Constructor specifying the entity and it's identifier.
+		 * 
+		 * @param map
+		 *            the entity to be written
+		 * @param id
+		 *            the identifier of the entity, can be {@code null} if the
+		 *            entity should be inserted for sure
+		 */
+		public Entry(final Map<String, Object> map, final T id) {
+			this.map = map;
+			this.id = id;
+		}
+
+		/**
+		 * Gets the entity to be written.
+		 * 
+		 * @return the entity to be written
+		 */
+		public Map<String, Object> getMap() {
+			return map;
+		}
+
+		/**
+		 * Gets the identifier of the entity.
+		 * 
+		 * @return the identifier of the entity, might be {@code null}
+		 */
+		public T getId() {
+			return id;
+		}
+	}
+
+	private final HibernateSessionManager<T> manager;
+	private final int batchSize;
+	private final long latency;
+	private final int maxPending;
+
+	private final Object lock;
+	private LinkedHashMap<Object, Entry<T>> pending;
+	private final LinkedHashMap<Object, Entry<T>> inFlight;
+	private final Thread flusher;
+
+	private long oldestPending;
+	private int flushRequests;
+	private boolean running;
+	private Throwable failure;
+
+	/**
+	 * Constructor specifying the manager to write the batches with, the size of
+	 * a batch and the maximal latency of a pending entity.
+	 * 
+	 * @param manager
+	 *            the manager used to write a batch
+	 * @param batchSize
+	 *            the maximal amount of entities written within one batch
+	 * @param latency
+	 *            the maximal time in milliseconds an entity is kept in the
+	 *            queue prior to being written
+	 */
+	public HibernateWriteBehindQueue(final HibernateSessionManager<T> manager,
+			final int batchSize, final long latency) {
+		this.manager = manager;
+		this.batchSize = batchSize < 1 ? 1 : batchSize;
+		this.latency = latency < 1 ? 1 : latency;
+		this.maxPending = 10 * this.batchSize;
+
+		this.lock = new Object();
+		this.pending = new LinkedHashMap<Object, Entry<T>>();
+		this.inFlight = new LinkedHashMap<Object, Entry<T>>();
+
+		this.oldestPending = -1;
+		this.flushRequests = 0;
+		this.running = false;
+		this.failure = null;
+
+		this.flusher = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "HibernateWriteBehind-" + manager.getEntityName());
+		this.flusher.setDaemon(true);
+	}
+
+	/**
+	 * Starts the background thread draining the queue.
+	 */
+	public void start() {
+		synchronized (lock) {
+			this.running = true;
+		}
+		this.flusher.start();
+	}
+
+	/**
+	 * Enqueues the specified entity. An already pending entity with the same
+	 * {@code key} is replaced, i.e. only the latest state is written. The
+	 * method blocks if too many entities are pending.
+	 * 
+	 * @param key
+	 *            the key used to identify the entity within the queue
+	 * @param map
+	 *            the entity to be written, the map must not be modified after
+	 *            it was enqueued
+	 * @param id
+	 *            the identifier of the entity, can be {@code null} if the
+	 *            entity should be inserted for sure
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting, the entity is
+	 *             not enqueued
+	 */
+	public void enqueue(final Object key, final Map<String, Object> map,
+			final T id) throws InterruptedException {
+		synchronized (lock) {
+			while (running && failure == null && pending.size() >= maxPending
+					&& !pending.containsKey(key)) {
+				lock.notifyAll();
+				await(0);
+			}
+
+			if (pending.isEmpty()) {
+				oldestPending = System.currentTimeMillis();
+			}
+			pending.put(key, new Entry<T>(map, id));
+
+			if (pending.size() >= batchSize) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Gets the pending entity of the specified {@code key}.
+	 * 
+	 * @param key
+	 *            the key of the entity
+	 * 
+	 * @return the pending entity, or {@code null} if no entity is pending for
+	 *         the {@code key}
+	 */
+	public Map<String, Object> lookup(final Object key) {
+		synchronized (lock) {
+			Entry<T> entry = pending.get(key);
+			if (entry == null) {
+				entry = inFlight.get(key);
+			}
+
+			return entry == null ? null : entry.getMap();
+		}
+	}
+
+	/**
+	 * Checks if entities are pending, i.e. are not written yet.
+	 * 
+	 * @return {@code true} if entities are pending, otherwise {@code false}
+	 */
+	public boolean isPending() {
+		synchronized (lock) {
+			return !pending.isEmpty() || !inFlight.isEmpty();
+		}
+	}
+
+	/**
+	 * Blocks until all the pending entities are written or a failure occurred.
+	 * The failure can be retrieved using {@link #pollFailure()}.
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		synchronized (lock) {
+			flushRequests++;
+			try {
+				lock.notifyAll();
+				while (running && failure == null
+						&& (!pending.isEmpty() || !inFlight.isEmpty())) {
+					await(0);
+				}
+			} finally {
+				flushRequests--;
+			}
+		}
+	}
+
+	/**
+	 * Gets and resets the failure which occurred while writing a batch. The
+	 * entities of the failed batch are kept pending, i.e. those are written
+	 * again after the failure is reset.
+	 * 
+	 * @return the failure or {@code null} if no failure occurred
+	 */
+	public Throwable pollFailure() {
+		synchronized (lock) {
+			final Throwable t = failure;
+			failure = null;
+			lock.notifyAll();
+
+			return t;
+		}
+	}
+
+	/**
+	 * Writes all pending entities and stops the background thread. The
+	 * thread is stopped even if the entities cannot be written, i.e. the
+	 * entities still pending are discarded and the failure can be retrieved
+	 * using {@link #pollFailure()}.
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	public void shutdown() throws InterruptedException {
+		try {
+			flush();
+		} finally {
+			synchronized (lock) {
+				running = false;
+				lock.notifyAll();
+			}
+		}
+
+		flusher.join();
+
+		synchronized (lock) {
+			if (!pending.isEmpty() && LOG.isWarnEnabled()) {
+				LOG.warn("Discarding " + pending.size()
+						+ " not written entities of '"
+						+ manager.getEntityName() + "'.");
+			}
+		}
+	}
+
+	/**
+	 * The loop of the background thread. The loop is left if the thread is
+	 * interrupted, the interruption is reported as failure.
+	 */
+	protected void drain() {
+		while (true) {
+			final List<Entry<T>> batch;
+			synchronized (lock) {
+				try {
+					batch = awaitBatch();
+				} catch (final InterruptedException e) {
+					running = false;
+					if (failure == null) {
+						failure = e;
+					}
+					lock.notifyAll();
+					return;
+				}
+			}
+			if (batch == null) {
+				return;
+			}
+
+			Throwable error = null;
+			try {
+				manager.writeBatch(batch);
+			} catch (final Throwable t) {
+				if (LOG.isErrorEnabled()) {
+					LOG.error("Unable to write a batch of " + batch.size()
+							+ " entities of '" + manager.getEntityName()
+							+ "'.", t);
+				}
+				error = t;
+			}
+
+			synchronized (lock) {
+				if (error != null) {
+					restoreInFlight();
+					if (failure == null) {
+						failure = error;
+					}
+				}
+				inFlight.clear();
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Moves the entities in flight back to the front of the pending ones,
+	 * i.e. those are written again. An entity enqueued again in the meantime
+	 * is not restored, because the enqueued state is the latest one. The
+	 * method must be called while holding the lock.
+	 */
+	protected void restoreInFlight() {
+		final LinkedHashMap<Object, Entry<T>> restored = new LinkedHashMap<Object, Entry<T>>();
+		for (final Map.Entry<Object, Entry<T>> e : inFlight.entrySet()) {
+			if (!pending.containsKey(e.getKey())) {
+				restored.put(e.getKey(), e.getValue());
+			}
+		}
+		if (restored.isEmpty()) {
+			return;
+		}
+
+		if (pending.isEmpty()) {
+			oldestPending = System.currentTimeMillis();
+		}
+		restored.putAll(pending);
+		pending = restored;
+	}
+
+	/**
+	 * Waits until a batch should be written. No batch is written while a
+	 * failure is not retrieved, i.e. the queue is stopped if it is shut down
+	 * in the meantime. The method must be called while holding the lock.
+	 * 
+	 * @return the batch to be written or {@code null} if the queue is stopped
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	protected List<Entry<T>> awaitBatch() throws InterruptedException {
+		while (true) {
+			if (pending.isEmpty() || failure != null) {
+				if (!running) {
+					return null;
+				}
+				await(0);
+				continue;
+			}
+
+			final long remaining = oldestPending + latency
+					- System.currentTimeMillis();
+			if (!running || flushRequests > 0 || remaining <= 0
+					|| pending.size() >= batchSize) {
+
+				// move the entities of the batch into flight
+				final List<Entry<T>> batch = new ArrayList<Entry<T>>(
+						Math.min(batchSize, pending.size()));
+				final Iterator<Map.Entry<Object, Entry<T>>> it = pending
+						.entrySet().iterator();
+				while (it.hasNext() && batch.size() < batchSize) {
+					final Map.Entry<Object, Entry<T>> e = it.next();
+					batch.add(e.getValue());
+					inFlight.put(e.getKey(), e.getValue());
+					it.remove();
+				}
+				oldestPending = System.currentTimeMillis();
+
+				// inform waiting producers
+				lock.notifyAll();
+
+				return batch;
+			}
+
+			await(remaining);
+		}
+	}
+
+	/**
+	 * Waits on the lock. The method must be called while holding the lock.
+	 * 
+	 * @param timeout
+	 *            the time to wait in milliseconds, {@code 0} to wait until
+	 *            notified
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	protected void await(final long timeout) throws InterruptedException {
+		lock.wait(timeout);
+	}
+}
@@ -16,7 +16,11 @@ import org.junit.runners.Suite;
 		TestHibernateBitmapCache.class, TestHibernateMetaDataCache.class,
 		TestHibernateFactDescriptorModelSetCache.class,
 		TestMetaDataModel.class, TestHibernateIdentifierCache.class,
-		TestInUsage.class })
+		TestInUsage.class, TestHibernateLruCache.class,
+		TestHibernateDescriptorCodec.class, TestHibernateLobCodec.class,
+		TestHibernateBufferPool.class, TestHibernateSchemaMode.class,
+		TestHibernateColumnCodec.class, TestHibernateMapStatement.class,
+		TestHibernateWriteBehindQueue.class })
 public class AllTests {
 	// nothing more to do here
 }
\ No newline at end of file
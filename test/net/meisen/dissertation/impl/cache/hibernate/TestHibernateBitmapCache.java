@@ -2,14 +2,26 @@ package net.meisen.dissertation.impl.cache.hibernate;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.meisen.dissertation.help.Db;
 import net.meisen.dissertation.help.LoaderBasedTest;
@@ -21,6 +33,7 @@ import net.meisen.dissertation.model.indexes.datarecord.slices.BitmapId;
 import net.meisen.general.genmisc.exceptions.registry.DefaultExceptionRegistry;
 import net.meisen.general.genmisc.types.Files;
 
+import org.hibernate.SessionFactory;
 import org.junit.After;
 import org.junit.Test;
 
@@ -33,6 +46,7 @@ import org.junit.Test;
 public class TestHibernateBitmapCache extends LoaderBasedTest {
 
 	private HibernateBitmapCache cache;
+	private HibernateBitmapCacheConfig config;
 	private File tmpDir;
 	private Db db;
 
@@ -61,7 +75,7 @@ public class TestHibernateBitmapCache extends LoaderBasedTest {
 		final DefaultExceptionRegistry excReg = new DefaultExceptionRegistry();
 
 		// create a configuration
-		final HibernateBitmapCacheConfig config = new HibernateBitmapCacheConfig();
+		config = new HibernateBitmapCacheConfig();
 		config.setDriver("org.hsqldb.jdbcDriver");
 		config.setUrl("jdbc:hsqldb:hsql://localhost:6666/testDb");
 		config.setUsername("SA");
@@ -163,6 +177,199 @@ public class TestHibernateBitmapCache extends LoaderBasedTest {
 		assertFalse(Arrays.binarySearch(res, 1000) > -1);
 	}
 
+	/**
+	 * Tests the retrieval of several bitmaps at once.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testGetAll() throws IOException {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// add some bitmaps, and request some not cached ones as well
+		final List<BitmapId<?>> bitmapIds = new ArrayList<BitmapId<?>>();
+		for (int i = 0; i < 1200; i++) {
+			final BitmapId<Integer> bitmapId = new BitmapId<Integer>(i,
+					IntervalIndex.class);
+			if (i % 2 == 0) {
+				cache.cache(bitmapId,
+						Bitmap.createBitmap(model.getIndexFactory(), i));
+			}
+			bitmapIds.add(bitmapId);
+		}
+
+		final Map<BitmapId<?>, Bitmap> bitmaps = cache.getAll(bitmapIds);
+		assertEquals(1200, bitmaps.size());
+
+		int i = 0;
+		for (final Map.Entry<BitmapId<?>, Bitmap> e : bitmaps.entrySet()) {
+			assertEquals(bitmapIds.get(i), e.getKey());
+
+			final Bitmap bitmap = e.getValue();
+			if (i % 2 == 0) {
+				assertEquals(1, bitmap.determineCardinality());
+				assertTrue(Arrays.equals(new int[] { i }, bitmap.getIds()));
+			} else {
+				assertEquals(0, bitmap.determineCardinality());
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Tests the usage of a binary key and the migration of a table using a
+	 * string key.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testBinaryKey() throws IOException {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+		assertFalse(cache.isBinaryKey());
+
+		// add some bitmaps using the string key
+		for (int i = 0; i < 1500; i++) {
+			final BitmapId<Integer> bitmapId = new BitmapId<Integer>(i,
+					MetaIndex.class, "key" + i);
+			cache.cache(bitmapId,
+					Bitmap.createBitmap(model.getIndexFactory(), i));
+		}
+		cache.release();
+
+		// enable the binary key, the table is migrated
+		config.setBinaryKey(true);
+		cache.initialize(model);
+		assertTrue(cache.isBinaryKey());
+		assertEquals(1500, cache.size());
+
+		final List<BitmapId<?>> bitmapIds = new ArrayList<BitmapId<?>>();
+		for (final BitmapId<?> bitmapId : cache) {
+			bitmapIds.add(bitmapId);
+		}
+		assertEquals(1500, bitmapIds.size());
+
+		for (int i = 0; i < 1500; i++) {
+			final BitmapId<Integer> bitmapId = new BitmapId<Integer>(i,
+					MetaIndex.class, "key" + i);
+			assertTrue(bitmapIds.contains(bitmapId));
+			assertTrue(Arrays.equals(new int[] { i }, cache.get(bitmapId)
+					.getIds()));
+		}
+
+		// update and add bitmaps using the binary key
+		final BitmapId<Integer> bitmapId = new BitmapId<Integer>(0,
+				MetaIndex.class, "key0");
+		cache.cache(bitmapId, Bitmap.createBitmap(model.getIndexFactory(), 5));
+		cache.cache(new BitmapId<Integer>(0, IntervalIndex.class),
+				Bitmap.createBitmap(model.getIndexFactory(), 6));
+		assertEquals(1501, cache.size());
+		assertTrue(Arrays.equals(new int[] { 5 }, cache.get(bitmapId)
+				.getIds()));
+
+		// a re-initialization must not migrate anything
+		cache.release();
+		cache.initialize(model);
+		assertEquals(1501, cache.size());
+		assertEquals(1, cache.getAll(Arrays.<BitmapId<?>> asList(bitmapId))
+				.get(bitmapId).determineCardinality());
+	}
+
+	/**
+	 * Tests the usage of the in-memory tier.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testMemoryCache() throws IOException {
+		setUp(null);
+		config.setMemoryCacheSize(1024 * 1024);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+		final HibernateLruCache<BitmapId<?>, Bitmap> memoryCache = cache
+				.getMemoryCache();
+
+		// add some bitmaps, each one is written through
+		for (int i = 0; i < 100; i++) {
+			final BitmapId<Integer> bitmapId = new BitmapId<Integer>(i,
+					IntervalIndex.class);
+			cache.cache(bitmapId,
+					Bitmap.createBitmap(model.getIndexFactory(), i, i + 1));
+		}
+		assertEquals(100, memoryCache.size());
+
+		// read the bitmaps, all of them are hits
+		for (int i = 0; i < 100; i++) {
+			final Bitmap bitmap = cache.get(new BitmapId<Integer>(i,
+					IntervalIndex.class));
+			assertEquals(2, bitmap.determineCardinality());
+		}
+		assertEquals(100, memoryCache.getHits());
+
+		// re-init, the tier must be invalidated and read-through
+		cache.release();
+		assertEquals(0, memoryCache.size());
+		cache.initialize(model);
+
+		final HibernateLruCache<BitmapId<?>, Bitmap> reinitCache = cache
+				.getMemoryCache();
+		final BitmapId<Integer> bitmapId = new BitmapId<Integer>(5,
+				IntervalIndex.class);
+		assertEquals(2, cache.get(bitmapId).determineCardinality());
+		assertEquals(1, reinitCache.getMisses());
+		assertEquals(2, cache.get(bitmapId).determineCardinality());
+		assertEquals(1, reinitCache.getHits());
+	}
+
+	/**
+	 * Tests that a bitmap read prior to a write-through does not overwrite
+	 * the newer bitmap of the in-memory tier.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testMemoryCacheStaleRead() throws IOException {
+		setUp(null);
+		config.setMemoryCacheSize(1024 * 1024);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+		final HibernateLruCache<BitmapId<?>, Bitmap> memoryCache = cache
+				.getMemoryCache();
+		final BitmapId<Integer> bitmapId = new BitmapId<Integer>(1,
+				IntervalIndex.class);
+
+		// serialize the old bitmap, i.e. the one read from the database
+		final Bitmap oldBitmap = Bitmap.createBitmap(model.getIndexFactory(),
+				1);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final DataOutputStream w = new DataOutputStream(out);
+		oldBitmap.serialize(w);
+		w.close();
+
+		// write the newer bitmap through and finish the read afterwards
+		cache.cache(bitmapId,
+				Bitmap.createBitmap(model.getIndexFactory(), 1, 2, 3));
+		final Bitmap read = cache.createFromStream(bitmapId,
+				HibernateLobCodec.NONE.getId(),
+				new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(1, read.determineCardinality());
+
+		// the in-memory tier must still keep the newer bitmap
+		assertEquals(3, memoryCache.get(bitmapId).determineCardinality());
+		assertEquals(3, cache.get(bitmapId).determineCardinality());
+	}
+
 	/**
 	 * Tests the iteration of data from the cache.
 	 * 
@@ -195,6 +402,301 @@ public class TestHibernateBitmapCache extends LoaderBasedTest {
 		assertEquals(0, bitmapIds.size());
 	}
 
+	/**
+	 * Tests the usage of a codec, i.e. that bitmaps stored with another codec
+	 * remain readable.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testCodec() throws IOException {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		final BitmapId<Integer> uncompressedId = new BitmapId<Integer>(0,
+				IntervalIndex.class);
+		final Bitmap uncompressed = Bitmap.createBitmap(
+				model.getIndexFactory(), 1, 2, 3, 500, 1000);
+		cache.cache(uncompressedId, uncompressed);
+		cache.release();
+
+		for (final HibernateLobCodec codec : new HibernateLobCodec[] {
+				HibernateLobCodec.FAST, HibernateLobCodec.DEFLATE }) {
+			config.setCodec(codec);
+			cache.initialize(model);
+			assertEquals(codec, cache.getCodec());
+
+			final BitmapId<Integer> id = new BitmapId<Integer>(
+					(int) codec.getId(), MetaIndex.class);
+			final Bitmap bitmap = Bitmap.createBitmap(model.getIndexFactory(),
+					4, 5, 6, 10000);
+			cache.cache(id, bitmap);
+
+			assertEquals(bitmap, cache.get(id));
+			assertEquals(uncompressed, cache.get(uncompressedId));
+			cache.release();
+		}
+	}
+
+	/**
+	 * Tests the sharing of a pool between the caches of a model.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testSharedPool() throws IOException {
+		setUp(null);
+		config.setSharedPool(true);
+		config.setMaxPoolSize(4);
+		config.setMinIdle(1);
+
+		final HibernateFactDescriptorModelSetCacheConfig factConfig = new HibernateFactDescriptorModelSetCacheConfig();
+		factConfig.setDriver(config.getDriver());
+		factConfig.setUrl(config.getUrl());
+		factConfig.setUsername(config.getUsername());
+		factConfig.setPassword(config.getPassword());
+		factConfig.setSharedPool(true);
+		factConfig.setMaxPoolSize(4);
+		factConfig.setMinIdle(1);
+
+		final HibernateFactDescriptorModelSetCache factCache = new HibernateFactDescriptorModelSetCache();
+		factCache.setExceptionRegistry(new DefaultExceptionRegistry());
+		factCache.setConfig(factConfig);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		final int pools = HibernateSharedConnectionProvider.getPoolCount();
+		cache.initialize(model);
+		factCache.initialize(model);
+		assertEquals(pools + 1,
+				HibernateSharedConnectionProvider.getPoolCount());
+
+		// both caches work with the shared pool
+		final BitmapId<Integer> bitmapId = new BitmapId<Integer>(1,
+				IntervalIndex.class);
+		cache.cache(bitmapId, Bitmap.createBitmap(model.getIndexFactory(), 1));
+		assertEquals(1, cache.get(bitmapId).determineCardinality());
+		assertEquals(0, factCache.size());
+
+		// the pool is closed with the last cache
+		factCache.remove();
+		assertEquals(pools + 1,
+				HibernateSharedConnectionProvider.getPoolCount());
+		assertEquals(1, cache.get(bitmapId).determineCardinality());
+		cache.release();
+		assertEquals(pools, HibernateSharedConnectionProvider.getPoolCount());
+	}
+
+	/**
+	 * Tests the sharing of the detected dialect and the unmapped factory
+	 * between the caches using the same database.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testFactoryRegistry() throws IOException {
+		setUp(null);
+
+		// a binary key uses the unmapped factory to check the tables
+		config.setBinaryKey(true);
+
+		final HibernateFactDescriptorModelSetCacheConfig factConfig = new HibernateFactDescriptorModelSetCacheConfig();
+		factConfig.setDriver(config.getDriver());
+		factConfig.setUrl(config.getUrl());
+		factConfig.setUsername(config.getUsername());
+		factConfig.setPassword(config.getPassword());
+		factConfig.setBinaryKey(true);
+		final HibernateFactoryRegistry.Key key = HibernateFactoryRegistry
+				.createKey(config);
+		assertEquals(key, HibernateFactoryRegistry.createKey(factConfig));
+
+		final HibernateFactDescriptorModelSetCache factCache = new HibernateFactDescriptorModelSetCache();
+		factCache.setExceptionRegistry(new DefaultExceptionRegistry());
+		factCache.setConfig(factConfig);
+
+		final int entries = HibernateFactoryRegistry.size();
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+		assertEquals(entries + 1, HibernateFactoryRegistry.size());
+		assertEquals(1, HibernateFactoryRegistry.getUsers(key));
+		assertNotNull(HibernateFactoryRegistry.getDialect(key));
+		final SessionFactory unmapped = HibernateFactoryRegistry
+				.getUnmappedFactory(key);
+		assertNotNull(unmapped);
+
+		// the second cache uses the same dialect and unmapped factory
+		factCache.initialize(model);
+		assertEquals(2, HibernateFactoryRegistry.getUsers(key));
+		assertSame(cache.getDialect(), factCache.getDialect());
+		assertSame(unmapped,
+				HibernateFactoryRegistry.getUnmappedFactory(key));
+
+		// the unmapped factory is closed with the last cache
+		factCache.remove();
+		assertEquals(1, HibernateFactoryRegistry.getUsers(key));
+		assertFalse(unmapped.isClosed());
+		cache.release();
+		assertEquals(0, HibernateFactoryRegistry.getUsers(key));
+		assertTrue(unmapped.isClosed());
+		assertNull(HibernateFactoryRegistry.getUnmappedFactory(key));
+
+		// the entry is removed with the last cache
+		assertEquals(entries, HibernateFactoryRegistry.size());
+		assertNull(HibernateFactoryRegistry.getDialect(key));
+	}
+
+	/**
+	 * Tests the settings created for the statement-cache.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testStatementCacheSettings() throws IOException {
+		setUp(null);
+
+		final HibernateConfig hConfig = new HibernateConfig();
+		hConfig.setUrl("jdbc:mysql://localhost/test");
+		assertFalse(hConfig.createSettings().containsKey(
+				HibernateConfig.PREFIX_DRIVERPROPERTY + "prepStmtCacheSize"));
+
+		hConfig.setStatementCacheSize(250);
+		hConfig.setBatchSize(50);
+		hConfig.setOrderStatements(true);
+		final Map<String, String> settings = hConfig.createSettings();
+		assertEquals("250", settings.get(HibernateConfig.PREFIX_DRIVERPROPERTY
+				+ "prepStmtCacheSize"));
+		assertEquals("50", settings.get("hibernate.jdbc.batch_size"));
+		assertEquals("true", settings.get("hibernate.order_inserts"));
+
+		hConfig.setUrl("jdbc:postgresql://localhost/test");
+		assertEquals("250", hConfig.createSettings().get(
+				HibernateConfig.PREFIX_DRIVERPROPERTY
+						+ "preparedStatementCacheQueries"));
+	}
+
+	/**
+	 * Tests the reading of bitmaps by several threads in parallel.
+	 * 
+	 * @throws Exception
+	 *             if a read fails
+	 */
+	@Test
+	public void testConcurrentReads() throws Exception {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		final int amount = 200;
+		for (int i = 0; i < amount; i++) {
+			cache.cache(new BitmapId<Integer>(i, IntervalIndex.class),
+					Bitmap.createBitmap(model.getIndexFactory(), i, i + 1));
+		}
+
+		final int threads = 4;
+		final int reads = 500;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(executor.submit(createReader(amount, reads, t)));
+		}
+		int total = 0;
+		for (final Future<Integer> future : futures) {
+			total += future.get();
+		}
+		executor.shutdown();
+
+		assertEquals(reads * threads, total);
+	}
+
+	/**
+	 * Tests the reading of bitmaps while another thread writes bitmaps with
+	 * disabled persistency, i.e. the readers have to use the session of the
+	 * writer.
+	 * 
+	 * @throws Exception
+	 *             if a read or write fails
+	 */
+	@Test
+	public void testConcurrentReadsAndWrites() throws Exception {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		final int amount = 100;
+		for (int i = 0; i < amount; i++) {
+			cache.cache(new BitmapId<Integer>(i, IntervalIndex.class),
+					Bitmap.createBitmap(model.getIndexFactory(), i, i + 1));
+		}
+		cache.setPersistency(false);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(5);
+		final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		futures.add(executor.submit(new Callable<Integer>() {
+
+			@Override
+			public Integer call() throws Exception {
+				for (int i = amount; i < 2 * amount; i++) {
+					cache.cache(new BitmapId<Integer>(i, MetaIndex.class),
+							Bitmap.createBitmap(model.getIndexFactory(), i));
+				}
+				return amount;
+			}
+		}));
+		for (int t = 0; t < 4; t++) {
+			futures.add(executor.submit(createReader(amount, 500, t)));
+		}
+		try {
+			for (final Future<Integer> future : futures) {
+				future.get();
+			}
+		} catch (final ExecutionException e) {
+			throw (Exception) e.getCause();
+		} finally {
+			executor.shutdown();
+		}
+
+		cache.setPersistency(true);
+		assertEquals(2 * amount, cache.size());
+	}
+
+	/**
+	 * Creates a reader used to validate the bitmaps created by the concurrent
+	 * tests.
+	 * 
+	 * @param amount
+	 *            the amount of available bitmaps
+	 * @param reads
+	 *            the amount of bitmaps to be read
+	 * @param seed
+	 *            the offset of the first bitmap to be read
+	 * 
+	 * @return the reader returning the amount of validated bitmaps
+	 */
+	protected Callable<Integer> createReader(final int amount,
+			final int reads, final int seed) {
+		return new Callable<Integer>() {
+
+			@Override
+			public Integer call() throws Exception {
+				for (int i = 0; i < reads; i++) {
+					final int nr = (seed * 31 + i * 7) % amount;
+					final Bitmap bitmap = cache.get(new BitmapId<Integer>(nr,
+							IntervalIndex.class));
+					assertEquals(2, bitmap.determineCardinality());
+					assertTrue(Arrays.binarySearch(bitmap.getIds(), nr) > -1);
+				}
+				return reads;
+			}
+		};
+	}
+
 	/**
 	 * Clean up the created cache and the database.
 	 */
@@ -0,0 +1,63 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the implementation of the {@code HibernateBufferPool}.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class TestHibernateBufferPool {
+
+	/**
+	 * Tests the reuse of the buffer of a thread.
+	 */
+	@Test
+	public void testReuse() {
+		final HibernateLobBuffer buffer = HibernateBufferPool.acquire();
+		buffer.write(5);
+
+		// a nested usage gets another buffer
+		final HibernateLobBuffer nested = HibernateBufferPool.acquire();
+		assertNotSame(buffer, nested);
+		HibernateBufferPool.release(nested, true);
+		HibernateBufferPool.release(buffer, true);
+
+		// the buffer is reused and empty
+		final HibernateLobBuffer reused = HibernateBufferPool.acquire();
+		assertSame(buffer, reused);
+		assertEquals(0, reused.size());
+
+		// a still referenced buffer is not reused
+		HibernateBufferPool.release(reused, false);
+		final HibernateLobBuffer fresh = HibernateBufferPool.acquire();
+		assertNotSame(reused, fresh);
+		HibernateBufferPool.release(fresh, true);
+	}
+
+	/**
+	 * Tests that a buffer being much larger than needed is not kept.
+	 */
+	@Test
+	public void testShrinking() {
+		HibernateLobBuffer buffer = HibernateBufferPool.acquire();
+		HibernateBufferPool.release(buffer, true);
+
+		// create a huge buffer
+		buffer = HibernateBufferPool.acquire();
+		buffer.write(new byte[HibernateBufferPool.MAX_RETAINED_SIZE + 1], 0,
+				HibernateBufferPool.MAX_RETAINED_SIZE + 1);
+		HibernateBufferPool.release(buffer, true);
+
+		final HibernateLobBuffer next = HibernateBufferPool.acquire();
+		assertNotSame(buffer, next);
+		assertTrue(next.capacity() <= HibernateBufferPool.MAX_RETAINED_SIZE);
+		HibernateBufferPool.release(next, true);
+	}
+}
@@ -0,0 +1,153 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * Tests the implementation of the {@code HibernateColumnCodec}.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class TestHibernateColumnCodec {
+
+	/**
+	 * Encodes and decodes the specified values.
+	 * 
+	 * @param type
+	 *            the type of the values
+	 * @param values
+	 *            the values to be encoded
+	 * 
+	 * @return the encoded values
+	 * 
+	 * @throws IOException
+	 *             if the values cannot be decoded
+	 */
+	protected byte[] assertRoundTrip(final Class<?> type, final Object[] values)
+			throws IOException {
+		final byte[] chunk = HibernateColumnCodec.encode(type, values,
+				values.length);
+		assertArrayEquals(values,
+				HibernateColumnCodec.decode(chunk, values.length));
+
+		return chunk;
+	}
+
+	/**
+	 * Tests the encoding and decoding of the different encodings.
+	 * 
+	 * @throws IOException
+	 *             if a value cannot be decoded
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		final int size = 1000;
+
+		// delta
+		final Object[] ints = new Object[size];
+		final Object[] longs = new Object[size];
+		final Object[] dates = new Object[size];
+		for (int i = 0; i < size; i++) {
+			ints[i] = i * (i % 2 == 0 ? 1 : -1);
+			longs[i] = Long.MAX_VALUE - i;
+			dates[i] = new Date(1420070400000l + i * 60000l);
+		}
+		assertRoundTrip(Integer.class, ints);
+		assertRoundTrip(Long.class, longs);
+		assertRoundTrip(Date.class, dates);
+
+		// run-length
+		final Object[] bytes = new Object[size];
+		final Object[] shorts = new Object[size];
+		for (int i = 0; i < size; i++) {
+			bytes[i] = (byte) (i / 100);
+			shorts[i] = Short.MIN_VALUE;
+		}
+		assertRoundTrip(Byte.class, bytes);
+		assertRoundTrip(Short.class, shorts);
+
+		// dictionary
+		final Object[] strings = new Object[size];
+		for (int i = 0; i < size; i++) {
+			strings[i] = i % 10 == 0 ? null : "Value" + (i % 7);
+		}
+		assertRoundTrip(String.class, strings);
+
+		// plain
+		final Object[] doubles = new Object[size];
+		for (int i = 0; i < size; i++) {
+			doubles[i] = i * 0.5;
+		}
+		assertRoundTrip(Double.class, doubles);
+
+		// integral values with null are not encoded as numbers
+		ints[5] = null;
+		assertRoundTrip(Integer.class, ints);
+
+		// empty chunks
+		assertRoundTrip(String.class, new Object[0]);
+		assertRoundTrip(Integer.class, new Object[0]);
+	}
+
+	/**
+	 * Tests that timestamps are decoded as dates.
+	 * 
+	 * @throws IOException
+	 *             if a value cannot be decoded
+	 */
+	@Test
+	public void testTimestamps() throws IOException {
+		final Object[] values = new Object[] { new Timestamp(1000l),
+				new Date(2000l), new Timestamp(3000l) };
+
+		final Object[] decoded = HibernateColumnCodec.decode(
+				HibernateColumnCodec.encode(Date.class, values, values.length),
+				values.length);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(Date.class, decoded[i].getClass());
+			assertEquals(((Date) values[i]).getTime(),
+					((Date) decoded[i]).getTime());
+		}
+	}
+
+	/**
+	 * Tests the size of the chunks compared to the values written one by one.
+	 */
+	@Test
+	public void testSize() {
+		final int size = 4096;
+
+		final Object[] ids = new Object[size];
+		final Object[] constants = new Object[size];
+		final Object[] strings = new Object[size];
+		for (int i = 0; i < size; i++) {
+			ids[i] = 100000 + i;
+			constants[i] = 5l;
+			strings[i] = "TestValue" + (i % 10);
+		}
+
+		// sequential identifiers need a byte each
+		final int idChunk = HibernateColumnCodec.encode(Integer.class, ids,
+				size).length;
+		assertTrue(idChunk < size + 10);
+
+		// constants need a single run
+		final int constantChunk = HibernateColumnCodec.encode(Long.class,
+				constants, size).length;
+		assertTrue(constantChunk < 20);
+
+		// repeated strings are written once
+		final int plain = HibernateDescriptorCodec.encode(strings).length;
+		final int chunk = HibernateColumnCodec.encode(String.class, strings,
+				size).length;
+		assertTrue(chunk * 4 < plain);
+	}
+}
@@ -1,16 +1,28 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import gnu.trove.list.array.TIntArrayList;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.meisen.dissertation.help.Db;
 import net.meisen.dissertation.help.LoaderBasedTest;
@@ -33,6 +45,7 @@ import org.junit.Test;
 public class TestHibernateDataRecordCache extends LoaderBasedTest {
 
 	private HibernateDataRecordCache cache;
+	private HibernateDataRecordCacheConfig config;
 	private File tmpDir;
 	private Db db;
 
@@ -61,7 +74,7 @@ public class TestHibernateDataRecordCache extends LoaderBasedTest {
 		final DefaultExceptionRegistry excReg = new DefaultExceptionRegistry();
 
 		// create a configuration
-		final HibernateDataRecordCacheConfig config = new HibernateDataRecordCacheConfig();
+		config = new HibernateDataRecordCacheConfig();
 		config.setDriver("org.hsqldb.jdbcDriver");
 		config.setUrl("jdbc:hsqldb:hsql://localhost:6666/testDb");
 		config.setUsername("SA");
@@ -122,6 +135,115 @@ public class TestHibernateDataRecordCache extends LoaderBasedTest {
 		}
 	}
 
+	/**
+	 * Tests the insertion of several values using the write-behind queue.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testWriteBehindInsertion() throws ParseException, IOException {
+		setUp(null);
+		config.setWriteBehind(true);
+		config.setWriteBehindBatchSize(100);
+		config.setWriteBehindLatency(50);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		final FieldNameGenerator fg = FieldNameGenerator.get();
+		for (int i = 0; i < 1000; i++) {
+			final Map<String, Object> map = new HashMap<String, Object>();
+			map.put(fg.getIdFieldName(), i);
+			map.put(fg.getIntervalStartFieldName(), Dates.parseDate(
+					"01.02.2015 07:56:00", "dd.MM.yyyy HH:mm:ss"));
+			map.put(fg.getIntervalEndFieldName(), Dates.parseDate(
+					"01.02.2015 08:46:00", "dd.MM.yyyy HH:mm:ss"));
+			map.put("STRING", "TestValue" + i);
+			map.put("INT", i);
+			map.put("LONG", 5l);
+			cache.cache(map);
+
+			// pending records must be readable
+			final Object[] rec = cache.get(i);
+			assertEquals(rec[0], i);
+			assertEquals(rec[3], i);
+			assertEquals(rec[5], "TestValue" + i);
+		}
+
+		// the size forces everything to be written
+		assertEquals(1000, cache.size());
+
+		// reload and check the values
+		cache.release();
+		cache.initialize(model);
+		assertEquals(1000, cache.size());
+		for (int i = 0; i < 1000; i++) {
+			final Object[] rec = cache.get(i);
+			assertEquals(rec[0], i);
+			assertEquals(rec[3], i);
+			assertEquals(rec[5], "TestValue" + i);
+		}
+	}
+
+	/**
+	 * Tests the bulk-loading of records, i.e. the insertion while persistency
+	 * is disabled.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testBulkLoad() throws ParseException, IOException {
+		setUp(null);
+		config.setBulkLoad(true);
+		config.setBulkBatchSize(50);
+		config.setCommitSize(200);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+		cache.setPersistency(false);
+
+		final FieldNameGenerator fg = FieldNameGenerator.get();
+		for (int i = 0; i < 1000; i++) {
+			final Map<String, Object> map = new HashMap<String, Object>();
+			map.put(fg.getIdFieldName(), i);
+			map.put(fg.getIntervalStartFieldName(), Dates.parseDate(
+					"01.02.2015 07:56:00", "dd.MM.yyyy HH:mm:ss"));
+			map.put(fg.getIntervalEndFieldName(), Dates.parseDate(
+					"01.02.2015 08:46:00", "dd.MM.yyyy HH:mm:ss"));
+			map.put("STRING", "TestValue");
+			map.put("INT", 2);
+			map.put("LONG", 5l);
+			cache.cache(map);
+
+			// check the reading while loading
+			if (i % 250 == 0) {
+				assertEquals(i + 1, cache.size());
+				assertEquals(cache.get(i)[0], i);
+			}
+		}
+		cache.setPersistency(true);
+
+		// reload and check the values
+		cache.release();
+		cache.initialize(model);
+		assertEquals(1000, cache.size());
+		for (int i = 0; i < 1000; i++) {
+			final Object[] rec = cache.get(i);
+			assertEquals(rec[0], i);
+			assertEquals(rec[1], Dates.parseDate("01.02.2015 07:56:00",
+					"dd.MM.yyyy HH:mm:ss"));
+			assertEquals(rec[3], 2);
+			assertEquals(rec[4], 5l);
+			assertEquals(rec[5], "TestValue");
+		}
+	}
+
 	/**
 	 * Tests the reloading of several values
 	 * 
@@ -188,6 +310,955 @@ public class TestHibernateDataRecordCache extends LoaderBasedTest {
 		assertEquals(list.toString(), 0, list.size());
 	}
 
+	/**
+	 * Tests the block-wise iteration over identifiers, whereby the last block
+	 * is completely filled.
+	 * 
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testBlockIteration() throws IOException {
+		setUp("/net/meisen/dissertation/impl/cache/hibernate/hsqldb/testDbRecords.zip");
+		config.setFetchSize(8);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// the identifiers are iterated in ascending order
+		int expected = 0;
+		final IIntIterator it = cache.intIterator();
+		while (it.hasNext()) {
+			assertEquals(expected, it.next());
+			expected++;
+		}
+		assertEquals(1000, expected);
+		assertFalse(it.hasNext());
+	}
+
+	/**
+	 * Tests the streaming iteration, i.e. the closing of an iterator and the
+	 * visibility of not persisted records.
+	 * 
+	 * @throws IOException
+	 *             if set-up fails
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 */
+	@Test
+	public void testStreamingIteration() throws IOException, ParseException {
+		setUp("/net/meisen/dissertation/impl/cache/hibernate/hsqldb/testDbRecords.zip");
+		config.setFetchSize(10);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// close an iterator before it is exhausted
+		final Iterator<Integer> it = cache.iterator();
+		for (int i = 0; i < 50; i++) {
+			assertTrue(it.hasNext());
+			it.next();
+		}
+		assertTrue(it instanceof HibernateScrollIterator);
+		((HibernateScrollIterator<Integer>) it).close();
+		assertFalse(it.hasNext());
+
+		// add some records without persistency
+		cache.setPersistency(false);
+		final FieldNameGenerator fg = FieldNameGenerator.get();
+		for (int i = 1000; i < 1100; i++) {
+			final Map<String, Object> map = new HashMap<String, Object>();
+			map.put(fg.getIdFieldName(), i);
+			map.put(fg.getIntervalStartFieldName(), Dates.parseDate(
+					"01.02.2015 07:56:00", "dd.MM.yyyy HH:mm:ss"));
+			map.put(fg.getIntervalEndFieldName(), Dates.parseDate(
+					"01.02.2015 08:46:00", "dd.MM.yyyy HH:mm:ss"));
+			map.put("STRING", "TestValue");
+			map.put("INT", 2);
+			map.put("LONG", 5l);
+			cache.cache(map);
+		}
+
+		// iterate over all of them
+		int counter = 0;
+		final IIntIterator intIt = cache.intIterator();
+		while (intIt.hasNext()) {
+			intIt.next();
+			counter++;
+		}
+		assertEquals(1100, counter);
+		cache.setPersistency(true);
+		assertEquals(1100, cache.size());
+	}
+
+	/**
+	 * Creates a record with the specified identifier.
+	 * 
+	 * @param id
+	 *            the identifier of the record
+	 * 
+	 * @return the created record
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 */
+	protected Map<String, Object> createRecord(final int id)
+			throws ParseException {
+		final FieldNameGenerator fg = FieldNameGenerator.get();
+
+		final Map<String, Object> map = new HashMap<String, Object>();
+		map.put(fg.getIdFieldName(), id);
+		map.put(fg.getIntervalStartFieldName(), Dates.parseDate(
+				"01.02.2015 07:56:00", "dd.MM.yyyy HH:mm:ss"));
+		map.put(fg.getIntervalEndFieldName(), Dates.parseDate(
+				"01.02.2015 08:46:00", "dd.MM.yyyy HH:mm:ss"));
+		map.put("STRING", "TestValue" + (id % 10));
+		map.put("INT", id);
+		map.put("LONG", 5l);
+
+		return map;
+	}
+
+	/**
+	 * Validates the record retrieved for the specified identifier.
+	 * 
+	 * @param id
+	 *            the identifier of the record
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 */
+	protected void assertRecord(final int id) throws ParseException {
+		final Object[] rec = cache.get(id);
+		assertEquals(rec[0], id);
+		assertEquals(rec[1], Dates.parseDate("01.02.2015 07:56:00",
+				"dd.MM.yyyy HH:mm:ss"));
+		assertEquals(rec[2], Dates.parseDate("01.02.2015 08:46:00",
+				"dd.MM.yyyy HH:mm:ss"));
+		assertEquals(rec[3], id);
+		assertEquals(rec[4], 5l);
+		assertEquals(rec[5], "TestValue" + (id % 10));
+	}
+
+	/**
+	 * Tests the column-wise storage of records within blocks.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testColumnarStorage() throws ParseException, IOException {
+		setUp(null);
+		config.setStorage(HibernateRecordStorage.COLUMNAR);
+		config.setBlockSize(100);
+		config.setBlockCacheSize(2);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+		assertTrue(cache.isColumnar());
+		assertEquals("recordblocks_" + model.getId(), cache.getEntityName());
+
+		// add some records with persistency
+		for (int i = 0; i < 150; i++) {
+			cache.cache(createRecord(i));
+			assertEquals(i + 1, cache.size());
+		}
+
+		// add some more without, the blocks are written when switching
+		cache.setPersistency(false);
+		for (int i = 150; i < 1000; i++) {
+			cache.cache(createRecord(i));
+			if (i % 250 == 0) {
+				assertEquals(i + 1, cache.size());
+				assertRecord(i);
+			}
+		}
+		cache.setPersistency(true);
+		assertEquals(1000, cache.size());
+		for (int i = 0; i < 1000; i++) {
+			assertRecord(i);
+		}
+		assertEquals(null, cache.get(1000));
+		assertEquals(null, cache.get(-1));
+
+		// reload and check the values
+		cache.release();
+		cache.initialize(model);
+		assertEquals(1000, cache.size());
+		for (int i = 999; i >= 0; i--) {
+			assertRecord(i);
+		}
+
+		// modify a record of a written block
+		final Map<String, Object> map = createRecord(5);
+		map.put("LONG", 6l);
+		cache.cache(map);
+		assertEquals(6l, cache.get(5)[4]);
+		assertEquals(1000, cache.size());
+
+		// the identifiers are iterated in ascending order, block by block
+		config.setFetchSize(30);
+		int expected = 0;
+		final IIntIterator it = cache.intIterator();
+		while (it.hasNext()) {
+			assertEquals(expected, it.next());
+			expected++;
+		}
+		assertEquals(1000, expected);
+
+		expected = 0;
+		final Iterator<Integer> objIt = cache.iterator();
+		while (objIt.hasNext()) {
+			assertEquals(expected, objIt.next().intValue());
+			expected++;
+		}
+		assertEquals(1000, expected);
+	}
+
+	/**
+	 * Tests that the block currently written is written on release, if
+	 * records are added with persistency and never read.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testColumnarDeferredWriting() throws ParseException,
+			IOException {
+		setUp(null);
+		config.setStorage(HibernateRecordStorage.COLUMNAR);
+		config.setBlockSize(100);
+		config.setBlockCacheSize(0);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// add the records with persistency, the last block stays open
+		for (int i = 0; i < 150; i++) {
+			cache.cache(createRecord(i));
+		}
+
+		// release the cache, the open block must be written
+		cache.release();
+		cache.initialize(model);
+		assertEquals(150, cache.size());
+		for (int i = 0; i < 150; i++) {
+			assertRecord(i);
+		}
+	}
+
+	/**
+	 * Tests that the records added with persistency are not lost, if the
+	 * cache is not released, i.e. that the records written through are
+	 * folded into the blocks, when the cache is initialized again.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testColumnarWriteThrough() throws ParseException,
+			IOException {
+		setUp(null);
+		config.setStorage(HibernateRecordStorage.COLUMNAR);
+		config.setBlockSize(100);
+		config.setBlockCacheSize(0);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// add the records with persistency, the last block stays open
+		for (int i = 0; i < 150; i++) {
+			cache.cache(createRecord(i));
+		}
+
+		// simulate a restart without releasing the cache
+		final HibernateDataRecordCache crashed = cache;
+		cache = new HibernateDataRecordCache();
+		cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		cache.setConfig(config);
+		cache.initialize(model);
+		assertEquals(150, cache.size());
+		for (int i = 0; i < 150; i++) {
+			assertRecord(i);
+		}
+		crashed.release();
+
+		// the folded records are kept
+		cache.release();
+		cache.initialize(model);
+		assertEquals(150, cache.size());
+		for (int i = 0; i < 150; i++) {
+			assertRecord(i);
+		}
+	}
+
+	/**
+	 * Tests the column-wise storage of sparse and unordered records.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testColumnarSparseStorage() throws ParseException,
+			IOException {
+		setUp(null);
+		config.setStorage(HibernateRecordStorage.COLUMNAR);
+		config.setBlockSize(64);
+		config.setBlockCacheSize(0);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// add every third record in descending order
+		for (int i = 999; i >= 0; i -= 3) {
+			cache.cache(createRecord(i));
+		}
+		assertEquals(334, cache.size());
+
+		// check the records and the gaps
+		for (int i = 0; i < 1000; i++) {
+			if (i % 3 == 0) {
+				assertRecord(i);
+			} else {
+				assertEquals(null, cache.get(i));
+			}
+		}
+
+		int expected = 0;
+		final IIntIterator it = cache.intIterator();
+		while (it.hasNext()) {
+			assertEquals(expected, it.next());
+			expected += 3;
+		}
+		assertEquals(1002, expected);
+	}
+
+	/**
+	 * Validates the retrieval of several records by their identifiers.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 */
+	protected void assertGetAll() throws ParseException {
+		final int[] ids = new int[] { 5, 1000, 3, 999, 5, -1, 0, 500 };
+
+		Object[][] records = cache.getAll(ids);
+		assertEquals(ids.length, records.length);
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] < 0 || ids[i] >= 1000) {
+				assertNull(records[i]);
+			} else {
+				assertArrayEquals(cache.get(ids[i]), records[i]);
+			}
+		}
+		assertEquals(0, cache.getAll(new int[0]).length);
+
+		// reuse the arrays
+		final Object[][] reuse = new Object[ids.length][];
+		for (int i = 0; i < ids.length; i++) {
+			reuse[i] = new Object[records[0].length];
+		}
+		final Object[] first = reuse[0];
+		records = cache.getAll(ids, reuse);
+		assertSame(reuse, records);
+		assertSame(first, records[0]);
+		assertEquals(5, records[0][0]);
+		assertNull(records[1]);
+	}
+
+	/**
+	 * Validates the retrieval of the records within a range of identifiers.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 */
+	protected void assertGetRange() throws ParseException {
+		List<Object[]> records = cache.getRange(-10, 2000);
+		assertEquals(1000, records.size());
+		for (int i = 0; i < 1000; i++) {
+			assertArrayEquals(cache.get(i), records.get(i));
+		}
+
+		records = cache.getRange(95, 205);
+		assertEquals(111, records.size());
+		for (int i = 0; i < records.size(); i++) {
+			assertEquals(95 + i, records.get(i)[0]);
+		}
+
+		assertEquals(1, cache.getRange(999, 999).size());
+		assertEquals(0, cache.getRange(1000, 2000).size());
+		assertEquals(0, cache.getRange(10, 5).size());
+
+		// reuse the arrays
+		final Object[][] reuse = new Object[][] {
+				new Object[records.get(0).length], null };
+		records = cache.getRange(10, 12, reuse);
+		assertEquals(3, records.size());
+		assertSame(reuse[0], records.get(0));
+		assertEquals(10, records.get(0)[0]);
+		assertEquals(11, records.get(1)[0]);
+		assertEquals(12, records.get(2)[0]);
+	}
+
+	/**
+	 * Tests the retrieval of several records at once.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testBatchRetrieval() throws ParseException, IOException {
+		setUp(null);
+		config.setFetchSize(64);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// retrieve the records while those are not committed
+		cache.setPersistency(false);
+		for (int i = 0; i < 1000; i++) {
+			cache.cache(createRecord(i));
+		}
+		assertGetAll();
+		assertGetRange();
+
+		cache.setPersistency(true);
+		assertGetAll();
+		assertGetRange();
+	}
+
+	/**
+	 * Tests the retrieval of several records at once, using the column-wise
+	 * storage.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testColumnarBatchRetrieval() throws ParseException,
+			IOException {
+		setUp(null);
+		config.setStorage(HibernateRecordStorage.COLUMNAR);
+		config.setBlockSize(100);
+		config.setBlockCacheSize(0);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		cache.setPersistency(false);
+		for (int i = 0; i < 1000; i++) {
+			cache.cache(createRecord(i));
+		}
+		assertGetAll();
+		assertGetRange();
+
+		cache.setPersistency(true);
+		assertGetAll();
+		assertGetRange();
+	}
+
+	/**
+	 * Validates the retrieval of projected records.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 */
+	protected void assertProjection() throws ParseException {
+		final FieldNameGenerator fg = FieldNameGenerator.get();
+		final String[] fields = new String[] { "STRING",
+				fg.getIntervalStartFieldName(), "INT" };
+
+		// get a single record
+		Object[] rec = cache.get(7, fields);
+		assertEquals(3, rec.length);
+		assertEquals("TestValue7", rec[0]);
+		assertEquals(Dates.parseDate("01.02.2015 07:56:00",
+				"dd.MM.yyyy HH:mm:ss"), rec[1]);
+		assertEquals(Date.class, rec[1].getClass());
+		assertEquals(7, rec[2]);
+		assertNull(cache.get(1000, fields));
+
+		rec = cache.get(8, "LONG");
+		assertEquals(1, rec.length);
+		assertEquals(5l, rec[0]);
+
+		// no fields means all fields
+		assertArrayEquals(cache.get(9), cache.get(9, new String[0]));
+
+		// get several records
+		final Object[][] records = cache.getAll(new int[] { 12, 2000, 11 },
+				new String[] { "INT" }, null);
+		assertEquals(12, records[0][0]);
+		assertNull(records[1]);
+		assertEquals(11, records[2][0]);
+
+		// get a range of records
+		final List<Object[]> range = cache.getRange(20, 29, fields, null);
+		assertEquals(10, range.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(3, range.get(i).length);
+			assertEquals(20 + i, range.get(i)[2]);
+		}
+	}
+
+	/**
+	 * Tests the retrieval of projected records.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testProjection() throws ParseException, IOException {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		cache.setPersistency(false);
+		for (int i = 0; i < 100; i++) {
+			cache.cache(createRecord(i));
+		}
+		assertProjection();
+
+		cache.setPersistency(true);
+		assertProjection();
+	}
+
+	/**
+	 * Tests the retrieval of projected records, using the column-wise
+	 * storage.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testColumnarProjection() throws ParseException, IOException {
+		setUp(null);
+		config.setStorage(HibernateRecordStorage.COLUMNAR);
+		config.setBlockSize(16);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		for (int i = 0; i < 100; i++) {
+			cache.cache(createRecord(i));
+		}
+		assertProjection();
+	}
+
+	/**
+	 * Tests the usage of an unknown field within a projection.
+	 * 
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testUnknownProjection() throws IOException {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		try {
+			cache.get(1, "UNKNOWN");
+			fail("Exception expected");
+		} catch (final HibernateDataRecordCacheException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Validates the streaming of the records.
+	 * 
+	 * @param amount
+	 *            the amount of records expected
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 */
+	protected void assertRecordIterator(final int amount)
+			throws ParseException {
+
+		// stream complete records
+		int expected = 0;
+		HibernateDataRecordCache.RecordIterator it = cache.recordIterator();
+		Object[] last = null;
+		while (it.hasNext()) {
+			final Object[] rec = it.next();
+			assertArrayEquals(cache.get(expected), rec);
+			assertTrue(last != rec);
+
+			last = rec;
+			expected++;
+		}
+		assertEquals(amount, expected);
+
+		// stream a flyweight
+		expected = 0;
+		it = cache.recordIterator(true);
+		last = null;
+		while (it.hasNext()) {
+			final Object[] rec = it.next();
+			assertEquals(expected, rec[0]);
+			assertEquals("TestValue" + (expected % 10), rec[5]);
+			assertTrue(last == null || last == rec);
+
+			last = rec;
+			expected++;
+		}
+		assertEquals(amount, expected);
+
+		// stream some values
+		expected = 0;
+		it = cache.recordIterator(new String[] { "INT", "LONG" }, true);
+		while (it.hasNext()) {
+			final Object[] rec = it.next();
+			assertEquals(2, rec.length);
+			assertEquals(expected, rec[0]);
+			assertEquals(5l, rec[1]);
+
+			expected++;
+		}
+		assertEquals(amount, expected);
+
+		// close the iterator prior to exhausting it
+		it = cache.recordIterator();
+		assertTrue(it.hasNext());
+		it.next();
+		it.close();
+		assertFalse(it.hasNext());
+	}
+
+	/**
+	 * Tests the streaming of the records.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testRecordIterator() throws ParseException, IOException {
+		setUp(null);
+		config.setFetchSize(10);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// an empty cache has no records
+		assertFalse(cache.recordIterator().hasNext());
+
+		cache.setPersistency(false);
+		for (int i = 0; i < 100; i++) {
+			cache.cache(createRecord(i));
+		}
+		assertRecordIterator(100);
+
+		cache.setPersistency(true);
+		assertRecordIterator(100);
+	}
+
+	/**
+	 * Tests that iterating over the records, while persistency is disabled,
+	 * does not commit the pending unit of work.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testIteratorKeepsUnitOfWork() throws ParseException,
+			IOException {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		cache.setPersistency(false);
+		for (int i = 0; i < 100; i++) {
+			cache.cache(createRecord(i));
+		}
+
+		HibernateSessionManager.SessionTransactionWrapper wrapper = cache
+				.unitOfWork();
+		final Object transaction = wrapper.getTransaction();
+		cache.releaseReader(wrapper);
+
+		// iterate over the pending records
+		assertRecordIterator(100);
+		int counter = 0;
+		final IIntIterator intIt = cache.intIterator();
+		while (intIt.hasNext()) {
+			intIt.next();
+			counter++;
+		}
+		assertEquals(100, counter);
+
+		// the unit of work is still pending
+		wrapper = cache.unitOfWork();
+		assertSame(transaction, wrapper.getTransaction());
+		cache.releaseReader(wrapper);
+
+		cache.setPersistency(true);
+		assertNull(cache.unitOfWork());
+		assertRecordIterator(100);
+	}
+
+	/**
+	 * Tests the streaming of the records, using the column-wise storage.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testColumnarRecordIterator() throws ParseException,
+			IOException {
+		setUp(null);
+		config.setStorage(HibernateRecordStorage.COLUMNAR);
+		config.setBlockSize(16);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// an empty cache has no records
+		assertFalse(cache.recordIterator().hasNext());
+
+		for (int i = 0; i < 100; i++) {
+			cache.cache(createRecord(i));
+		}
+		assertRecordIterator(100);
+	}
+
+	/**
+	 * Validates the split and the parallel scan of the records.
+	 * 
+	 * @param ids
+	 *            the expected identifiers in ascending order
+	 */
+	protected void assertParallelScan(final int[] ids) {
+
+		// the ranges stream all the records in order
+		final List<HibernateDataRecordCache.RecordIterator> its = cache
+				.recordIterators(7, new String[] { "INT" }, true);
+		assertTrue(its.size() <= 7);
+		int pos = 0;
+		for (final HibernateDataRecordCache.RecordIterator it : its) {
+			while (it.hasNext()) {
+				assertEquals(ids[pos++], it.next()[0]);
+			}
+		}
+		assertEquals(ids.length, pos);
+
+		// scan in parallel
+		final Set<Integer> scanned = Collections
+				.synchronizedSet(new HashSet<Integer>());
+		cache.scan(new HibernateRecordHandler() {
+
+			@Override
+			public void handle(final Object[] record) {
+				assertEquals(6, record.length);
+				assertEquals(record[0], record[3]);
+				assertTrue(scanned.add((Integer) record[0]));
+			}
+		}, null, 3);
+		assertEquals(ids.length, scanned.size());
+		for (final int id : ids) {
+			assertTrue(scanned.contains(id));
+		}
+
+		// a failure of the handler stops the scan
+		try {
+			cache.scan(new HibernateRecordHandler() {
+
+				@Override
+				public void handle(final Object[] record) {
+					throw new IllegalArgumentException("Failed");
+				}
+			}, null, 0);
+			fail("Exception expected");
+		} catch (final IllegalArgumentException e) {
+			assertEquals("Failed", e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests the split and the parallel scan of the records.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testParallelScan() throws ParseException, IOException {
+		setUp(null);
+		config.setFetchSize(10);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// an empty cache has no ranges
+		assertTrue(cache.recordIterators(4, null, false).isEmpty());
+
+		// add sparse records
+		final int[] ids = new int[300];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i * i;
+			cache.cache(createRecord(ids[i]));
+		}
+		assertParallelScan(ids);
+
+		// a range cannot be split into more ranges than keys
+		cache.remove();
+		cache.initialize(model);
+		cache.cache(createRecord(5));
+		cache.cache(createRecord(6));
+		assertEquals(2, cache.recordIterators(4, null, false).size());
+		assertParallelScan(new int[] { 5, 6 });
+	}
+
+	/**
+	 * Tests the split and the parallel scan of the records, using the
+	 * column-wise storage.
+	 * 
+	 * @throws ParseException
+	 *             if a date cannot be parsed
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testColumnarParallelScan() throws ParseException,
+			IOException {
+		setUp(null);
+		config.setStorage(HibernateRecordStorage.COLUMNAR);
+		config.setBlockSize(100);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+
+		// an empty cache has no ranges
+		assertTrue(cache.recordIterators(4, null, false).isEmpty());
+
+		final int[] ids = new int[300];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i * i;
+			cache.cache(createRecord(ids[i]));
+		}
+		assertParallelScan(ids);
+	}
+
+	/**
+	 * Releases the cache while another thread adds records. The release must
+	 * neither dead-lock with the adding thread nor lose any added record.
+	 * 
+	 * @param model
+	 *            the model of the cache
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted
+	 */
+	protected void assertConcurrentRelease(final TidaModel model)
+			throws InterruptedException {
+		cache.initialize(model);
+		cache.setPersistency(false);
+
+		final AtomicInteger added = new AtomicInteger(0);
+		final Thread writer = new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 100000; i++) {
+						cache.cache(createRecord(i));
+						added.incrementAndGet();
+					}
+				} catch (final ParseException e) {
+					throw new IllegalStateException(e);
+				} catch (final RuntimeException e) {
+					// the cache is released
+				}
+			}
+		};
+		final Thread releaser = new Thread() {
+
+			@Override
+			public void run() {
+				cache.release();
+			}
+		};
+
+		writer.start();
+		while (added.get() < 50 && writer.isAlive()) {
+			Thread.sleep(1);
+		}
+		releaser.start();
+
+		releaser.join(30000);
+		writer.join(30000);
+		assertFalse(releaser.isAlive());
+		assertFalse(writer.isAlive());
+
+		// all the added records must be available
+		cache.initialize(model);
+		assertEquals(added.get(), cache.size());
+	}
+
+	/**
+	 * Tests the release of the cache while records are added.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testConcurrentRelease() throws InterruptedException,
+			IOException {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		assertConcurrentRelease(model);
+	}
+
+	/**
+	 * Tests the release of the cache while records are added, using the
+	 * column-wise storage.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted
+	 * @throws IOException
+	 *             if set-up fails
+	 */
+	@Test
+	public void testColumnarConcurrentRelease() throws InterruptedException,
+			IOException {
+		setUp(null);
+		config.setStorage(HibernateRecordStorage.COLUMNAR);
+		config.setBlockSize(10);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		assertConcurrentRelease(model);
+	}
+
 	/**
 	 * Clean up the created cache and the database.
 	 */
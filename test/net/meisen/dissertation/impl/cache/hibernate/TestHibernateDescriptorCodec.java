@@ -0,0 +1,64 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.UUID;
+
+import net.meisen.general.genmisc.types.Streams;
+
+import org.junit.Test;
+
+/**
+ * Tests the implementation of the {@code HibernateDescriptorCodec}.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class TestHibernateDescriptorCodec {
+
+	/**
+	 * Tests the encoding and decoding of the supported types.
+	 * 
+	 * @throws IOException
+	 *             if a value cannot be decoded
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		final Object[] values = new Object[] { null, "", "", 5,
+				Integer.MIN_VALUE, Long.MAX_VALUE, 5.5d, 2.5f, (short) 3,
+				(byte) 1, true, new Date(),
+				new BigInteger("12345678901234567890"),
+				new BigDecimal("-1234.5678"), UUID.randomUUID() };
+
+		// check each value by itself
+		for (final Object value : values) {
+			assertEquals(value,
+					HibernateDescriptorCodec.decode(HibernateDescriptorCodec
+							.encode(value)));
+		}
+
+		// check all values together
+		assertArrayEquals(values, HibernateDescriptorCodec.decode(
+				HibernateDescriptorCodec.encode(values), values.length));
+	}
+
+	/**
+	 * Tests the size of the encoded values compared to the Java
+	 * serialization.
+	 */
+	@Test
+	public void testSize() {
+		for (final Object value : new Object[] { 5, 5l, 5.0, "value" }) {
+			final int size = HibernateDescriptorCodec.encode(value).length;
+
+			assertTrue(size < 10);
+			assertTrue(size * 5 < Streams.objectToByte(value).length);
+		}
+	}
+}
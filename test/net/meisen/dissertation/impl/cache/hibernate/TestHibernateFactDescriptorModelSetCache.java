@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import net.meisen.dissertation.help.Db;
@@ -185,6 +186,41 @@ public class TestHibernateFactDescriptorModelSetCache extends LoaderBasedTest {
 		assertEquals(1000, cache.size());
 	}
 
+	/**
+	 * Tests the retrieval of several sets at once.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testGetAll() throws IOException {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.initialize(model);
+		model.getMetaDataModel().createDescriptor("STRING", "Dog");
+
+		// add some sets, and request some not cached ones as well
+		final List<BitmapId<?>> bitmapIds = new ArrayList<BitmapId<?>>();
+		for (int i = 0; i < 1200; i++) {
+			final BitmapId<Integer> bitmapId = new BitmapId<Integer>(i,
+					IntervalIndex.class);
+			if (i % 2 == 0) {
+				final FactDescriptorModelSet set = new FactDescriptorModelSet();
+				set.setDescriptors(model.getMetaDataModel().getDescriptors());
+				cache.cache(bitmapId, set);
+			}
+			bitmapIds.add(bitmapId);
+		}
+
+		final Map<BitmapId<?>, FactDescriptorModelSet> sets = cache
+				.getAll(bitmapIds);
+		assertEquals(1200, sets.size());
+		for (final BitmapId<?> bitmapId : bitmapIds) {
+			assertEquals(cache.get(bitmapId), sets.get(bitmapId));
+		}
+	}
+
 	/**
 	 * Tests the iteration of data from the cache.
 	 * 
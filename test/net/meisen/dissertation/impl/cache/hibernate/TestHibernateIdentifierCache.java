@@ -1,10 +1,12 @@
 package net.meisen.dissertation.impl.cache.hibernate;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.UUID;
 
 import net.meisen.dissertation.help.Db;
@@ -26,6 +28,7 @@ import org.junit.Test;
 public class TestHibernateIdentifierCache extends LoaderBasedTest {
 
 	private HibernateIdentifierCache cache;
+	private HibernateIdentifierCacheConfig config;
 	private File tmpDir;
 	private Db db;
 
@@ -54,7 +57,7 @@ public class TestHibernateIdentifierCache extends LoaderBasedTest {
 		final DefaultExceptionRegistry excReg = new DefaultExceptionRegistry();
 
 		// create a configuration
-		final HibernateIdentifierCacheConfig config = new HibernateIdentifierCacheConfig();
+		config = new HibernateIdentifierCacheConfig();
 		config.setDriver("org.hsqldb.jdbcDriver");
 		config.setUrl("jdbc:hsqldb:hsql://localhost:6666/testDb");
 		config.setUsername("SA");
@@ -100,6 +103,146 @@ public class TestHibernateIdentifierCache extends LoaderBasedTest {
 				cache.getValidIdentifiers());
 	}
 
+	/**
+	 * Tests the persistence of the valid identifiers as deltas, which are
+	 * compacted whenever the threshold is reached.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testDeltaPersistence() throws IOException {
+		setUp(null);
+		config.setCompactThreshold(3);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.setIndexFactory(model.getIndexFactory());
+		cache.initialize(model);
+
+		// create some deltas, the third one leads to a compaction
+		cache.markIdentifierAsUsed(10);
+		cache.markIdentifierAsValid(1, 2, 3);
+		cache.markIdentifierAsValid(7, 8);
+		assertEquals(Bitmap.createBitmap(model.getIndexFactory(), 1, 2, 3, 7,
+				8), cache.getValidIdentifiers());
+		cache.release();
+
+		// re-init using the deltas
+		cache.initialize(model);
+		assertEquals(10, cache.getLastUsedIdentifier());
+		assertEquals(Bitmap.createBitmap(model.getIndexFactory(), 1, 2, 3, 7,
+				8), cache.getValidIdentifiers());
+
+		// add some more after the compaction
+		cache.markIdentifierAsValid(5);
+		cache.markIdentifierAsUsed(12);
+		cache.markIdentifierAsValid(10, 11, 12);
+		cache.markIdentifierAsValid(9);
+		cache.markIdentifierAsInvalid(2, 8);
+		cache.release();
+
+		// re-init using the snapshot and the deltas
+		cache.initialize(model);
+		assertEquals(12, cache.getLastUsedIdentifier());
+		assertEquals(Bitmap.createBitmap(model.getIndexFactory(), 1, 3, 5, 7,
+				9, 10, 11, 12), cache.getValidIdentifiers());
+	}
+
+	/**
+	 * Tests the reservation of identifiers, i.e. that the identifiers are
+	 * resumed after the reservation if a cache is not released.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testReservation() throws IOException {
+		setUp(null);
+		config.setReservationSize(100);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		cache.setIndexFactory(model.getIndexFactory());
+		cache.initialize(model);
+
+		cache.markIdentifierAsUsed(5);
+		cache.markIdentifierAsValid(2, 4, 5);
+		cache.markIdentifierAsUsed(6);
+
+		// simulate a restart without releasing the cache
+		final HibernateIdentifierCache crashed = cache;
+		cache = new HibernateIdentifierCache();
+		cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		cache.setConfig(config);
+		cache.setIndexFactory(model.getIndexFactory());
+		cache.initialize(model);
+
+		// the used but not valid identifier 6 is never reissued
+		assertEquals(104, cache.getLastUsedIdentifier());
+
+		// the unused identifiers of the reservation (7 - 104) are leaked
+		assertEquals(98, cache.getLastUsedIdentifier() - 6);
+		assertEquals(Bitmap.createBitmap(model.getIndexFactory(), 2, 4, 5),
+				cache.getValidIdentifiers());
+
+		// releasing without using any identifier releases the reservation
+		cache.release();
+		cache.initialize(model);
+		assertEquals(104, cache.getLastUsedIdentifier());
+
+		// a released cache persists the exact identifier
+		cache.markIdentifierAsUsed(110);
+		cache.release();
+		cache.initialize(model);
+		assertEquals(110, cache.getLastUsedIdentifier());
+
+		// crash again, at most one reservation is leaked per crash
+		cache.markIdentifierAsUsed(111);
+		final HibernateIdentifierCache crashedAgain = cache;
+		cache = new HibernateIdentifierCache();
+		cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		cache.setConfig(config);
+		cache.setIndexFactory(model.getIndexFactory());
+		cache.initialize(model);
+		assertEquals(210, cache.getLastUsedIdentifier());
+		assertEquals(99, cache.getLastUsedIdentifier() - 111);
+		crashedAgain.release();
+
+		cache.release();
+		crashed.release();
+	}
+
+	/**
+	 * Tests the creation and the application of deltas.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testDelta() throws IOException {
+		setUp(null);
+
+		final BitSet ids = new BitSet();
+		ids.set(1);
+		ids.set(2);
+		ids.set(3);
+		ids.set(8);
+
+		// set unordered and duplicated identifiers
+		cache.applyDelta(ids, cache.createDelta(
+				HibernateIdentifierCache.OP_SET, new int[] { 10, 4, 2, 5, 4 }));
+		assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 8, 10 },
+				cache.toArray(ids));
+
+		// clear some identifiers
+		cache.applyDelta(ids, cache.createDelta(
+				HibernateIdentifierCache.OP_CLEAR, new int[] { 8, 1 }));
+		assertArrayEquals(new int[] { 2, 3, 4, 5, 10 }, cache.toArray(ids));
+
+		// no changes lead to an empty delta
+		assertEquals(0, cache.createDelta(HibernateIdentifierCache.OP_SET,
+				new int[0]).length);
+	}
+
 	/**
 	 * Clean up the created cache and the database.
 	 */
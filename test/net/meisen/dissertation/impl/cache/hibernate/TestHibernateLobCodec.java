@@ -0,0 +1,184 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.meisen.dissertation.help.LoaderBasedTest;
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.dissertation.model.indexes.datarecord.slices.Bitmap;
+
+import org.junit.Test;
+
+/**
+ * Tests the implementation of the {@code HibernateLobCodec}.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class TestHibernateLobCodec extends LoaderBasedTest {
+
+	/**
+	 * Tests the encoding and decoding of the serialized bitmaps.
+	 * 
+	 * @throws IOException
+	 *             if a bitmap cannot be serialized
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		for (final byte[] data : createBitmaps().values()) {
+			for (final HibernateLobCodec codec : HibernateLobCodec.values()) {
+				final byte[] encoded = codec.encode(data);
+				assertArrayEquals(data, codec.decode(encoded));
+				assertArrayEquals(data,
+						HibernateLobCodec.byId(codec.getId()).decode(encoded));
+			}
+		}
+
+		// empty data
+		for (final HibernateLobCodec codec : HibernateLobCodec.values()) {
+			assertEquals(0, codec.decode(codec.encode(new byte[0])).length);
+		}
+	}
+
+	/**
+	 * Tests the encoding into a {@code HibernateLobBuffer} and the decoding
+	 * of the buffer's stream.
+	 * 
+	 * @throws IOException
+	 *             if a bitmap cannot be serialized
+	 */
+	@Test
+	public void testStreams() throws IOException {
+		for (final byte[] data : createBitmaps().values()) {
+			for (final HibernateLobCodec codec : HibernateLobCodec.values()) {
+				final HibernateLobBuffer buffer = new HibernateLobBuffer(16);
+				final OutputStream out = codec.encode(buffer);
+				out.write(data);
+				out.close();
+
+				// the stream and the array based encoding are compatible
+				assertArrayEquals(data, codec.decode(buffer.toByteArray()));
+
+				final DataInputStream in = new DataInputStream(
+						codec.decode(buffer.toInputStream()));
+				final byte[] decoded = new byte[data.length];
+				in.readFully(decoded);
+				assertEquals(-1, in.read());
+				in.close();
+
+				assertArrayEquals(data, decoded);
+			}
+		}
+	}
+
+	/**
+	 * Tests the retrieval of a codec by it's identifier.
+	 * 
+	 * @throws IOException
+	 *             if the codec is unknown
+	 */
+	@Test
+	public void testById() throws IOException {
+		assertEquals(HibernateLobCodec.NONE, HibernateLobCodec.byId(null));
+		for (final HibernateLobCodec codec : HibernateLobCodec.values()) {
+			assertEquals(codec, HibernateLobCodec.byId(codec.getId()));
+		}
+
+		try {
+			HibernateLobCodec.byId((byte) 100);
+			fail("Exception expected");
+		} catch (final IOException e) {
+			assertTrue(e.getMessage().contains("100"));
+		}
+
+		try {
+			HibernateLobCodec.DEFLATE.decode(new byte[] { 1, 2, 3 });
+			fail("Exception expected");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Creates serialized bitmaps of different kinds, i.e. sparse bitmaps,
+	 * bitmaps with long runs and random bitmaps.
+	 * 
+	 * @return the serialized bitmaps associated to a description
+	 * 
+	 * @throws IOException
+	 *             if a bitmap cannot be serialized
+	 */
+	protected Map<String, byte[]> createBitmaps() throws IOException {
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		final Map<String, byte[]> bitmaps = new LinkedHashMap<String, byte[]>();
+
+		// sparse
+		final List<Integer> sparse = new ArrayList<Integer>();
+		for (int i = 0; i < 1000000; i += 1000) {
+			sparse.add(i);
+		}
+		bitmaps.put("sparse", serialize(model, sparse));
+
+		// runs
+		final List<Integer> runs = new ArrayList<Integer>();
+		for (int i = 0; i < 1000000; i += 5000) {
+			for (int k = i; k < i + 500; k++) {
+				runs.add(k);
+			}
+		}
+		bitmaps.put("runs", serialize(model, runs));
+
+		// random
+		final Random rnd = new Random(4711);
+		final List<Integer> random = new ArrayList<Integer>();
+		for (int i = 0; i < 100000; i++) {
+			if (rnd.nextInt(10) == 0) {
+				random.add(i);
+			}
+		}
+		bitmaps.put("random", serialize(model, random));
+
+		return bitmaps;
+	}
+
+	/**
+	 * Creates the serialized bitmap of the specified {@code ids}.
+	 * 
+	 * @param model
+	 *            the model to get the index-factory from
+	 * @param ids
+	 *            the identifiers set within the bitmap
+	 * 
+	 * @return the serialized bitmap
+	 * 
+	 * @throws IOException
+	 *             if the bitmap cannot be serialized
+	 */
+	protected byte[] serialize(final TidaModel model, final List<Integer> ids)
+			throws IOException {
+		final int[] array = new int[ids.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = ids.get(i);
+		}
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(baos);
+		Bitmap.createBitmap(model.getIndexFactory(), array).serialize(out);
+		out.flush();
+
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,96 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the implementation of a {@code HibernateLruCache}.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class TestHibernateLruCache {
+
+	/**
+	 * Tests the eviction of the least recently used values.
+	 */
+	@Test
+	public void testEviction() {
+		final HibernateLruCache<Integer, String> cache = new HibernateLruCache<Integer, String>(
+				10);
+
+		cache.put(1, "1", 4);
+		cache.put(2, "2", 4);
+		assertEquals(8, cache.getWeight());
+
+		// use the first one, so that the second one is evicted
+		assertEquals("1", cache.get(1));
+		cache.put(3, "3", 4);
+
+		assertEquals("1", cache.get(1));
+		assertNull(cache.get(2));
+		assertEquals("3", cache.get(3));
+		assertEquals(8, cache.getWeight());
+		assertEquals(2, cache.size());
+
+		// check the statistics
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	/**
+	 * Tests the replacement and removal of values.
+	 */
+	@Test
+	public void testReplacement() {
+		final HibernateLruCache<Integer, String> cache = new HibernateLruCache<Integer, String>(
+				10);
+
+		cache.put(1, "1", 4);
+		cache.put(1, "1b", 6);
+		assertEquals("1b", cache.get(1));
+		assertEquals(6, cache.getWeight());
+
+		// a value being to heavy removes the old one
+		cache.put(1, "1c", 11);
+		assertNull(cache.get(1));
+		assertEquals(0, cache.getWeight());
+
+		cache.put(2, "2", 2);
+		cache.remove(2);
+		assertNull(cache.get(2));
+
+		cache.put(3, "3", 2);
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	/**
+	 * Tests that {@code putIfAbsent} never replaces a cached value.
+	 */
+	@Test
+	public void testPutIfAbsent() {
+		final HibernateLruCache<Integer, String> cache = new HibernateLruCache<Integer, String>(
+				10);
+
+		assertTrue(cache.putIfAbsent(1, "1", 4));
+		assertFalse(cache.putIfAbsent(1, "1b", 2));
+		assertEquals("1", cache.get(1));
+		assertEquals(4, cache.getWeight());
+
+		// a value being to heavy is not cached
+		assertFalse(cache.putIfAbsent(2, "2", 11));
+		assertNull(cache.get(2));
+
+		// put always replaces
+		cache.put(1, "1c", 3);
+		assertEquals("1c", cache.get(1));
+		assertEquals(3, cache.getWeight());
+	}
+}
@@ -0,0 +1,148 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Mappings;
+import org.hibernate.dialect.PostgreSQL9Dialect;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Property;
+import org.hibernate.mapping.RootClass;
+import org.hibernate.mapping.SimpleValue;
+import org.hibernate.mapping.Table;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of the {@code HibernateMapStatement}.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class TestHibernateMapStatement {
+
+	/**
+	 * Creates the meta-data of a database with the specified version.
+	 * 
+	 * @param major
+	 *            the major version of the database
+	 * @param minor
+	 *            the minor version of the database
+	 * 
+	 * @return the created meta-data
+	 */
+	protected DatabaseMetaData createMetaData(final int major, final int minor) {
+		return (DatabaseMetaData) Proxy.newProxyInstance(getClass()
+				.getClassLoader(), new Class<?>[] { DatabaseMetaData.class },
+				new InvocationHandler() {
+
+					@Override
+					public Object invoke(final Object proxy,
+							final Method method, final Object[] args) {
+						if ("getDatabaseMajorVersion".equals(method.getName())) {
+							return major;
+						} else if ("getDatabaseMinorVersion".equals(method
+								.getName())) {
+							return minor;
+						} else {
+							throw new UnsupportedOperationException(
+									method.getName());
+						}
+					}
+				});
+	}
+
+	/**
+	 * Creates a mapping with an identifier and a value.
+	 * 
+	 * @return the created mapping
+	 */
+	protected PersistentClass createMapping() {
+		final Mappings mappings = new Configuration().createMappings();
+		final Table table = mappings.addTable(null, null, "entity", null,
+				false);
+
+		final RootClass clazz = new RootClass();
+		clazz.setEntityName("entity");
+		clazz.setTable(table);
+
+		// create the identifier
+		final Column idColumn = new Column("id");
+		idColumn.setSqlTypeCode(Types.INTEGER);
+		table.addColumn(idColumn);
+		final SimpleValue idValue = new SimpleValue(mappings, table);
+		idValue.setTypeName(Integer.class.getName());
+		idValue.addColumn(idColumn);
+		final Property idProperty = new Property();
+		idProperty.setName("id");
+		idProperty.setValue(idValue);
+		clazz.setIdentifier(idValue);
+		clazz.setIdentifierProperty(idProperty);
+
+		// create the value
+		final Column column = new Column("value");
+		column.setSqlTypeCode(Types.VARCHAR);
+		table.addColumn(column);
+		final SimpleValue value = new SimpleValue(mappings, table);
+		value.setTypeName(String.class.getName());
+		value.addColumn(column);
+		final Property property = new Property();
+		property.setName("value");
+		property.setValue(value);
+		clazz.addProperty(property);
+
+		return clazz;
+	}
+
+	/**
+	 * Tests the check of the version of the database.
+	 * 
+	 * @throws SQLException
+	 *             if the version cannot be read
+	 */
+	@Test
+	public void testIsVersion() throws SQLException {
+		assertFalse(HibernateMapStatement.isVersion(null, 9, 5));
+		assertFalse(HibernateMapStatement.isVersion(createMetaData(8, 9), 9,
+				5));
+		assertFalse(HibernateMapStatement.isVersion(createMetaData(9, 4), 9,
+				5));
+		assertTrue(HibernateMapStatement.isVersion(createMetaData(9, 5), 9, 5));
+		assertTrue(HibernateMapStatement.isVersion(createMetaData(9, 6), 9, 5));
+		assertTrue(HibernateMapStatement.isVersion(createMetaData(10, 0), 9,
+				5));
+	}
+
+	/**
+	 * Tests that {@code ON CONFLICT} is only used for {@code PostgreSQL} 9.5
+	 * or later.
+	 * 
+	 * @throws SQLException
+	 *             if the version cannot be read
+	 */
+	@Test
+	public void testPostgreSQLUpsert() throws SQLException {
+		final PersistentClass clazz = createMapping();
+		final PostgreSQL9Dialect dialect = new PostgreSQL9Dialect();
+
+		assertNull(HibernateMapStatement.createUpsert(clazz, dialect, null,
+				null));
+		assertNull(HibernateMapStatement.createUpsert(clazz, dialect, null,
+				createMetaData(9, 4)));
+
+		final HibernateMapStatement upsert = HibernateMapStatement
+				.createUpsert(clazz, dialect, null, createMetaData(9, 5));
+		assertNotNull(upsert);
+		assertTrue(upsert.getSql(), upsert.getSql().contains("ON CONFLICT"));
+	}
+}
@@ -6,9 +6,16 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.ParseException;
 import java.util.UUID;
 
+import javax.xml.bind.DatatypeConverter;
+
 import net.meisen.dissertation.help.Db;
 import net.meisen.dissertation.help.LoaderBasedTest;
 import net.meisen.dissertation.impl.datasets.SingleStaticDataSet;
@@ -19,6 +26,7 @@ import net.meisen.dissertation.model.datastructure.IntervalStructureEntry;
 import net.meisen.dissertation.model.datastructure.MetaStructureEntry;
 import net.meisen.general.genmisc.types.Dates;
 import net.meisen.general.genmisc.types.Files;
+import net.meisen.general.genmisc.types.Streams;
 
 import org.junit.After;
 import org.junit.Test;
@@ -30,6 +38,7 @@ import org.junit.Test;
  * 
  */
 public class TestHibernateMetaDataCache extends LoaderBasedTest {
+
 	private File tmpDir;
 	private Db db;
 
@@ -161,6 +170,88 @@ public class TestHibernateMetaDataCache extends LoaderBasedTest {
 		assertEquals(1000, mdc.sizeOfValues("LONG"));
 	}
 
+	/**
+	 * Tests the migration of a table using the string key and the Java
+	 * serialization.
+	 * 
+	 * @throws IOException
+	 *             if the file of the model cannot be read
+	 * @throws SQLException
+	 *             if the legacy table cannot be created
+	 */
+	@Test
+	public void testMigration() throws IOException, SQLException {
+		setUp(null);
+
+		// create the legacy table
+		final Connection conn = DriverManager.getConnection(
+				"jdbc:hsqldb:hsql://localhost:6666/testMetaDataDb", "SA", "");
+		final Statement stmt = conn.createStatement();
+		stmt.executeUpdate("CREATE TABLE \"metadata_metaDataModel\" "
+				+ "(\"key\" VARCHAR(1000) NOT NULL PRIMARY KEY, "
+				+ "\"value\" VARBINARY(10000) NOT NULL)");
+		stmt.close();
+
+		final PreparedStatement insert = conn
+				.prepareStatement("INSERT INTO \"metadata_metaDataModel\" VALUES (?, ?)");
+		final String[] values = new String[] { "Lion", "Tiger", "Bear" };
+		for (int i = 0; i < values.length; i++) {
+			insert.setString(1, "STRING "
+					+ DatatypeConverter.printBase64Binary(Streams
+							.objectToByte(i + 1)));
+			insert.setBytes(2, Streams.objectToByte(values[i]));
+			insert.executeUpdate();
+		}
+		for (int i = 0; i < 100; i++) {
+			insert.setString(1, "INT "
+					+ DatatypeConverter.printBase64Binary(Streams
+							.objectToByte(i + 1)));
+			insert.setBytes(2, Streams.objectToByte(i));
+			insert.executeUpdate();
+		}
+		insert.close();
+		conn.close();
+
+		// load the model, the table is migrated
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/metaDataModel.xml");
+		final IMetaDataCollection mdc = model.getMetaDataCache()
+				.createMetaDataCollection();
+		assertEquals(2, mdc.size());
+		assertEquals(3, mdc.sizeOfValues("STRING"));
+		assertEquals(100, mdc.sizeOfValues("INT"));
+
+		// add some more data using the new layout
+		createMetaData(model);
+		assertEquals(7, model.getMetaDataCache().createMetaDataCollection()
+				.sizeOfValues("STRING"));
+	}
+
+	/**
+	 * Tests the loading of the meta-data of several descriptors added
+	 * without persisting each one.
+	 * 
+	 * @throws IOException
+	 *             if the file of the model cannot be read
+	 */
+	@Test
+	public void testLoading() throws IOException {
+		setUp(null);
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/metaDataModel.xml");
+		final HibernateMetaDataCache cache = (HibernateMetaDataCache) model
+				.getMetaDataCache();
+
+		// add the descriptors without persisting each one
+		cache.setPersistency(false);
+		for (int i = 0; i < 1000; i++) {
+			model.getMetaDataModel().createDescriptor("INT", i);
+		}
+		cache.setPersistency(true);
+
+		final IMetaDataCollection mdc = cache.createMetaDataCollection();
+		assertEquals(1000, mdc.sizeOfValues("INT"));
+	}
+
 	/**
 	 * Creates the {@code DataStructure} needed to add data to the
 	 * {@code fileMetaDataCache}-model.
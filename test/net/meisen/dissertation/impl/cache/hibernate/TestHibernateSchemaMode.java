@@ -0,0 +1,284 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import net.meisen.dissertation.help.Db;
+import net.meisen.dissertation.help.LoaderBasedTest;
+import net.meisen.dissertation.model.data.TidaModel;
+import net.meisen.dissertation.model.indexes.datarecord.IntervalIndex;
+import net.meisen.dissertation.model.indexes.datarecord.slices.Bitmap;
+import net.meisen.dissertation.model.indexes.datarecord.slices.BitmapId;
+import net.meisen.general.genmisc.exceptions.registry.DefaultExceptionRegistry;
+import net.meisen.general.genmisc.types.Files;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the handling of the schema, i.e. the {@code HibernateSchemaMode}.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class TestHibernateSchemaMode extends LoaderBasedTest {
+
+	private final static String URL = "jdbc:hsqldb:hsql://localhost:6666/testDb";
+
+	private final List<HibernateSessionManager<?>> caches = new ArrayList<HibernateSessionManager<?>>();
+	private File tmpDir;
+	private Db db;
+
+	/**
+	 * Setup a database.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	public void setUp() throws IOException {
+		tmpDir = new File(System.getProperty("java.io.tmpdir"), UUID
+				.randomUUID().toString());
+		db = new Db();
+		db.openNewDb("testDb", tmpDir, false);
+		db.setUpDb();
+	}
+
+	/**
+	 * Applies the settings of the test-database to the {@code config}.
+	 * 
+	 * @param config
+	 *            the configuration to be set up
+	 * @param mode
+	 *            the mode used to handle the schema
+	 * 
+	 * @return the configuration
+	 */
+	protected <C extends HibernateConfig> C configure(final C config,
+			final HibernateSchemaMode mode) {
+		config.setDriver("org.hsqldb.jdbcDriver");
+		config.setUrl(URL);
+		config.setUsername("SA");
+		config.setPassword("");
+		config.setSchemaMode(mode);
+
+		return config;
+	}
+
+	/**
+	 * Creates the specified amount of caches, each one using a table of its
+	 * own.
+	 * 
+	 * @param amount
+	 *            the amount of caches to be created, at most {@code 3}
+	 * @param mode
+	 *            the mode used to handle the schema
+	 * 
+	 * @return the created caches
+	 */
+	protected List<HibernateSessionManager<?>> createCaches(final int amount,
+			final HibernateSchemaMode mode) {
+		final List<HibernateSessionManager<?>> res = new ArrayList<HibernateSessionManager<?>>();
+
+		final HibernateBitmapCache bitmapCache = new HibernateBitmapCache();
+		bitmapCache.setConfig(configure(new HibernateBitmapCacheConfig(),
+				mode));
+		res.add(bitmapCache);
+
+		if (amount > 1) {
+			final HibernateFactDescriptorModelSetCache factCache = new HibernateFactDescriptorModelSetCache();
+			factCache.setConfig(configure(
+					new HibernateFactDescriptorModelSetCacheConfig(), mode));
+			res.add(factCache);
+		}
+
+		if (amount > 2) {
+			final HibernateDataRecordCache recordCache = new HibernateDataRecordCache();
+			recordCache.setConfig(configure(
+					new HibernateDataRecordCacheConfig(), mode));
+			res.add(recordCache);
+		}
+
+		for (final HibernateSessionManager<?> cache : res) {
+			cache.setExceptionRegistry(new DefaultExceptionRegistry());
+		}
+		caches.addAll(res);
+
+		return res;
+	}
+
+	/**
+	 * Initializes and releases the specified {@code caches}.
+	 * 
+	 * @param model
+	 *            the model to initialize the caches for
+	 * @param caches
+	 *            the caches to be initialized
+	 */
+	protected void load(final TidaModel model,
+			final List<HibernateSessionManager<?>> caches) {
+		for (final HibernateSessionManager<?> cache : caches) {
+			cache.initialize(model);
+		}
+		for (final HibernateSessionManager<?> cache : caches) {
+			cache.release();
+		}
+	}
+
+	/**
+	 * Checks if the specified column of the table exists.
+	 * 
+	 * @param table
+	 *            the name of the table
+	 * @param column
+	 *            the name of the column
+	 * 
+	 * @return {@code true} if the column exists, otherwise {@code false}
+	 * 
+	 * @throws SQLException
+	 *             if the database cannot be accessed
+	 */
+	protected boolean existsColumn(final String table, final String column)
+			throws SQLException {
+		final Connection conn = DriverManager.getConnection(URL, "SA", "");
+		try {
+			final ResultSet rs = conn.getMetaData().getColumns(null, null,
+					table, column);
+			try {
+				return rs.next();
+			} finally {
+				rs.close();
+			}
+		} finally {
+			conn.close();
+		}
+	}
+
+	/**
+	 * Fires the specified {@code sql} against the database.
+	 * 
+	 * @param sql
+	 *            the statement to be fired
+	 * 
+	 * @throws SQLException
+	 *             if the statement fails
+	 */
+	protected void execute(final String sql) throws SQLException {
+		final Connection conn = DriverManager.getConnection(URL, "SA", "");
+		try {
+			final Statement stmt = conn.createStatement();
+			try {
+				stmt.executeUpdate(sql);
+			} finally {
+				stmt.close();
+			}
+		} finally {
+			conn.close();
+		}
+	}
+
+	/**
+	 * Tests that the update of the schema is skipped, if the marker states
+	 * that the table is current.
+	 * 
+	 * @throws Exception
+	 *             if the database cannot be accessed
+	 */
+	@Test
+	public void testTrustedSchema() throws Exception {
+		setUp();
+
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		final HibernateSessionManager<?> cache = createCaches(1,
+				HibernateSchemaMode.TRUSTED).get(0);
+		final HibernateConfig config = cache.getConfig();
+
+		// the first initialization updates the schema and marks it
+		load(model, caches);
+		final String table = cache.getEntityName();
+		assertTrue(existsColumn(table, "encoding"));
+		assertTrue(existsColumn(HibernateSessionManager.SCHEMA_MARKER_TABLE,
+				"fingerprint"));
+
+		// the marked table is trusted, i.e. the column is not added again
+		execute("ALTER TABLE \"" + table + "\" DROP COLUMN \"encoding\"");
+		load(model, caches);
+		assertFalse(existsColumn(table, "encoding"));
+
+		// an explicit update adds the column again
+		config.setSchemaMode(HibernateSchemaMode.UPDATE);
+		load(model, caches);
+		assertTrue(existsColumn(table, "encoding"));
+
+		// a dropped table is created even if trusted
+		config.setSchemaMode(HibernateSchemaMode.TRUSTED);
+		execute("DROP TABLE \"" + table + "\"");
+		load(model, caches);
+		assertTrue(existsColumn(table, "encoding"));
+	}
+
+	/**
+	 * Tests that the model is loaded using trusted tables, i.e. that the
+	 * data of a filled table is still available.
+	 * 
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	@Test
+	public void testTrustedStartup() throws IOException {
+		setUp();
+
+		// fill the table of the bitmap-cache
+		final TidaModel model = m("/net/meisen/dissertation/impl/cache/hibernate/defaultModel.xml");
+		HibernateBitmapCache cache = (HibernateBitmapCache) createCaches(1,
+				HibernateSchemaMode.UPDATE).get(0);
+		cache.initialize(model);
+		cache.setPersistency(false);
+		for (int i = 0; i < 100; i++) {
+			cache.cache(new BitmapId<Integer>(i, IntervalIndex.class),
+					Bitmap.createBitmap(model.getIndexFactory(), i));
+		}
+		cache.setPersistency(true);
+		cache.release();
+
+		// mark the tables, afterwards those are trusted
+		load(model, createCaches(3, HibernateSchemaMode.UPDATE));
+		load(model, createCaches(3, HibernateSchemaMode.TRUSTED));
+		load(model, createCaches(3, HibernateSchemaMode.TRUSTED));
+
+		cache = (HibernateBitmapCache) createCaches(1,
+				HibernateSchemaMode.TRUSTED).get(0);
+		cache.initialize(model);
+		assertEquals(100, cache.size());
+		assertEquals(1, cache.get(new BitmapId<Integer>(5,
+				IntervalIndex.class)).determineCardinality());
+		cache.release();
+	}
+
+	/**
+	 * Clean up the created caches and the database.
+	 */
+	@After
+	public void cleanUp() {
+		for (final HibernateSessionManager<?> cache : caches) {
+			cache.remove();
+		}
+		caches.clear();
+
+		if (db != null) {
+			db.shutDownDb();
+		}
+		assertTrue(Files.deleteDir(tmpDir));
+	}
+}
@@ -0,0 +1,198 @@
+package net.meisen.dissertation.impl.cache.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.meisen.dissertation.model.data.TidaModel;
+
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.Dialect;
+import org.junit.Test;
+
+/**
+ * Tests the implementation of a {@code HibernateWriteBehindQueue}.
+ * 
+ * @author pmeisen
+ * 
+ */
+public class TestHibernateWriteBehindQueue {
+
+	/**
+	 * A manager recording the written entities instead of writing those.
+	 * 
+	 * @author pmeisen
+	 * 
+	 */
+	protected static class RecordingManager extends
+			HibernateSessionManager<Integer> {
+		private final List<Map<String, Object>> written;
+		private final AtomicInteger failures;
+		private final CountDownLatch release;
+
+		/**
+		 * Constructor specifying the amount of batches failing and the latch
+		 * to be released prior to writing a batch.
+		 * 
+		 * @param failures
+		 *            the amount of batches failing, prior to writing batches
+		 * @param release
+		 *            the latch to be released prior to writing a batch
+		 */
+		public RecordingManager(final int failures,
+				final CountDownLatch release) {
+			this.written = Collections
+					.synchronizedList(new ArrayList<Map<String, Object>>());
+			this.failures = new AtomicInteger(failures);
+			this.release = release;
+		}
+
+		@Override
+		public String getEntityName() {
+			return "test";
+		}
+
+		@Override
+		protected void writeBatch(
+				final List<HibernateWriteBehindQueue.Entry<Integer>> batch) {
+			try {
+				release.await();
+			} catch (final InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+
+			if (failures.getAndDecrement() > 0) {
+				throw new IllegalStateException("Failure");
+			}
+			for (final HibernateWriteBehindQueue.Entry<Integer> entry : batch) {
+				written.add(entry.getMap());
+			}
+		}
+
+		@Override
+		protected String createEntityName(final TidaModel model) {
+			return getEntityName();
+		}
+
+		@Override
+		protected Class<? extends RuntimeException>[] getExceptions() {
+			@SuppressWarnings("unchecked")
+			final Class<? extends RuntimeException>[] exp = new Class[0];
+
+			return exp;
+		}
+
+		@Override
+		protected HibernateConfig getConfig() {
+			return null;
+		}
+
+		@Override
+		protected void defineMappings(final Configuration config,
+				final Dialect dialect) {
+			// nothing to map
+		}
+
+		/**
+		 * Gets the written entities.
+		 * 
+		 * @return the written entities
+		 */
+		public List<Map<String, Object>> getWritten() {
+			return written;
+		}
+	}
+
+	/**
+	 * Creates an entity with the specified {@code id}.
+	 * 
+	 * @param id
+	 *            the identifier of the entity
+	 * 
+	 * @return the created entity
+	 */
+	protected Map<String, Object> createMap(final int id) {
+		final Map<String, Object> map = new HashMap<String, Object>();
+		map.put("id", id);
+
+		return map;
+	}
+
+	/**
+	 * Tests that the entities of a failed batch are kept pending and written
+	 * after the failure is retrieved.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted
+	 */
+	@Test
+	public void testFailedBatch() throws InterruptedException {
+		final RecordingManager manager = new RecordingManager(1,
+				new CountDownLatch(0));
+		final HibernateWriteBehindQueue<Integer> queue = new HibernateWriteBehindQueue<Integer>(
+				manager, 10, 1);
+		queue.start();
+
+		for (int i = 0; i < 3; i++) {
+			queue.enqueue(i, createMap(i), i);
+		}
+
+		// the first batch fails, nothing is lost
+		queue.flush();
+		assertTrue(queue.isPending());
+		assertNotNull(queue.pollFailure());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i, queue.lookup(i).get("id"));
+		}
+
+		// the entities are written again, once the failure is retrieved
+		queue.flush();
+		assertNull(queue.pollFailure());
+		assertFalse(queue.isPending());
+		assertEquals(3, manager.getWritten().size());
+
+		queue.shutdown();
+	}
+
+	/**
+	 * Tests that an interruption while waiting for the queue is propagated.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted
+	 */
+	@Test
+	public void testInterruptedFlush() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final RecordingManager manager = new RecordingManager(0, release);
+		final HibernateWriteBehindQueue<Integer> queue = new HibernateWriteBehindQueue<Integer>(
+				manager, 10, 1);
+		queue.start();
+		queue.enqueue(1, createMap(1), 1);
+
+		// the entity cannot be written until the latch is released
+		Thread.currentThread().interrupt();
+		try {
+			queue.flush();
+			fail("Exception expected");
+		} catch (final InterruptedException e) {
+			assertFalse(Thread.currentThread().isInterrupted());
+		}
+		assertTrue(queue.isPending());
+
+		release.countDown();
+		queue.shutdown();
+		assertFalse(queue.isPending());
+		assertEquals(1, manager.getWritten().size());
+	}
+}